@@ -15,7 +15,6 @@
  *******************************************************************************/
 package de.martindreier.gameoflife.game;
 
-import java.util.Collections;
 import java.util.Set;
 
 /**
@@ -38,9 +37,9 @@ public class Cell {
     private CellState nextState    = CellState.DEAD;
 
     /**
-     * Neighbors of this cell.
+     * Neighbors of this cell. Kept as array, so counting the neighbors does not allocate an iterator.
      */
-    private Set<Cell> neighbors    = Collections.emptySet();
+    private Cell[]    neighbors    = new Cell[0];
 
     /**
      * Create a new, dead cell.
@@ -66,7 +65,7 @@ public class Cell {
      * @param neighbors
      */
     void setNeighbors(Set<Cell> neighbors) {
-        this.neighbors = neighbors;
+        this.neighbors = neighbors.toArray(new Cell[neighbors.size()]);
     }
 
     /**
@@ -75,11 +74,13 @@ public class Cell {
      * @return
      */
     public int countNeighborsAlive() {
-        long aliveCount = this.neighbors.stream().filter(cell -> cell.currentState == CellState.ALIVE).count();
-        if (aliveCount > Integer.MAX_VALUE) {
-            throw new IllegalStateException("Number of neighbors exceeds value range");
+        int aliveCount = 0;
+        for (Cell neighbor : this.neighbors) {
+            if (neighbor.currentState == CellState.ALIVE) {
+                aliveCount++;
+            }
         }
-        return (int) aliveCount;
+        return aliveCount;
     }
 
     /**
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Metrics of a single generation, as reported to a {@link GenerationListener}.
+ *
+ * @author D043987
+ *
+ */
+public class GenerationStatistics {
+
+    /**
+     * Thread bean with allocation counters, or <code>null</code> if the JVM does not count allocations.
+     */
+    private static final com.sun.management.ThreadMXBean ALLOCATION_COUNTER = allocationCounter();
+
+    /**
+     * Number of the generation.
+     */
+    private final long                                   generation;
+
+    /**
+     * Number of cells evaluated.
+     */
+    private final long                                   cellsEvaluated;
+
+    /**
+     * Number of cells which changed their state.
+     */
+    private final long                                   cellsChanged;
+
+    /**
+     * Duration of the compute phase in nanoseconds.
+     */
+    private final long                                   computeNanos;
+
+    /**
+     * Duration of the update phase in nanoseconds.
+     */
+    private final long                                   updateNanos;
+
+    /**
+     * Bytes allocated by the iterating thread, or -1 if not measured.
+     */
+    private final long                                   allocatedBytes;
+
+    /**
+     * Create new statistics.
+     *
+     * @param generation
+     *            Number of the generation.
+     * @param cellsEvaluated
+     *            Number of cells evaluated.
+     * @param cellsChanged
+     *            Number of cells which changed their state.
+     * @param computeNanos
+     *            Duration of the compute phase in nanoseconds.
+     * @param updateNanos
+     *            Duration of the update phase in nanoseconds.
+     * @param allocatedBytes
+     *            Bytes allocated by the iterating thread, or -1 if not measured.
+     */
+    public GenerationStatistics(long generation, long cellsEvaluated, long cellsChanged, long computeNanos, long updateNanos, long allocatedBytes) {
+        this.generation = generation;
+        this.cellsEvaluated = cellsEvaluated;
+        this.cellsChanged = cellsChanged;
+        this.computeNanos = computeNanos;
+        this.updateNanos = updateNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Look up the thread bean with allocation counters.
+     *
+     * @return The bean, or <code>null</code> if allocations are not counted.
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+                com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) bean;
+                counter.setThreadAllocatedMemoryEnabled(true);
+                return counter;
+            }
+        }
+        catch (LinkageError | UnsupportedOperationException | SecurityException e) {
+            // Not a HotSpot compatible JVM, or not permitted
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of bytes allocated by the current thread so far.
+     *
+     * @return Allocated bytes, or -1 if the JVM does not count allocations.
+     */
+    public static long currentThreadAllocatedBytes() {
+        if (ALLOCATION_COUNTER == null) {
+            return -1;
+        }
+        return ALLOCATION_COUNTER.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Get the number of the generation. The first calculated generation is 1.
+     *
+     * @return Generation.
+     */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Get the number of cells whose next state was calculated.
+     *
+     * @return Cells evaluated.
+     */
+    public long getCellsEvaluated() {
+        return this.cellsEvaluated;
+    }
+
+    /**
+     * Get the number of cells which changed their state.
+     *
+     * @return Cells changed.
+     */
+    public long getCellsChanged() {
+        return this.cellsChanged;
+    }
+
+    /**
+     * Get the duration of the compute phase, in which the next state of all cells is calculated.
+     *
+     * @return Duration in nanoseconds.
+     */
+    public long getComputeNanos() {
+        return this.computeNanos;
+    }
+
+    /**
+     * Get the duration of the update phase, in which all cells switch to their next state.
+     *
+     * @return Duration in nanoseconds.
+     */
+    public long getUpdateNanos() {
+        return this.updateNanos;
+    }
+
+    /**
+     * Get the total duration of the generation.
+     *
+     * @return Duration in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return this.computeNanos + this.updateNanos;
+    }
+
+    /**
+     * Get the number of bytes allocated by the iterating thread during the generation. Allocations are only measured
+     * for sequential iterations; a parallel iteration allocates in the worker threads, so it reports -1.
+     *
+     * @return Allocated bytes, or -1 if the JVM does not count allocations or the generation was calculated in
+     *         parallel.
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("GenerationStatistics [generation %d, evaluated %d, changed %d, compute %d ns, update %d ns, allocated %d bytes]", this.generation,
+                this.cellsEvaluated, this.cellsChanged, this.computeNanos, this.updateNanos, this.allocatedBytes);
+    }
+}
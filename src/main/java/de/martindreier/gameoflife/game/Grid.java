@@ -20,9 +20,13 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Stream;
 
+import de.martindreier.gameoflife.game.io.CellSink;
 import de.martindreier.gameoflife.game.io.GridLoader;
+import de.martindreier.gameoflife.game.jfr.FlightRecorder;
 
 /**
  * The game grid. Holds an array of {@link Cell Cells} and access methods for it. The grid's coordinate system is
@@ -31,12 +35,32 @@ import de.martindreier.gameoflife.game.io.GridLoader;
  * @author Martin Dreier <martin@martindreier.de>
  *
  */
-public class Grid {
+public class Grid implements CellSink {
+
+    /**
+     * Listener array of a grid without listeners.
+     */
+    private static final GenerationListener[] NO_LISTENERS = new GenerationListener[0];
+
+    /**
+     * Engine name in flight recorder events.
+     */
+    private static final String               ENGINE_NAME  = "Grid";
 
     /**
      * The cells in this grid (column, row).
      */
-    private Cell[][] cells;
+    private Cell[][]                          cells;
+
+    /**
+     * Registered generation listeners. Replaced as a whole when listeners are added or removed.
+     */
+    private volatile GenerationListener[]     listeners    = NO_LISTENERS;
+
+    /**
+     * Number of generations calculated since the grid was created.
+     */
+    private long                              generation;
 
     /**
      * Create an uninitialized grid.
@@ -211,6 +235,190 @@ public class Grid {
         this.cells[x][y].setCurrentState(state);
     }
 
+    /**
+     * Set a run of consecutive cells of a row to the same state. Loaders use this to write whole runs at once, which
+     * grids with a packed representation can do much faster than setting each cell.
+     *
+     * @param x
+     *            X coordinate of the first cell.
+     * @param y
+     *            Y coordinate (row).
+     * @param length
+     *            Number of cells.
+     * @param state
+     *            State of the cells.
+     */
+    public void setRun(int x, int y, int length, CellState state) {
+        this.fillRectangle(x, y, length, 1, state);
+    }
+
+    /**
+     * Set all cells of a rectangle to the same state.
+     *
+     * @param x
+     *            X coordinate of the left edge.
+     * @param y
+     *            Y coordinate of the top edge.
+     * @param width
+     *            Width of the rectangle.
+     * @param height
+     *            Height of the rectangle.
+     * @param state
+     *            State of the cells. Must not be <code>null</code>.
+     */
+    public void fillRectangle(int x, int y, int width, int height, CellState state) {
+        if (state == null) {
+            throw new IllegalArgumentException("The cell state must not be null");
+        }
+        this.checkRegion(x, y, width, height);
+        for (int column = x; column < x + width; column++) {
+            Cell[] cellColumn = this.cells[column];
+            for (int row = y; row < y + height; row++) {
+                cellColumn[row].setCurrentState(state);
+            }
+        }
+    }
+
+    /**
+     * Kill all cells of a rectangle.
+     *
+     * @param x
+     *            X coordinate of the left edge.
+     * @param y
+     *            Y coordinate of the top edge.
+     * @param width
+     *            Width of the rectangle.
+     * @param height
+     *            Height of the rectangle.
+     */
+    public void clearRegion(int x, int y, int width, int height) {
+        this.fillRectangle(x, y, width, height, CellState.DEAD);
+    }
+
+    /**
+     * Paste a bitmap into a rectangle of the grid. The bitmap has one row of <code>(width + 63) / 64</code> words per
+     * row of the rectangle, and bit <code>c % 64</code> of word <code>c / 64</code> of a row is set for an alive cell in
+     * column <code>c</code>. This is the layout of the cells of a
+     * {@link de.martindreier.gameoflife.game.packed.PackedGrid}.
+     *
+     * @param x
+     *            X coordinate of the left edge.
+     * @param y
+     *            Y coordinate of the top edge.
+     * @param width
+     *            Width of the rectangle.
+     * @param height
+     *            Height of the rectangle.
+     * @param bitmap
+     *            The bitmap.
+     * @param mode
+     *            How the bitmap is combined with the cells.
+     */
+    public void paste(int x, int y, int width, int height, long[] bitmap, PasteMode mode) {
+        checkBitmap(width, height, bitmap, mode);
+        this.checkRegion(x, y, width, height);
+        int stride = (width + Long.SIZE - 1) / Long.SIZE;
+        for (int column = 0; column < width; column++) {
+            Cell[] cellColumn = this.cells[x + column];
+            int word = column / Long.SIZE;
+            long bit = 1L << column;
+            for (int row = 0; row < height; row++) {
+                boolean set = (bitmap[row * stride + word] & bit) != 0;
+                Cell cell = cellColumn[y + row];
+                if (mode == PasteMode.REPLACE) {
+                    cell.setCurrentState(set ? CellState.ALIVE : CellState.DEAD);
+                } else if (set) {
+                    boolean alive = mode == PasteMode.OR || cell.getCurrentState() == CellState.DEAD;
+                    cell.setCurrentState(alive ? CellState.ALIVE : CellState.DEAD);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check the arguments of a paste operation.
+     *
+     * @param width
+     *            Width of the rectangle.
+     * @param height
+     *            Height of the rectangle.
+     * @param bitmap
+     *            The bitmap.
+     * @param mode
+     *            Paste mode.
+     */
+    protected static void checkBitmap(int width, int height, long[] bitmap, PasteMode mode) {
+        if (bitmap == null || mode == null) {
+            throw new IllegalArgumentException("Bitmap and paste mode must not be null");
+        }
+        if (width >= 0 && height >= 0 && (long) (width + Long.SIZE - 1) / Long.SIZE * height > bitmap.length) {
+            throw new IllegalArgumentException(String.format("Bitmap of %d words is too short for %dx%d cells", bitmap.length, width, height));
+        }
+    }
+
+    /**
+     * Check that a rectangle is inside the grid.
+     *
+     * @param x
+     *            X coordinate of the left edge.
+     * @param y
+     *            Y coordinate of the top edge.
+     * @param width
+     *            Width of the rectangle.
+     * @param height
+     *            Height of the rectangle.
+     */
+    protected void checkRegion(int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width < 0 || height < 0 || x > this.getWidth() - width || y > this.getHeight() - height) {
+            throw new ArrayIndexOutOfBoundsException(String.format("Region of %dx%d cells at (%d,%d) is outside of the grid (%dx%d)", width, height, x, y, this.getWidth(),
+                    this.getHeight()));
+        }
+    }
+
+    /**
+     * Set a cell alive.
+     *
+     * @see de.martindreier.gameoflife.game.io.CellSink#point(int, int)
+     */
+    @Override
+    public void point(int x, int y) {
+        this.set(x, y, CellState.ALIVE);
+    }
+
+    /**
+     * Set a run of cells alive.
+     *
+     * @see de.martindreier.gameoflife.game.io.CellSink#setRun(int, int, int)
+     */
+    @Override
+    public void setRun(int x, int y, int length) {
+        this.setRun(x, y, length, CellState.ALIVE);
+    }
+
+    /**
+     * Get the grid width.
+     *
+     * @return Number of cells in X dimension.
+     */
+    public int getWidth() {
+        if (this.cells == null) {
+            throw new IllegalStateException("Grid is not initialized");
+        }
+        return this.cells.length;
+    }
+
+    /**
+     * Get the grid height.
+     *
+     * @return Number of cells in Y dimension.
+     */
+    public int getHeight() {
+        if (this.cells == null) {
+            throw new IllegalStateException("Grid is not initialized");
+        }
+        return this.cells[0].length;
+    }
+
     /**
      * Get the current grid as rows and columns.
      *
@@ -238,12 +446,144 @@ public class Grid {
     }
 
     /**
+     * Get the number of generations calculated since the grid was created.
+     *
+     * @return Generation count.
+     */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Register a listener which is notified after each generation. While no listener is registered and no flight
+     * recording of generation events (see {@link FlightRecorder}) is running, iterations are not measured at all.
+     *
+     * @param listener
+     *            The listener.
+     */
+    public synchronized void addGenerationListener(GenerationListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        GenerationListener[] current = this.listeners;
+        GenerationListener[] changed = Arrays.copyOf(current, current.length + 1);
+        changed[current.length] = listener;
+        this.listeners = changed;
+    }
+
+    /**
+     * Remove a registered listener. Nothing happens if the listener is not registered.
+     *
+     * @param listener
+     *            The listener.
+     */
+    public synchronized void removeGenerationListener(GenerationListener listener) {
+        GenerationListener[] current = this.listeners;
+        for (int index = 0; index < current.length; index++) {
+            if (current[index] == listener) {
+                GenerationListener[] changed = new GenerationListener[current.length - 1];
+                System.arraycopy(current, 0, changed, 0, index);
+                System.arraycopy(current, index + 1, changed, index, changed.length - index);
+                this.listeners = changed.length == 0 ? NO_LISTENERS : changed;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Calculate the next generation. All cells first calculate their next state, then all cells are updated. Without
+     * listeners, the calculation does not allocate any memory.
      *
      * @param ruleSet
+     *            The game rule.
      */
     public void iterate(GameRule ruleSet) {
-        this.getCells().forEach(cell -> cell.setNextState(ruleSet.getNewState(cell.getCurrentState(), cell.countNeighborsAlive())));
-        this.getCells().forEach(Cell::update);
+        GenerationListener[] current = this.listeners;
+        FlightRecorder.Generation event = FlightRecorder.startGeneration(ENGINE_NAME, this.getWidth(), this.getHeight(), false);
+        if (current.length > 0 || event != null) {
+            this.measuredIterate(ruleSet, false, current, event);
+            return;
+        }
+        for (Cell[] column : this.cells) {
+            for (Cell cell : column) {
+                cell.setNextState(ruleSet.getNewState(cell.getCurrentState(), cell.countNeighborsAlive()));
+            }
+        }
+        for (Cell[] column : this.cells) {
+            for (Cell cell : column) {
+                cell.update();
+            }
+        }
+        this.generation++;
+    }
+
+    /**
+     * Calculate the next generation in parallel. Both phases (calculating the next state of all cells, then updating
+     * all cells) are run as parallel streams in the given pool, so the pool's parallelism limits the number of threads.
+     * The result is the same as for {@link #iterate(GameRule)}.
+     *
+     * @param ruleSet
+     *            The game rule.
+     * @param pool
+     *            The pool to run the calculation in.
+     */
+    public void iterate(GameRule ruleSet, ForkJoinPool pool) {
+        GenerationListener[] current = this.listeners;
+        FlightRecorder.Generation event = FlightRecorder.startGeneration(ENGINE_NAME, this.getWidth(), this.getHeight(), true);
+        if (current.length > 0 || event != null) {
+            pool.invoke(ForkJoinTask.adapt(() -> this.measuredIterate(ruleSet, true, current, event)));
+            return;
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> {
+            this.getCells().parallel().forEach(cell -> cell.setNextState(ruleSet.getNewState(cell.getCurrentState(), cell.countNeighborsAlive())));
+            this.getCells().parallel().forEach(Cell::update);
+        }));
+        this.generation++;
+    }
+
+    /**
+     * Calculate the next generation while measuring both phases, then notify the listeners and commit the flight
+     * recorder event. Allocations are only measured for a sequential calculation: the workers of a parallel
+     * calculation are not known, and the counter of the calling thread alone would be misleading.
+     *
+     * @param ruleSet
+     *            The game rule.
+     * @param parallel
+     *            <code>true</code> to use parallel streams.
+     * @param current
+     *            The listeners to notify.
+     * @param event
+     *            The flight recorder event, <code>null</code> if no event is recorded.
+     */
+    private void measuredIterate(GameRule ruleSet, boolean parallel, GenerationListener[] current, FlightRecorder.Generation event) {
+        long allocatedBefore = parallel ? -1 : GenerationStatistics.currentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        Stream<Cell> computeCells = parallel ? this.getCells().parallel() : this.getCells();
+        long changed = computeCells.mapToLong(cell -> {
+            CellState state = cell.getCurrentState();
+            CellState next = ruleSet.getNewState(state, cell.countNeighborsAlive());
+            cell.setNextState(next);
+            return next == state ? 0 : 1;
+        }).sum();
+        long computed = System.nanoTime();
+        Stream<Cell> updateCells = parallel ? this.getCells().parallel() : this.getCells();
+        updateCells.forEach(Cell::update);
+        long updated = System.nanoTime();
+        long allocatedAfter = parallel ? -1 : GenerationStatistics.currentThreadAllocatedBytes();
+        this.generation++;
+        if (event != null) {
+            event.finish(this.generation, changed);
+        }
+        if (current.length == 0) {
+            return;
+        }
+
+        long allocated = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+        GenerationStatistics statistics = new GenerationStatistics(this.generation, (long) this.getWidth() * this.getHeight(), changed, computed - start,
+                updated - computed, allocated);
+        for (GenerationListener listener : current) {
+            listener.generationCompleted(statistics);
+        }
     }
 
 }
@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game;
+
+/**
+ * Ways to combine a pasted bitmap with the cells of a grid.
+ *
+ * @author D043987
+ *
+ */
+public enum PasteMode {
+
+    /**
+     * Cells set in the bitmap become alive, all other cells keep their state.
+     */
+    OR,
+
+    /**
+     * Cells set in the bitmap change their state, all other cells keep their state.
+     */
+    XOR,
+
+    /**
+     * The cells of the pasted area take the state of the bitmap.
+     */
+    REPLACE;
+}
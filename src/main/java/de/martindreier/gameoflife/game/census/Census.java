@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.census;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Result of a census: the number of objects of each shape. Instances are not thread safe; censuses from different
+ * threads are combined with {@link #merge(Census)}.
+ *
+ * @author D043987
+ *
+ */
+public class Census {
+
+    /**
+     * Number of objects by shape.
+     */
+    private final SortedMap<ObjectShape, Long> counts = new TreeMap<>();
+
+    /**
+     * Total number of objects.
+     */
+    private long                               objectCount;
+
+    /**
+     * Total number of living cells in all objects.
+     */
+    private long                               population;
+
+    /**
+     * Add an object.
+     *
+     * @param shape
+     *            Shape of the object.
+     */
+    void add(ObjectShape shape) {
+        this.counts.merge(shape, 1L, Long::sum);
+        this.objectCount++;
+        this.population += shape.getPopulation();
+    }
+
+    /**
+     * Add the objects of another census to this census.
+     *
+     * @param other
+     *            The other census.
+     */
+    public void merge(Census other) {
+        other.counts.forEach((shape, count) -> this.counts.merge(shape, count, Long::sum));
+        this.objectCount += other.objectCount;
+        this.population += other.population;
+    }
+
+    /**
+     * Get the total number of objects.
+     *
+     * @return Object count.
+     */
+    public long getObjectCount() {
+        return this.objectCount;
+    }
+
+    /**
+     * Get the total number of living cells.
+     *
+     * @return Population.
+     */
+    public long getPopulation() {
+        return this.population;
+    }
+
+    /**
+     * Get the number of objects with a shape.
+     *
+     * @param shape
+     *            The shape.
+     * @return Number of objects.
+     */
+    public long getCount(ObjectShape shape) {
+        return this.counts.getOrDefault(shape, 0L);
+    }
+
+    /**
+     * Get the number of objects with a name, summed over all phases of the object.
+     *
+     * @param name
+     *            Name of the object, e.g. <code>glider</code>.
+     * @return Number of objects.
+     * @see ObjectShape#getName()
+     */
+    public long getCount(String name) {
+        long count = 0;
+        for (Map.Entry<ObjectShape, Long> entry : this.counts.entrySet()) {
+            if (entry.getKey().getName().filter(name::equals).isPresent()) {
+                count += entry.getValue();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of objects by shape.
+     *
+     * @return Unmodifiable map from shape to object count, sorted by population of the shape.
+     */
+    public SortedMap<ObjectShape, Long> getCounts() {
+        return Collections.unmodifiableSortedMap(this.counts);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("Census [objects %d, population %d, shapes %s]", this.objectCount, this.population, this.counts);
+    }
+}
@@ -0,0 +1,419 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.census;
+
+import java.util.Arrays;
+
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Splits a packed grid into objects and counts them by shape. Two living cells belong to the same object if they are
+ * neighbors, including diagonal neighbors.
+ * <p>
+ * Objects are found with run-based connected component labeling: the runs of living cells are extracted word by word
+ * from the packed rows, and each run is joined with the overlapping runs of the row above in a union-find structure.
+ * Each cell is only touched again when the shape of its object is built. A census object keeps its buffers between
+ * calls and is not thread safe; use one instance per thread.
+ * </p>
+ * <p>
+ * The beacon is the only listed oscillator with a phase that is not connected: its six-cell phase consists of two
+ * L-shaped halves which do not touch. Two such halves whose open corners face each other are therefore counted as one
+ * object, so the census names both phases of the beacon.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class ObjectCensus {
+
+    /**
+     * Initial capacity of the buffers.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * First cell of each run.
+     */
+    private int[]            runStart         = new int[INITIAL_CAPACITY];
+
+    /**
+     * Last cell of each run.
+     */
+    private int[]            runEnd           = new int[INITIAL_CAPACITY];
+
+    /**
+     * Row of each run.
+     */
+    private int[]            runRow           = new int[INITIAL_CAPACITY];
+
+    /**
+     * Union-find parent of each run. The root of a set is always its run with the smallest index.
+     */
+    private int[]            parent           = new int[INITIAL_CAPACITY];
+
+    /**
+     * Number of runs.
+     */
+    private int              runCount;
+
+    /**
+     * Object of each run, indexed by run.
+     */
+    private int[]            label            = new int[INITIAL_CAPACITY];
+
+    /**
+     * Bounding box of each object: left, right, top and bottom, indexed by object.
+     */
+    private int[]            left             = new int[INITIAL_CAPACITY];
+
+    /**
+     * @see #left
+     */
+    private int[]            right            = new int[INITIAL_CAPACITY];
+
+    /**
+     * @see #left
+     */
+    private int[]            top              = new int[INITIAL_CAPACITY];
+
+    /**
+     * @see #left
+     */
+    private int[]            bottom           = new int[INITIAL_CAPACITY];
+
+    /**
+     * Runs sorted by object.
+     */
+    private int[]            order            = new int[INITIAL_CAPACITY];
+
+    /**
+     * Index of the first run of each object in {@link #order}.
+     */
+    private int[]            firstRun         = new int[INITIAL_CAPACITY + 1];
+
+    /**
+     * Cells of the object being built.
+     */
+    private long[]           shape            = new long[INITIAL_CAPACITY];
+
+    /**
+     * Take a census of the objects of a grid.
+     *
+     * @param grid
+     *            The grid.
+     * @return The census.
+     */
+    public Census take(PackedGrid grid) {
+        Census census = new Census();
+        this.addTo(grid, census);
+        return census;
+    }
+
+    /**
+     * Add the objects of a grid to an existing census.
+     *
+     * @param grid
+     *            The grid.
+     * @param census
+     *            The census to add the objects to.
+     */
+    public void addTo(PackedGrid grid, Census census) {
+        this.findRuns(grid);
+        int objectCount = this.labelObjects();
+        this.sortRuns(objectCount);
+        if (this.joinBeaconHalves(objectCount)) {
+            objectCount = this.labelObjects();
+            this.sortRuns(objectCount);
+        }
+        for (int object = 0; object < objectCount; object++) {
+            census.add(this.buildShape(object));
+        }
+    }
+
+    /**
+     * Extract the runs of living cells row by row and join overlapping runs of neighboring rows.
+     *
+     * @param grid
+     *            The grid.
+     */
+    private void findRuns(PackedGrid grid) {
+        this.runCount = 0;
+        int previousFirst = 0;
+        int previousEnd = 0;
+        for (int y = 0; y < grid.getHeight(); y++) {
+            int rowFirst = this.runCount;
+            for (int wordX = 0; wordX < grid.getWordsPerRow(); wordX++) {
+                long word = grid.getWord(wordX, y);
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    int length = Long.numberOfTrailingZeros(~(word >>> bit));
+                    int start = (wordX << 6) + bit;
+                    word = bit + length == Long.SIZE ? 0 : word & (-1L << (bit + length));
+                    if (this.runCount > rowFirst && this.runEnd[this.runCount - 1] == start - 1) {
+                        // Run continues from the previous word
+                        this.runEnd[this.runCount - 1] += length;
+                    }
+                    else {
+                        this.addRun(start, start + length - 1, y);
+                    }
+                }
+            }
+
+            // Join with overlapping runs of the previous row, including diagonal neighbors
+            int candidate = previousFirst;
+            for (int run = rowFirst; run < this.runCount; run++) {
+                while (candidate < previousEnd && this.runEnd[candidate] < this.runStart[run] - 1) {
+                    candidate++;
+                }
+                for (int other = candidate; other < previousEnd && this.runStart[other] <= this.runEnd[run] + 1; other++) {
+                    this.union(run, other);
+                }
+            }
+            previousFirst = rowFirst;
+            previousEnd = this.runCount;
+        }
+    }
+
+    /**
+     * Add a run.
+     *
+     * @param start
+     *            First cell of the run.
+     * @param end
+     *            Last cell of the run.
+     * @param y
+     *            Row of the run.
+     */
+    private void addRun(int start, int end, int y) {
+        if (this.runCount == this.runStart.length) {
+            int capacity = this.runCount * 2;
+            this.runStart = Arrays.copyOf(this.runStart, capacity);
+            this.runEnd = Arrays.copyOf(this.runEnd, capacity);
+            this.runRow = Arrays.copyOf(this.runRow, capacity);
+            this.parent = Arrays.copyOf(this.parent, capacity);
+        }
+        this.runStart[this.runCount] = start;
+        this.runEnd[this.runCount] = end;
+        this.runRow[this.runCount] = y;
+        this.parent[this.runCount] = this.runCount;
+        this.runCount++;
+    }
+
+    /**
+     * Find the root of the set containing a run.
+     *
+     * @param run
+     *            The run.
+     * @return Root run.
+     */
+    private int find(int run) {
+        while (this.parent[run] != run) {
+            // Path halving
+            this.parent[run] = this.parent[this.parent[run]];
+            run = this.parent[run];
+        }
+        return run;
+    }
+
+    /**
+     * Join the sets of two runs.
+     *
+     * @param first
+     *            First run.
+     * @param second
+     *            Second run.
+     */
+    private void union(int first, int second) {
+        int firstRoot = this.find(first);
+        int secondRoot = this.find(second);
+        if (firstRoot < secondRoot) {
+            this.parent[secondRoot] = firstRoot;
+        }
+        else if (secondRoot < firstRoot) {
+            this.parent[firstRoot] = secondRoot;
+        }
+    }
+
+    /**
+     * Number the objects in the order of their first run and calculate their bounding boxes.
+     *
+     * @return Number of objects.
+     */
+    private int labelObjects() {
+        if (this.label.length < this.runCount) {
+            int capacity = this.runStart.length;
+            this.label = new int[capacity];
+            this.order = new int[capacity];
+            this.left = new int[capacity];
+            this.right = new int[capacity];
+            this.top = new int[capacity];
+            this.bottom = new int[capacity];
+            this.firstRun = new int[capacity + 1];
+        }
+        int objectCount = 0;
+        for (int run = 0; run < this.runCount; run++) {
+            int root = this.find(run);
+            if (root == run) {
+                // The root is the first run of its object, so the object is labeled before any of its other runs
+                this.label[run] = objectCount;
+                this.left[objectCount] = this.runStart[run];
+                this.right[objectCount] = this.runEnd[run];
+                this.top[objectCount] = this.runRow[run];
+                this.bottom[objectCount] = this.runRow[run];
+                objectCount++;
+            }
+            else {
+                int object = this.label[root];
+                this.label[run] = object;
+                this.left[object] = Math.min(this.left[object], this.runStart[run]);
+                this.right[object] = Math.max(this.right[object], this.runEnd[run]);
+                this.bottom[object] = this.runRow[run];
+            }
+        }
+        return objectCount;
+    }
+
+    /**
+     * Sort the runs by object (counting sort). Afterwards, the runs of object <code>i</code> are
+     * <code>order[firstRun[i]]</code> to <code>order[firstRun[i + 1] - 1]</code>, sorted by row.
+     *
+     * @param objectCount
+     *            Number of objects.
+     */
+    private void sortRuns(int objectCount) {
+        Arrays.fill(this.firstRun, 0, objectCount + 1, 0);
+        for (int run = 0; run < this.runCount; run++) {
+            this.firstRun[this.label[run]]++;
+        }
+        for (int object = 1; object < objectCount; object++) {
+            this.firstRun[object] += this.firstRun[object - 1];
+        }
+        for (int run = this.runCount - 1; run >= 0; run--) {
+            this.order[--this.firstRun[this.label[run]]] = run;
+        }
+        this.firstRun[objectCount] = this.runCount;
+    }
+
+    /**
+     * Join the two halves of each beacon in its six-cell phase. A half is an object of three cells in a 2x2 bounding
+     * box; two halves form a beacon if the second lies diagonally below the first and their missing corners touch.
+     *
+     * @param objectCount
+     *            Number of objects.
+     * @return <code>true</code> if any objects were joined. The objects must be labeled again in that case.
+     */
+    private boolean joinBeaconHalves(int objectCount) {
+        boolean joined = false;
+        for (int object = 0; object < objectCount; object++) {
+            int half = this.singleCellRun(object);
+            if (half < 0 || this.runRow[half] != this.bottom[object]) {
+                // Not a half, or its missing corner does not face downwards
+                continue;
+            }
+            int corner = this.missingCorner(object, half);
+            int direction = corner == this.right[object] ? 1 : -1;
+            for (int other = object + 1; other < objectCount && this.top[other] <= this.top[object] + 2; other++) {
+                int otherHalf = this.singleCellRun(other);
+                if (otherHalf >= 0 && this.top[other] == this.top[object] + 2
+                        && this.left[other] == this.left[object] + 2 * direction
+                        && this.runRow[otherHalf] == this.top[other]
+                        && this.missingCorner(other, otherHalf) == corner + direction) {
+                    this.union(half, otherHalf);
+                    joined = true;
+                    break;
+                }
+            }
+        }
+        return joined;
+    }
+
+    /**
+     * Find the single-cell run of an object of three cells in a 2x2 bounding box.
+     *
+     * @param object
+     *            The object.
+     * @return The run with one cell, or <code>-1</code> if the object has a different shape.
+     */
+    private int singleCellRun(int object) {
+        if (this.right[object] - this.left[object] != 1 || this.bottom[object] - this.top[object] != 1
+                || this.firstRun[object + 1] - this.firstRun[object] != 2) {
+            return -1;
+        }
+        int first = this.order[this.firstRun[object]];
+        int second = this.order[this.firstRun[object] + 1];
+        boolean firstSingle = this.runStart[first] == this.runEnd[first];
+        boolean secondSingle = this.runStart[second] == this.runEnd[second];
+        if (firstSingle == secondSingle) {
+            return -1;
+        }
+        return firstSingle ? first : second;
+    }
+
+    /**
+     * Find the column of the missing corner of a beacon half.
+     *
+     * @param object
+     *            The half.
+     * @param run
+     *            Its single-cell run.
+     * @return Column of the missing corner. The row is the row of the run.
+     */
+    private int missingCorner(int object, int run) {
+        return this.runStart[run] == this.left[object] ? this.right[object] : this.left[object];
+    }
+
+    /**
+     * Build the shape of an object from its runs.
+     *
+     * @param object
+     *            The object.
+     * @return Shape in canonical orientation.
+     */
+    private ObjectShape buildShape(int object) {
+        int width = this.right[object] - this.left[object] + 1;
+        int height = this.bottom[object] - this.top[object] + 1;
+        int words = ObjectShape.wordCount(width, height);
+        if (this.shape.length < words) {
+            this.shape = new long[Math.max(words, this.shape.length * 2)];
+        }
+        Arrays.fill(this.shape, 0, words, 0);
+        for (int index = this.firstRun[object]; index < this.firstRun[object + 1]; index++) {
+            int run = this.order[index];
+            int from = (this.runRow[run] - this.top[object]) * width + this.runStart[run] - this.left[object];
+            this.setBits(from, from + this.runEnd[run] - this.runStart[run] + 1);
+        }
+        return ObjectShape.canonical(width, height, this.shape);
+    }
+
+    /**
+     * Set a range of bits of the shape buffer.
+     *
+     * @param from
+     *            First bit (inclusive).
+     * @param to
+     *            Last bit (exclusive).
+     */
+    private void setBits(int from, int to) {
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (firstWord == lastWord) {
+            this.shape[firstWord] |= firstMask & lastMask;
+            return;
+        }
+        this.shape[firstWord] |= firstMask;
+        Arrays.fill(this.shape, firstWord + 1, lastWord, -1L);
+        this.shape[lastWord] |= lastMask;
+    }
+}
@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.census;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The shape of an object found by a census, in canonical orientation. Shapes which only differ by rotation or
+ * reflection have the same canonical orientation and are equal.
+ * <p>
+ * Cells are stored row by row: cell <code>(x, y)</code> is bit <code>y * width + x</code> of the bit array.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public final class ObjectShape implements Comparable<ObjectShape> {
+
+    /**
+     * Number of symmetries of the square (4 rotations, each optionally reflected).
+     */
+    private static final int                      SYMMETRIES    = 8;
+
+    /**
+     * Names of common objects by shape. Oscillators and spaceships whose phases are not symmetric to each other have one
+     * entry per phase.
+     */
+    private static final Map<ObjectShape, String> KNOWN_OBJECTS = createKnownObjects();
+
+    /**
+     * Width of the bounding box.
+     */
+    private final int                             width;
+
+    /**
+     * Height of the bounding box.
+     */
+    private final int                             height;
+
+    /**
+     * Cells, row by row.
+     */
+    private final long[]                          bits;
+
+    /**
+     * Number of living cells.
+     */
+    private final int                             population;
+
+    /**
+     * Create a new shape. The parameters must already be in canonical orientation.
+     *
+     * @param width
+     *            Width of the bounding box.
+     * @param height
+     *            Height of the bounding box.
+     * @param bits
+     *            Cells, row by row. The array is not copied.
+     */
+    private ObjectShape(int width, int height, long[] bits) {
+        this.width = width;
+        this.height = height;
+        this.bits = bits;
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        this.population = count;
+    }
+
+    /**
+     * Create a shape from a picture of the object. Living cells are marked with <code>O</code> or <code>*</code>, all
+     * other characters are dead cells. The rows must describe the bounding box of the object.
+     *
+     * @param rows
+     *            The rows of the object, top to bottom.
+     * @return Shape in canonical orientation.
+     */
+    public static ObjectShape of(String... rows) {
+        if (rows.length == 0) {
+            throw new IllegalArgumentException("Shape must have at least one row");
+        }
+        int width = rows[0].length();
+        long[] bits = new long[wordCount(width, rows.length)];
+        for (int y = 0; y < rows.length; y++) {
+            if (rows[y].length() != width) {
+                throw new IllegalArgumentException(String.format("All rows must have the same length (row %d: %s)", y, rows[y]));
+            }
+            for (int x = 0; x < width; x++) {
+                char cell = rows[y].charAt(x);
+                if (cell == 'O' || cell == '*') {
+                    int index = y * width + x;
+                    bits[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+        return canonical(width, rows.length, bits);
+    }
+
+    /**
+     * Create a shape in canonical orientation. Of the eight orientations, the one with the smallest width, height and
+     * bit array (in this order) is used.
+     *
+     * @param width
+     *            Width of the bounding box.
+     * @param height
+     *            Height of the bounding box.
+     * @param bits
+     *            Cells, row by row. The array is not modified or kept.
+     * @return Canonical shape.
+     */
+    static ObjectShape canonical(int width, int height, long[] bits) {
+        int words = wordCount(width, height);
+        long[] best = Arrays.copyOf(bits, words);
+        int bestWidth = width;
+        int bestHeight = height;
+        long[] candidate = new long[words];
+        for (int symmetry = 1; symmetry < SYMMETRIES; symmetry++) {
+            boolean flipX = (symmetry & 1) != 0;
+            boolean flipY = (symmetry & 2) != 0;
+            boolean transpose = (symmetry & 4) != 0;
+            int candidateWidth = transpose ? height : width;
+            int candidateHeight = transpose ? width : height;
+            if (candidateWidth > bestWidth) {
+                continue;
+            }
+            Arrays.fill(candidate, 0);
+            for (int word = 0; word < words; word++) {
+                for (long remaining = bits[word]; remaining != 0; remaining &= remaining - 1) {
+                    int index = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                    int x = index % width;
+                    int y = index / width;
+                    if (flipX) {
+                        x = width - 1 - x;
+                    }
+                    if (flipY) {
+                        y = height - 1 - y;
+                    }
+                    int target = transpose ? x * candidateWidth + y : y * candidateWidth + x;
+                    candidate[target >>> 6] |= 1L << target;
+                }
+            }
+            if (candidateWidth < bestWidth || compare(candidate, best) < 0) {
+                long[] swap = best;
+                best = candidate;
+                candidate = swap;
+                bestWidth = candidateWidth;
+                bestHeight = candidateHeight;
+            }
+        }
+        return new ObjectShape(bestWidth, bestHeight, best);
+    }
+
+    /**
+     * Calculate the number of words needed for a bounding box.
+     *
+     * @param width
+     *            Width of the bounding box.
+     * @param height
+     *            Height of the bounding box.
+     * @return Number of words.
+     */
+    static int wordCount(int width, int height) {
+        return (int) (((long) width * height + Long.SIZE - 1) >>> 6);
+    }
+
+    /**
+     * Compare two bit arrays of the same length, treating the words as unsigned numbers.
+     *
+     * @param first
+     *            First array.
+     * @param second
+     *            Second array.
+     * @return Negative, zero or positive if the first array is smaller, equal or larger.
+     */
+    private static int compare(long[] first, long[] second) {
+        for (int index = 0; index < first.length; index++) {
+            if (first[index] != second[index]) {
+                return Long.compareUnsigned(first[index], second[index]);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Create the names of common objects.
+     *
+     * @return Map from shape to name.
+     */
+    private static Map<ObjectShape, String> createKnownObjects() {
+        Map<ObjectShape, String> known = new HashMap<>();
+        known.put(of("OO", "OO"), "block");
+        known.put(of("OOO"), "blinker");
+        known.put(of(".OO.", "O..O", ".OO."), "beehive");
+        known.put(of(".OO.", "O..O", ".O.O", "..O."), "loaf");
+        known.put(of("OO.", "O.O", ".O."), "boat");
+        known.put(of("OO.", "O.O", ".OO"), "ship");
+        known.put(of(".O.", "O.O", ".O."), "tub");
+        known.put(of(".OO.", "O..O", "O..O", ".OO."), "pond");
+        known.put(of("OO..", "OO..", "..OO", "..OO"), "beacon");
+        known.put(of("OO..", "O...", "...O", "..OO"), "beacon");
+        known.put(of(".O.", "..O", "OOO"), "glider");
+        known.put(of("O.O", ".OO", ".O."), "glider");
+        return Collections.unmodifiableMap(known);
+    }
+
+    /**
+     * Get the width of the bounding box in canonical orientation.
+     *
+     * @return Width.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Get the height of the bounding box in canonical orientation.
+     *
+     * @return Height.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Get the number of living cells.
+     *
+     * @return Population.
+     */
+    public int getPopulation() {
+        return this.population;
+    }
+
+    /**
+     * Check if a cell of the canonical orientation is alive.
+     *
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     * @return <code>true</code> if the cell is alive.
+     */
+    public boolean isAlive(int x, int y) {
+        if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+            throw new ArrayIndexOutOfBoundsException(String.format("Cell (%d,%d) is outside of the shape (%dx%d)", x, y, this.width, this.height));
+        }
+        int index = y * this.width + x;
+        return (this.bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Get the name of the object, if it is a common object.
+     *
+     * @return The name, or an empty optional for unnamed objects.
+     */
+    public Optional<String> getName() {
+        return Optional.ofNullable(KNOWN_OBJECTS.get(this));
+    }
+
+    /**
+     * Shapes are ordered by population, then by size and content.
+     *
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    @Override
+    public int compareTo(ObjectShape other) {
+        if (this.population != other.population) {
+            return Integer.compare(this.population, other.population);
+        }
+        if (this.width != other.width) {
+            return Integer.compare(this.width, other.width);
+        }
+        if (this.height != other.height) {
+            return Integer.compare(this.height, other.height);
+        }
+        return compare(this.bits, other.bits);
+    }
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectShape)) {
+            return false;
+        }
+        ObjectShape other = (ObjectShape) obj;
+        return this.width == other.width && this.height == other.height && Arrays.equals(this.bits, other.bits);
+    }
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return 31 * (31 * this.width + this.height) + Arrays.hashCode(this.bits);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringBuilder picture = new StringBuilder();
+        for (int y = 0; y < this.height; y++) {
+            picture.append(y == 0 ? "" : "/");
+            for (int x = 0; x < this.width; x++) {
+                picture.append(this.isAlive(x, y) ? 'O' : '.');
+            }
+        }
+        return this.getName().orElse("object") + " [" + picture + "]";
+    }
+}
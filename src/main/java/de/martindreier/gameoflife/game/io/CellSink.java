@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io;
+
+/**
+ * Receiver for the alive cells of a pattern. Loaders push the cells into the sink in the form which is cheapest for
+ * them: single cells, runs of cells or whole rows as bitmaps. Each backend implements the forms it can store fastest and
+ * relies on the default implementations for the others. Loaders neither have to set the cells of a grid one at a time
+ * nor need a grid of the full size.
+ * <p>
+ * Sinks only receive alive cells. All other cells of the pattern are dead, so the area of a sink should be empty when
+ * loading starts.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+@FunctionalInterface
+public interface CellSink {
+
+    /**
+     * Set a single cell alive.
+     *
+     * @param x
+     *            X coordinate.
+     * @param y
+     *            Y coordinate.
+     */
+    public void point(int x, int y);
+
+    /**
+     * Set a run of consecutive cells of a row alive.
+     *
+     * @param x
+     *            X coordinate of the first cell.
+     * @param y
+     *            Y coordinate (row).
+     * @param length
+     *            Number of cells.
+     */
+    public default void setRun(int x, int y, int length) {
+        for (int column = x; column < x + length; column++) {
+            this.point(column, y);
+        }
+    }
+
+    /**
+     * Set the cells of a row alive from a bitmap. Bit <code>x % 64</code> of <code>bits[x / 64]</code> is set for an
+     * alive cell in column <code>x</code>. The default implementation calls {@link #setRow(int, int, long[])} for
+     * column 0.
+     *
+     * @param y
+     *            Y coordinate (row).
+     * @param bits
+     *            Bitmap of the row, starting at column 0.
+     */
+    public default void setRow(int y, long[] bits) {
+        this.setRow(y, 0, bits);
+    }
+
+    /**
+     * Set the cells of a row alive from a bitmap which starts at a column. Bit <code>i % 64</code> of
+     * <code>bits[i / 64]</code> is set for an alive cell in column <code>x + i</code>. The default implementation
+     * passes each run of set bits within a word to {@link #setRun(int, int, int)}.
+     *
+     * @param y
+     *            Y coordinate (row).
+     * @param x
+     *            X coordinate of the cell of bit 0.
+     * @param bits
+     *            Bitmap of the row, starting at column <code>x</code>.
+     */
+    public default void setRow(int y, int x, long[] bits) {
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                int start = Long.numberOfTrailingZeros(remaining);
+                int end = start + Long.numberOfTrailingZeros(~(remaining >>> start));
+                this.setRun(x + word * Long.SIZE + start, y, end - start);
+                remaining = end == Long.SIZE ? 0 : remaining & -1L << end;
+            }
+        }
+    }
+}
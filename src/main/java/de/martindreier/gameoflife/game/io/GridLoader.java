@@ -30,6 +30,18 @@ public interface GridLoader {
      */
     public void setInitialState(Grid grid);
 
+    /**
+     * Push the alive cells of the pattern into a sink, at the same positions as {@link #setInitialState(Grid)} sets
+     * them. The default implementation passes a grid without cells to {@link #setInitialState(Grid)}, which forwards
+     * the alive cells to the sink. Loaders which produce runs or rows should push them directly.
+     *
+     * @param sink
+     *            The sink.
+     */
+    public default void load(CellSink sink) {
+        this.setInitialState(new SinkGrid(sink, this.getWidth(), this.getHeight()));
+    }
+
     /**
      * Get the desired width for the grid.
      *
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io;
+
+import de.martindreier.gameoflife.game.Grid;
+
+/**
+ * Interface for classes which can display a grid.
+ *
+ * @author D043987
+ *
+ */
+public interface GridPrinter {
+
+    /**
+     * Display the current state of the grid cells.
+     *
+     * @param grid
+     *            The grid.
+     */
+    public void printGrid(Grid grid);
+}
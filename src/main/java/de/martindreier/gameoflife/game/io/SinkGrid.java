@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io;
+
+import java.util.Arrays;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.PasteMode;
+
+/**
+ * Grid without cells which forwards the alive cells set by {@link GridLoader#setInitialState(Grid)} to a sink. Used for
+ * loaders which do not push into sinks themselves. Dead cells are ignored, reading a cell always returns a dead cell.
+ *
+ * @author D043987
+ *
+ */
+class SinkGrid extends Grid {
+
+    /**
+     * The sink.
+     */
+    private final CellSink sink;
+
+    /**
+     * Width of the pattern.
+     */
+    private final int      width;
+
+    /**
+     * Height of the pattern.
+     */
+    private final int      height;
+
+    /**
+     * Create a new grid.
+     *
+     * @param sink
+     *            The sink.
+     * @param width
+     *            Width of the pattern.
+     * @param height
+     *            Height of the pattern.
+     */
+    SinkGrid(CellSink sink, int width, int height) {
+        this.sink = sink;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.Grid#get(int, int)
+     */
+    @Override
+    public CellState get(int x, int y) {
+        return CellState.DEAD;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.Grid#set(int, int, de.martindreier.gameoflife.game.CellState)
+     */
+    @Override
+    public void set(int x, int y, CellState state) {
+        if (state == CellState.ALIVE) {
+            this.sink.point(x, y);
+        }
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.Grid#setRun(int, int, int, de.martindreier.gameoflife.game.CellState)
+     */
+    @Override
+    public void setRun(int x, int y, int length, CellState state) {
+        if (state == CellState.ALIVE) {
+            this.sink.setRun(x, y, length);
+        }
+    }
+
+    /**
+     * Forwards each row of an alive rectangle as a run. Dead rectangles are ignored.
+     *
+     * @see de.martindreier.gameoflife.game.Grid#fillRectangle(int, int, int, int,
+     *      de.martindreier.gameoflife.game.CellState)
+     */
+    @Override
+    public void fillRectangle(int x, int y, int width, int height, CellState state) {
+        if (state == null) {
+            throw new IllegalArgumentException("The cell state must not be null");
+        }
+        this.checkRegion(x, y, width, height);
+        if (state == CellState.ALIVE && width > 0) {
+            for (int row = y; row < y + height; row++) {
+                this.sink.setRun(x, row, width);
+            }
+        }
+    }
+
+    /**
+     * Forwards the set bits of each row of the bitmap. As all cells of the grid are dead, every set bit makes a cell
+     * alive for all paste modes, and cleared bits are ignored.
+     *
+     * @see de.martindreier.gameoflife.game.Grid#paste(int, int, int, int, long[],
+     *      de.martindreier.gameoflife.game.PasteMode)
+     */
+    @Override
+    public void paste(int x, int y, int width, int height, long[] bitmap, PasteMode mode) {
+        checkBitmap(width, height, bitmap, mode);
+        this.checkRegion(x, y, width, height);
+        int stride = (width + Long.SIZE - 1) / Long.SIZE;
+        if (stride == 0) {
+            return;
+        }
+        for (int row = 0; row < height; row++) {
+            long[] bits = Arrays.copyOfRange(bitmap, row * stride, (row + 1) * stride);
+            if (width % Long.SIZE != 0) {
+                bits[stride - 1] &= (1L << width % Long.SIZE) - 1;
+            }
+            this.sink.setRow(y + row, x, bits);
+        }
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.Grid#getWidth()
+     */
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.Grid#getHeight()
+     */
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+}
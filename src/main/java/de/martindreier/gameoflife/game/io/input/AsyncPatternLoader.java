@@ -0,0 +1,468 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.io.CellSink;
+import de.martindreier.gameoflife.game.io.GridLoader;
+
+/**
+ * Loads pattern files into grids in the background, so callers do not block while large files are read and parsed.
+ * <p>
+ * Files are read with an {@link AsynchronousFileChannel} in blocks of {@value #BLOCK_SIZE} bytes; the next block is
+ * read while the current one is parsed. Uncompressed RLE files are decoded block by block: the grid is created as soon
+ * as the header has been parsed, and the {@link LoadProgressListener} is told whenever further rows are complete. Files
+ * of all other formats, and compressed files, are collected in memory and loaded with the loader of the
+ * {@link LoaderRegistry} after the last block, so their rows only become available at the end.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class AsyncPatternLoader {
+
+    /**
+     * Size of the blocks read from the file, in bytes.
+     */
+    public static final int       BLOCK_SIZE = 1 << 16;
+
+    /**
+     * Registry which detects the format of the files.
+     */
+    private final LoaderRegistry  registry;
+
+    /**
+     * Executor which reads and parses the files.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Size of the blocks read from the file.
+     */
+    private final int             blockSize;
+
+    /**
+     * Create a loader which detects the standard formats and loads in the common pool.
+     */
+    public AsyncPatternLoader() {
+        this(new LoaderRegistry(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a loader.
+     *
+     * @param registry
+     *            Registry which detects the format of the files.
+     * @param executor
+     *            Executor which reads and parses the files.
+     */
+    public AsyncPatternLoader(LoaderRegistry registry, ExecutorService executor) {
+        this(registry, executor, BLOCK_SIZE);
+    }
+
+    /**
+     * Create a loader with a given block size.
+     *
+     * @param registry
+     *            Registry which detects the format of the files.
+     * @param executor
+     *            Executor which reads and parses the files.
+     * @param blockSize
+     *            Size of the blocks read from the file.
+     */
+    AsyncPatternLoader(LoaderRegistry registry, ExecutorService executor, int blockSize) {
+        if (registry == null) {
+            throw new IllegalArgumentException("Registry must not be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor must not be null");
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException(String.format("Block size must be greater than 0 (%d)", blockSize));
+        }
+        this.registry = registry;
+        this.executor = executor;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Load a file in the background.
+     *
+     * @param file
+     *            The pattern file.
+     * @return Future which is completed with the grid, or exceptionally if the file cannot be read or is not valid.
+     */
+    public CompletableFuture<Grid> load(Path file) {
+        return this.load(file, new LoadProgressListener() {
+            // Not interested in progress
+        });
+    }
+
+    /**
+     * Load a file in the background and report the progress. Cancelling the future stops reading the file.
+     *
+     * @param file
+     *            The pattern file.
+     * @param listener
+     *            Receives the progress and the rows which are complete.
+     * @return Future which is completed with the grid, or exceptionally if the file cannot be read or is not valid.
+     */
+    public CompletableFuture<Grid> load(Path file, LoadProgressListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        CompletableFuture<Grid> result = new CompletableFuture<>();
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, Collections.singleton(StandardOpenOption.READ), this.executor);
+            new Load(file.toString(), channel, listener, result).start();
+        }
+        catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * State of loading a single file. Blocks are parsed one at a time, each after the previous one.
+     *
+     * @author D043987
+     *
+     */
+    private class Load {
+
+        /**
+         * Name of the file for error messages.
+         */
+        private final String                  name;
+
+        /**
+         * Channel of the file.
+         */
+        private final AsynchronousFileChannel channel;
+
+        /**
+         * Receives the progress.
+         */
+        private final LoadProgressListener    listener;
+
+        /**
+         * Completed with the grid.
+         */
+        private final CompletableFuture<Grid> result;
+
+        /**
+         * Size of the file when loading started.
+         */
+        private long                          size;
+
+        /**
+         * Number of bytes read.
+         */
+        private long                          position;
+
+        /**
+         * Bytes which have been read but not parsed yet, in write mode. <code>null</code> once the pattern is decoded
+         * block by block.
+         */
+        private ByteBuffer                    pending;
+
+        /**
+         * The file is an uncompressed RLE file, <code>null</code> until the format is detected.
+         */
+        private Boolean                       progressive;
+
+        /**
+         * Parses the comments and the header of an RLE file.
+         */
+        private final RLEFileLoader           header = new RLEFileLoader();
+
+        /**
+         * Decodes the pattern of an RLE file, <code>null</code> until the header has been parsed.
+         */
+        private RLEPatternDecoder             decoder;
+
+        /**
+         * The grid, <code>null</code> until it is created.
+         */
+        private Grid                          grid;
+
+        /**
+         * Number of alive cells loaded.
+         */
+        private long                          cells;
+
+        /**
+         * Number of rows reported as complete.
+         */
+        private int                           rows;
+
+        /**
+         * Create the state of loading a file.
+         *
+         * @param name
+         *            Name of the file for error messages.
+         * @param channel
+         *            Channel of the file.
+         * @param listener
+         *            Receives the progress.
+         * @param result
+         *            Completed with the grid.
+         */
+        Load(String name, AsynchronousFileChannel channel, LoadProgressListener listener, CompletableFuture<Grid> result) {
+            this.name = name;
+            this.channel = channel;
+            this.listener = listener;
+            this.result = result;
+            this.pending = ByteBuffer.allocate(Math.max(AsyncPatternLoader.this.blockSize, LoaderRegistry.SNIFF_SIZE));
+            result.whenComplete((grid, error) -> this.close());
+        }
+
+        /**
+         * Start reading the file.
+         *
+         * @throws IOException
+         *             If the size of the file cannot be read.
+         */
+        void start() throws IOException {
+            this.size = this.channel.size();
+            this.next(this.read(ByteBuffer.allocate(AsyncPatternLoader.this.blockSize), 0), ByteBuffer.allocate(AsyncPatternLoader.this.blockSize));
+        }
+
+        /**
+         * Read a block from the file.
+         *
+         * @param block
+         *            Buffer to read into.
+         * @param offset
+         *            Position of the block in the file.
+         * @return Future which is completed with the block, ready to be read from.
+         */
+        private CompletableFuture<ByteBuffer> read(ByteBuffer block, long offset) {
+            CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+            block.clear();
+            this.channel.read(block, offset, future, new CompletionHandler<Integer, CompletableFuture<ByteBuffer>>() {
+
+                /**
+                 * @see java.nio.channels.CompletionHandler#completed(java.lang.Object, java.lang.Object)
+                 */
+                @Override
+                public void completed(Integer count, CompletableFuture<ByteBuffer> attachment) {
+                    block.flip();
+                    attachment.complete(block);
+                }
+
+                /**
+                 * @see java.nio.channels.CompletionHandler#failed(java.lang.Throwable, java.lang.Object)
+                 */
+                @Override
+                public void failed(Throwable error, CompletableFuture<ByteBuffer> attachment) {
+                    attachment.completeExceptionally(error);
+                }
+            });
+            return future;
+        }
+
+        /**
+         * Parse a block once it has been read.
+         *
+         * @param read
+         *            Completed with the block.
+         * @param spare
+         *            Buffer to read the following block into.
+         */
+        private void next(CompletableFuture<ByteBuffer> read, ByteBuffer spare) {
+            read.whenCompleteAsync((block, error) -> {
+                if (error != null) {
+                    this.result.completeExceptionally(error);
+                    return;
+                }
+                try {
+                    this.process(block, spare);
+                }
+                catch (Throwable e) {
+                    // Also errors of the listener, which would otherwise leave the future incomplete
+                    this.result.completeExceptionally(e);
+                }
+            }, AsyncPatternLoader.this.executor);
+        }
+
+        /**
+         * Start reading the following block, then parse a block.
+         *
+         * @param block
+         *            The block.
+         * @param spare
+         *            Buffer to read the following block into.
+         * @throws IOException
+         *             If the pattern is not valid.
+         */
+        private void process(ByteBuffer block, ByteBuffer spare) throws IOException {
+            if (this.result.isDone()) {
+                // Cancelled or failed
+                return;
+            }
+            this.position += block.remaining();
+            boolean end = !block.hasRemaining() || this.position >= this.size;
+            CompletableFuture<ByteBuffer> following = end ? null : this.read(spare, this.position);
+            this.parse(block, end);
+            if (end) {
+                this.finish();
+            } else {
+                this.listener.progress(this.position, this.size, this.cells);
+                this.next(following, block);
+            }
+        }
+
+        /**
+         * Parse a block of the file.
+         *
+         * @param block
+         *            The block.
+         * @param end
+         *            <code>true</code> if this is the last block.
+         * @throws IOException
+         *             If the pattern is not valid.
+         */
+        private void parse(ByteBuffer block, boolean end) throws IOException {
+            if (this.decoder != null) {
+                this.decode(block);
+                return;
+            }
+            this.append(block);
+            if (this.progressive == null) {
+                if (this.pending.position() < LoaderRegistry.SNIFF_SIZE && !end) {
+                    return;
+                }
+                ByteBuffer head = this.pending.duplicate();
+                head.flip();
+                this.progressive = !Compression.detect(head).isPresent()
+                        && AsyncPatternLoader.this.registry.detect(head).orElse(null) == StandardPatternFormat.RLE;
+            }
+            if (this.progressive) {
+                this.pending.flip();
+                if (this.header.parseHeaderLines(this.name, this.pending, end)) {
+                    this.grid = new Grid(this.header.getWidth(), this.header.getHeight());
+                    this.decoder = new RLEPatternDecoder(this.counting(this.grid), this.header.getWidth(), this.header.getHeight(), this.header::parseHashLine);
+                    this.decode(this.pending);
+                    this.pending = null;
+                } else {
+                    this.pending.compact();
+                }
+            }
+        }
+
+        /**
+         * Decode a block of the pattern of an RLE file and report the rows which are complete.
+         *
+         * @param block
+         *            The block.
+         */
+        private void decode(ByteBuffer block) {
+            this.decoder.decode(block);
+            int complete = Math.min(this.decoder.getRow(), this.grid.getHeight());
+            if (complete > this.rows) {
+                this.rows = complete;
+                this.listener.rowsAvailable(this.grid, complete);
+            }
+        }
+
+        /**
+         * Complete loading after the last block.
+         *
+         * @throws IOException
+         *             If the pattern is not valid.
+         */
+        private void finish() throws IOException {
+            if (this.decoder != null) {
+                this.decoder.finish();
+            } else {
+                this.pending.flip();
+                GridLoader loader = AsyncPatternLoader.this.registry.open(this.pending, this.name);
+                this.grid = new Grid(loader.getWidth(), loader.getHeight());
+                loader.load(this.counting(this.grid));
+            }
+            this.listener.progress(this.position, this.size, this.cells);
+            if (this.rows < this.grid.getHeight()) {
+                this.rows = this.grid.getHeight();
+                this.listener.rowsAvailable(this.grid, this.rows);
+            }
+            this.result.complete(this.grid);
+        }
+
+        /**
+         * Append a block to the pending bytes, growing the buffer if needed.
+         *
+         * @param block
+         *            The block.
+         * @throws IOException
+         *             If the file does not fit into a buffer.
+         */
+        private void append(ByteBuffer block) throws IOException {
+            this.pending = RLEFileLoader.grow(this.pending, block.remaining(), RLEFileLoader.MAX_BUFFER_SIZE, this.name);
+            this.pending.put(block);
+        }
+
+        /**
+         * Create a sink which sets the cells of the grid and counts them.
+         *
+         * @param target
+         *            The grid.
+         * @return The sink.
+         */
+        private CellSink counting(Grid target) {
+            return new CellSink() {
+
+                /**
+                 * @see de.martindreier.gameoflife.game.io.CellSink#point(int, int)
+                 */
+                @Override
+                public void point(int x, int y) {
+                    target.point(x, y);
+                    Load.this.cells++;
+                }
+
+                /**
+                 * @see de.martindreier.gameoflife.game.io.CellSink#setRun(int, int, int)
+                 */
+                @Override
+                public void setRun(int x, int y, int length) {
+                    target.setRun(x, y, length);
+                    Load.this.cells += length;
+                }
+            };
+        }
+
+        /**
+         * Close the channel.
+         */
+        private void close() {
+            try {
+                this.channel.close();
+            }
+            catch (IOException e) {
+                // Nothing left to read
+            }
+        }
+    }
+}
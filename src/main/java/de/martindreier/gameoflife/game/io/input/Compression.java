@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.tukaani.xz.XZInputStream;
+
+/**
+ * Compression formats which are decompressed transparently by the {@link LoaderRegistry}. Each format is recognized
+ * by its magic bytes and decompressed as a stream, so compressed patterns are parsed without a temporary file.
+ *
+ * @author D043987
+ *
+ */
+public enum Compression {
+
+    /**
+     * gzip, as written by <code>gzip</code>.
+     */
+    GZIP(0x1F, 0x8B) {
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.Compression#decompress(java.io.InputStream)
+         */
+        @Override
+        public InputStream decompress(InputStream compressed) throws IOException {
+            return new GZIPInputStream(compressed);
+        }
+    },
+
+    /**
+     * Zip archives. The first file of the archive is loaded.
+     */
+    ZIP('P', 'K', 3, 4) {
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.Compression#decompress(java.io.InputStream)
+         */
+        @Override
+        public InputStream decompress(InputStream compressed) throws IOException {
+            ZipInputStream archive = new ZipInputStream(compressed);
+            for (ZipEntry entry = archive.getNextEntry(); entry != null; entry = archive.getNextEntry()) {
+                if (!entry.isDirectory()) {
+                    return archive;
+                }
+            }
+            archive.close();
+            throw new IOException("Archive does not contain any files");
+        }
+    },
+
+    /**
+     * xz, as written by <code>xz</code>.
+     */
+    XZ(0xFD, '7', 'z', 'X', 'Z', 0) {
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.Compression#decompress(java.io.InputStream)
+         */
+        @Override
+        public InputStream decompress(InputStream compressed) throws IOException {
+            return new XZInputStream(compressed);
+        }
+    };
+
+    /**
+     * Magic bytes at the start of compressed data.
+     */
+    private final byte[] magic;
+
+    /**
+     * Create a compression format.
+     *
+     * @param magic
+     *            Magic bytes at the start of compressed data.
+     */
+    private Compression(int... magic) {
+        this.magic = new byte[magic.length];
+        for (int index = 0; index < magic.length; index++) {
+            this.magic[index] = (byte) magic[index];
+        }
+    }
+
+    /**
+     * Check if data is compressed with this format.
+     *
+     * @param head
+     *            The first bytes of the data, from position 0 to the limit of the buffer.
+     * @return <code>true</code> if the data starts with the magic bytes of this format.
+     */
+    public boolean matches(ByteBuffer head) {
+        if (head.limit() < this.magic.length) {
+            return false;
+        }
+        for (int index = 0; index < this.magic.length; index++) {
+            if (head.get(index) != this.magic[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create a stream which decompresses data.
+     *
+     * @param compressed
+     *            The compressed data. Closing the returned stream closes this stream.
+     * @return Stream of the decompressed data.
+     * @throws IOException
+     *             Error reading the data, or the data is not valid.
+     */
+    public abstract InputStream decompress(InputStream compressed) throws IOException;
+
+    /**
+     * Find the compression of data.
+     *
+     * @param head
+     *            The first bytes of the data, from position 0 to the limit of the buffer.
+     * @return The compression format, empty if the data is not compressed with a supported format.
+     */
+    public static Optional<Compression> detect(ByteBuffer head) {
+        return Arrays.stream(values()).filter(compression -> compression.matches(head)).findFirst();
+    }
+}
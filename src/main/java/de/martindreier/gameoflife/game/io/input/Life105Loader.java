@@ -12,23 +12,33 @@
  *******************************************************************************/
 package de.martindreier.gameoflife.game.io.input;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
-import de.martindreier.gameoflife.game.CellState;
 import de.martindreier.gameoflife.game.GameRule;
 import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.io.CellSink;
 import de.martindreier.gameoflife.game.io.GridLoader;
+import de.martindreier.gameoflife.game.jfr.FlightRecorder;
 
 /**
  * Loader for the Life 1.05 and XLife 2.0 file formats.
+ * <p>
+ * Each cell block is stored as one bitmap per row, with bit <code>x % 64</code> of word <code>x / 64</code> set for an
+ * alive cell in column <code>x</code>. All blocks are placed at their <code>#P</code> positions. Like in
+ * {@link Life106Loader}, the loaded pattern always contains the origin of the file, i.e. blocks at negative positions
+ * shift the whole pattern right and down until the smallest coordinates are 0.
+ * </p>
  *
  * @author D043987
  *
@@ -38,7 +48,12 @@ public class Life105Loader implements GridLoader {
     /**
      * Prefix of the line indicating the file version.
      */
-    private static final String LIFE_LINE_PREFIX = "#Life";
+    private static final String LIFE_LINE_PREFIX        = "#Life";
+
+    /**
+     * Format name in flight recorder events.
+     */
+    private static final String FORMAT_NAME             = "Life 1.05";
 
     /**
      * Line type: Comment.
@@ -70,10 +85,15 @@ public class Life105Loader implements GridLoader {
      */
     private static final char   LINE_TYPE_STANDARD_RULE = 'N';
 
+    /**
+     * Row without alive cells, added for each row if the cells are not decoded.
+     */
+    private static final long[] NO_CELLS                = new long[0];
+
     /**
      * File comments.
      */
-    private StringBuilder       comments         = new StringBuilder();
+    private StringBuilder       comments                = new StringBuilder();
 
     /**
      * Game rule defined in the file
@@ -90,6 +110,11 @@ public class Life105Loader implements GridLoader {
      */
     private CellBlock           currentBlock;
 
+    /**
+     * The cells of pattern lines are decoded. If not, only the size of the blocks is measured.
+     */
+    private boolean             decodeCells             = true;
+
     /**
      * Constructor for testing only. Creates class instance for method access but does not perform file loading.
      */
@@ -106,20 +131,117 @@ public class Life105Loader implements GridLoader {
         if (!Files.isReadable(lifeFile)) {
             throw new IOException(String.format("Data file %s does not exist or is not readable", lifeFile.toString()));
         }
-        try (Stream<String> lines = Files.lines(lifeFile)) {
-            String lifeLine = lines.findFirst().orElse("");
+        try (BufferedReader reader = Files.newBufferedReader(lifeFile, StandardCharsets.UTF_8)) {
+            this.parse(lifeFile.toString(), reader);
+        }
+    }
+
+    /**
+     * Create a new file loader, optionally without decoding the cells. Without decoding, only the comments, the rule
+     * and the size of the blocks are read, and loading the pattern results in an empty grid of the size of the pattern.
+     *
+     * @param lifeFile
+     *            The data file.
+     * @param decodeCells
+     *            <code>false</code> to only read the metadata of the file.
+     * @throws IOException
+     */
+    Life105Loader(Path lifeFile, boolean decodeCells) throws IOException {
+        this.decodeCells = decodeCells;
+        try (BufferedReader reader = Files.newBufferedReader(lifeFile, StandardCharsets.UTF_8)) {
+            this.parse(lifeFile.toString(), reader);
+        }
+    }
+
+    /**
+     * Create a new file loader which reads from an open file or stream. The reader is not closed.
+     *
+     * @param name
+     *            Name of the file for error messages.
+     * @param reader
+     *            Reader for the content of the file, positioned at its start.
+     * @throws IOException
+     */
+    Life105Loader(String name, BufferedReader reader) throws IOException {
+        this.parse(name, reader);
+    }
+
+    /**
+     * Parse the content of the file.
+     *
+     * @param name
+     *            Name of the file for error messages.
+     * @param reader
+     *            Reader for the content of the file.
+     * @throws IOException
+     */
+    private void parse(String name, BufferedReader reader) throws IOException {
+        try (Stream<String> lines = reader.lines()) {
+            Iterator<String> iterator = lines.iterator();
+            String lifeLine = iterator.hasNext() ? iterator.next() : "";
             if (!lifeLine.startsWith(LIFE_LINE_PREFIX)) {
-                throw new IOException(String.format("File %s is not a valid Life 1.05 file, #Life declaration missing", lifeFile.toString()));
+                throw new IOException(String.format("File %s is not a valid Life 1.05 file, #Life declaration missing", name));
             }
             String version = lifeLine.substring(LIFE_LINE_PREFIX.length()).trim();
             if (!version.equals("1.05")) {
-                throw new IOException(String.format("File %s is not a valid Life 1.05 file, unsupported version %s", lifeFile.toString(), version));
+                throw new IOException(String.format("File %s is not a valid Life 1.05 file, unsupported version %s", name, version));
             }
-            Files.lines(lifeFile).forEach(this::parseLine);
+            this.parseBlocks(iterator);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
         }
         if (this.cellBlocks.size() == 0) {
-            throw new IOException(String.format("File %s does not define any patterns", lifeFile.toString()));
+            throw new IOException(String.format("File %s does not define any patterns", name));
+        }
+    }
+
+    /**
+     * Parse the remaining lines of the life file. Each cell block is reported as a flight recorder event.
+     *
+     * @param lines
+     *            Iterator over the lines after the <code>#Life</code> line.
+     */
+    private void parseBlocks(Iterator<String> lines) {
+        FlightRecorder.Parse event = null;
+        int blockCount = 0;
+        long characters = 0;
+        long lineCount = 0;
+        while (lines.hasNext()) {
+            String line = lines.next();
+            this.parseLine(line);
+            if (this.cellBlocks.size() != blockCount) {
+                // The line started a new block
+                this.finishBlockEvent(event, blockCount, characters, lineCount);
+                blockCount = this.cellBlocks.size();
+                event = FlightRecorder.startParse(FORMAT_NAME, "block");
+                characters = 0;
+                lineCount = 0;
+            }
+            characters += line.length();
+            lineCount++;
         }
+        this.finishBlockEvent(event, blockCount, characters, lineCount);
+    }
+
+    /**
+     * Commit the flight recorder event of a cell block.
+     *
+     * @param event
+     *            The event, <code>null</code> if no event is recorded.
+     * @param blockCount
+     *            Number of blocks parsed so far. The event belongs to the last of these blocks.
+     * @param characters
+     *            Number of characters in the block.
+     * @param lineCount
+     *            Number of lines in the block.
+     */
+    private void finishBlockEvent(FlightRecorder.Parse event, int blockCount, long characters, long lineCount) {
+        if (event == null) {
+            return;
+        }
+        CellBlock block = this.cellBlocks.get(blockCount - 1);
+        event.finish(characters, lineCount, block.getWidth(), block.getHeight());
     }
 
     /**
@@ -154,7 +276,21 @@ public class Life105Loader implements GridLoader {
             this.currentBlock.y = 0;
             this.cellBlocks.add(this.currentBlock);
         }
-        this.currentBlock.pattern.add(line.trim().toCharArray());
+        String pattern = line.trim();
+        if (!this.decodeCells) {
+            this.currentBlock.addRow(NO_CELLS, pattern.length());
+            return;
+        }
+        long[] row = new long[(pattern.length() + Long.SIZE - 1) / Long.SIZE];
+        for (int column = 0; column < pattern.length(); column++) {
+            char cell = pattern.charAt(column);
+            if (cell == '*') {
+                row[column / Long.SIZE] |= 1L << column;
+            } else if (cell != '.') {
+                throw new IllegalArgumentException("Pattern contains invalid character: " + cell);
+            }
+        }
+        this.currentBlock.addRow(row, pattern.length());
     }
 
     /**
@@ -214,49 +350,72 @@ public class Life105Loader implements GridLoader {
     }
 
     /**
+     * Sets the alive cells of all blocks. Blocks are combined, cells are never set to dead.
+     *
      * @see de.martindreier.gameoflife.game.io.GridLoader#setInitialState(de.martindreier.gameoflife.game.Grid)
      */
     @Override
     public void setInitialState(Grid grid) {
-        CellBlock block = this.cellBlocks.get(0);
-        for (int row = 0; row < block.pattern.size(); row++) {
-            char[] patternRow = block.pattern.get(row);
-            for (int column = 0; column < patternRow.length; column++) {
-                if (patternRow[column] == '.') {
-                    grid.set(column, row, CellState.DEAD);
-                } else if (patternRow[column] == '*') {
-                    grid.set(column, row, CellState.ALIVE);
-                } else {
-                    throw new IllegalArgumentException("Pattern contains invalid character: " + patternRow[column]);
-                }
+        this.load(grid);
+    }
+
+    /**
+     * Push the alive cells of all blocks into the sink. Each row of a block is pushed as a bitmap starting at the left
+     * edge of the block.
+     *
+     * @see de.martindreier.gameoflife.game.io.GridLoader#load(de.martindreier.gameoflife.game.io.CellSink)
+     */
+    @Override
+    public void load(CellSink sink) {
+        int offsetX = this.getOffsetX();
+        int offsetY = this.getOffsetY();
+        for (CellBlock block : this.cellBlocks) {
+            int left = block.x + offsetX;
+            int top = block.y + offsetY;
+            for (int row = 0; row < block.rows.size(); row++) {
+                sink.setRow(top + row, left, block.rows.get(row));
             }
         }
     }
 
     /**
-     * Gets width of first cell block.
+     * Get the horizontal shift of the pattern, which moves the leftmost block to 0 if it is at a negative position.
+     *
+     * @return Offset which is added to the X positions of the blocks.
+     */
+    public int getOffsetX() {
+        return -Math.min(0, this.cellBlocks.stream().filter(block -> block.getHeight() > 0).mapToInt(CellBlock::getX).min().orElse(0));
+    }
+
+    /**
+     * Get the vertical shift of the pattern, which moves the topmost block to 0 if it is at a negative position.
+     *
+     * @return Offset which is added to the Y positions of the blocks.
+     */
+    public int getOffsetY() {
+        return -Math.min(0, this.cellBlocks.stream().filter(block -> block.getHeight() > 0).mapToInt(CellBlock::getY).min().orElse(0));
+    }
+
+    /**
+     * Gets the width of all cell blocks at their positions.
      *
      * @see de.martindreier.gameoflife.game.io.GridLoader#getWidth()
      */
     @Override
     public int getWidth() {
-        if (this.cellBlocks.size() == 0) {
-            return 0;
-        }
-        return this.cellBlocks.get(0).pattern.stream().mapToInt(line -> line.length).max().orElse(0);
+        long right = this.cellBlocks.stream().filter(block -> block.getHeight() > 0).mapToLong(block -> (long) block.x + block.width).max().orElse(0);
+        return Math.toIntExact(right + this.getOffsetX());
     }
 
     /**
-     * Gets the height of the first cell block.
+     * Gets the height of all cell blocks at their positions.
      *
      * @see de.martindreier.gameoflife.game.io.GridLoader#getHeight()
      */
     @Override
     public int getHeight() {
-        if (this.cellBlocks.size() == 0) {
-            return 0;
-        }
-        return this.cellBlocks.get(0).pattern.size();
+        long bottom = this.cellBlocks.stream().filter(block -> block.getHeight() > 0).mapToLong(block -> (long) block.y + block.getHeight()).max().orElse(0);
+        return Math.toIntExact(bottom + this.getOffsetY());
     }
 
     /**
@@ -314,27 +473,71 @@ public class Life105Loader implements GridLoader {
         }
 
         /**
-         * The unparsed pattern.
+         * Get the width of the block.
+         *
+         * @return Length of the longest row.
+         */
+        public int getWidth() {
+            return this.width;
+        }
+
+        /**
+         * Get the height of the block.
+         *
+         * @return Number of rows.
+         */
+        public int getHeight() {
+            return this.rows.size();
+        }
+
+        /**
+         * Get the state of a cell of the block.
          *
-         * @return the pattern
+         * @param column
+         *            Column within the block.
+         * @param row
+         *            Row within the block.
+         * @return <code>true</code> if the cell is alive, <code>false</code> if it is dead or outside of the block.
          */
-        List<char[]> getPattern() {
-            return this.pattern;
+        public boolean isAlive(int column, int row) {
+            if (column < 0 || row < 0 || row >= this.rows.size()) {
+                return false;
+            }
+            long[] words = this.rows.get(row);
+            return column / Long.SIZE < words.length && (words[column / Long.SIZE] & 1L << column) != 0;
+        }
+
+        /**
+         * Add a row at the bottom of the block.
+         *
+         * @param row
+         *            Bitmap of the row.
+         * @param length
+         *            Length of the row.
+         */
+        void addRow(long[] row, int length) {
+            this.rows.add(row);
+            this.width = Math.max(this.width, length);
         }
 
         /**
          * Horizontal position of pattern.
          */
-        int                 x;
+        int                  x;
 
         /**
          * Vertical position of pattern.
          */
-        int                 y;
+        int                  y;
+
+        /**
+         * Length of the longest row.
+         */
+        private int          width = 0;
 
         /**
-         * Pattern.
+         * Bitmaps of the rows.
          */
-        public List<char[]> pattern = new LinkedList<>();
+        private List<long[]> rows  = new ArrayList<>();
     }
 }
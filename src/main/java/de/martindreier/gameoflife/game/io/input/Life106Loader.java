@@ -13,20 +13,37 @@
 package de.martindreier.gameoflife.game.io.input;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
-import de.martindreier.gameoflife.game.CellState;
 import de.martindreier.gameoflife.game.GameRule;
 import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.io.CellSink;
 import de.martindreier.gameoflife.game.io.GridLoader;
+import de.martindreier.gameoflife.game.jfr.FlightRecorder;
 
 /**
  * Loader to load files in the Life 1.06 format.
+ * <p>
+ * The file is memory-mapped in windows and the coordinates are parsed directly from the mapped bytes into growable
+ * <code>int</code> arrays, so even files with many millions of cells are loaded quickly and with 8 bytes per cell. If a
+ * pool is passed, each window is split into chunks of whole lines which are parsed in parallel.
+ * </p>
+ * <p>
+ * Coordinates may be negative. The loaded pattern always contains the origin of the file, i.e. patterns with negative
+ * coordinates are shifted right and down until their smallest coordinates are 0.
+ * </p>
  *
  * @author D043987
  *
@@ -36,12 +53,37 @@ public class Life106Loader implements GridLoader {
     /**
      * Prefix <code>#Life</code> of header line.
      */
-    private static final String PREFIX_LIFE_LINE = "#Life";
+    private static final String PREFIX_LIFE_LINE   = "#Life";
 
     /**
-     * List of coordinates of alive cells loaded from the file.
+     * Format name in flight recorder events.
      */
-    private List<CellCoordinates> aliveCells       = new LinkedList<>();
+    private static final String FORMAT_NAME        = "Life 1.06";
+
+    /**
+     * Default size of the mapped windows of the file, in bytes.
+     */
+    static final int            MAP_WINDOW_SIZE    = 1 << 28;
+
+    /**
+     * Default minimum size of a chunk which is parsed by a single task, in bytes.
+     */
+    static final int            MIN_CHUNK_SIZE     = 1 << 20;
+
+    /**
+     * Initial size of the buffer when reading from a channel.
+     */
+    static final int            STREAM_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Initial capacity of the coordinate arrays.
+     */
+    private static final int    INITIAL_CAPACITY   = 64;
+
+    /**
+     * Coordinates of the alive cells.
+     */
+    private PointList           points             = new PointList(INITIAL_CAPACITY);
 
     /**
      * Constructor for testing. This constructor does not load any files, so the class is not properly initialized after
@@ -60,24 +102,220 @@ public class Life106Loader implements GridLoader {
      *             Error reading from file.
      */
     public Life106Loader(Path lifeFile) throws IOException {
+        this(lifeFile, null, MAP_WINDOW_SIZE, MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Load data from a file, parsing chunks of the file in parallel.
+     *
+     * @param lifeFile
+     *            Path to the life file.
+     * @param pool
+     *            The pool to parse the chunks in.
+     * @throws IOException
+     *             Error reading from file.
+     */
+    public Life106Loader(Path lifeFile, ForkJoinPool pool) throws IOException {
+        this(lifeFile, pool, MAP_WINDOW_SIZE, MIN_CHUNK_SIZE);
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+    }
+
+    /**
+     * Load data from a file, mapping windows of a given size.
+     *
+     * @param lifeFile
+     *            Path to the life file.
+     * @param pool
+     *            The pool to parse the chunks in, <code>null</code> to parse in the calling thread.
+     * @param windowSize
+     *            Size of the mapped windows. Lines must not be longer than a window.
+     * @param chunkSize
+     *            Minimum size of a chunk which is parsed by a single task.
+     * @throws IOException
+     *             Error reading from file.
+     */
+    Life106Loader(Path lifeFile, ForkJoinPool pool, int windowSize, int chunkSize) throws IOException {
         if (!Files.isReadable(lifeFile)) {
             throw new IOException(String.format("File %s is not readable or does not exist", lifeFile));
         }
+        try (FileChannel channel = FileChannel.open(lifeFile, StandardOpenOption.READ)) {
+            this.parse(lifeFile, channel, pool, windowSize, chunkSize);
+        }
+    }
+
+    /**
+     * Load data from an open file. The channel is not closed.
+     *
+     * @param lifeFile
+     *            Path to the life file.
+     * @param channel
+     *            Channel of the file.
+     * @throws IOException
+     *             Error reading from file.
+     */
+    Life106Loader(Path lifeFile, FileChannel channel) throws IOException {
+        this.parse(lifeFile, channel, null, MAP_WINDOW_SIZE, MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Load data from a channel, e.g. a decompressing stream. The channel is read in blocks of
+     * {@value #STREAM_BUFFER_SIZE} bytes, which grow if a line is longer. The channel is not closed.
+     *
+     * @param name
+     *            Name of the data source for error messages.
+     * @param channel
+     *            The channel, positioned at the start of the life file.
+     * @throws IOException
+     *             Error reading from the channel.
+     */
+    Life106Loader(String name, ReadableByteChannel channel) throws IOException {
+        FlightRecorder.Parse event = FlightRecorder.startParse(FORMAT_NAME, "points");
+        ByteBuffer buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        long size = 0;
+        boolean headerChecked = false;
+        boolean endOfStream = false;
+        while (!endOfStream) {
+            int read = channel.read(buffer);
+            endOfStream = read < 0;
+            size += Math.max(0, read);
+            if (buffer.hasRemaining() && !endOfStream) {
+                continue;
+            }
+            buffer.flip();
+            if (!headerChecked) {
+                checkHeader(buffer, name);
+                headerChecked = true;
+            }
+            int end = buffer.limit();
+            if (!endOfStream) {
+                // Only parse complete lines, the rest is parsed with the next block
+                while (end > 0 && buffer.get(end - 1) != '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer);
+                    continue;
+                }
+            }
+            this.points.parseLines(buffer, 0, end);
+            buffer.position(end);
+            buffer.compact();
+        }
+        if (event != null) {
+            event.finish(size, this.points.lines, this.getWidth(), this.getHeight());
+        }
+    }
+
+    /**
+     * Parse the file window by window.
+     *
+     * @param lifeFile
+     *            Path to the life file.
+     * @param channel
+     *            Channel of the file.
+     * @param pool
+     *            The pool to parse the chunks in, <code>null</code> to parse in the calling thread.
+     * @param windowSize
+     *            Size of the mapped windows. Lines must not be longer than a window.
+     * @param chunkSize
+     *            Minimum size of a chunk which is parsed by a single task.
+     * @throws IOException
+     *             Error reading from file.
+     */
+    private void parse(Path lifeFile, FileChannel channel, ForkJoinPool pool, int windowSize, int chunkSize) throws IOException {
+        FlightRecorder.Parse event = FlightRecorder.startParse(FORMAT_NAME, "points");
+        long size = channel.size();
+        long position = 0;
+        do {
+            int length = (int) Math.min(windowSize, size - position);
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            if (position == 0) {
+                checkHeader(window, lifeFile.toString());
+            }
+            int end = length;
+            if (position + length < size) {
+                // Only parse complete lines, the rest is parsed with the next window
+                while (end > 0 && window.get(end - 1) != '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    throw new IOException(String.format("File %s contains a line longer than %d bytes", lifeFile, windowSize));
+                }
+            }
+            if (pool == null) {
+                this.points.parseLines(window, 0, end);
+            } else {
+                this.points.append(pool.invoke(new ChunkTask(window, 0, end, chunkSize)));
+            }
+            position += end;
+        }
+        while (position < size);
+        if (event != null) {
+            event.finish(size, this.points.lines, this.getWidth(), this.getHeight());
+        }
+    }
 
-        // Validate header
-        String headerLine = Files.lines(lifeFile).findFirst().orElse("");
+    /**
+     * Validate the header line.
+     *
+     * @param window
+     *            First window of the file.
+     * @param name
+     *            Name of the life file.
+     * @throws IOException
+     *             If the header line is missing or has the wrong version.
+     */
+    private static void checkHeader(ByteBuffer window, String name) throws IOException {
+        int end = 0;
+        while (end < window.limit() && window.get(end) != '\n') {
+            end++;
+        }
+        String headerLine = decode(window, 0, end).trim();
         if (!headerLine.startsWith(PREFIX_LIFE_LINE)) {
-            throw new IOException(String.format("File %s is not a life 1.06 file", lifeFile));
+            throw new IOException(String.format("File %s is not a life 1.06 file", name));
         }
         if (headerLine.length() > PREFIX_LIFE_LINE.length()) {
             String version = headerLine.substring(PREFIX_LIFE_LINE.length()).trim();
             if (!version.equals("1.06")) {
-                throw new IOException(String.format("File %s has an invalid version (%s), expected 1.06", lifeFile, version));
+                throw new IOException(String.format("File %s has an invalid version (%s), expected 1.06", name, version));
             }
         }
+    }
+
+    /**
+     * Create the exception for an invalid line.
+     *
+     * @param buffer
+     *            Buffer containing the line.
+     * @param start
+     *            Start of the line.
+     * @param end
+     *            End of the line.
+     * @return The exception.
+     */
+    private static IllegalArgumentException invalidLine(ByteBuffer buffer, int start, int end) {
+        return new IllegalArgumentException(String.format("Input %s are not two valid numbers", decode(buffer, start, end).trim()));
+    }
 
-        // Parse content
-        Files.lines(lifeFile).forEach(this::parseLine);
+    /**
+     * Decode a part of a buffer as text.
+     *
+     * @param buffer
+     *            The buffer.
+     * @param start
+     *            Start of the text.
+     * @param end
+     *            End of the text (exclusive).
+     * @return The text.
+     */
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int index = start; index < end; index++) {
+            bytes[index - start] = buffer.get(index);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
     /**
@@ -91,7 +329,8 @@ public class Life106Loader implements GridLoader {
         if (line.startsWith("#")) {
             return;
         }
-        this.aliveCells.add(CellCoordinates.parse(line));
+        CellCoordinates coordinates = CellCoordinates.parse(line);
+        this.points.add(coordinates.x, coordinates.y);
     }
 
     /**
@@ -99,17 +338,52 @@ public class Life106Loader implements GridLoader {
      */
     @Override
     public void setInitialState(Grid grid) {
-        for (CellCoordinates coordinates : this.aliveCells) {
-            grid.set(coordinates.x, coordinates.y, CellState.ALIVE);
+        this.load(grid);
+    }
+
+    /**
+     * Push each alive cell into the sink, shifted by the offset of the pattern.
+     *
+     * @see de.martindreier.gameoflife.game.io.GridLoader#load(de.martindreier.gameoflife.game.io.CellSink)
+     */
+    @Override
+    public void load(CellSink sink) {
+        int offsetX = this.getOffsetX();
+        int offsetY = this.getOffsetY();
+        int[] xCoordinates = this.points.xCoordinates;
+        int[] yCoordinates = this.points.yCoordinates;
+        for (int index = 0; index < this.points.count; index++) {
+            sink.point(xCoordinates[index] + offsetX, yCoordinates[index] + offsetY);
         }
     }
 
+    /**
+     * Get the horizontal shift of the pattern, which moves the smallest X coordinate to 0 if it is negative.
+     *
+     * @return Offset which is added to the X coordinates of the file.
+     */
+    public int getOffsetX() {
+        return this.points.count == 0 ? 0 : -Math.min(0, this.points.minX);
+    }
+
+    /**
+     * Get the vertical shift of the pattern, which moves the smallest Y coordinate to 0 if it is negative.
+     *
+     * @return Offset which is added to the Y coordinates of the file.
+     */
+    public int getOffsetY() {
+        return this.points.count == 0 ? 0 : -Math.min(0, this.points.minY);
+    }
+
     /**
      * @see de.martindreier.gameoflife.game.io.GridLoader#getWidth()
      */
     @Override
     public int getWidth() {
-        return this.aliveCells.stream().mapToInt(cell -> cell.x).max().orElse(-1) + 1;
+        if (this.points.count == 0) {
+            return 0;
+        }
+        return Math.toIntExact((long) this.points.maxX + this.getOffsetX() + 1);
     }
 
     /**
@@ -117,7 +391,10 @@ public class Life106Loader implements GridLoader {
      */
     @Override
     public int getHeight() {
-        return this.aliveCells.stream().mapToInt(cell -> cell.y).max().orElse(-1) + 1;
+        if (this.points.count == 0) {
+            return 0;
+        }
+        return Math.toIntExact((long) this.points.maxY + this.getOffsetY() + 1);
     }
 
     /**
@@ -130,12 +407,347 @@ public class Life106Loader implements GridLoader {
     }
 
     /**
-     * Get a list of alive cells loaded from the files.
+     * Get the number of alive cells loaded from the file.
+     *
+     * @return Cell count.
+     */
+    public int getCellCount() {
+        return this.points.count;
+    }
+
+    /**
+     * Get a list of alive cells loaded from the files. The coordinates are the ones in the file, without offset.
      *
      * @return Unmodifiable list of coordinates.
      */
     public List<CellCoordinates> getAliveCells() {
-        return Collections.unmodifiableList(this.aliveCells);
+        PointList cells = this.points;
+        return new AbstractList<CellCoordinates>() {
+
+            @Override
+            public CellCoordinates get(int index) {
+                if (index < 0 || index >= cells.count) {
+                    throw new IndexOutOfBoundsException(String.format("Index %d, size %d", index, cells.count));
+                }
+                return new CellCoordinates(cells.xCoordinates[index], cells.yCoordinates[index]);
+            }
+
+            @Override
+            public int size() {
+                return cells.count;
+            }
+        };
+    }
+
+    /**
+     * Growable list of cell coordinates with their bounds, and the parser filling it.
+     *
+     * @author D043987
+     *
+     */
+    private static final class PointList {
+
+        /**
+         * X coordinates of the cells.
+         */
+        private int[] xCoordinates;
+
+        /**
+         * Y coordinates of the cells.
+         */
+        private int[] yCoordinates;
+
+        /**
+         * Number of cells.
+         */
+        private int   count = 0;
+
+        /**
+         * Number of lines parsed.
+         */
+        private long  lines = 0;
+
+        /**
+         * Smallest X coordinate.
+         */
+        private int   minX  = Integer.MAX_VALUE;
+
+        /**
+         * Largest X coordinate.
+         */
+        private int   maxX  = Integer.MIN_VALUE;
+
+        /**
+         * Smallest Y coordinate.
+         */
+        private int   minY  = Integer.MAX_VALUE;
+
+        /**
+         * Largest Y coordinate.
+         */
+        private int   maxY  = Integer.MIN_VALUE;
+
+        /**
+         * Position of the parser within the current line.
+         */
+        private int   cursor;
+
+        /**
+         * Create a new, empty list.
+         *
+         * @param capacity
+         *            Initial capacity.
+         */
+        PointList(int capacity) {
+            this.xCoordinates = new int[capacity];
+            this.yCoordinates = new int[capacity];
+        }
+
+        /**
+         * Parse all lines in a range of a buffer.
+         *
+         * @param buffer
+         *            The buffer.
+         * @param start
+         *            Start of the first line.
+         * @param end
+         *            End of the last line (exclusive).
+         */
+        void parseLines(ByteBuffer buffer, int start, int end) {
+            int lineStart = start;
+            while (lineStart < end) {
+                this.lines++;
+                int lineEnd = lineStart;
+                while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                if (buffer.get(lineStart) != '#') {
+                    this.parseCoordinates(buffer, lineStart, lineEnd);
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+
+        /**
+         * Parse a line with the coordinates of a cell. Blank lines are ignored.
+         *
+         * @param buffer
+         *            Buffer containing the line.
+         * @param start
+         *            Start of the line.
+         * @param end
+         *            End of the line (exclusive), without the line break.
+         */
+        private void parseCoordinates(ByteBuffer buffer, int start, int end) {
+            this.cursor = start;
+            this.skipWhitespace(buffer, end);
+            if (this.cursor == end) {
+                return;
+            }
+            long x = this.parseNumber(buffer, start, end);
+            int separator = this.cursor;
+            this.skipWhitespace(buffer, end);
+            if (this.cursor == separator) {
+                throw invalidLine(buffer, start, end);
+            }
+            long y = this.parseNumber(buffer, start, end);
+            this.skipWhitespace(buffer, end);
+            if (this.cursor != end) {
+                throw invalidLine(buffer, start, end);
+            }
+            this.add((int) x, (int) y);
+        }
+
+        /**
+         * Move the cursor over spaces, tabs and carriage returns.
+         *
+         * @param buffer
+         *            Buffer containing the line.
+         * @param end
+         *            End of the line.
+         */
+        private void skipWhitespace(ByteBuffer buffer, int end) {
+            while (this.cursor < end) {
+                byte value = buffer.get(this.cursor);
+                if (value != ' ' && value != '\t' && value != '\r') {
+                    return;
+                }
+                this.cursor++;
+            }
+        }
+
+        /**
+         * Parse a signed decimal number at the cursor.
+         *
+         * @param buffer
+         *            Buffer containing the line.
+         * @param start
+         *            Start of the line, for error messages.
+         * @param end
+         *            End of the line.
+         * @return The number, within the range of <code>int</code>.
+         */
+        private long parseNumber(ByteBuffer buffer, int start, int end) {
+            boolean negative = this.cursor < end && buffer.get(this.cursor) == '-';
+            if (negative) {
+                this.cursor++;
+            }
+            int firstDigit = this.cursor;
+            long value = 0;
+            while (this.cursor < end) {
+                int digit = buffer.get(this.cursor) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw invalidLine(buffer, start, end);
+                }
+                this.cursor++;
+            }
+            value = negative ? -value : value;
+            if (this.cursor == firstDigit || value > Integer.MAX_VALUE) {
+                throw invalidLine(buffer, start, end);
+            }
+            return value;
+        }
+
+        /**
+         * Make room for more cells.
+         *
+         * @param additional
+         *            Number of cells to add.
+         */
+        private void ensureCapacity(int additional) {
+            long required = (long) this.count + additional;
+            if (required <= this.xCoordinates.length) {
+                return;
+            }
+            if (required > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException(String.format("File contains more than %d cells", Integer.MAX_VALUE - 8));
+            }
+            int capacity = (int) Math.min(Math.max(required, (long) this.xCoordinates.length * 2), Integer.MAX_VALUE - 8);
+            this.xCoordinates = Arrays.copyOf(this.xCoordinates, capacity);
+            this.yCoordinates = Arrays.copyOf(this.yCoordinates, capacity);
+        }
+
+        /**
+         * Add a cell.
+         *
+         * @param x
+         *            X coordinate.
+         * @param y
+         *            Y coordinate.
+         */
+        void add(int x, int y) {
+            if (this.count == this.xCoordinates.length) {
+                this.ensureCapacity(1);
+            }
+            this.xCoordinates[this.count] = x;
+            this.yCoordinates[this.count] = y;
+            this.count++;
+            this.minX = Math.min(this.minX, x);
+            this.maxX = Math.max(this.maxX, x);
+            this.minY = Math.min(this.minY, y);
+            this.maxY = Math.max(this.maxY, y);
+        }
+
+        /**
+         * Add all cells of another list, after the cells of this list.
+         *
+         * @param other
+         *            The other list.
+         */
+        void append(PointList other) {
+            this.ensureCapacity(other.count);
+            System.arraycopy(other.xCoordinates, 0, this.xCoordinates, this.count, other.count);
+            System.arraycopy(other.yCoordinates, 0, this.yCoordinates, this.count, other.count);
+            this.count += other.count;
+            this.lines += other.lines;
+            this.minX = Math.min(this.minX, other.minX);
+            this.maxX = Math.max(this.maxX, other.maxX);
+            this.minY = Math.min(this.minY, other.minY);
+            this.maxY = Math.max(this.maxY, other.maxY);
+        }
+    }
+
+    /**
+     * Task parsing a chunk of whole lines. Chunks larger than the minimum size are split in half at a line break, and
+     * the cells of both halves are joined in the order of the file.
+     *
+     * @author D043987
+     *
+     */
+    private static class ChunkTask extends RecursiveTask<PointList> {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The mapped window. Only read with absolute positions, so it can be shared by all tasks.
+         */
+        private final ByteBuffer  buffer;
+
+        /**
+         * Start of the chunk.
+         */
+        private final int         start;
+
+        /**
+         * End of the chunk (exclusive).
+         */
+        private final int         end;
+
+        /**
+         * Chunks with up to this number of bytes are not split.
+         */
+        private final int         chunkSize;
+
+        /**
+         * Create a new task.
+         *
+         * @param buffer
+         *            The mapped window.
+         * @param start
+         *            Start of the chunk, at the start of a line.
+         * @param end
+         *            End of the chunk (exclusive), at the end of a line.
+         * @param chunkSize
+         *            Chunks with up to this number of bytes are not split.
+         */
+        ChunkTask(ByteBuffer buffer, int start, int end, int chunkSize) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * @see java.util.concurrent.RecursiveTask#compute()
+         */
+        @Override
+        protected PointList compute() {
+            int middle = this.end;
+            if (this.end - this.start > this.chunkSize) {
+                middle = (this.start + this.end) >>> 1;
+                while (middle < this.end && this.buffer.get(middle - 1) != '\n') {
+                    middle++;
+                }
+            }
+            if (middle == this.end) {
+                // Roughly 6 bytes per line
+                PointList points = new PointList(Math.max(INITIAL_CAPACITY, (this.end - this.start) / 6));
+                points.parseLines(this.buffer, this.start, this.end);
+                return points;
+            }
+            ChunkTask second = new ChunkTask(this.buffer, middle, this.end, this.chunkSize);
+            second.fork();
+            PointList points = new ChunkTask(this.buffer, this.start, middle, this.chunkSize).compute();
+            points.append(second.join());
+            return points;
+        }
     }
 
     /**
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import de.martindreier.gameoflife.game.Grid;
+
+/**
+ * Listener which is notified by the {@link AsyncPatternLoader} while a file is loaded. Listeners are called on the
+ * loading thread, one call at a time, and should return quickly.
+ *
+ * @author D043987
+ *
+ */
+public interface LoadProgressListener {
+
+    /**
+     * Called after each block of the file has been parsed.
+     *
+     * @param bytesRead
+     *            Number of bytes read from the file so far.
+     * @param fileSize
+     *            Size of the file in bytes.
+     * @param cells
+     *            Number of alive cells loaded into the grid so far.
+     */
+    public default void progress(long bytesRead, long fileSize, long cells) {
+        // Not interested
+    }
+
+    /**
+     * Called when further rows of the grid have been loaded. Rows from 0 to <code>rows - 1</code> are not changed
+     * anymore and can be read while the rest of the file is loaded; other threads have to synchronize with the
+     * listener to read them.
+     *
+     * @param grid
+     *            The grid being loaded.
+     * @param rows
+     *            Number of complete rows.
+     */
+    public default void rowsAvailable(Grid grid, int rows) {
+        // Not interested
+    }
+}
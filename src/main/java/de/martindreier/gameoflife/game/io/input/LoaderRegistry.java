@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.martindreier.gameoflife.game.io.CellSink;
+import de.martindreier.gameoflife.game.io.GridLoader;
+
+/**
+ * Chooses the loader for a pattern file by its content. The registry opens the file once, reads its first
+ * {@value #SNIFF_SIZE} bytes, asks the registered formats in order whether they recognize the file, and passes the open
+ * channel to the loader of the first matching format. The channel is closed when the loader is created, also if the
+ * file is not valid. Loaders which read a file lazily (RLE patterns larger than a megabyte) open it again to decode the
+ * pattern; all other files are opened exactly once.
+ * <p>
+ * Patterns can also be loaded from streams, channels and buffers. Files and streams compressed with one of the
+ * {@link Compression} formats are decompressed while they are parsed. Compressed RLE files are decompressed again to
+ * decode the pattern, like uncompressed files are read again. A stream can only be read once, so loaders which decode
+ * lazily keep the pattern of a stream in memory, unless the stream is loaded into a sink once with
+ * {@link #load(InputStream, String, CellSink)}.
+ * </p>
+ * <p>
+ * The registry starts with the {@link StandardPatternFormat}s. Additional formats can be registered and are checked
+ * before the formats registered earlier.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class LoaderRegistry {
+
+    /**
+     * Number of bytes passed to {@link PatternFormat#matches(ByteBuffer)}.
+     */
+    public static final int           SNIFF_SIZE = 4096;
+
+    /**
+     * Registered formats, in the order in which they are checked.
+     */
+    private final List<PatternFormat> formats    = new CopyOnWriteArrayList<>();
+
+    /**
+     * Create a registry with the standard formats.
+     */
+    public LoaderRegistry() {
+        this.formats.addAll(Arrays.asList(StandardPatternFormat.values()));
+    }
+
+    /**
+     * Register a format. The format is checked before all formats registered so far.
+     *
+     * @param format
+     *            The format.
+     */
+    public void register(PatternFormat format) {
+        if (format == null) {
+            throw new IllegalArgumentException("Format must not be null");
+        }
+        this.formats.add(0, format);
+    }
+
+    /**
+     * Get the registered formats.
+     *
+     * @return Unmodifiable list of the formats, in the order in which they are checked.
+     */
+    public List<PatternFormat> getFormats() {
+        return Collections.unmodifiableList(this.formats);
+    }
+
+    /**
+     * Find the format of a file.
+     *
+     * @param head
+     *            The first bytes of the file, from the position to the limit of the buffer. The buffer is not
+     *            changed.
+     * @return The first format which recognizes the file, empty if no format does.
+     */
+    public Optional<PatternFormat> detect(ByteBuffer head) {
+        ByteBuffer content = head.slice().asReadOnlyBuffer();
+        return this.formats.stream().filter(format -> format.matches(content.duplicate())).findFirst();
+    }
+
+    /**
+     * Open a pattern file with the loader of its format. Compressed files are decompressed while they are parsed.
+     *
+     * @param file
+     *            The file.
+     * @return The loader, which has parsed the file.
+     * @throws IOException
+     *             Error reading the file, the format is not recognized, or the file is not valid.
+     */
+    public GridLoader open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(SNIFF_SIZE);
+            while (head.hasRemaining() && channel.read(head) >= 0) {
+                // Fill the buffer unless the file is shorter
+            }
+            head.flip();
+            channel.position(0);
+            Optional<Compression> compression = Compression.detect(head);
+            if (compression.isPresent()) {
+                return this.open(file, compression.get(), Channels.newInputStream(channel));
+            }
+            return this.detect(head, file.toString()).open(file, channel);
+        }
+    }
+
+    /**
+     * Open a compressed pattern file with the loader of its format. The loader may open and decompress the file again
+     * to decode the pattern. Files which are compressed twice are read like streams.
+     *
+     * @param file
+     *            The file.
+     * @param compression
+     *            Compression of the file.
+     * @param compressed
+     *            Stream of the file, positioned at its start.
+     * @return The loader, which has parsed the file.
+     * @throws IOException
+     *             Error reading the file, the format is not recognized, or the file is not valid.
+     */
+    private GridLoader open(Path file, Compression compression, InputStream compressed) throws IOException {
+        try (InputStream decompressed = compression.decompress(compressed)) {
+            BufferedInputStream buffered = new BufferedInputStream(decompressed, SNIFF_SIZE);
+            ByteBuffer head = sniff(buffered);
+            if (Compression.detect(head).isPresent()) {
+                return this.open(buffered, file.toString());
+            }
+            return this.detect(head, file.toString()).open(file, compression, Channels.newChannel(buffered));
+        }
+    }
+
+    /**
+     * Open a pattern stream with the loader of its format. Compressed streams are decompressed while they are parsed.
+     * The stream is read to its end, but not closed. Loaders which decode lazily keep the pattern in memory, because
+     * the stream cannot be read again; use {@link #open(Path)} for files.
+     *
+     * @param input
+     *            The stream.
+     * @param name
+     *            Name of the stream for error messages.
+     * @return The loader, which has parsed the stream.
+     * @throws IOException
+     *             Error reading the stream, the format is not recognized, or the stream is not valid.
+     */
+    public GridLoader open(InputStream input, String name) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input, SNIFF_SIZE);
+        ByteBuffer head = sniff(buffered);
+        Optional<Compression> compression = Compression.detect(head);
+        if (compression.isPresent()) {
+            return this.open(compression.get(), keepOpen(buffered), name);
+        }
+        return this.detect(head, name).open(name, Channels.newChannel(buffered));
+    }
+
+    /**
+     * Load a pattern stream into a sink once with the loader of its format. Compressed streams are decompressed while
+     * they are loaded. The stream is read to its end, but not closed. Unlike {@link #open(InputStream, String)}, RLE
+     * patterns are decoded directly from the stream and never kept in memory, so this is the way to load large
+     * patterns from streams.
+     *
+     * @param input
+     *            The stream.
+     * @param name
+     *            Name of the stream for error messages.
+     * @param sink
+     *            Receives the alive cells.
+     * @return The loader, which has pushed the pattern into the sink and provides its size, rule and comments. It may
+     *         not be able to load the pattern again.
+     * @throws IOException
+     *             Error reading the stream, the format is not recognized, or the stream is not valid.
+     */
+    public GridLoader load(InputStream input, String name, CellSink sink) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input, SNIFF_SIZE);
+        ByteBuffer head = sniff(buffered);
+        Optional<Compression> compression = Compression.detect(head);
+        if (compression.isPresent()) {
+            try (InputStream decompressed = compression.get().decompress(keepOpen(buffered))) {
+                return this.load(decompressed, name, sink);
+            }
+        }
+        return this.detect(head, name).load(name, Channels.newChannel(buffered), sink);
+    }
+
+    /**
+     * Wrap a stream of the caller, which must not be closed.
+     *
+     * @param input
+     *            The stream.
+     * @return Stream which does not close the stream of the caller.
+     */
+    private static InputStream keepOpen(InputStream input) {
+        return new FilterInputStream(input) {
+
+            /**
+             * The stream of the caller is not closed.
+             *
+             * @see java.io.FilterInputStream#close()
+             */
+            @Override
+            public void close() {
+                // Keep the stream open
+            }
+        };
+    }
+
+    /**
+     * Read the first {@value #SNIFF_SIZE} bytes of a stream without consuming them.
+     *
+     * @param buffered
+     *            The stream, with a buffer of at least {@value #SNIFF_SIZE} bytes.
+     * @return The first bytes, from position 0 to the limit.
+     * @throws IOException
+     *             Error reading the stream.
+     */
+    private static ByteBuffer sniff(BufferedInputStream buffered) throws IOException {
+        byte[] bytes = new byte[SNIFF_SIZE];
+        buffered.mark(SNIFF_SIZE);
+        int length = 0;
+        for (int read = 0; read >= 0 && length < SNIFF_SIZE; read = buffered.read(bytes, length, SNIFF_SIZE - length)) {
+            length += read;
+        }
+        buffered.reset();
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    /**
+     * Open a pattern channel with the loader of its format. Compressed data is decompressed while it is parsed. The
+     * channel is read to its end, but not closed. Like for {@link #open(InputStream, String)}, loaders which decode
+     * lazily keep the pattern in memory.
+     *
+     * @param channel
+     *            The channel.
+     * @param name
+     *            Name of the channel for error messages.
+     * @return The loader, which has parsed the channel.
+     * @throws IOException
+     *             Error reading the channel, the format is not recognized, or the data is not valid.
+     */
+    public GridLoader open(ReadableByteChannel channel, String name) throws IOException {
+        return this.open(Channels.newInputStream(channel), name);
+    }
+
+    /**
+     * Open a pattern in memory with the loader of its format. Compressed data is decompressed while it is parsed, and
+     * the decompressed pattern is kept in memory by loaders which decode lazily.
+     *
+     * @param buffer
+     *            The pattern, from the position to the limit of the buffer. The buffer is not changed.
+     * @param name
+     *            Name of the pattern for error messages.
+     * @return The loader, which has parsed the pattern.
+     * @throws IOException
+     *             The format is not recognized, or the pattern is not valid.
+     */
+    public GridLoader open(ByteBuffer buffer, String name) throws IOException {
+        ByteBuffer content = buffer.duplicate();
+        return this.open(new InputStream() {
+
+            /**
+             * @see java.io.InputStream#read()
+             */
+            @Override
+            public int read() {
+                return content.hasRemaining() ? content.get() & 0xFF : -1;
+            }
+
+            /**
+             * @see java.io.InputStream#read(byte[], int, int)
+             */
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                if (!content.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(length, content.remaining());
+                content.get(bytes, offset, count);
+                return count;
+            }
+        }, name);
+    }
+
+    /**
+     * Open compressed data with the loader of its format. The decompressing stream is closed afterwards.
+     *
+     * @param compression
+     *            The compression format.
+     * @param compressed
+     *            The compressed data.
+     * @param name
+     *            Name of the data for error messages.
+     * @return The loader, which has parsed the data.
+     * @throws IOException
+     *             Error reading the data, the format is not recognized, or the data is not valid.
+     */
+    private GridLoader open(Compression compression, InputStream compressed, String name) throws IOException {
+        try (InputStream decompressed = compression.decompress(compressed)) {
+            return this.open(decompressed, name);
+        }
+    }
+
+    /**
+     * Find the format of a file, which must be recognized.
+     *
+     * @param head
+     *            The first bytes of the file.
+     * @param name
+     *            Name of the file for error messages.
+     * @return The first format which recognizes the file.
+     * @throws IOException
+     *             No format recognizes the file.
+     */
+    private PatternFormat detect(ByteBuffer head, String name) throws IOException {
+        Optional<PatternFormat> format = this.detect(head);
+        if (!format.isPresent()) {
+            throw new IOException(String.format("Format of %s is not recognized", name));
+        }
+        return format.get();
+    }
+}
@@ -0,0 +1,509 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.io.CellSink;
+import de.martindreier.gameoflife.game.io.GridLoader;
+import de.martindreier.gameoflife.game.jfr.FlightRecorder;
+
+/**
+ * Loader to load files in Golly's macrocell format. A macrocell file describes the pattern as a quadtree: each line
+ * after the <code>[M2]</code> header defines a node, which is referenced by its line number (starting at 1, 0 is the
+ * empty node) in the lines after it. Leaf lines describe 8x8 cells with <code>.</code> for dead cells,
+ * <code>*</code> for alive cells and <code>$</code> for the end of a row. Node lines <code>k nw ne sw se</code>
+ * describe a square of 2<sup>k</sup> cells from its four quadrants. The last node is the root.
+ * <p>
+ * The loader keeps the nodes as they are defined in the file and never expands them, so patterns which repeat the same
+ * nodes many times are loaded with memory proportional to the file size. Only loading the cells into a grid visits
+ * every alive cell. The grid is cropped to the alive cells of the root: its top left cell is the top left corner of
+ * the bounding box of all alive cells. Patterns whose bounding box is larger than a grid can be parsed, but their width
+ * and height cannot be requested.
+ * </p>
+ * <p>
+ * Only two-state patterns are supported, with nodes up to level {@value #MAX_LEVEL}.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class MacrocellLoader implements GridLoader {
+
+    /**
+     * Header of the first line.
+     */
+    public static final String  HEADER        = "[M2]";
+
+    /**
+     * Highest supported node level, so coordinates fit into a <code>long</code>.
+     */
+    public static final int     MAX_LEVEL     = 62;
+
+    /**
+     * Level of the leaf nodes.
+     */
+    static final int            LEAF_LEVEL    = 3;
+
+    /**
+     * Format name in flight recorder events.
+     */
+    private static final String FORMAT_NAME   = "Macrocell";
+
+    /**
+     * Initial capacity of the node arrays.
+     */
+    private static final int    INITIAL_NODES = 64;
+
+    /**
+     * Game rule set in the file.
+     */
+    private GameRule            rule;
+
+    /**
+     * Level of each node. Node 0 is the empty node.
+     */
+    private int[]               levels        = new int[INITIAL_NODES];
+
+    /**
+     * Children of the nodes (north west, north east, south west, south east), four entries per node. Unused for
+     * leaves.
+     */
+    private int[]               children      = new int[4 * INITIAL_NODES];
+
+    /**
+     * Cells of the leaves, bit <code>8 * y + x</code> for the cell (x,y). Unused for other nodes.
+     */
+    private long[]              leaves        = new long[INITIAL_NODES];
+
+    /**
+     * Bounding box of the alive cells of each node relative to the node (left, top, right, bottom, all inclusive), four
+     * entries per node. The left edge is -1 for empty nodes.
+     */
+    private long[]              bounds        = new long[4 * INITIAL_NODES];
+
+    /**
+     * Number of nodes including the empty node.
+     */
+    private int                 nodeCount     = 1;
+
+    /**
+     * Create a new loader and parse the file.
+     *
+     * @param macrocellFile
+     *            The file.
+     * @throws IOException
+     *             Error reading the file, or the file is not a valid macrocell file.
+     */
+    public MacrocellLoader(Path macrocellFile) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(macrocellFile, StandardCharsets.US_ASCII)) {
+            this.parse(macrocellFile.toString(), reader);
+        }
+    }
+
+    /**
+     * Create a new loader which reads from an open file or stream. The reader is not closed.
+     *
+     * @param name
+     *            Name of the file for error messages.
+     * @param reader
+     *            Reader for the content of the file, positioned at its start.
+     * @throws IOException
+     *             Error reading the file, or the file is not a valid macrocell file.
+     */
+    MacrocellLoader(String name, BufferedReader reader) throws IOException {
+        this.parse(name, reader);
+    }
+
+    /**
+     * Parse the content of the file.
+     *
+     * @param name
+     *            Name of the file for error messages.
+     * @param reader
+     *            Reader for the content of the file.
+     * @throws IOException
+     *             Error reading the file, or the file is not a valid macrocell file.
+     */
+    private void parse(String name, BufferedReader reader) throws IOException {
+        this.bounds[0] = -1;
+        FlightRecorder.Parse event = FlightRecorder.startParse(FORMAT_NAME, "nodes");
+        long characters = 0;
+        long lineCount = 0;
+        String line = reader.readLine();
+        if (line == null || !line.startsWith(HEADER)) {
+            throw new IOException(String.format("File %s is not a macrocell file", name));
+        }
+        while ((line = reader.readLine()) != null) {
+            characters += line.length();
+            lineCount++;
+            this.parseLine(line);
+        }
+        if (this.nodeCount == 1) {
+            throw new IOException(String.format("File %s does not define any nodes", name));
+        }
+        if (event != null) {
+            event.finish(characters, lineCount, (int) Math.min(Integer.MAX_VALUE, this.getPatternWidth()), (int) Math.min(Integer.MAX_VALUE, this.getPatternHeight()));
+        }
+    }
+
+    /**
+     * Parse a single line of the file.
+     *
+     * @param line
+     *            Line content.
+     * @throws IOException
+     *             The line is not valid.
+     */
+    private void parseLine(String line) throws IOException {
+        line = line.trim();
+        if (line.isEmpty()) {
+            return;
+        }
+        char first = line.charAt(0);
+        if (first == '#') {
+            if (line.startsWith("#R")) {
+                this.rule = parseRule(line.substring(2).trim());
+            }
+            // Other lines are comments or describe the generation
+        } else if (first == '.' || first == '*' || first == '$') {
+            this.addLeaf(parseLeaf(line));
+        } else if (Character.isDigit(first)) {
+            this.parseNode(line);
+        } else {
+            throw new IOException(String.format("Invalid line: %s", line));
+        }
+    }
+
+    /**
+     * Parse a rule in B/S notation (<code>B3/S23</code>) or in S/B notation (<code>23/3</code>).
+     *
+     * @param definition
+     *            The rule definition.
+     * @return The rule.
+     * @throws IOException
+     *             The rule is not valid.
+     */
+    private static GameRule parseRule(String definition) throws IOException {
+        String[] parts = definition.split("/");
+        if (parts.length != 2) {
+            throw new IOException(String.format("Invalid rule definition: %s", definition));
+        }
+        String born = parts[1].trim();
+        String survive = parts[0].trim();
+        for (String part : parts) {
+            part = part.trim().toUpperCase();
+            if (part.startsWith("B")) {
+                born = part.substring(1);
+            } else if (part.startsWith("S")) {
+                survive = part.substring(1);
+            }
+        }
+        try {
+            return GameRule.createRule(survive, born);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Invalid rule definition: %s", definition), e);
+        }
+    }
+
+    /**
+     * Parse the cells of a leaf.
+     *
+     * @param line
+     *            Leaf line.
+     * @return The cells, bit <code>8 * y + x</code> for the cell (x,y).
+     * @throws IOException
+     *             The line is not a valid leaf.
+     */
+    private static long parseLeaf(String line) throws IOException {
+        long cells = 0;
+        int x = 0;
+        int y = 0;
+        for (int index = 0; index < line.length(); index++) {
+            char cell = line.charAt(index);
+            if (cell == '$') {
+                x = 0;
+                y++;
+                continue;
+            }
+            if (x >= 8 || y >= 8 || cell != '.' && cell != '*') {
+                throw new IOException(String.format("Invalid leaf: %s", line));
+            }
+            if (cell == '*') {
+                cells |= 1L << 8 * y + x;
+            }
+            x++;
+        }
+        return cells;
+    }
+
+    /**
+     * Parse a node line.
+     *
+     * @param line
+     *            Node line.
+     * @throws IOException
+     *             The line is not a valid node.
+     */
+    private void parseNode(String line) throws IOException {
+        String[] parts = line.split("\\s+");
+        if (parts.length != 5) {
+            throw new IOException(String.format("Invalid node: %s", line));
+        }
+        int level;
+        int[] quadrants = new int[4];
+        try {
+            level = Integer.parseInt(parts[0]);
+            for (int quadrant = 0; quadrant < 4; quadrant++) {
+                quadrants[quadrant] = Integer.parseInt(parts[quadrant + 1]);
+            }
+        }
+        catch (NumberFormatException e) {
+            throw new IOException(String.format("Invalid node: %s", line), e);
+        }
+        if (level <= LEAF_LEVEL || level > MAX_LEVEL) {
+            throw new IOException(String.format("Unsupported node level %d (only two-state patterns up to level %d are supported)", level, MAX_LEVEL));
+        }
+        for (int child : quadrants) {
+            if (child < 0 || child >= this.nodeCount || child != 0 && this.levels[child] != level - 1) {
+                throw new IOException(String.format("Node %d of level %d refers to invalid child %d", this.nodeCount, level, child));
+            }
+        }
+        this.addNode(level, quadrants);
+    }
+
+    /**
+     * Add a leaf.
+     *
+     * @param cells
+     *            Cells of the leaf.
+     */
+    private void addLeaf(long cells) {
+        int node = this.newNode(LEAF_LEVEL);
+        this.leaves[node] = cells;
+        if (cells == 0) {
+            this.bounds[4 * node] = -1;
+            return;
+        }
+        long columns = cells | cells >>> 32;
+        columns |= columns >>> 16;
+        columns = (columns | columns >>> 8) & 0xFF;
+        this.bounds[4 * node] = Long.numberOfTrailingZeros(columns);
+        this.bounds[4 * node + 1] = Long.numberOfTrailingZeros(cells) / 8;
+        this.bounds[4 * node + 2] = 63 - Long.numberOfLeadingZeros(columns);
+        this.bounds[4 * node + 3] = (63 - Long.numberOfLeadingZeros(cells)) / 8;
+    }
+
+    /**
+     * Add a node with children.
+     *
+     * @param level
+     *            Node level.
+     * @param quadrants
+     *            Children (north west, north east, south west, south east).
+     */
+    private void addNode(int level, int[] quadrants) {
+        int node = this.newNode(level);
+        System.arraycopy(quadrants, 0, this.children, 4 * node, 4);
+        long half = 1L << level - 1;
+        long left = Long.MAX_VALUE;
+        long top = Long.MAX_VALUE;
+        long right = -1;
+        long bottom = -1;
+        for (int quadrant = 0; quadrant < 4; quadrant++) {
+            int child = quadrants[quadrant];
+            if (this.bounds[4 * child] < 0) {
+                continue;
+            }
+            long x = (quadrant & 1) * half;
+            long y = (quadrant >> 1) * half;
+            left = Math.min(left, x + this.bounds[4 * child]);
+            top = Math.min(top, y + this.bounds[4 * child + 1]);
+            right = Math.max(right, x + this.bounds[4 * child + 2]);
+            bottom = Math.max(bottom, y + this.bounds[4 * child + 3]);
+        }
+        this.bounds[4 * node] = right < 0 ? -1 : left;
+        this.bounds[4 * node + 1] = top;
+        this.bounds[4 * node + 2] = right;
+        this.bounds[4 * node + 3] = bottom;
+    }
+
+    /**
+     * Allocate a new node.
+     *
+     * @param level
+     *            Node level.
+     * @return Index of the node.
+     */
+    private int newNode(int level) {
+        if (this.nodeCount == this.levels.length) {
+            int capacity = this.levels.length * 2;
+            this.levels = Arrays.copyOf(this.levels, capacity);
+            this.leaves = Arrays.copyOf(this.leaves, capacity);
+            this.children = Arrays.copyOf(this.children, 4 * capacity);
+            this.bounds = Arrays.copyOf(this.bounds, 4 * capacity);
+        }
+        this.levels[this.nodeCount] = level;
+        return this.nodeCount++;
+    }
+
+    /**
+     * Get the index of the root node.
+     *
+     * @return The last node of the file.
+     */
+    private int getRoot() {
+        return this.nodeCount - 1;
+    }
+
+    /**
+     * Get the number of nodes defined in the file.
+     *
+     * @return Number of nodes.
+     */
+    public int getNodeCount() {
+        return this.nodeCount - 1;
+    }
+
+    /**
+     * Get the level of the root node. The root describes a square of 2<sup>level</sup> cells.
+     *
+     * @return Level of the root.
+     */
+    public int getLevel() {
+        return this.levels[this.getRoot()];
+    }
+
+    /**
+     * Get the width of the bounding box of all alive cells, which may be larger than a grid.
+     *
+     * @return Width in cells, 0 if there are no alive cells.
+     */
+    public long getPatternWidth() {
+        int root = this.getRoot();
+        return this.bounds[4 * root] < 0 ? 0 : this.bounds[4 * root + 2] - this.bounds[4 * root] + 1;
+    }
+
+    /**
+     * Get the height of the bounding box of all alive cells, which may be larger than a grid.
+     *
+     * @return Height in cells, 0 if there are no alive cells.
+     */
+    public long getPatternHeight() {
+        int root = this.getRoot();
+        return this.bounds[4 * root] < 0 ? 0 : this.bounds[4 * root + 3] - this.bounds[4 * root + 1] + 1;
+    }
+
+    /**
+     * Gets the width of the bounding box of all alive cells.
+     *
+     * @throws ArithmeticException
+     *             The pattern is too wide for a grid.
+     * @see de.martindreier.gameoflife.game.io.GridLoader#getWidth()
+     */
+    @Override
+    public int getWidth() {
+        return Math.toIntExact(this.getPatternWidth());
+    }
+
+    /**
+     * Gets the height of the bounding box of all alive cells.
+     *
+     * @throws ArithmeticException
+     *             The pattern is too high for a grid.
+     * @see de.martindreier.gameoflife.game.io.GridLoader#getHeight()
+     */
+    @Override
+    public int getHeight() {
+        return Math.toIntExact(this.getPatternHeight());
+    }
+
+    /**
+     * Get the game rule as specified in the file. If none is specified, returns the rule for Conway's Game of Life.
+     *
+     * @see de.martindreier.gameoflife.game.io.GridLoader#getGameRule()
+     */
+    @Override
+    public Optional<GameRule> getGameRule() {
+        return Optional.of(this.rule == null ? GameRule.CONWAY : this.rule);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.io.GridLoader#setInitialState(de.martindreier.gameoflife.game.Grid)
+     */
+    @Override
+    public void setInitialState(Grid grid) {
+        this.load(grid);
+    }
+
+    /**
+     * Push the alive cells of the tree, skipping empty nodes. Each row of a leaf is pushed as runs.
+     *
+     * @see de.martindreier.gameoflife.game.io.GridLoader#load(de.martindreier.gameoflife.game.io.CellSink)
+     */
+    @Override
+    public void load(CellSink sink) {
+        int root = this.getRoot();
+        // Check the size before pushing any cells
+        this.getWidth();
+        this.getHeight();
+        if (this.bounds[4 * root] >= 0) {
+            this.load(sink, root, -this.bounds[4 * root], -this.bounds[4 * root + 1]);
+        }
+    }
+
+    /**
+     * Push the alive cells of a node.
+     *
+     * @param sink
+     *            The sink.
+     * @param node
+     *            The node.
+     * @param x
+     *            X coordinate of the left edge of the node on the grid. May be negative if the left part of the node
+     *            is empty.
+     * @param y
+     *            Y coordinate of the top edge of the node on the grid. May be negative if the upper part of the node
+     *            is empty.
+     */
+    private void load(CellSink sink, int node, long x, long y) {
+        if (this.bounds[4 * node] < 0) {
+            return;
+        }
+        if (this.levels[node] == LEAF_LEVEL) {
+            long cells = this.leaves[node];
+            for (int row = 0; row < 8; row++) {
+                for (int remaining = (int) (cells >>> 8 * row) & 0xFF; remaining != 0;) {
+                    int start = Integer.numberOfTrailingZeros(remaining);
+                    int length = Integer.numberOfTrailingZeros(~(remaining >>> start));
+                    sink.setRun((int) x + start, (int) y + row, length);
+                    remaining &= -1 << start + length;
+                }
+            }
+            return;
+        }
+        long half = 1L << this.levels[node] - 1;
+        for (int quadrant = 0; quadrant < 4; quadrant++) {
+            this.load(sink, this.children[4 * node + quadrant], x + (quadrant & 1) * half, y + (quadrant >> 1) * half);
+        }
+    }
+}
@@ -0,0 +1,529 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+
+/**
+ * Index of the pattern files in a directory tree, for looking patterns up by name or rule without reading the files.
+ * <p>
+ * RLE files (<code>.rle</code>) and Life files (<code>.lif</code>) are indexed. Only their headers are read: the name,
+ * rule, size and comments of RLE files are parsed by the {@link RLEFileLoader} before the pattern starts, so comments
+ * after the end of an RLE pattern are not indexed. The version of a Life file is recognized by its <code>#Life</code>
+ * line like by the {@link StandardPatternFormat}s. Life 1.05 files are read by the {@link Life105Loader} without
+ * decoding the cells, Life 1.06 files by the {@link Life106Loader}. Files which cannot be read or are not valid are not
+ * indexed, but their modification time and size are kept, so they are only read again once they change.
+ * </p>
+ * <p>
+ * The index is kept in a gzip compressed binary file. {@link #update()} only reads files which were added or whose
+ * modification time or size changed since they were read, optionally in parallel, and saves the index if anything
+ * changed. Lookups use maps in memory.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class PatternCatalog {
+
+    /**
+     * Marker at the start of the index file.
+     */
+    private static final int                               MAGIC   = 0x474f4c49;
+
+    /**
+     * Version of the index file format.
+     */
+    private static final int                               VERSION = 2;
+
+    /**
+     * Formats of the index file, by their code in the file.
+     */
+    private static final StandardPatternFormat[]           FORMATS = { StandardPatternFormat.RLE, StandardPatternFormat.LIFE_105, StandardPatternFormat.LIFE_106 };
+
+    /**
+     * Root of the indexed directory tree.
+     */
+    private final Path                                     directory;
+
+    /**
+     * The index file.
+     */
+    private final Path                                     indexFile;
+
+    /**
+     * Indexed files, by their path relative to the directory.
+     */
+    private final Map<String, PatternMetadata>             entries = new TreeMap<>();
+
+    /**
+     * Files which could not be indexed, by their path relative to the directory.
+     */
+    private final Map<String, Candidate>                   skipped = new TreeMap<>();
+
+    /**
+     * Indexed files, by the lower case pattern name and file name.
+     */
+    private final Map<String, List<PatternMetadata>>       byName  = new HashMap<>();
+
+    /**
+     * Indexed files, by their rule.
+     */
+    private final Map<LifeLikeRule, List<PatternMetadata>> byRule  = new HashMap<>();
+
+    /**
+     * Create a catalog of a directory. If the index file exists, it is read; otherwise the catalog is empty until it
+     * is updated.
+     *
+     * @param directory
+     *            Root of the directory tree.
+     * @param indexFile
+     *            The index file.
+     * @throws IOException
+     *             If the index file cannot be read or is not valid.
+     */
+    public PatternCatalog(Path directory, Path indexFile) throws IOException {
+        if (directory == null || indexFile == null) {
+            throw new IllegalArgumentException("Directory and index file must not be null");
+        }
+        this.directory = directory;
+        this.indexFile = indexFile;
+        if (Files.exists(indexFile)) {
+            this.read();
+        }
+    }
+
+    /**
+     * Update the catalog from the directory and save the index if it changed.
+     *
+     * @return Number of files which were read.
+     * @throws IOException
+     *             If the directory cannot be listed or the index cannot be saved.
+     */
+    public int update() throws IOException {
+        return this.update(null);
+    }
+
+    /**
+     * Update the catalog from the directory, reading the changed files in parallel, and save the index if it changed.
+     *
+     * @param pool
+     *            The pool to read the files in, <code>null</code> to read them in the calling thread.
+     * @return Number of files which were read.
+     * @throws IOException
+     *             If the directory cannot be listed or the index cannot be saved.
+     */
+    public int update(ForkJoinPool pool) throws IOException {
+        Map<String, Candidate> found = new TreeMap<>();
+        Files.walkFileTree(this.directory, new SimpleFileVisitor<Path>() {
+
+            /**
+             * @see java.nio.file.SimpleFileVisitor#visitFile(java.lang.Object,
+             *      java.nio.file.attribute.BasicFileAttributes)
+             */
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && isPatternFile(file)) {
+                    String path = PatternCatalog.this.directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                    found.put(path, new Candidate(file, path, attributes.lastModifiedTime().toMillis(), attributes.size()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            /**
+             * Unreadable files and directories are skipped.
+             *
+             * @see java.nio.file.SimpleFileVisitor#visitFileFailed(java.lang.Object, java.io.IOException)
+             */
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        List<Candidate> changed = found.values().stream().filter(candidate -> !this.isCurrent(candidate)).collect(Collectors.toList());
+        boolean removed = this.entries.keySet().retainAll(found.keySet()) | this.skipped.keySet().retainAll(found.keySet());
+        List<PatternMetadata> read;
+        if (pool == null) {
+            read = changed.stream().map(Candidate::read).collect(Collectors.toList());
+        } else {
+            read = pool.invoke(ForkJoinTask.adapt(() -> changed.parallelStream().map(Candidate::read).collect(Collectors.toList())));
+        }
+        for (int index = 0; index < changed.size(); index++) {
+            Candidate candidate = changed.get(index);
+            PatternMetadata entry = read.get(index);
+            this.entries.remove(candidate.path);
+            this.skipped.remove(candidate.path);
+            if (entry != null) {
+                this.entries.put(candidate.path, entry);
+            } else {
+                // Not read again until the file changes
+                this.skipped.put(candidate.path, candidate);
+            }
+        }
+        if (removed || !changed.isEmpty() || !Files.exists(this.indexFile)) {
+            this.buildLookups();
+            this.write();
+        }
+        return changed.size();
+    }
+
+    /**
+     * Check if a file was read in its current version, as an entry or as a file which could not be indexed.
+     *
+     * @param candidate
+     *            The file.
+     * @return <code>true</code> if the modification time and size of the file did not change since it was read.
+     */
+    private boolean isCurrent(Candidate candidate) {
+        PatternMetadata entry = this.entries.get(candidate.path);
+        if (entry != null) {
+            return entry.getLastModified() == candidate.lastModified && entry.getSize() == candidate.size;
+        }
+        Candidate skippedFile = this.skipped.get(candidate.path);
+        return skippedFile != null && skippedFile.lastModified == candidate.lastModified && skippedFile.size == candidate.size;
+    }
+
+    /**
+     * Get all indexed files.
+     *
+     * @return The files, ordered by path.
+     */
+    public Collection<PatternMetadata> getEntries() {
+        return Collections.unmodifiableCollection(this.entries.values());
+    }
+
+    /**
+     * Get an indexed file.
+     *
+     * @param path
+     *            Path relative to the directory, with <code>/</code> as separator.
+     * @return The file, empty if it is not indexed.
+     */
+    public Optional<PatternMetadata> get(String path) {
+        return Optional.ofNullable(this.entries.get(path));
+    }
+
+    /**
+     * Find the patterns with a name. The name is compared ignoring case with the name in the file and with the file
+     * name without extension.
+     *
+     * @param name
+     *            The name.
+     * @return The matching files, empty if there are none.
+     */
+    public List<PatternMetadata> findByName(String name) {
+        return Collections.unmodifiableList(this.byName.getOrDefault(name.toLowerCase(Locale.ROOT), Collections.emptyList()));
+    }
+
+    /**
+     * Find the patterns with a rule.
+     *
+     * @param rule
+     *            The rule.
+     * @return The matching files, empty if there are none.
+     */
+    public List<PatternMetadata> findByRule(LifeLikeRule rule) {
+        return Collections.unmodifiableList(this.byRule.getOrDefault(rule, Collections.emptyList()));
+    }
+
+    /**
+     * Rebuild the lookup maps from the entries.
+     */
+    private void buildLookups() {
+        this.byName.clear();
+        this.byRule.clear();
+        for (PatternMetadata entry : this.entries.values()) {
+            Set<String> names = new LinkedHashSet<>();
+            if (entry.getName() != null) {
+                names.add(entry.getName().toLowerCase(Locale.ROOT));
+            }
+            String fileName = entry.getPath().substring(entry.getPath().lastIndexOf('/') + 1);
+            names.add(fileName.substring(0, fileName.lastIndexOf('.')).toLowerCase(Locale.ROOT));
+            for (String name : names) {
+                this.byName.computeIfAbsent(name, key -> new ArrayList<>()).add(entry);
+            }
+            this.byRule.computeIfAbsent(entry.getRule(), key -> new ArrayList<>()).add(entry);
+        }
+    }
+
+    /**
+     * Read the index file.
+     *
+     * @throws IOException
+     *             If the index file cannot be read or is not valid.
+     */
+    private void read() throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(this.indexFile))))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException(String.format("File %s is not a pattern index", this.indexFile));
+            }
+            int version = input.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException(String.format("Pattern index %s has an unsupported version (%d), expected %d", this.indexFile, version, VERSION));
+            }
+            int count = input.readInt();
+            for (int index = 0; index < count; index++) {
+                String path = readString(input);
+                long lastModified = input.readLong();
+                long size = input.readLong();
+                int format = input.readUnsignedByte();
+                if (format >= FORMATS.length) {
+                    throw new IOException(String.format("Pattern index %s contains an invalid format (%d)", this.indexFile, format));
+                }
+                String name = readString(input);
+                LifeLikeRule rule = new LifeLikeRule(input.readUnsignedShort(), input.readUnsignedShort());
+                int width = input.readInt();
+                int height = input.readInt();
+                String comment = readString(input);
+                this.entries.put(path, new PatternMetadata(path, lastModified, size, FORMATS[format], name, rule, width, height, comment));
+            }
+            // Version 1 does not keep the files which could not be indexed
+            int skippedCount = version > 1 ? input.readInt() : 0;
+            for (int index = 0; index < skippedCount; index++) {
+                String path = readString(input);
+                this.skipped.put(path, new Candidate(this.directory.resolve(path), path, input.readLong(), input.readLong()));
+            }
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Pattern index %s contains an invalid rule", this.indexFile), e);
+        }
+        this.buildLookups();
+    }
+
+    /**
+     * Write the index file. The index is written to a temporary file first, which then replaces the index file.
+     *
+     * @throws IOException
+     *             If the index file cannot be written.
+     */
+    private void write() throws IOException {
+        Path parent = this.indexFile.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(parent, this.indexFile.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temporary))))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(this.entries.size());
+                for (PatternMetadata entry : this.entries.values()) {
+                    writeString(output, entry.getPath());
+                    output.writeLong(entry.getLastModified());
+                    output.writeLong(entry.getSize());
+                    output.writeByte(Arrays.asList(FORMATS).indexOf(entry.getFormat()));
+                    writeString(output, entry.getName());
+                    output.writeShort(entry.getRule().getBirthMask());
+                    output.writeShort(entry.getRule().getSurvivalMask());
+                    output.writeInt(entry.getWidth());
+                    output.writeInt(entry.getHeight());
+                    writeString(output, entry.getComment());
+                }
+                output.writeInt(this.skipped.size());
+                for (Candidate skippedFile : this.skipped.values()) {
+                    writeString(output, skippedFile.path);
+                    output.writeLong(skippedFile.lastModified);
+                    output.writeLong(skippedFile.size);
+                }
+            }
+            Files.move(temporary, this.indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param input
+     *            The input.
+     * @return The string, may be <code>null</code>.
+     * @throws IOException
+     *             If the input cannot be read.
+     */
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a string as its length and its UTF-8 bytes. Unlike {@link DataOutputStream#writeUTF(String)}, strings of
+     * any length and <code>null</code> can be written.
+     *
+     * @param output
+     *            The output.
+     * @param value
+     *            The string, may be <code>null</code>.
+     * @throws IOException
+     *             If the output cannot be written.
+     */
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Check if a file is indexed, by its extension.
+     *
+     * @param file
+     *            The file.
+     * @return <code>true</code> for RLE and Life files.
+     */
+    private static boolean isPatternFile(Path file) {
+        return isRLEFile(file) || file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".lif");
+    }
+
+    /**
+     * Check if a file is an RLE file, by its extension.
+     *
+     * @param file
+     *            The file.
+     * @return <code>true</code> for RLE files.
+     */
+    private static boolean isRLEFile(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".rle");
+    }
+
+    /**
+     * A file found in the directory.
+     *
+     * @author D043987
+     *
+     */
+    private static class Candidate {
+
+        /**
+         * The file.
+         */
+        private final Path   file;
+
+        /**
+         * Path relative to the directory.
+         */
+        private final String path;
+
+        /**
+         * Modification time of the file.
+         */
+        private final long   lastModified;
+
+        /**
+         * Size of the file.
+         */
+        private final long   size;
+
+        /**
+         * Create a candidate.
+         *
+         * @param file
+         *            The file.
+         * @param path
+         *            Path relative to the directory.
+         * @param lastModified
+         *            Modification time of the file.
+         * @param size
+         *            Size of the file.
+         */
+        Candidate(Path file, String path, long lastModified, long size) {
+            this.file = file;
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        /**
+         * Read the metadata of the file.
+         *
+         * @return The metadata, <code>null</code> if the file cannot be read or is not valid.
+         */
+        PatternMetadata read() {
+            try {
+                if (isRLEFile(this.file)) {
+                    RLEFileLoader loader = new RLEFileLoader(this.file);
+                    return new PatternMetadata(this.path, this.lastModified, this.size, StandardPatternFormat.RLE, loader.getPatternName(),
+                            LifeLikeRule.of(loader.getGameRule().get()), loader.getWidth(), loader.getHeight(), loader.getComment());
+                }
+                if (this.isLife106()) {
+                    Life106Loader loader = new Life106Loader(this.file);
+                    return new PatternMetadata(this.path, this.lastModified, this.size, StandardPatternFormat.LIFE_106, null,
+                            LifeLikeRule.of(loader.getGameRule().orElse(GameRule.CONWAY)), loader.getWidth(), loader.getHeight(), "");
+                }
+                Life105Loader loader = new Life105Loader(this.file, false);
+                return new PatternMetadata(this.path, this.lastModified, this.size, StandardPatternFormat.LIFE_105, null, LifeLikeRule.of(loader.getGameRule().get()),
+                        loader.getWidth(), loader.getHeight(), loader.getComment());
+            }
+            catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Check if a Life file has version 1.06, by its first {@value LoaderRegistry#SNIFF_SIZE} bytes.
+         *
+         * @return <code>true</code> if the file is recognized as Life 1.06.
+         * @throws IOException
+         *             If the file cannot be read.
+         */
+        private boolean isLife106() throws IOException {
+            ByteBuffer head = ByteBuffer.allocate(LoaderRegistry.SNIFF_SIZE);
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+                while (head.hasRemaining() && channel.read(head) >= 0) {
+                    // Fill the buffer unless the file is shorter
+                }
+            }
+            head.flip();
+            return StandardPatternFormat.LIFE_106.matches(head);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+
+import de.martindreier.gameoflife.game.io.CellSink;
+import de.martindreier.gameoflife.game.io.GridLoader;
+
+/**
+ * A pattern file format which can be recognized by the {@link LoaderRegistry}.
+ *
+ * @author D043987
+ *
+ */
+public interface PatternFormat {
+
+    /**
+     * Get the name of the format.
+     *
+     * @return Format name.
+     */
+    public String getName();
+
+    /**
+     * Check if a file has this format.
+     *
+     * @param head
+     *            The first bytes of the file, from position 0 to the limit of the buffer. The buffer may be shorter
+     *            than the file.
+     * @return <code>true</code> if the file has this format.
+     */
+    public boolean matches(ByteBuffer head);
+
+    /**
+     * Create a loader for a file of this format.
+     *
+     * @param file
+     *            The file.
+     * @param channel
+     *            Open channel of the file, positioned at its start. The loader must not close the channel and must not
+     *            use it after the method returns.
+     * @return The loader.
+     * @throws IOException
+     *             Error reading the file, or the file is not valid.
+     */
+    public GridLoader open(Path file, FileChannel channel) throws IOException;
+
+    /**
+     * Create a loader for a stream of this format, e.g. a decompressed archive. The default implementation rejects
+     * streams.
+     *
+     * @param name
+     *            Name of the stream for error messages.
+     * @param channel
+     *            Channel of the stream, positioned at its start. The loader must not close the channel and must not
+     *            use it after the method returns.
+     * @return The loader.
+     * @throws IOException
+     *             Error reading the stream, or the stream is not valid.
+     */
+    public default GridLoader open(String name, ReadableByteChannel channel) throws IOException {
+        throw new IOException(String.format("%s patterns can only be loaded from files (%s)", this.getName(), name));
+    }
+
+    /**
+     * Create a loader for a compressed file of this format. Loaders which decode their pattern lazily can open and
+     * decompress the file again instead of keeping the decompressed pattern in memory. The default implementation
+     * reads the decompressed data like a stream, with {@link #open(String, ReadableByteChannel)}.
+     *
+     * @param file
+     *            The compressed file.
+     * @param compression
+     *            Compression of the file.
+     * @param channel
+     *            Channel of the decompressed data, positioned at its start. The loader must not close the channel and
+     *            must not use it after the method returns.
+     * @return The loader.
+     * @throws IOException
+     *             Error reading the file, or the file is not valid.
+     */
+    public default GridLoader open(Path file, Compression compression, ReadableByteChannel channel) throws IOException {
+        return this.open(file.toString(), channel);
+    }
+
+    /**
+     * Load a stream of this format into a sink once. Loaders which decode their pattern lazily can decode it directly
+     * from the stream instead of keeping it in memory. The default implementation opens the stream with
+     * {@link #open(String, ReadableByteChannel)} and loads the loader into the sink.
+     *
+     * @param name
+     *            Name of the stream for error messages.
+     * @param channel
+     *            Channel of the stream, positioned at its start. The loader must not close the channel and must not
+     *            use it after the method returns.
+     * @param sink
+     *            Receives the alive cells.
+     * @return The loader, which has pushed the pattern into the sink. It may not be able to load the pattern again.
+     * @throws IOException
+     *             Error reading the stream, or the stream is not valid.
+     */
+    public default GridLoader load(String name, ReadableByteChannel channel, CellSink sink) throws IOException {
+        GridLoader loader = this.open(name, channel);
+        loader.load(sink);
+        return loader;
+    }
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+
+/**
+ * Metadata of a pattern file in a {@link PatternCatalog}, read from the header of the file without decoding the
+ * pattern.
+ *
+ * @author D043987
+ *
+ */
+public final class PatternMetadata {
+
+    /**
+     * Path of the file relative to the catalog directory, with <code>/</code> as separator.
+     */
+    private final String                path;
+
+    /**
+     * Modification time of the file when it was read, in milliseconds since the epoch.
+     */
+    private final long                  lastModified;
+
+    /**
+     * Size of the file when it was read, in bytes.
+     */
+    private final long                  size;
+
+    /**
+     * Format of the file.
+     */
+    private final StandardPatternFormat format;
+
+    /**
+     * Name of the pattern, <code>null</code> if the file does not name it.
+     */
+    private final String                name;
+
+    /**
+     * Rule of the pattern.
+     */
+    private final LifeLikeRule          rule;
+
+    /**
+     * Width of the pattern.
+     */
+    private final int                   width;
+
+    /**
+     * Height of the pattern.
+     */
+    private final int                   height;
+
+    /**
+     * Comments of the file.
+     */
+    private final String                comment;
+
+    /**
+     * Create the metadata of a file.
+     *
+     * @param path
+     *            Path of the file relative to the catalog directory, with <code>/</code> as separator.
+     * @param lastModified
+     *            Modification time of the file, in milliseconds since the epoch.
+     * @param size
+     *            Size of the file in bytes.
+     * @param format
+     *            Format of the file.
+     * @param name
+     *            Name of the pattern, <code>null</code> if the file does not name it.
+     * @param rule
+     *            Rule of the pattern.
+     * @param width
+     *            Width of the pattern.
+     * @param height
+     *            Height of the pattern.
+     * @param comment
+     *            Comments of the file.
+     */
+    PatternMetadata(String path, long lastModified, long size, StandardPatternFormat format, String name, LifeLikeRule rule, int width, int height, String comment) {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.size = size;
+        this.format = format;
+        this.name = name;
+        this.rule = rule;
+        this.width = width;
+        this.height = height;
+        this.comment = comment;
+    }
+
+    /**
+     * Get the path of the file.
+     *
+     * @return Path relative to the catalog directory, with <code>/</code> as separator.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Get the modification time of the file when it was read.
+     *
+     * @return Milliseconds since the epoch.
+     */
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Get the size of the file when it was read.
+     *
+     * @return Size in bytes.
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Get the format of the file.
+     *
+     * @return The format.
+     */
+    public StandardPatternFormat getFormat() {
+        return this.format;
+    }
+
+    /**
+     * Get the name of the pattern, from the <code>#N</code> line of RLE files.
+     *
+     * @return The name, <code>null</code> if the file does not name the pattern.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Get the rule of the pattern. Files without a rule use Conway's Game of Life.
+     *
+     * @return The rule.
+     */
+    public LifeLikeRule getRule() {
+        return this.rule;
+    }
+
+    /**
+     * Get the width of the pattern, as declared in the header of RLE files or measured from the blocks of Life 1.05
+     * files.
+     *
+     * @return Width in cells.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Get the height of the pattern, as declared in the header of RLE files or measured from the blocks of Life 1.05
+     * files.
+     *
+     * @return Height in cells.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Get the comments of the file.
+     *
+     * @return Comments. May be an empty {@link String}, but never <code>null</code>.
+     */
+    public String getComment() {
+        return this.comment;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s [%s, %s, %dx%d]", this.path, this.name, this.rule, this.width, this.height);
+    }
+}
@@ -12,16 +12,28 @@
  *******************************************************************************/
 package de.martindreier.gameoflife.game.io.input;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
-import de.martindreier.gameoflife.game.CellState;
 import de.martindreier.gameoflife.game.GameRule;
 import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.io.CellSink;
 import de.martindreier.gameoflife.game.io.GridLoader;
+import de.martindreier.gameoflife.game.jfr.FlightRecorder;
 
 /**
  * A loader for grids stored in a Run-Length Encoded (RLE) file.
@@ -31,6 +43,26 @@ import de.martindreier.gameoflife.game.io.GridLoader;
  */
 public class RLEFileLoader implements GridLoader {
 
+    /**
+     * Format name in flight recorder events.
+     */
+    private static final String FORMAT_NAME                     = "RLE";
+
+    /**
+     * Size of the buffer for reading the header, in bytes.
+     */
+    private static final int    HEADER_BUFFER_SIZE              = 8192;
+
+    /**
+     * Largest pattern which is read into memory when the loader reads from an open file.
+     */
+    static final int            IN_MEMORY_PATTERN_SIZE          = 1 << 20;
+
+    /**
+     * Largest buffer which is allocated for a pattern kept in memory.
+     */
+    static final int            MAX_BUFFER_SIZE                 = Integer.MAX_VALUE - 8;
+
     /**
      * Hash line type: comment.
      */
@@ -59,7 +91,7 @@ public class RLEFileLoader implements GridLoader {
     /**
      * Header line has been parsed.
      */
-    private boolean headerParsed = false;
+    private boolean             headerParsed                    = false;
 
     /**
      * Parser has reached the end of the pattern.
@@ -69,27 +101,27 @@ public class RLEFileLoader implements GridLoader {
     /**
      * Holder for comment lines.
      */
-    private StringBuilder comments     = new StringBuilder();
+    private StringBuilder       comments                        = new StringBuilder();
 
     /**
-     * Holder for pattern.
+     * Holder for the pattern, if it is passed line by line instead of being read from a file.
      */
-    private StringBuilder pattern      = new StringBuilder();
+    private StringBuilder       pattern                         = new StringBuilder();
 
     /**
      * Grid width (X dimension).
      */
-    private int           width;
+    private int                 width;
 
     /**
      * Grid height (Y dimension).
      */
-    private int           height;
+    private int                 height;
 
     /**
      * Game rule set in the pattern.
      */
-    private GameRule      rule;
+    private GameRule            rule;
 
     /**
      * Name of the pattern;
@@ -97,25 +129,391 @@ public class RLEFileLoader implements GridLoader {
     private String              patternName;
 
     /**
-     * Constructor for testing only. Creates class instance for method access but does not perform file loading.
+     * The data file, <code>null</code> if the pattern is passed line by line.
+     */
+    private Path                file;
+
+    /**
+     * Compression of the data file, <code>null</code> if the file is not compressed.
+     */
+    private Compression         compression;
+
+    /**
+     * Byte offset of the pattern in the data file. For a compressed file, the offset in the decompressed data.
+     */
+    private long                patternOffset;
+
+    /**
+     * Pattern read into memory when the file was opened, <code>null</code> if the pattern is decoded from the file.
+     */
+    private ByteBuffer          patternBytes;
+
+    /**
+     * Comments after the end of the pattern have been parsed.
+     */
+    private boolean             trailerParsed;
+
+    /**
+     * Pool to decode the pattern in, <code>null</code> to decode in the calling thread.
+     */
+    private ForkJoinPool        pool;
+
+    /**
+     * Size of the mapped windows when decoding in parallel.
+     */
+    private int                 windowSize                      = RLEParallelDecoder.MAP_WINDOW_SIZE;
+
+    /**
+     * Minimum size of a chunk when decoding in parallel.
+     */
+    private int                 chunkSize                       = RLEParallelDecoder.MIN_CHUNK_SIZE;
+
+    /**
+     * Name of the stream the pattern was decoded from when the loader was created, <code>null</code> if the pattern can
+     * be loaded.
+     */
+    private String              streamName;
+
+    /**
+     * Creates a loader without a data file, for testing and for incremental loading. Lines are passed to the loader by
+     * the caller.
      */
     RLEFileLoader() {
         // Empty constructor
     }
 
     /**
-     * Create a new file loader with a specified file.
+     * Create a new file loader with a specified file. Only the comments and the header are read, the pattern is decoded
+     * from the file by {@link #setInitialState(Grid)} or {@link #load(CellSink)}. The file is opened again for that, so
+     * it must not be deleted or changed in the meantime; if it cannot be read any more, loading fails with an
+     * {@link UncheckedIOException}.
      *
+     * @param rleFile
+     *            The data file.
      * @throws IOException
      */
     public RLEFileLoader(Path rleFile) throws IOException {
         if (!Files.isReadable(rleFile)) {
             throw new IOException(String.format("Data file %s does not exist or is not readable", rleFile.toString()));
         }
-        Files.lines(rleFile).forEach(this::parseLine);
+        this.file = rleFile;
+        try (FileChannel channel = FileChannel.open(rleFile, StandardOpenOption.READ)) {
+            this.readHeader(rleFile.toString(), channel, ByteBuffer.allocate(HEADER_BUFFER_SIZE));
+        }
+    }
+
+    /**
+     * Create a new file loader which reads from an open file. The channel is not closed. Patterns of up to
+     * {@value #IN_MEMORY_PATTERN_SIZE} bytes are read into memory right away, so the file is not opened again to decode
+     * them; larger patterns are decoded from the file like for {@link #RLEFileLoader(Path)}, which opens the file again
+     * when the pattern is loaded.
+     *
+     * @param rleFile
+     *            The data file.
+     * @param channel
+     *            Channel of the file, positioned at its start.
+     * @throws IOException
+     */
+    RLEFileLoader(Path rleFile, FileChannel channel) throws IOException {
+        this.file = rleFile;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BUFFER_SIZE);
+        this.readHeader(rleFile.toString(), channel, buffer);
+        if (channel.size() - this.patternOffset <= IN_MEMORY_PATTERN_SIZE) {
+            this.patternBytes = readRemaining(rleFile.toString(), channel, buffer);
+        }
+    }
+
+    /**
+     * Create a new loader for a compressed file. The channel is not closed. The header is parsed from the decompressed
+     * data right away; {@link #load(CellSink)} opens and decompresses the file again to decode the pattern, so the
+     * decompressed pattern is never kept in memory. The file must not be deleted or changed in the meantime; if it
+     * cannot be read any more, loading fails with an {@link UncheckedIOException}.
+     *
+     * @param rleFile
+     *            The compressed data file.
+     * @param compression
+     *            Compression of the file.
+     * @param channel
+     *            Channel of the decompressed data, positioned at its start.
+     * @throws IOException
+     */
+    RLEFileLoader(Path rleFile, Compression compression, ReadableByteChannel channel) throws IOException {
+        this.file = rleFile;
+        this.compression = compression;
+        this.readHeader(rleFile.toString(), channel, ByteBuffer.allocate(HEADER_BUFFER_SIZE));
+    }
+
+    /**
+     * Create a new loader which reads from a channel, e.g. a decompressing stream. The channel is not closed. The
+     * header is parsed right away. A stream can only be read once, so the whole pattern is read into memory and
+     * decoded from there by {@link #load(CellSink)}; compressed files should be opened with
+     * {@link #RLEFileLoader(Path, Compression, ReadableByteChannel)} instead, which decompresses them again, and
+     * streams which are loaded only once with {@link #RLEFileLoader(String, ReadableByteChannel, CellSink)}.
+     *
+     * @param name
+     *            Name of the pattern source for error messages.
+     * @param channel
+     *            The channel, positioned at the start of the pattern file.
+     * @throws IOException
+     */
+    RLEFileLoader(String name, ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BUFFER_SIZE);
+        this.readHeader(name, channel, buffer);
+        this.patternBytes = readRemaining(name, channel, buffer);
+    }
+
+    /**
+     * Create a new loader which reads from a channel and decodes the pattern right away into a sink, directly from the
+     * channel after the header. The channel is read to its end, but not closed. The pattern is never kept in memory,
+     * so it cannot be loaded again: {@link #load(CellSink)} and {@link #setInitialState(Grid)} fail with an
+     * {@link IllegalStateException}.
+     *
+     * @param name
+     *            Name of the pattern source for error messages.
+     * @param channel
+     *            The channel, positioned at the start of the pattern file.
+     * @param sink
+     *            Receives the alive cells.
+     * @throws IOException
+     */
+    RLEFileLoader(String name, ReadableByteChannel channel, CellSink sink) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BUFFER_SIZE);
+        this.readHeader(name, channel, buffer);
+        FlightRecorder.Parse event = FlightRecorder.startParse(FORMAT_NAME, "decode");
+        RLEPatternDecoder decoder = new RLEPatternDecoder(sink, this.width, this.height, this::parseHashLine);
+        decoder.decode(buffer);
+        decoder.decode(channel);
+        this.appendTrailer(decoder.getTrailer());
+        this.trailerParsed = true;
+        this.streamName = name;
+        if (event != null) {
+            event.finish(decoder.getBytes(), decoder.getRows(), this.width, this.height);
+        }
+    }
+
+    /**
+     * Read the rest of a channel.
+     *
+     * @param name
+     *            Name of the pattern source for error messages.
+     * @param channel
+     *            The channel.
+     * @param buffer
+     *            Bytes which were already read from the channel, from the position to the limit of the buffer.
+     * @return Buffer with all remaining bytes, from 0 to the limit.
+     * @throws IOException
+     *             Error reading the channel, or the remaining bytes do not fit into a buffer.
+     */
+    private static ByteBuffer readRemaining(String name, ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        ByteBuffer content = buffer.compact();
+        do {
+            content = grow(content, 1, MAX_BUFFER_SIZE, name);
+        }
+        while (channel.read(content) >= 0);
+        content.flip();
+        return content;
+    }
+
+    /**
+     * Make room for more bytes in a buffer. A full buffer is replaced by one of at least twice its capacity, but not
+     * larger than the limit.
+     *
+     * @param buffer
+     *            The buffer, in write mode.
+     * @param needed
+     *            Number of bytes which must fit into the buffer after its position.
+     * @param limit
+     *            Largest capacity of the buffer.
+     * @param name
+     *            Name of the pattern source for error messages.
+     * @return The buffer, or a larger buffer in write mode with the same content.
+     * @throws IOException
+     *             If the bytes do not fit into a buffer of the largest capacity.
+     */
+    static ByteBuffer grow(ByteBuffer buffer, int needed, int limit, String name) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        long required = (long) buffer.position() + needed;
+        if (required > limit) {
+            throw new IOException(String.format("Pattern %s is larger than %d bytes and cannot be kept in memory, load it into a sink from the stream instead", name,
+                    limit));
+        }
+        int capacity = (int) Math.max(required, Math.min((long) buffer.capacity() * 2, limit));
+        buffer.flip();
+        return ByteBuffer.allocate(capacity).put(buffer);
+    }
+
+    /**
+     * Create a new file loader with a specified file, which decodes the pattern in parallel. The pattern is split into
+     * chunks of whole rows, which are decoded as tasks of the given pool directly into their rows of the grid. Sinks
+     * passed to {@link #load(CellSink)} must allow concurrent writes to different rows.
+     *
+     * @param rleFile
+     *            The data file.
+     * @param pool
+     *            The pool to decode the pattern in.
+     * @throws IOException
+     */
+    public RLEFileLoader(Path rleFile, ForkJoinPool pool) throws IOException {
+        this(rleFile);
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Create a new file loader which decodes the pattern in parallel, with a given window and chunk size.
+     *
+     * @param rleFile
+     *            The data file.
+     * @param pool
+     *            The pool to decode the pattern in.
+     * @param windowSize
+     *            Size of the mapped windows.
+     * @param chunkSize
+     *            Minimum size of a chunk which is decoded by a single task.
+     * @throws IOException
+     */
+    RLEFileLoader(Path rleFile, ForkJoinPool pool, int windowSize, int chunkSize) throws IOException {
+        this(rleFile, pool);
+        this.windowSize = windowSize;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Read the comments and the header line of a file.
+     *
+     * @param name
+     *            Name of the data file.
+     * @param channel
+     *            Channel of the data file.
+     * @param buffer
+     *            Buffer to read with. Afterwards, it contains the bytes after the header line from its position to its
+     *            limit.
+     * @throws IOException
+     */
+    private void readHeader(String name, ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        FlightRecorder.Parse event = FlightRecorder.startParse(FORMAT_NAME, "header");
+        long lineCount = this.readHeader(channel, buffer);
         if (!this.headerParsed) {
-            throw new IOException(String.format("Data file %s does not contain a header line"));
+            throw new IOException(String.format("Data file %s does not contain a header line", name));
+        }
+        if (event != null) {
+            event.finish(this.patternOffset, lineCount, this.width, this.height);
+        }
+    }
+
+    /**
+     * Read the lines up to and including the header line. Sets the offset at which the pattern starts.
+     *
+     * @param channel
+     *            Channel of the data file.
+     * @param buffer
+     *            Buffer to read with. Afterwards, it contains the bytes after the header line from its position to its
+     *            limit.
+     * @return Number of lines read.
+     * @throws IOException
+     */
+    private long readHeader(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long position = 0;
+        long lineCount = 0;
+        buffer.clear();
+        buffer.flip();
+        while (!this.headerParsed) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    break;
+                }
+                buffer.flip();
+            }
+            while (!this.headerParsed && buffer.hasRemaining()) {
+                byte value = buffer.get();
+                position++;
+                if (value == '\n') {
+                    lineCount++;
+                    this.parseLine(toLine(line));
+                    line.reset();
+                } else {
+                    line.write(value);
+                }
+            }
         }
+        if (!this.headerParsed && line.size() > 0) {
+            // Last line without line break
+            lineCount++;
+            this.parseLine(toLine(line));
+        }
+        this.patternOffset = position;
+        return lineCount;
+    }
+
+    /**
+     * Parse the complete lines at the start of a buffer up to and including the header line, for files which are read
+     * block by block. A line without a line break is left in the buffer for the next call, unless the buffer contains
+     * the end of the file.
+     *
+     * @param name
+     *            Name of the data file.
+     * @param buffer
+     *            Next bytes of the file, from the position to the limit. Afterwards, the buffer is positioned after the
+     *            last parsed line.
+     * @param endOfInput
+     *            <code>true</code> if the buffer contains the end of the file.
+     * @return <code>true</code> if the header line has been parsed.
+     * @throws IOException
+     *             If the file ends before the header line.
+     */
+    boolean parseHeaderLines(String name, ByteBuffer buffer, boolean endOfInput) throws IOException {
+        while (!this.headerParsed) {
+            int end = buffer.position();
+            while (end < buffer.limit() && buffer.get(end) != '\n') {
+                end++;
+            }
+            if (end == buffer.limit()) {
+                if (!endOfInput) {
+                    return false;
+                }
+                if (end == buffer.position()) {
+                    throw new IOException(String.format("Data file %s does not contain a header line", name));
+                }
+            }
+            byte[] line = new byte[end - buffer.position()];
+            buffer.get(line);
+            if (buffer.hasRemaining()) {
+                // Skip the line break
+                buffer.get();
+            }
+            this.parseLine(toLine(line));
+        }
+        return true;
+    }
+
+    /**
+     * Convert the bytes of a line to a string, without a trailing carriage return.
+     *
+     * @param line
+     *            Line content.
+     * @return The line.
+     */
+    private static String toLine(ByteArrayOutputStream line) {
+        return toLine(line.toByteArray());
+    }
+
+    /**
+     * Convert the bytes of a line to a string, without a trailing carriage return.
+     *
+     * @param line
+     *            Line content.
+     * @return The line.
+     */
+    private static String toLine(byte[] line) {
+        String content = new String(line, StandardCharsets.UTF_8);
+        return content.endsWith("\r") ? content.substring(0, content.length() - 1) : content;
     }
 
     /**
@@ -279,67 +677,121 @@ public class RLEFileLoader implements GridLoader {
      */
     @Override
     public void setInitialState(Grid grid) {
-        String[] lines = this.expandPattern(this.pattern.toString()).split("\\n");
-        // remove any remaining spaces
-        for (int index = 0; index < lines.length; index++) {
-            lines[index] = lines[index].trim();
-        }
-        for (int row = 0; row < this.height; row++) {
-            if (row >= lines.length) {
-                // Unspecified rows remain dead
-                continue;
+        this.load(grid);
+    }
+
+    /**
+     * Decode the pattern and push each run of alive cells into the sink.
+     *
+     * @see de.martindreier.gameoflife.game.io.GridLoader#load(de.martindreier.gameoflife.game.io.CellSink)
+     */
+    @Override
+    public void load(CellSink sink) {
+        if (this.streamName != null) {
+            throw new IllegalStateException(String.format("Pattern of %s was decoded from a stream and cannot be loaded again", this.streamName));
+        }
+        FlightRecorder.Parse event = FlightRecorder.startParse(FORMAT_NAME, "decode");
+        Consumer<String> hashLines = this.trailerParsed ? line -> {
+            // Already parsed by a previous call
+        } : this::parseHashLine;
+        if (this.file == null && this.patternBytes == null) {
+            // Pattern was passed line by line
+            RLEPatternDecoder decoder = new RLEPatternDecoder(sink, this.width, this.height, hashLines);
+            decoder.decode(ByteBuffer.wrap(this.pattern.toString().getBytes(StandardCharsets.UTF_8)));
+            decoder.finish();
+            this.trailerParsed = true;
+            if (event != null) {
+                event.finish(decoder.getBytes(), decoder.getRows(), this.width, this.height);
             }
-            for (int column = 0; column < this.width; column++) {
-                if (column >= lines[row].trim().length()) {
-                    // Unspecified cells at the end of rows remain dead
-                    continue;
-                }
-                char cell = lines[row].charAt(column);
-                if (cell == 'b') {
-                    grid.set(column, row, CellState.DEAD);
-                } else if (cell == 'o') {
-                    grid.set(column, row, CellState.ALIVE);
+            return;
+        }
+        String trailer;
+        long bytes;
+        int rows;
+        if (this.patternBytes != null) {
+            // Pattern was read when the file was opened
+            RLEPatternDecoder decoder = new RLEPatternDecoder(sink, this.width, this.height, hashLines);
+            decoder.decode(this.patternBytes.duplicate());
+            decoder.finish();
+            trailer = decoder.getTrailer();
+            bytes = decoder.getBytes();
+            rows = decoder.getRows();
+        } else if (this.compression != null) {
+            // Compressed files are decompressed again instead of keeping the pattern in memory
+            try (InputStream decompressed = this.compression.decompress(Files.newInputStream(this.file))) {
+                skip(decompressed, this.patternOffset);
+                RLEPatternDecoder decoder = new RLEPatternDecoder(sink, this.width, this.height, hashLines);
+                decoder.decode(Channels.newChannel(decompressed));
+                trailer = decoder.getTrailer();
+                bytes = decoder.getBytes();
+                rows = decoder.getRows();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(String.format("Pattern could not be read from %s", this.file), e);
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+                if (this.pool == null) {
+                    RLEPatternDecoder decoder = new RLEPatternDecoder(sink, this.width, this.height, hashLines);
+                    channel.position(this.patternOffset);
+                    decoder.decode(channel);
+                    trailer = decoder.getTrailer();
+                    bytes = decoder.getBytes();
+                    rows = decoder.getRows();
                 } else {
-                    throw new IllegalArgumentException(String.format("Illegal character %s in pattern", cell));
+                    RLEParallelDecoder decoder = new RLEParallelDecoder(sink, this.width, this.height, hashLines, this.pool, this.windowSize, this.chunkSize);
+                    decoder.decode(channel, this.patternOffset);
+                    trailer = decoder.getTrailer();
+                    bytes = decoder.getBytes();
+                    rows = decoder.getRows();
                 }
             }
+            catch (IOException e) {
+                throw new UncheckedIOException(String.format("Pattern could not be read from %s", this.file), e);
+            }
+        }
+        if (!this.trailerParsed) {
+            this.appendTrailer(trailer);
+        }
+        this.trailerParsed = true;
+        if (event != null) {
+            event.finish(bytes, rows, this.width, this.height);
         }
     }
 
     /**
-     * @param string
-     * @return
-     */
-    protected String expandPattern(String pattern) {
-        StringBuffer expandedPattern = new StringBuffer();
-        for (int index = 0; index < pattern.length(); index++) {
-            char currentChar = pattern.charAt(index);
-            if (Character.isWhitespace(currentChar)) {
-                // Skip whitespaces
-                continue;
-            } else if (Character.isDigit(currentChar)) {
-                // Combination number + character
-                // This also accepts non-arabic numbers, but we can live with that for now
-                int count = Integer.parseInt(Character.toString(currentChar));
-                if (index == pattern.length() - 1) {
-                    // Last character cannot be a number
-                    throw new IllegalArgumentException(String.format("Invalid pattern: %s", pattern));
+     * Append the text after the end of the pattern to the comments.
+     *
+     * @param trailer
+     *            Text after the exclamation mark.
+     */
+    private void appendTrailer(String trailer) {
+        for (String line : trailer.split("\n")) {
+            this.appendComment(null, line.trim());
+        }
+    }
+
+    /**
+     * Skip bytes of a stream.
+     *
+     * @param input
+     *            The stream.
+     * @param count
+     *            Number of bytes to skip.
+     * @throws IOException
+     *             Error reading the stream, or the stream ends before.
+     */
+    private static void skip(InputStream input, long count) throws IOException {
+        for (long remaining = count; remaining > 0;) {
+            long skipped = input.skip(remaining);
+            if (skipped <= 0) {
+                if (input.read() < 0) {
+                    throw new EOFException("Stream ends before the pattern");
                 }
-                char nextChar = pattern.charAt(++index);
-                char[] filler = new char[count];
-                Arrays.fill(filler, nextChar);
-                expandedPattern.append(filler);
-            } else if (currentChar == '$') {
-                // End of line
-                expandedPattern.append("\n");
-            } else if (currentChar == '!') {
-                // End of pattern
-                break;
-            } else {
-                expandedPattern.append(currentChar);
+                skipped = 1;
             }
+            remaining -= skipped;
         }
-        return expandedPattern.toString();
     }
 
     /**
@@ -383,7 +835,9 @@ public class RLEFileLoader implements GridLoader {
     }
 
     /**
-     * Get the comments from the file.
+     * Get the comments from the file. The comments before the pattern are read with the header. Comments after the end
+     * of the pattern (<code>!</code>) are only read while the pattern is decoded, so they are missing until the pattern
+     * has been loaded by {@link #load(CellSink)} or {@link #setInitialState(Grid)}.
      *
      * @return Comments. May be an empty {@link String}, but never <code>null</code>.
      */
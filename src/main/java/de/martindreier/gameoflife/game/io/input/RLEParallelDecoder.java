@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import de.martindreier.gameoflife.game.io.CellSink;
+
+/**
+ * Parallel decoder for the pattern section of an RLE file. The file is memory-mapped in windows, and each window is
+ * split into chunks directly after the end of a row (<code>$</code>). The decoding is done in two parallel passes:
+ * <ol>
+ * <li>The rows of each chunk are counted, which gives the first row of the following chunks.</li>
+ * <li>Each chunk is decoded starting at its first row directly into the sink.</li>
+ * </ol>
+ * The chunks cover disjoint rows, so the tasks never write to the same row of the sink. Lines starting with a hash are
+ * passed to the consumer in the order of the file. Everything after the end of the pattern is decoded by a single
+ * task, as in {@link RLEPatternDecoder}.
+ *
+ * @author D043987
+ *
+ */
+class RLEParallelDecoder {
+
+    /**
+     * Default size of the mapped windows of the file, in bytes.
+     */
+    static final int               MAP_WINDOW_SIZE = 1 << 28;
+
+    /**
+     * Default minimum size of a chunk which is decoded by a single task, in bytes.
+     */
+    static final int               MIN_CHUNK_SIZE  = 1 << 20;
+
+    /**
+     * Receives the alive cells.
+     */
+    private final CellSink         sink;
+
+    /**
+     * Pattern width.
+     */
+    private final int              width;
+
+    /**
+     * Pattern height.
+     */
+    private final int              height;
+
+    /**
+     * Receives lines starting with a hash which are found inside the pattern.
+     */
+    private final Consumer<String> hashLineConsumer;
+
+    /**
+     * Pool to run the tasks in.
+     */
+    private final ForkJoinPool     pool;
+
+    /**
+     * Size of the mapped windows.
+     */
+    private final int              windowSize;
+
+    /**
+     * Minimum size of a chunk.
+     */
+    private final int              chunkSize;
+
+    /**
+     * Decoder of the last chunk decoded so far.
+     */
+    private RLEPatternDecoder      lastDecoder;
+
+    /**
+     * Number of bytes decoded.
+     */
+    private long                   bytes           = 0;
+
+    /**
+     * Create a new decoder.
+     *
+     * @param sink
+     *            Receives the alive cells. Must allow concurrent writes to different rows.
+     * @param width
+     *            Pattern width.
+     * @param height
+     *            Pattern height.
+     * @param hashLineConsumer
+     *            Receives lines starting with a hash which are found inside the pattern.
+     * @param pool
+     *            Pool to run the tasks in.
+     * @param windowSize
+     *            Size of the mapped windows.
+     * @param chunkSize
+     *            Minimum size of a chunk which is decoded by a single task.
+     */
+    RLEParallelDecoder(CellSink sink, int width, int height, Consumer<String> hashLineConsumer, ForkJoinPool pool, int windowSize, int chunkSize) {
+        this.sink = sink;
+        this.width = width;
+        this.height = height;
+        this.hashLineConsumer = hashLineConsumer;
+        this.pool = pool;
+        this.windowSize = windowSize;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Decode the pattern of a file.
+     *
+     * @param channel
+     *            Channel of the file.
+     * @param patternOffset
+     *            Position of the start of the pattern.
+     * @throws IOException
+     *             If the file cannot be read.
+     */
+    void decode(FileChannel channel, long patternOffset) throws IOException {
+        long size = channel.size();
+        long position = patternOffset;
+        while (position < size) {
+            int length = (int) Math.min(this.windowSize, size - position);
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            boolean first = position == patternOffset;
+            int end = length;
+            if (position + length < size) {
+                end = lastRowEnd(window, length, first);
+                if (end == 0) {
+                    // No end of row in the whole window, decode the rest in the calling thread
+                    this.lastDecoder = this.createDecoder(this.hashLineConsumer, first);
+                    channel.position(position);
+                    this.lastDecoder.decode(channel);
+                    this.bytes += size - position;
+                    return;
+                }
+            }
+            this.decodeWindow(window, end, first);
+            position += end;
+            this.bytes += end;
+            if (this.lastDecoder.isFinished() && position < size) {
+                // Only comments after the end of the pattern follow
+                channel.position(position);
+                this.lastDecoder.decode(channel);
+                this.bytes += size - position;
+                return;
+            }
+        }
+        if (this.lastDecoder == null) {
+            this.lastDecoder = this.createDecoder(this.hashLineConsumer, true);
+        }
+        this.lastDecoder.finish();
+    }
+
+    /**
+     * Create a decoder which continues after the last decoded chunk.
+     *
+     * @param consumer
+     *            Receives the hash lines.
+     * @param first
+     *            The decoder starts at the beginning of the pattern.
+     * @return The decoder.
+     */
+    private RLEPatternDecoder createDecoder(Consumer<String> consumer, boolean first) {
+        RLEPatternDecoder decoder = new RLEPatternDecoder(this.sink, this.width, this.height, consumer);
+        if (!first) {
+            decoder.startAt(this.lastDecoder.getRow());
+        }
+        return decoder;
+    }
+
+    /**
+     * Decode a window in parallel chunks.
+     *
+     * @param window
+     *            The mapped window.
+     * @param end
+     *            End of the part of the window to decode.
+     * @param first
+     *            The window starts at the beginning of the pattern.
+     */
+    private void decodeWindow(ByteBuffer window, int end, boolean first) {
+        List<Integer> boundaries = new ArrayList<>();
+        boundaries.add(0);
+        int position = this.chunkSize;
+        while (position < end) {
+            int boundary = nextRowEnd(window, boundaries.get(boundaries.size() - 1), position, end, first);
+            boundaries.add(boundary);
+            position = boundary + this.chunkSize;
+        }
+        if (boundaries.get(boundaries.size() - 1) < end) {
+            boundaries.add(end);
+        }
+        int chunkCount = boundaries.size() - 1;
+        int firstRow = first ? 0 : this.lastDecoder.getRow();
+
+        // First pass: count the rows of all chunks but the last one
+        RLEPatternDecoder[] counters = new RLEPatternDecoder[chunkCount - 1];
+        this.pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, chunkCount - 1).parallel().forEach(chunk -> {
+            RLEPatternDecoder counter = new RLEPatternDecoder(null, this.width, this.height, line -> {
+                // Hash lines are collected by the second pass
+            });
+            if (chunk > 0 || !first) {
+                counter.startAt(0);
+            }
+            counter.decode(slice(window, boundaries.get(chunk), boundaries.get(chunk + 1)));
+            counters[chunk] = counter;
+        })));
+        int[] firstRows = new int[chunkCount];
+        int lastChunk = chunkCount - 1;
+        firstRows[0] = firstRow;
+        for (int chunk = 1; chunk < chunkCount; chunk++) {
+            firstRows[chunk] = (int) Math.min((long) firstRows[chunk - 1] + counters[chunk - 1].getRow(), Integer.MAX_VALUE);
+            if (counters[chunk - 1].isFinished()) {
+                lastChunk = chunk - 1;
+                break;
+            }
+        }
+
+        // Second pass: decode the chunks up to the end of the pattern into their rows
+        int decodedChunks = lastChunk + 1;
+        RLEPatternDecoder[] decoders = new RLEPatternDecoder[decodedChunks];
+        List<List<String>> hashLines = new ArrayList<>();
+        for (int chunk = 0; chunk < decodedChunks; chunk++) {
+            hashLines.add(new ArrayList<>());
+        }
+        this.pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, decodedChunks).parallel().forEach(chunk -> {
+            RLEPatternDecoder decoder = new RLEPatternDecoder(this.sink, this.width, this.height, hashLines.get(chunk)::add);
+            if (chunk > 0 || !first) {
+                decoder.startAt(firstRows[chunk]);
+            }
+            decoder.decode(slice(window, boundaries.get(chunk), boundaries.get(chunk + 1)));
+            decoders[chunk] = decoder;
+        })));
+        this.lastDecoder = decoders[lastChunk];
+        if (lastChunk + 1 < chunkCount) {
+            // Rest of the window is after the end of the pattern
+            this.lastDecoder.decode(slice(window, boundaries.get(lastChunk + 1), end));
+        }
+        hashLines.forEach(lines -> lines.forEach(this.hashLineConsumer));
+    }
+
+    /**
+     * Create a view of a part of a buffer.
+     *
+     * @param buffer
+     *            The buffer.
+     * @param start
+     *            Start of the part.
+     * @param end
+     *            End of the part (exclusive).
+     * @return The view, with its own position and limit.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(end);
+        slice.position(start);
+        return slice;
+    }
+
+    /**
+     * Find the first end of a row at or after a position.
+     *
+     * @param buffer
+     *            The buffer.
+     * @param previous
+     *            The previous end of a row, or 0.
+     * @param position
+     *            Position to start the search at.
+     * @param end
+     *            End of the search.
+     * @param first
+     *            The buffer starts at the beginning of the pattern.
+     * @return Position after the <code>$</code>, or the end if there is none.
+     */
+    private static int nextRowEnd(ByteBuffer buffer, int previous, int position, int end, boolean first) {
+        for (int index = position; index < end; index++) {
+            if (buffer.get(index) == '$' && !inHashLine(buffer, previous, index, first)) {
+                return index + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Find the last end of a row before a position.
+     *
+     * @param buffer
+     *            The buffer.
+     * @param end
+     *            End of the search.
+     * @param first
+     *            The buffer starts at the beginning of the pattern.
+     * @return Position after the <code>$</code>, or 0 if there is none.
+     */
+    private static int lastRowEnd(ByteBuffer buffer, int end, boolean first) {
+        for (int index = end - 1; index >= 0; index--) {
+            if (buffer.get(index) == '$' && !inHashLine(buffer, 0, index, first)) {
+                return index + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Check if a position is in a line starting with a hash.
+     *
+     * @param buffer
+     *            The buffer.
+     * @param previous
+     *            Position after a known end of a row before the position, or 0. The search for the start of the line
+     *            stops there.
+     * @param position
+     *            The position.
+     * @param first
+     *            The buffer starts at the beginning of the pattern, i.e. at the start of a line.
+     * @return <code>true</code> if the line of the position starts with a hash.
+     */
+    private static boolean inHashLine(ByteBuffer buffer, int previous, int position, boolean first) {
+        int lineStart = position;
+        while (lineStart > previous && buffer.get(lineStart - 1) != '\n') {
+            lineStart--;
+        }
+        if (lineStart == previous && (previous > 0 || !first)) {
+            // Same line as the end of a row, or as the end of a row in the previous window
+            return false;
+        }
+        return buffer.get(lineStart) == '#';
+    }
+
+    /**
+     * Get the text after the end of the pattern.
+     *
+     * @return Text after the exclamation mark, empty if the pattern was not terminated.
+     */
+    String getTrailer() {
+        return this.lastDecoder.getTrailer();
+    }
+
+    /**
+     * Get the number of bytes decoded.
+     *
+     * @return Byte count.
+     */
+    long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Get the number of rows the pattern extends over.
+     *
+     * @return Row count.
+     */
+    int getRows() {
+        return this.lastDecoder.getRows();
+    }
+}
@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import de.martindreier.gameoflife.game.io.CellSink;
+
+/**
+ * Single pass decoder for the pattern section of an RLE file. The decoder reads the encoded pattern through a fixed
+ * size buffer and pushes each run of alive cells directly into a sink with {@link CellSink#setRun(int, int, int)}, so
+ * the pattern is never expanded in memory.
+ * <p>
+ * The size in the header is a hard limit for the cells: runs which extend beyond the pattern width are cut off at the
+ * width, and runs in rows at or beyond the pattern height are dropped. Neither is reported as an error, because the
+ * header is all a sink is sized by.
+ * </p>
+ * <p>
+ * Without a sink, the decoder only validates the pattern and counts its rows. This is used to find the first row of each
+ * chunk when a pattern is decoded in parallel chunks.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+class RLEPatternDecoder {
+
+    /**
+     * Size of the read buffer in bytes.
+     */
+    static final int                    BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives the alive cells, <code>null</code> if the runs are only counted.
+     */
+    private final CellSink              sink;
+
+    /**
+     * Pattern width.
+     */
+    private final int                   width;
+
+    /**
+     * Pattern height.
+     */
+    private final int                   height;
+
+    /**
+     * Receives lines starting with a hash which are found inside the pattern.
+     */
+    private final Consumer<String>      hashLineConsumer;
+
+    /**
+     * Content of the current hash line, or of the text after the end of the pattern.
+     */
+    private final ByteArrayOutputStream text        = new ByteArrayOutputStream();
+
+    /**
+     * Column of the next cell.
+     */
+    private int                         x           = 0;
+
+    /**
+     * Row of the next cell.
+     */
+    private int                         y           = 0;
+
+    /**
+     * Run count read so far, 0 if no count has been read.
+     */
+    private int                         count       = 0;
+
+    /**
+     * The next byte is the first of a line.
+     */
+    private boolean                     lineStart   = true;
+
+    /**
+     * A hash line is being read.
+     */
+    private boolean                     inHashLine  = false;
+
+    /**
+     * The end of the pattern has been reached.
+     */
+    private boolean                     finished    = false;
+
+    /**
+     * Number of bytes decoded.
+     */
+    private long                        bytes       = 0;
+
+    /**
+     * Create a new decoder.
+     *
+     * @param sink
+     *            Receives the alive cells, <code>null</code> to only count the rows.
+     * @param width
+     *            Pattern width.
+     * @param height
+     *            Pattern height.
+     * @param hashLineConsumer
+     *            Receives lines starting with a hash which are found inside the pattern.
+     */
+    RLEPatternDecoder(CellSink sink, int width, int height, Consumer<String> hashLineConsumer) {
+        this.sink = sink;
+        this.width = width;
+        this.height = height;
+        this.hashLineConsumer = hashLineConsumer;
+    }
+
+    /**
+     * Start decoding in the middle of the pattern, directly after the end of a row.
+     *
+     * @param row
+     *            Row of the first cell.
+     */
+    void startAt(int row) {
+        this.y = row;
+        this.x = 0;
+        this.lineStart = false;
+    }
+
+    /**
+     * Decode the rest of a channel.
+     *
+     * @param channel
+     *            The channel, positioned at the start of the pattern.
+     * @throws IOException
+     *             If the channel cannot be read.
+     */
+    void decode(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            this.decode(buffer);
+            buffer.clear();
+        }
+        this.finish();
+    }
+
+    /**
+     * Decode the remaining bytes of a buffer. May be called repeatedly with consecutive parts of the pattern.
+     *
+     * @param buffer
+     *            The buffer.
+     */
+    void decode(ByteBuffer buffer) {
+        this.bytes += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            byte value = buffer.get();
+            if (this.finished) {
+                this.text.write(value);
+            } else if (this.inHashLine) {
+                if (value == '\n') {
+                    this.endHashLine();
+                } else {
+                    this.text.write(value);
+                }
+            } else if (this.lineStart && value == '#') {
+                this.inHashLine = true;
+                this.text.write(value);
+            } else {
+                this.lineStart = value == '\n';
+                this.decodeByte(value);
+            }
+        }
+    }
+
+    /**
+     * Decode a single byte of the pattern.
+     *
+     * @param value
+     *            The byte.
+     */
+    private void decodeByte(byte value) {
+        if (value >= '0' && value <= '9') {
+            int digit = value - '0';
+            if (this.count > (Integer.MAX_VALUE - digit) / 10) {
+                throw new IllegalArgumentException(String.format("Run count in pattern exceeds %d", Integer.MAX_VALUE));
+            }
+            this.count = this.count * 10 + digit;
+            return;
+        }
+        if (value == ' ' || value == '\t' || value == '\r' || value == '\n') {
+            // Whitespace may appear anywhere
+            return;
+        }
+        int run = this.count == 0 ? 1 : this.count;
+        if (value == '!' && this.count > 0) {
+            throw new IllegalArgumentException("Invalid pattern: run count before end of pattern");
+        }
+        this.count = 0;
+        switch (value) {
+            case 'b':
+                this.run(run, false);
+                break;
+            case 'o':
+                this.run(run, true);
+                break;
+            case '$':
+                // End of line. A number before the end of line skips rows
+                this.y = (int) Math.min((long) this.y + run, Integer.MAX_VALUE);
+                this.x = 0;
+                break;
+            case '!':
+                this.finished = true;
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Illegal character %s in pattern", (char) value));
+        }
+    }
+
+    /**
+     * Decode a run of cells. Runs of alive cells are pushed into the sink.
+     *
+     * @param length
+     *            Length of the run.
+     * @param alive
+     *            <code>true</code> if the cells are alive.
+     */
+    private void run(int length, boolean alive) {
+        if (alive && this.sink != null && this.y < this.height && this.x < this.width) {
+            this.sink.setRun(this.x, this.y, Math.min(length, this.width - this.x));
+        }
+        this.x = (int) Math.min((long) this.x + length, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Pass a complete hash line to the consumer.
+     */
+    private void endHashLine() {
+        String line = new String(this.text.toByteArray(), StandardCharsets.UTF_8).trim();
+        this.text.reset();
+        this.inHashLine = false;
+        this.lineStart = true;
+        this.hashLineConsumer.accept(line);
+    }
+
+    /**
+     * Complete decoding after the last part of the pattern.
+     */
+    void finish() {
+        if (this.inHashLine) {
+            this.endHashLine();
+        }
+        if (this.count > 0) {
+            throw new IllegalArgumentException("Invalid pattern: pattern ends with a run count");
+        }
+    }
+
+    /**
+     * Get the text after the end of the pattern.
+     *
+     * @return Text after the exclamation mark, empty if the pattern was not terminated.
+     */
+    String getTrailer() {
+        return this.finished ? new String(this.text.toByteArray(), StandardCharsets.UTF_8) : "";
+    }
+
+    /**
+     * Get the number of bytes decoded.
+     *
+     * @return Byte count.
+     */
+    long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Check if the end of the pattern has been reached.
+     *
+     * @return <code>true</code> if the exclamation mark was decoded.
+     */
+    boolean isFinished() {
+        return this.finished;
+    }
+
+    /**
+     * Get the row of the next cell.
+     *
+     * @return Current row.
+     */
+    int getRow() {
+        return this.y;
+    }
+
+    /**
+     * Get the number of rows the pattern extends over.
+     *
+     * @return Row count.
+     */
+    int getRows() {
+        return this.y + 1;
+    }
+}
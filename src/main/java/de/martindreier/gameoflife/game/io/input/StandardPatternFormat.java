@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import de.martindreier.gameoflife.game.io.CellSink;
+import de.martindreier.gameoflife.game.io.GridLoader;
+
+/**
+ * The pattern formats supported by the loaders of this package. All formats can be loaded from files and from
+ * streams. Formats are recognized by their first line: the
+ * <code>[M2]</code> header for macrocell files, <code>#Life 1.05</code> or <code>#Life 1.06</code> for the Life
+ * formats, and the <code>x = ...</code> header line after optional <code>#</code> lines for RLE files.
+ *
+ * @author D043987
+ *
+ */
+public enum StandardPatternFormat implements PatternFormat {
+
+    /**
+     * Golly's macrocell format, loaded by the {@link MacrocellLoader}.
+     */
+    MACROCELL("Macrocell") {
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#matches(java.nio.ByteBuffer)
+         */
+        @Override
+        public boolean matches(ByteBuffer head) {
+            return firstLine(head).startsWith(MacrocellLoader.HEADER);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#open(java.nio.file.Path,
+         *      java.nio.channels.FileChannel)
+         */
+        @Override
+        public GridLoader open(Path file, FileChannel channel) throws IOException {
+            return this.open(file.toString(), channel);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#open(java.lang.String,
+         *      java.nio.channels.ReadableByteChannel)
+         */
+        @Override
+        public GridLoader open(String name, ReadableByteChannel channel) throws IOException {
+            return new MacrocellLoader(name, reader(channel, StandardCharsets.US_ASCII));
+        }
+    },
+
+    /**
+     * Life 1.05, loaded by the {@link Life105Loader}.
+     */
+    LIFE_105("Life 1.05") {
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#matches(java.nio.ByteBuffer)
+         */
+        @Override
+        public boolean matches(ByteBuffer head) {
+            return "1.05".equals(lifeVersion(head));
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#open(java.nio.file.Path,
+         *      java.nio.channels.FileChannel)
+         */
+        @Override
+        public GridLoader open(Path file, FileChannel channel) throws IOException {
+            return this.open(file.toString(), channel);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#open(java.lang.String,
+         *      java.nio.channels.ReadableByteChannel)
+         */
+        @Override
+        public GridLoader open(String name, ReadableByteChannel channel) throws IOException {
+            return new Life105Loader(name, reader(channel, StandardCharsets.UTF_8));
+        }
+    },
+
+    /**
+     * Life 1.06, loaded by the {@link Life106Loader}. A <code>#Life</code> line without version is also accepted.
+     */
+    LIFE_106("Life 1.06") {
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#matches(java.nio.ByteBuffer)
+         */
+        @Override
+        public boolean matches(ByteBuffer head) {
+            String version = lifeVersion(head);
+            return "1.06".equals(version) || "".equals(version);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#open(java.nio.file.Path,
+         *      java.nio.channels.FileChannel)
+         */
+        @Override
+        public GridLoader open(Path file, FileChannel channel) throws IOException {
+            return new Life106Loader(file, channel);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#open(java.lang.String,
+         *      java.nio.channels.ReadableByteChannel)
+         */
+        @Override
+        public GridLoader open(String name, ReadableByteChannel channel) throws IOException {
+            return new Life106Loader(name, channel);
+        }
+    },
+
+    /**
+     * Run length encoded patterns, loaded by the {@link RLEFileLoader}.
+     */
+    RLE("RLE") {
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#matches(java.nio.ByteBuffer)
+         */
+        @Override
+        public boolean matches(ByteBuffer head) {
+            int position = contentStart(head);
+            while (position < head.limit()) {
+                String rawLine = line(head, position);
+                position += rawLine.length() + 1;
+                String line = rawLine.trim();
+                if (line.isEmpty() || line.startsWith("#") && !line.startsWith(LIFE_LINE_PREFIX)) {
+                    continue;
+                }
+                return line.startsWith("x") && line.substring(1).trim().startsWith("=");
+            }
+            return false;
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#open(java.nio.file.Path,
+         *      java.nio.channels.FileChannel)
+         */
+        @Override
+        public GridLoader open(Path file, FileChannel channel) throws IOException {
+            return new RLEFileLoader(file, channel);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#open(java.lang.String,
+         *      java.nio.channels.ReadableByteChannel)
+         */
+        @Override
+        public GridLoader open(String name, ReadableByteChannel channel) throws IOException {
+            return new RLEFileLoader(name, channel);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#open(java.nio.file.Path,
+         *      de.martindreier.gameoflife.game.io.input.Compression, java.nio.channels.ReadableByteChannel)
+         */
+        @Override
+        public GridLoader open(Path file, Compression compression, ReadableByteChannel channel) throws IOException {
+            return new RLEFileLoader(file, compression, channel);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.input.PatternFormat#load(java.lang.String,
+         *      java.nio.channels.ReadableByteChannel, de.martindreier.gameoflife.game.io.CellSink)
+         */
+        @Override
+        public GridLoader load(String name, ReadableByteChannel channel, CellSink sink) throws IOException {
+            return new RLEFileLoader(name, channel, sink);
+        }
+    };
+
+    /**
+     * Prefix of the first line of the Life formats.
+     */
+    private static final String LIFE_LINE_PREFIX = "#Life";
+
+    /**
+     * Format name.
+     */
+    private final String        name;
+
+    /**
+     * Create a format.
+     *
+     * @param name
+     *            Format name.
+     */
+    private StandardPatternFormat(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.io.input.PatternFormat#getName()
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Get the first line of a file, without a byte order mark.
+     *
+     * @param head
+     *            The first bytes of the file.
+     * @return The first line.
+     */
+    private static String firstLine(ByteBuffer head) {
+        return line(head, contentStart(head));
+    }
+
+    /**
+     * Get the position of the first character of a file.
+     *
+     * @param head
+     *            The first bytes of the file.
+     * @return Position after the UTF-8 byte order mark, if the file starts with one, otherwise 0.
+     */
+    private static int contentStart(ByteBuffer head) {
+        boolean byteOrderMark = head.limit() >= 3 && head.get(0) == (byte) 0xEF && head.get(1) == (byte) 0xBB && head.get(2) == (byte) 0xBF;
+        return byteOrderMark ? 3 : 0;
+    }
+
+    /**
+     * Get a line of a file.
+     *
+     * @param head
+     *            The first bytes of the file.
+     * @param start
+     *            Position of the first character of the line.
+     * @return The line, without the line break. Ends at the limit of the buffer if the line is not complete.
+     */
+    private static String line(ByteBuffer head, int start) {
+        StringBuilder line = new StringBuilder();
+        for (int position = start; position < head.limit() && head.get(position) != '\n'; position++) {
+            line.append((char) (head.get(position) & 0xFF));
+        }
+        return line.toString();
+    }
+
+    /**
+     * Get the version of a Life file.
+     *
+     * @param head
+     *            The first bytes of the file.
+     * @return The version after <code>#Life</code>, <code>null</code> if the file does not start with
+     *         <code>#Life</code>.
+     */
+    private static String lifeVersion(ByteBuffer head) {
+        String line = firstLine(head).trim();
+        return line.startsWith(LIFE_LINE_PREFIX) ? line.substring(LIFE_LINE_PREFIX.length()).trim() : null;
+    }
+
+    /**
+     * Create a reader for a channel. Closing the reader closes the channel, so the reader is not closed.
+     *
+     * @param channel
+     *            The channel.
+     * @param charset
+     *            Character set of the file.
+     * @return The reader.
+     */
+    private static BufferedReader reader(ReadableByteChannel channel, Charset charset) {
+        return new BufferedReader(Channels.newReader(channel, charset.newDecoder(), -1));
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.output;
+
+import java.io.IOException;
+
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Writes grids in the Life 1.05 format. The grid is split into column strips of one word ({@value #BLOCK_WIDTH}
+ * cells), which keeps the lines below the 80 characters allowed by the format. Each strip with alive cells is written
+ * as a cell block (<code>#P</code>) from its first to its last row with alive cells; each line ends at the last alive
+ * cell of the row. Blocks are placed at their position on the grid, so the pattern is loaded at the same position as
+ * long as its top left alive cells are in the first row and column.
+ * <p>
+ * Conway's rule is written as <code>#N</code>, other rules as <code>#R</code>.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class Life105Writer extends PatternWriter {
+
+    /**
+     * Width of a cell block.
+     */
+    public static final int BLOCK_WIDTH = PackedGrid.WORD_SIZE;
+
+    /**
+     * Create a writer without game rule.
+     */
+    public Life105Writer() {
+        this(null);
+    }
+
+    /**
+     * Create a writer.
+     *
+     * @param rule
+     *            Game rule written to the file, <code>null</code> to write no rule.
+     */
+    public Life105Writer(LifeLikeRule rule) {
+        this(rule, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a writer.
+     *
+     * @param rule
+     *            Game rule written to the file, <code>null</code> to write no rule.
+     * @param bufferSize
+     *            Size of the output buffer in bytes.
+     */
+    public Life105Writer(LifeLikeRule rule, int bufferSize) {
+        super(rule, bufferSize);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.io.output.PatternWriter#writePattern(de.martindreier.gameoflife.game.packed.PackedGrid)
+     */
+    @Override
+    void writePattern(PackedGrid grid) throws IOException {
+        this.put("#Life 1.05\n");
+        LifeLikeRule rule = this.getRule();
+        if (LifeLikeRule.CONWAY.equals(rule)) {
+            this.put("#N\n");
+        } else if (rule != null) {
+            this.put("#R ");
+            this.putNeighborCounts(rule.getSurvivalMask());
+            this.put('/');
+            this.putNeighborCounts(rule.getBirthMask());
+            this.put('\n');
+        }
+        for (int wordX = 0; wordX < grid.getWordsPerRow(); wordX++) {
+            int top = 0;
+            while (top < grid.getHeight() && grid.getWord(wordX, top) == 0) {
+                top++;
+            }
+            if (top == grid.getHeight()) {
+                continue;
+            }
+            int bottom = grid.getHeight() - 1;
+            while (grid.getWord(wordX, bottom) == 0) {
+                bottom--;
+            }
+            this.put("#P ");
+            this.putNumber(wordX * BLOCK_WIDTH);
+            this.put(' ');
+            this.putNumber(top);
+            this.put('\n');
+            for (int y = top; y <= bottom; y++) {
+                long word = grid.getWord(wordX, y);
+                int length = Math.max(1, BLOCK_WIDTH - Long.numberOfLeadingZeros(word));
+                for (int bit = 0; bit < length; bit++) {
+                    this.put((word & 1L << bit) != 0 ? '*' : '.');
+                }
+                this.put('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.output;
+
+import java.io.IOException;
+
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Writes grids in the Life 1.06 format: one line with the coordinates of each alive cell, row by row. The alive cells
+ * of a word are found with {@link Long#numberOfTrailingZeros(long)}, so empty words are skipped at once. The format
+ * has no game rule.
+ *
+ * @author D043987
+ *
+ */
+public class Life106Writer extends PatternWriter {
+
+    /**
+     * Create a writer.
+     */
+    public Life106Writer() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a writer.
+     *
+     * @param bufferSize
+     *            Size of the output buffer in bytes.
+     */
+    public Life106Writer(int bufferSize) {
+        super(null, bufferSize);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.io.output.PatternWriter#writePattern(de.martindreier.gameoflife.game.packed.PackedGrid)
+     */
+    @Override
+    void writePattern(PackedGrid grid) throws IOException {
+        this.put("#Life 1.06\n");
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int wordX = 0; wordX < grid.getWordsPerRow(); wordX++) {
+                for (long word = grid.getWord(wordX, y); word != 0; word &= word - 1) {
+                    this.putNumber(wordX * PackedGrid.WORD_SIZE + Long.numberOfTrailingZeros(word));
+                    this.put(' ');
+                    this.putNumber(y);
+                    this.put('\n');
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.output;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Writes grids in Golly's macrocell format. The grid is placed in the top left corner of a square of
+ * 2<sup>k</sup> cells, which is split into a quadtree down to leaves of 8x8 cells. Equal nodes are written only once,
+ * so repetitive patterns produce files much smaller than the number of cells. The leaves are read from the words of
+ * the grid, one byte per row.
+ * <p>
+ * Nodes are written as soon as they are created, after their children, so only the table of distinct nodes is kept in
+ * memory. Empty nodes are not written; they are referenced as node 0.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class MacrocellWriter extends PatternWriter {
+
+    /**
+     * Level of the leaf nodes.
+     */
+    private static final int LEAF_LEVEL    = 3;
+
+    /**
+     * Initial capacity of the node table.
+     */
+    private static final int INITIAL_NODES = 64;
+
+    /**
+     * Grid which is written.
+     */
+    private PackedGrid       grid;
+
+    /**
+     * Level of each node, indexed by node number. Node 0 is the empty node.
+     */
+    private int[]            levels;
+
+    /**
+     * Children of each non-leaf node, four entries per node.
+     */
+    private int[]            children;
+
+    /**
+     * Cells of each leaf node.
+     */
+    private long[]           leaves;
+
+    /**
+     * Hash table of node numbers, 0 for empty slots.
+     */
+    private int[]            table;
+
+    /**
+     * Number of nodes including the empty node.
+     */
+    private int              nodeCount;
+
+    /**
+     * Create a writer without game rule.
+     */
+    public MacrocellWriter() {
+        this(null);
+    }
+
+    /**
+     * Create a writer.
+     *
+     * @param rule
+     *            Game rule written to the file, <code>null</code> to write no rule.
+     */
+    public MacrocellWriter(LifeLikeRule rule) {
+        this(rule, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a writer.
+     *
+     * @param rule
+     *            Game rule written to the file, <code>null</code> to write no rule.
+     * @param bufferSize
+     *            Size of the output buffer in bytes.
+     */
+    public MacrocellWriter(LifeLikeRule rule, int bufferSize) {
+        super(rule, bufferSize);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.io.output.PatternWriter#writePattern(de.martindreier.gameoflife.game.packed.PackedGrid)
+     */
+    @Override
+    void writePattern(PackedGrid grid) throws IOException {
+        this.put("[M2] (game-of-life)\n");
+        if (this.getRule() != null) {
+            this.put("#R ");
+            this.put(this.getRule().toString());
+            this.put('\n');
+        }
+        int level = LEAF_LEVEL;
+        while (1L << level < Math.max(grid.getWidth(), grid.getHeight())) {
+            level++;
+        }
+        this.grid = grid;
+        this.levels = new int[INITIAL_NODES];
+        this.children = new int[4 * INITIAL_NODES];
+        this.leaves = new long[INITIAL_NODES];
+        this.table = new int[2 * INITIAL_NODES];
+        this.nodeCount = 1;
+        try {
+            if (this.build(level, 0, 0) == 0) {
+                // The file needs a root, even if it is empty
+                this.put("$\n");
+            }
+        }
+        finally {
+            this.grid = null;
+            this.levels = null;
+            this.children = null;
+            this.leaves = null;
+            this.table = null;
+        }
+    }
+
+    /**
+     * Build the node for a square of the grid. New nodes are written.
+     *
+     * @param level
+     *            Level of the node.
+     * @param x
+     *            X coordinate of the left edge of the square.
+     * @param y
+     *            Y coordinate of the top edge of the square.
+     * @return Number of the node, 0 if the square is empty.
+     * @throws IOException
+     *             Error writing to the channel.
+     */
+    private int build(int level, long x, long y) throws IOException {
+        if (x >= this.grid.getWidth() || y >= this.grid.getHeight()) {
+            return 0;
+        }
+        if (level == LEAF_LEVEL) {
+            long cells = 0;
+            int wordX = (int) x / PackedGrid.WORD_SIZE;
+            int shift = (int) x % PackedGrid.WORD_SIZE;
+            for (int row = 0; row < 8 && y + row < this.grid.getHeight(); row++) {
+                cells |= (this.grid.getWord(wordX, (int) y + row) >>> shift & 0xFF) << 8 * row;
+            }
+            return cells == 0 ? 0 : this.leaf(cells);
+        }
+        long half = 1L << level - 1;
+        int northWest = this.build(level - 1, x, y);
+        int northEast = this.build(level - 1, x + half, y);
+        int southWest = this.build(level - 1, x, y + half);
+        int southEast = this.build(level - 1, x + half, y + half);
+        if ((northWest | northEast | southWest | southEast) == 0) {
+            return 0;
+        }
+        return this.node(level, northWest, northEast, southWest, southEast);
+    }
+
+    /**
+     * Find or write a leaf.
+     *
+     * @param cells
+     *            Cells of the leaf, bit <code>8 * y + x</code> for the cell (x,y).
+     * @return Number of the leaf.
+     * @throws IOException
+     *             Error writing to the channel.
+     */
+    private int leaf(long cells) throws IOException {
+        int mask = this.table.length - 1;
+        int slot = mix(Long.hashCode(cells)) & mask;
+        for (int node = this.table[slot]; node != 0; node = this.table[slot]) {
+            if (this.levels[node] == LEAF_LEVEL && this.leaves[node] == cells) {
+                return node;
+            }
+            slot = slot + 1 & mask;
+        }
+        int node = this.add(slot, LEAF_LEVEL);
+        this.leaves[node] = cells;
+        int lastRow = (63 - Long.numberOfLeadingZeros(cells)) / 8;
+        for (int row = 0; row <= lastRow; row++) {
+            int rowCells = (int) (cells >>> 8 * row) & 0xFF;
+            for (int column = 0; column < 32 - Integer.numberOfLeadingZeros(rowCells); column++) {
+                this.put((rowCells & 1 << column) != 0 ? '*' : '.');
+            }
+            this.put('$');
+        }
+        this.put('\n');
+        return node;
+    }
+
+    /**
+     * Find or write a node with children.
+     *
+     * @param level
+     *            Level of the node.
+     * @param northWest
+     *            North west child.
+     * @param northEast
+     *            North east child.
+     * @param southWest
+     *            South west child.
+     * @param southEast
+     *            South east child.
+     * @return Number of the node.
+     * @throws IOException
+     *             Error writing to the channel.
+     */
+    private int node(int level, int northWest, int northEast, int southWest, int southEast) throws IOException {
+        int mask = this.table.length - 1;
+        int slot = hash(level, northWest, northEast, southWest, southEast) & mask;
+        for (int node = this.table[slot]; node != 0; node = this.table[slot]) {
+            int index = 4 * node;
+            if (this.levels[node] == level && this.children[index] == northWest && this.children[index + 1] == northEast && this.children[index + 2] == southWest
+                    && this.children[index + 3] == southEast) {
+                return node;
+            }
+            slot = slot + 1 & mask;
+        }
+        int node = this.add(slot, level);
+        this.children[4 * node] = northWest;
+        this.children[4 * node + 1] = northEast;
+        this.children[4 * node + 2] = southWest;
+        this.children[4 * node + 3] = southEast;
+        this.putNumber(level);
+        for (int child = 0; child < 4; child++) {
+            this.put(' ');
+            this.putNumber(this.children[4 * node + child]);
+        }
+        this.put('\n');
+        return node;
+    }
+
+    /**
+     * Add a node to the table. The table is grown when it is half full.
+     *
+     * @param slot
+     *            Free slot for the node.
+     * @param level
+     *            Level of the node.
+     * @return Number of the node.
+     */
+    private int add(int slot, int level) {
+        int node = this.nodeCount++;
+        if (node == this.levels.length) {
+            int capacity = this.levels.length * 2;
+            this.levels = Arrays.copyOf(this.levels, capacity);
+            this.children = Arrays.copyOf(this.children, 4 * capacity);
+            this.leaves = Arrays.copyOf(this.leaves, capacity);
+        }
+        this.levels[node] = level;
+        this.table[slot] = node;
+        if (2 * this.nodeCount > this.table.length) {
+            this.rehash();
+        }
+        return node;
+    }
+
+    /**
+     * Double the size of the hash table.
+     */
+    private void rehash() {
+        int[] nodes = this.table;
+        this.table = new int[2 * nodes.length];
+        int mask = this.table.length - 1;
+        for (int node : nodes) {
+            if (node == 0) {
+                continue;
+            }
+            int slot = this.hash(node) & mask;
+            while (this.table[slot] != 0) {
+                slot = slot + 1 & mask;
+            }
+            this.table[slot] = node;
+        }
+    }
+
+    /**
+     * Get the hash of an existing node, the same as used to insert the node.
+     *
+     * @param node
+     *            Number of the node.
+     * @return The hash.
+     */
+    private int hash(int node) {
+        if (this.levels[node] == LEAF_LEVEL) {
+            return mix(Long.hashCode(this.leaves[node]));
+        }
+        int index = 4 * node;
+        return hash(this.levels[node], this.children[index], this.children[index + 1], this.children[index + 2], this.children[index + 3]);
+    }
+
+    /**
+     * Get the hash of a node with children.
+     *
+     * @param level
+     *            Level of the node.
+     * @param northWest
+     *            North west child.
+     * @param northEast
+     *            North east child.
+     * @param southWest
+     *            South west child.
+     * @param southEast
+     *            South east child.
+     * @return The hash.
+     */
+    private static int hash(int level, int northWest, int northEast, int southWest, int southEast) {
+        return mix((((level * 31 + northWest) * 31 + northEast) * 31 + southWest) * 31 + southEast);
+    }
+
+    /**
+     * Spread the bits of a hash code.
+     *
+     * @param hash
+     *            The hash code.
+     * @return Mixed hash code.
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Base class for writers which export a {@link PackedGrid} as pattern file. The text is encoded directly from the words
+ * of the grid into a buffer of fixed size, which is written to the channel whenever it is full. Writing a board needs
+ * no memory beyond this buffer, no matter how large the board is, and the buffer is reused for every board the writer
+ * exports.
+ * <p>
+ * A writer is not thread-safe: use one writer per thread.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public abstract class PatternWriter {
+
+    /**
+     * Default size of the output buffer.
+     */
+    public static final int     DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Game rule written to the file, <code>null</code> if no rule is written.
+     */
+    private final LifeLikeRule  rule;
+
+    /**
+     * Output buffer.
+     */
+    private final ByteBuffer    buffer;
+
+    /**
+     * Digits of the last number, from the lowest digit.
+     */
+    private final byte[]        digits              = new byte[10];
+
+    /**
+     * Channel the current pattern is written to.
+     */
+    private WritableByteChannel channel;
+
+    /**
+     * Create a new writer.
+     *
+     * @param rule
+     *            Game rule written to the file, <code>null</code> to write no rule.
+     * @param bufferSize
+     *            Size of the output buffer in bytes.
+     */
+    PatternWriter(LifeLikeRule rule, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException(String.format("Buffer size must be greater than 0 (%d)", bufferSize));
+        }
+        this.rule = rule;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Get the game rule written to the file.
+     *
+     * @return The rule, <code>null</code> if no rule is written.
+     */
+    public LifeLikeRule getRule() {
+        return this.rule;
+    }
+
+    /**
+     * Write a grid to a channel. The channel is not closed.
+     *
+     * @param grid
+     *            The grid.
+     * @param channel
+     *            The channel.
+     * @throws IOException
+     *             Error writing to the channel.
+     */
+    public void write(PackedGrid grid, WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.buffer.clear();
+        try {
+            this.writePattern(grid);
+            this.flush();
+        }
+        finally {
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Write a grid to a file. An existing file is replaced.
+     *
+     * @param grid
+     *            The grid.
+     * @param file
+     *            The file.
+     * @throws IOException
+     *             Error writing the file.
+     */
+    public void write(PackedGrid grid, Path file) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            this.write(grid, fileChannel);
+        }
+    }
+
+    /**
+     * Encode the grid. The encoded text is passed to the <code>put</code> methods.
+     *
+     * @param grid
+     *            The grid.
+     * @throws IOException
+     *             Error writing to the channel.
+     */
+    abstract void writePattern(PackedGrid grid) throws IOException;
+
+    /**
+     * Append a character.
+     *
+     * @param character
+     *            An ASCII character.
+     * @throws IOException
+     *             Error writing to the channel.
+     */
+    void put(char character) throws IOException {
+        if (!this.buffer.hasRemaining()) {
+            this.flush();
+        }
+        this.buffer.put((byte) character);
+    }
+
+    /**
+     * Append a string.
+     *
+     * @param text
+     *            ASCII text.
+     * @throws IOException
+     *             Error writing to the channel.
+     */
+    void put(String text) throws IOException {
+        for (int index = 0; index < text.length(); index++) {
+            this.put(text.charAt(index));
+        }
+    }
+
+    /**
+     * Append a number.
+     *
+     * @param number
+     *            The number.
+     * @throws IOException
+     *             Error writing to the channel.
+     */
+    void putNumber(int number) throws IOException {
+        if (number < 0) {
+            this.put('-');
+        }
+        int count = this.toDigits(number);
+        for (int index = count - 1; index >= 0; index--) {
+            this.put((char) this.digits[index]);
+        }
+    }
+
+    /**
+     * Get the number of characters of a number without sign.
+     *
+     * @param number
+     *            The number.
+     * @return Number of digits.
+     */
+    int digitCount(int number) {
+        return this.toDigits(number);
+    }
+
+    /**
+     * Convert the absolute value of a number to digits.
+     *
+     * @param number
+     *            The number.
+     * @return Number of digits.
+     */
+    private int toDigits(int number) {
+        int count = 0;
+        do {
+            this.digits[count++] = (byte) ('0' + Math.abs(number % 10));
+            number /= 10;
+        } while (number != 0);
+        return count;
+    }
+
+    /**
+     * Append the neighbor counts of a rule mask.
+     *
+     * @param mask
+     *            Bit <code>n</code> is set if the rule applies to <code>n</code> neighbors.
+     * @throws IOException
+     *             Error writing to the channel.
+     */
+    void putNeighborCounts(int mask) throws IOException {
+        for (int neighbors = 0; neighbors <= 8; neighbors++) {
+            if ((mask & 1 << neighbors) != 0) {
+                this.put((char) ('0' + neighbors));
+            }
+        }
+    }
+
+    /**
+     * Write the buffer to the channel.
+     *
+     * @throws IOException
+     *             Error writing to the channel.
+     */
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+}
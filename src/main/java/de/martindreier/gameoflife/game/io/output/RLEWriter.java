@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.output;
+
+import java.io.IOException;
+
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Writes grids in the RLE format. The header has the size of the grid, so the pattern is loaded at the same position
+ * on a grid of the same size. Runs are found word by word: the end of a run is the next set bit of the word (or of the
+ * inverted word for a run of alive cells), so runs spanning many words cost one step per word. Dead cells at the end
+ * of a row and empty rows at the end of the pattern are omitted, and empty rows are merged into a single
+ * <code>$</code>. Lines are wrapped after at most {@value #LINE_LENGTH} characters.
+ *
+ * @author D043987
+ *
+ */
+public class RLEWriter extends PatternWriter {
+
+    /**
+     * Maximum length of a line of the encoded pattern.
+     */
+    public static final int LINE_LENGTH = 70;
+
+    /**
+     * Length of the current line.
+     */
+    private int             lineLength;
+
+    /**
+     * Create a writer without game rule.
+     */
+    public RLEWriter() {
+        this(null);
+    }
+
+    /**
+     * Create a writer.
+     *
+     * @param rule
+     *            Game rule written to the header, <code>null</code> to write no rule.
+     */
+    public RLEWriter(LifeLikeRule rule) {
+        this(rule, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a writer.
+     *
+     * @param rule
+     *            Game rule written to the header, <code>null</code> to write no rule.
+     * @param bufferSize
+     *            Size of the output buffer in bytes.
+     */
+    public RLEWriter(LifeLikeRule rule, int bufferSize) {
+        super(rule, bufferSize);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.io.output.PatternWriter#writePattern(de.martindreier.gameoflife.game.packed.PackedGrid)
+     */
+    @Override
+    void writePattern(PackedGrid grid) throws IOException {
+        this.put("x = ");
+        this.putNumber(grid.getWidth());
+        this.put(", y = ");
+        this.putNumber(grid.getHeight());
+        if (this.getRule() != null) {
+            this.put(", rule = ");
+            this.put(this.getRule().toString());
+        }
+        this.put('\n');
+        this.lineLength = 0;
+
+        int wordsPerRow = grid.getWordsPerRow();
+        int width = grid.getWidth();
+        int rowEnds = 0;
+        for (int y = 0; y < grid.getHeight(); y++) {
+            // Next column which is not encoded yet, and start of the current run of alive cells
+            int position = 0;
+            int runStart = -1;
+            for (int wordX = 0; wordX < wordsPerRow; wordX++) {
+                long word = grid.getWord(wordX, y);
+                int base = wordX * PackedGrid.WORD_SIZE;
+                int bit = 0;
+                while (bit < PackedGrid.WORD_SIZE) {
+                    long remaining = (runStart < 0 ? word : ~word) >>> bit;
+                    if (remaining == 0) {
+                        break;
+                    }
+                    bit += Long.numberOfTrailingZeros(remaining);
+                    if (runStart < 0) {
+                        runStart = base + bit;
+                    } else {
+                        rowEnds = this.putRun(rowEnds, runStart - position, base + bit - runStart);
+                        position = base + bit;
+                        runStart = -1;
+                    }
+                }
+            }
+            if (runStart >= 0) {
+                rowEnds = this.putRun(rowEnds, runStart - position, width - runStart);
+            }
+            rowEnds++;
+        }
+        this.putToken(1, '!');
+        this.put('\n');
+    }
+
+    /**
+     * Append a run of alive cells, preceded by dead cells and by the pending row ends.
+     *
+     * @param rowEnds
+     *            Number of row ends which are not written yet.
+     * @param dead
+     *            Number of dead cells before the alive cells.
+     * @param alive
+     *            Number of alive cells.
+     * @return Number of row ends which are not written yet, which is 0.
+     * @throws IOException
+     *             Error writing to the channel.
+     */
+    private int putRun(int rowEnds, int dead, int alive) throws IOException {
+        if (rowEnds > 0) {
+            this.putToken(rowEnds, '$');
+        }
+        if (dead > 0) {
+            this.putToken(dead, 'b');
+        }
+        this.putToken(alive, 'o');
+        return 0;
+    }
+
+    /**
+     * Append a run length and a tag, starting a new line if the line would become too long.
+     *
+     * @param count
+     *            Run length.
+     * @param tag
+     *            The tag.
+     * @throws IOException
+     *             Error writing to the channel.
+     */
+    private void putToken(int count, char tag) throws IOException {
+        int length = count > 1 ? this.digitCount(count) + 1 : 1;
+        if (this.lineLength + length > LINE_LENGTH) {
+            this.put('\n');
+            this.lineLength = 0;
+        }
+        if (count > 1) {
+            this.putNumber(count);
+        }
+        this.put(tag);
+        this.lineLength += length;
+    }
+}
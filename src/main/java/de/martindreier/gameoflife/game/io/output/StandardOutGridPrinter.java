@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.output;
+
+import java.io.PrintStream;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.io.GridPrinter;
+
+/**
+ * Prints grids as text to the standard output, one line per row with <code>*</code> for alive and <code>.</code> for
+ * dead cells, preceded by the generation.
+ *
+ * @author D043987
+ *
+ */
+public class StandardOutGridPrinter implements GridPrinter {
+
+    /**
+     * Stream to print to.
+     */
+    private final PrintStream out;
+
+    /**
+     * Create a printer for the standard output.
+     */
+    public StandardOutGridPrinter() {
+        this(System.out);
+    }
+
+    /**
+     * Create a printer for another stream.
+     *
+     * @param out
+     *            Stream to print to.
+     */
+    StandardOutGridPrinter(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.io.GridPrinter#printGrid(de.martindreier.gameoflife.game.Grid)
+     */
+    @Override
+    public void printGrid(Grid grid) {
+        StringBuilder text = new StringBuilder((grid.getWidth() + 1) * grid.getHeight() + 32);
+        text.append("Generation ").append(grid.getGeneration()).append('\n');
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                text.append(grid.get(x, y) == CellState.ALIVE ? '*' : '.');
+            }
+            text.append('\n');
+        }
+        this.out.print(text);
+        this.out.flush();
+    }
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.jfr;
+
+/**
+ * Starts the flight recorder events. Only loaded by {@link FlightRecorder} if <code>jdk.jfr</code> is available.
+ *
+ * @author D043987
+ *
+ */
+final class EventRecorder implements FlightRecorder.Recorder {
+
+    /**
+     * @see de.martindreier.gameoflife.game.jfr.FlightRecorder.Recorder#startGeneration(java.lang.String, int, int,
+     *      boolean)
+     */
+    @Override
+    public FlightRecorder.Generation startGeneration(String engine, int width, int height, boolean parallel) {
+        return GenerationEvent.start(engine, width, height, parallel);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.jfr.FlightRecorder.Recorder#startStripe(java.lang.String, int, int, int)
+     */
+    @Override
+    public FlightRecorder.Stripe startStripe(String engine, int width, int firstRow, int rows) {
+        return StripeEvent.start(engine, width, firstRow, rows);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.jfr.FlightRecorder.Recorder#startParse(java.lang.String, java.lang.String)
+     */
+    @Override
+    public FlightRecorder.Parse startParse(String format, String phase) {
+        return ParseEvent.start(format, phase);
+    }
+}
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.jfr;
+
+/**
+ * Entry point for the flight recorder events of the engines and loaders. The event classes of this package require the
+ * <code>jdk.jfr</code> module; this facade checks once whether it is available and otherwise drops all events, so the
+ * engines and loaders also run on runtimes without the flight recorder. Callers only use the interfaces declared here.
+ *
+ * @author D043987
+ *
+ */
+public final class FlightRecorder {
+
+    /**
+     * A started {@link GenerationEvent}.
+     */
+    public interface Generation {
+
+        /**
+         * End the event and commit it to the recording.
+         *
+         * @param generationNumber
+         *            Number of the generation, -1 if unknown.
+         * @param changed
+         *            Number of cells which changed their state, -1 if unknown.
+         */
+        void finish(long generationNumber, long changed);
+    }
+
+    /**
+     * A started {@link StripeEvent}.
+     */
+    public interface Stripe {
+
+        /**
+         * End the event and commit it to the recording.
+         *
+         * @param stripeChanged
+         *            <code>true</code> if any cell in the stripe changed its state.
+         */
+        void finish(boolean stripeChanged);
+    }
+
+    /**
+     * A started {@link ParseEvent}.
+     */
+    public interface Parse {
+
+        /**
+         * End the event and commit it to the recording.
+         *
+         * @param characterCount
+         *            Number of characters processed.
+         * @param lineCount
+         *            Number of lines processed.
+         * @param patternWidth
+         *            Width of the pattern.
+         * @param patternHeight
+         *            Height of the pattern.
+         */
+        void finish(long characterCount, long lineCount, int patternWidth, int patternHeight);
+    }
+
+    /**
+     * Starts the events. Implemented by {@link EventRecorder}, which is only loaded if the flight recorder is available.
+     */
+    interface Recorder {
+
+        /**
+         * @see FlightRecorder#startGeneration(String, int, int, boolean)
+         */
+        Generation startGeneration(String engine, int width, int height, boolean parallel);
+
+        /**
+         * @see FlightRecorder#startStripe(String, int, int, int)
+         */
+        Stripe startStripe(String engine, int width, int firstRow, int rows);
+
+        /**
+         * @see FlightRecorder#startParse(String, String)
+         */
+        Parse startParse(String format, String phase);
+    }
+
+    /**
+     * Name of the recorder implementation. It is loaded by name, so this class does not depend on <code>jdk.jfr</code>.
+     */
+    private static final String   RECORDER_CLASS = "de.martindreier.gameoflife.game.jfr.EventRecorder";
+
+    /**
+     * The recorder, or <code>null</code> if the flight recorder is not available.
+     */
+    private static final Recorder RECORDER       = loadRecorder();
+
+    /**
+     * Only static methods.
+     */
+    private FlightRecorder() {
+    }
+
+    /**
+     * Load the recorder if the flight recorder is available.
+     *
+     * @return The recorder, or <code>null</code> if the flight recorder is not available.
+     */
+    private static Recorder loadRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName(RECORDER_CLASS).getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            // No flight recorder in this runtime, or the events were not compiled
+            return null;
+        }
+    }
+
+    /**
+     * Check if events are recorded at all.
+     *
+     * @return <code>true</code> if the flight recorder is available.
+     */
+    public static boolean isAvailable() {
+        return RECORDER != null;
+    }
+
+    /**
+     * Start a {@link GenerationEvent} if the event is enabled in a running recording.
+     *
+     * @param engine
+     *            Engine name.
+     * @param width
+     *            Grid width.
+     * @param height
+     *            Grid height.
+     * @param parallel
+     *            <code>true</code> if the generation is calculated in parallel.
+     * @return The started event, or <code>null</code> if the event is not recorded.
+     */
+    public static Generation startGeneration(String engine, int width, int height, boolean parallel) {
+        return RECORDER == null ? null : RECORDER.startGeneration(engine, width, height, parallel);
+    }
+
+    /**
+     * Start a {@link StripeEvent} if the event is enabled in a running recording.
+     *
+     * @param engine
+     *            Engine name.
+     * @param width
+     *            Grid width.
+     * @param firstRow
+     *            First row of the stripe.
+     * @param rows
+     *            Number of rows in the stripe.
+     * @return The started event, or <code>null</code> if the event is not recorded.
+     */
+    public static Stripe startStripe(String engine, int width, int firstRow, int rows) {
+        return RECORDER == null ? null : RECORDER.startStripe(engine, width, firstRow, rows);
+    }
+
+    /**
+     * Start a {@link ParseEvent} if the event is enabled in a running recording.
+     *
+     * @param format
+     *            File format.
+     * @param phase
+     *            Loading phase.
+     * @return The started event, or <code>null</code> if the event is not recorded.
+     */
+    public static Parse startParse(String format, String phase) {
+        return RECORDER == null ? null : RECORDER.startParse(format, phase);
+    }
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for the calculation of one generation by any of the grid engines.
+ *
+ * @author D043987
+ *
+ */
+@Name(GenerationEvent.NAME)
+@Label("Generation")
+@Category({ "Game of Life", "Simulation" })
+@Description("Calculation of one generation of a grid")
+@StackTrace(false)
+public class GenerationEvent extends Event implements FlightRecorder.Generation {
+
+    /**
+     * Event name, used to enable the event in recording settings.
+     */
+    public static final String     NAME = "de.martindreier.gameoflife.Generation";
+
+    /**
+     * Event type, used to check if the event is enabled.
+     */
+    private static final EventType TYPE = EventType.getEventType(GenerationEvent.class);
+
+    /**
+     * Engine which calculated the generation.
+     */
+    @Label("Engine")
+    String                         engine;
+
+    /**
+     * Grid width.
+     */
+    @Label("Width")
+    int                            width;
+
+    /**
+     * Grid height.
+     */
+    @Label("Height")
+    int                            height;
+
+    /**
+     * Calculation was run in parallel.
+     */
+    @Label("Parallel")
+    boolean                        parallel;
+
+    /**
+     * Number of the generation, -1 if the engine does not count generations.
+     */
+    @Label("Generation")
+    long                           generation;
+
+    /**
+     * Number of cells which changed their state, -1 if the engine does not count them.
+     */
+    @Label("Cells Changed")
+    long                           cellsChanged;
+
+    /**
+     * Start an event if the event is enabled in a running recording.
+     *
+     * @param engine
+     *            Engine name.
+     * @param width
+     *            Grid width.
+     * @param height
+     *            Grid height.
+     * @param parallel
+     *            <code>true</code> if the generation is calculated in parallel.
+     * @return The started event, or <code>null</code> if the event is not enabled.
+     */
+    public static GenerationEvent start(String engine, int width, int height, boolean parallel) {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        GenerationEvent event = new GenerationEvent();
+        event.engine = engine;
+        event.width = width;
+        event.height = height;
+        event.parallel = parallel;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the event and commit it to the recording.
+     *
+     * @param generationNumber
+     *            Number of the generation, -1 if unknown.
+     * @param changed
+     *            Number of cells which changed their state, -1 if unknown.
+     */
+    @Override
+    public void finish(long generationNumber, long changed) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.generation = generationNumber;
+            this.cellsChanged = changed;
+            this.commit();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a phase of loading a pattern file, e.g. parsing the header or decoding the pattern.
+ *
+ * @author D043987
+ *
+ */
+@Name(ParseEvent.NAME)
+@Label("Parse Phase")
+@Category({ "Game of Life", "Loading" })
+@Description("A phase of loading a pattern file")
+public class ParseEvent extends Event implements FlightRecorder.Parse {
+
+    /**
+     * Event name, used to enable the event in recording settings.
+     */
+    public static final String     NAME = "de.martindreier.gameoflife.Parse";
+
+    /**
+     * Event type, used to check if the event is enabled.
+     */
+    private static final EventType TYPE = EventType.getEventType(ParseEvent.class);
+
+    /**
+     * File format.
+     */
+    @Label("Format")
+    String                         format;
+
+    /**
+     * Loading phase.
+     */
+    @Label("Phase")
+    String                         phase;
+
+    /**
+     * Number of characters processed.
+     */
+    @Label("Characters")
+    long                           characters;
+
+    /**
+     * Number of lines processed.
+     */
+    @Label("Lines")
+    long                           lines;
+
+    /**
+     * Width of the pattern, as far as it is known after the phase.
+     */
+    @Label("Width")
+    int                            width;
+
+    /**
+     * Height of the pattern, as far as it is known after the phase.
+     */
+    @Label("Height")
+    int                            height;
+
+    /**
+     * Start an event if the event is enabled in a running recording.
+     *
+     * @param format
+     *            File format.
+     * @param phase
+     *            Loading phase.
+     * @return The started event, or <code>null</code> if the event is not enabled.
+     */
+    public static ParseEvent start(String format, String phase) {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        ParseEvent event = new ParseEvent();
+        event.format = format;
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the event and commit it to the recording.
+     *
+     * @param characterCount
+     *            Number of characters processed.
+     * @param lineCount
+     *            Number of lines processed.
+     * @param patternWidth
+     *            Width of the pattern.
+     * @param patternHeight
+     *            Height of the pattern.
+     */
+    @Override
+    public void finish(long characterCount, long lineCount, int patternWidth, int patternHeight) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.characters = characterCount;
+            this.lines = lineCount;
+            this.width = patternWidth;
+            this.height = patternHeight;
+            this.commit();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a stripe of rows calculated by a task of a parallel generation. There are many stripes per
+ * generation, so the event is disabled unless it is enabled in the recording settings.
+ *
+ * @author D043987
+ *
+ */
+@Name(StripeEvent.NAME)
+@Label("Stripe")
+@Category({ "Game of Life", "Simulation" })
+@Description("Calculation of a stripe of rows in a parallel generation")
+@StackTrace(false)
+@Enabled(false)
+public class StripeEvent extends Event implements FlightRecorder.Stripe {
+
+    /**
+     * Event name, used to enable the event in recording settings.
+     */
+    public static final String     NAME = "de.martindreier.gameoflife.Stripe";
+
+    /**
+     * Event type, used to check if the event is enabled.
+     */
+    private static final EventType TYPE = EventType.getEventType(StripeEvent.class);
+
+    /**
+     * Engine which calculated the stripe.
+     */
+    @Label("Engine")
+    String                         engine;
+
+    /**
+     * Grid width.
+     */
+    @Label("Width")
+    int                            width;
+
+    /**
+     * First row of the stripe.
+     */
+    @Label("First Row")
+    int                            firstRow;
+
+    /**
+     * Number of rows in the stripe.
+     */
+    @Label("Rows")
+    int                            rows;
+
+    /**
+     * Any cell in the stripe changed its state.
+     */
+    @Label("Changed")
+    boolean                        changed;
+
+    /**
+     * Start an event if the event is enabled in a running recording.
+     *
+     * @param engine
+     *            Engine name.
+     * @param width
+     *            Grid width.
+     * @param firstRow
+     *            First row of the stripe.
+     * @param rows
+     *            Number of rows in the stripe.
+     * @return The started event, or <code>null</code> if the event is not enabled.
+     */
+    public static StripeEvent start(String engine, int width, int firstRow, int rows) {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        StripeEvent event = new StripeEvent();
+        event.engine = engine;
+        event.width = width;
+        event.firstRow = firstRow;
+        event.rows = rows;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the event and commit it to the recording.
+     *
+     * @param stripeChanged
+     *            <code>true</code> if any cell in the stripe changed its state.
+     */
+    @Override
+    public void finish(boolean stripeChanged) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.changed = stripeChanged;
+            this.commit();
+        }
+    }
+}
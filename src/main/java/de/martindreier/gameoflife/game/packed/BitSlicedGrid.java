@@ -0,0 +1,475 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.packed;
+
+import java.util.Arrays;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.jfr.FlightRecorder;
+
+/**
+ * 64 independent game grids of the same size, which are simulated in lockstep. The grids are called lanes. Each cell
+ * position is stored as one <code>long</code> word, and bit <code>l</code> of the word is the state of that cell in
+ * lane <code>l</code>. A single pass of bitwise operations over all cell words therefore advances all 64 lanes by one
+ * generation.
+ * <p>
+ * All lanes can follow the same rule ({@link #step(LifeLikeRule)}), or each lane can have its own rule
+ * ({@link #setRule(int, LifeLikeRule)} and {@link #step()}). As with the {@link PackedGrid}, cells outside of the grid
+ * are always dead and stepping does not allocate any memory.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class BitSlicedGrid {
+
+    /**
+     * Number of lanes.
+     */
+    public static final int     LANES         = Long.SIZE;
+
+    /**
+     * Engine name in flight recorder events.
+     */
+    private static final String ENGINE_NAME   = "BitSlicedGrid";
+
+    /**
+     * Grid width (X dimension).
+     */
+    private final int           width;
+
+    /**
+     * Grid height (Y dimension).
+     */
+    private final int           height;
+
+    /**
+     * Current cell states, row by row. One word per cell.
+     */
+    private long[]              cells;
+
+    /**
+     * Buffer for the next generation.
+     */
+    private long[]              nextCells;
+
+    /**
+     * Lanes per neighbor count in which dead cells are born.
+     */
+    private final long[]        birthLanes    = new long[9];
+
+    /**
+     * Lanes per neighbor count in which alive cells survive.
+     */
+    private final long[]        survivalLanes = new long[9];
+
+    /**
+     * Create a new set of empty grids. All lanes follow Conway's rule until a different rule is set.
+     *
+     * @param width
+     *            Grid width (number of cells in X dimension).
+     * @param height
+     *            Grid height (number of cells in Y dimension).
+     */
+    public BitSlicedGrid(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(String.format("Height and width must be greather than 0 (height: %s, width: %s)", height, width));
+        }
+        this.width = width;
+        this.height = height;
+        this.cells = new long[Math.multiplyExact(width, height)];
+        this.nextCells = new long[this.cells.length];
+        this.setRule(LifeLikeRule.CONWAY);
+    }
+
+    /**
+     * Get the grid width.
+     *
+     * @return Number of cells in X dimension.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Get the grid height.
+     *
+     * @return Number of cells in Y dimension.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Set the rule for all lanes.
+     *
+     * @param rule
+     *            Game rule.
+     */
+    public void setRule(LifeLikeRule rule) {
+        for (int lane = 0; lane < LANES; lane++) {
+            this.setRule(lane, rule);
+        }
+    }
+
+    /**
+     * Set the rule of a single lane.
+     *
+     * @param lane
+     *            The lane (0 to 63).
+     * @param rule
+     *            Game rule.
+     */
+    public void setRule(int lane, LifeLikeRule rule) {
+        checkLane(lane);
+        long laneBit = 1L << lane;
+        for (int neighbors = 0; neighbors <= 8; neighbors++) {
+            if ((rule.getBirthMask() & (1 << neighbors)) != 0) {
+                this.birthLanes[neighbors] |= laneBit;
+            } else {
+                this.birthLanes[neighbors] &= ~laneBit;
+            }
+            if ((rule.getSurvivalMask() & (1 << neighbors)) != 0) {
+                this.survivalLanes[neighbors] |= laneBit;
+            } else {
+                this.survivalLanes[neighbors] &= ~laneBit;
+            }
+        }
+    }
+
+    /**
+     * Get the state of a cell in one lane.
+     *
+     * @param lane
+     *            The lane (0 to 63).
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     * @return Cell state.
+     */
+    public CellState get(int lane, int x, int y) {
+        return this.isAlive(lane, x, y) ? CellState.ALIVE : CellState.DEAD;
+    }
+
+    /**
+     * Check if a cell is alive in one lane.
+     *
+     * @param lane
+     *            The lane (0 to 63).
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     * @return <code>true</code> if the cell is alive.
+     */
+    public boolean isAlive(int lane, int x, int y) {
+        checkLane(lane);
+        return (this.getCell(x, y) & (1L << lane)) != 0;
+    }
+
+    /**
+     * Set the state of a cell in one lane.
+     *
+     * @param lane
+     *            The lane (0 to 63).
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     * @param state
+     *            State of the cell. Must not be <code>null</code>.
+     */
+    public void set(int lane, int x, int y, CellState state) {
+        if (state == null) {
+            throw new IllegalArgumentException("The cell state must not be null");
+        }
+        checkLane(lane);
+        long cell = this.getCell(x, y);
+        this.setCell(x, y, state == CellState.ALIVE ? cell | (1L << lane) : cell & ~(1L << lane));
+    }
+
+    /**
+     * Get the state of a cell in all lanes.
+     *
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     * @return Bit <code>l</code> is set if the cell is alive in lane <code>l</code>.
+     */
+    public long getCell(int x, int y) {
+        this.checkBounds(x, y);
+        return this.cells[y * this.width + x];
+    }
+
+    /**
+     * Set the state of a cell in all lanes.
+     *
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     * @param lanes
+     *            Bit <code>l</code> is set if the cell is alive in lane <code>l</code>.
+     */
+    public void setCell(int x, int y, long lanes) {
+        this.checkBounds(x, y);
+        this.cells[y * this.width + x] = lanes;
+    }
+
+    /**
+     * Copy a packed grid into a lane. The packed grid must have the same size as this grid.
+     *
+     * @param lane
+     *            The lane (0 to 63).
+     * @param grid
+     *            Content for the lane.
+     */
+    public void setLane(int lane, PackedGrid grid) {
+        checkLane(lane);
+        this.checkSize(grid);
+        long laneBit = 1L << lane;
+        for (int y = 0; y < this.height; y++) {
+            int row = y * this.width;
+            for (int wordX = 0; wordX < grid.getWordsPerRow(); wordX++) {
+                long word = grid.getWord(wordX, y);
+                int firstX = wordX * PackedGrid.WORD_SIZE;
+                int lastX = Math.min(firstX + PackedGrid.WORD_SIZE, this.width);
+                for (int x = firstX; x < lastX; x++) {
+                    if ((word & (1L << x)) != 0) {
+                        this.cells[row + x] |= laneBit;
+                    } else {
+                        this.cells[row + x] &= ~laneBit;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the content of a lane into a packed grid. The packed grid must have the same size as this grid.
+     *
+     * @param lane
+     *            The lane (0 to 63).
+     * @param grid
+     *            Target grid.
+     */
+    public void copyLaneTo(int lane, PackedGrid grid) {
+        checkLane(lane);
+        this.checkSize(grid);
+        for (int y = 0; y < this.height; y++) {
+            int row = y * this.width;
+            for (int wordX = 0; wordX < grid.getWordsPerRow(); wordX++) {
+                long word = 0;
+                int firstX = wordX * PackedGrid.WORD_SIZE;
+                int lastX = Math.min(firstX + PackedGrid.WORD_SIZE, this.width);
+                for (int x = firstX; x < lastX; x++) {
+                    word |= ((this.cells[row + x] >>> lane) & 1L) << x;
+                }
+                grid.setWord(wordX, y, word);
+            }
+        }
+    }
+
+    /**
+     * Get the content of a lane.
+     *
+     * @param lane
+     *            The lane (0 to 63).
+     * @return Packed copy of the lane.
+     */
+    public PackedGrid getLane(int lane) {
+        PackedGrid grid = new PackedGrid(this.width, this.height);
+        this.copyLaneTo(lane, grid);
+        return grid;
+    }
+
+    /**
+     * Kill all cells in all lanes.
+     */
+    public void clear() {
+        Arrays.fill(this.cells, 0L);
+    }
+
+    /**
+     * Count the alive cells of a lane.
+     *
+     * @param lane
+     *            The lane (0 to 63).
+     * @return Number of alive cells.
+     */
+    public long getPopulation(int lane) {
+        checkLane(lane);
+        long population = 0;
+        for (long cell : this.cells) {
+            population += (cell >>> lane) & 1L;
+        }
+        return population;
+    }
+
+    /**
+     * Copy the current state of all lanes into an array, e.g. to compare later generations with
+     * {@link #getDifferingLanes(long[])}.
+     *
+     * @param snapshot
+     *            Target array. Must have one entry per cell.
+     */
+    public void copyCellsTo(long[] snapshot) {
+        System.arraycopy(this.cells, 0, snapshot, 0, this.cells.length);
+    }
+
+    /**
+     * Compare the current state with a snapshot created by {@link #copyCellsTo(long[])}.
+     *
+     * @param snapshot
+     *            The snapshot.
+     * @return Bit <code>l</code> is set if lane <code>l</code> differs from the snapshot.
+     */
+    public long getDifferingLanes(long[] snapshot) {
+        long differences = 0;
+        for (int index = 0; index < this.cells.length; index++) {
+            differences |= this.cells[index] ^ snapshot[index];
+        }
+        return differences;
+    }
+
+    /**
+     * Calculate the next generation of all lanes, using the same rule for all lanes. The per-lane rules are ignored.
+     *
+     * @param rule
+     *            Game rule.
+     * @return Bit <code>l</code> is set if any cell in lane <code>l</code> changed its state.
+     */
+    public long step(LifeLikeRule rule) {
+        return this.step(rule, true);
+    }
+
+    /**
+     * Calculate the next generation of all lanes, using the rule of each lane.
+     *
+     * @return Bit <code>l</code> is set if any cell in lane <code>l</code> changed its state.
+     */
+    public long step() {
+        return this.step(null, false);
+    }
+
+    /**
+     * Calculate the next generation of all lanes.
+     *
+     * @param rule
+     *            Game rule for all lanes.
+     * @param uniform
+     *            <code>true</code> if <code>rule</code> is used for all lanes, <code>false</code> for per-lane rules.
+     * @return Bit <code>l</code> is set if any cell in lane <code>l</code> changed its state.
+     */
+    private long step(LifeLikeRule rule, boolean uniform) {
+        FlightRecorder.Generation event = FlightRecorder.startGeneration(ENGINE_NAME, this.width, this.height, false);
+        long changed = 0;
+        long[] current = this.cells;
+        long[] next = this.nextCells;
+        int lastX = this.width - 1;
+        for (int y = 0; y < this.height; y++) {
+            int row = y * this.width;
+            int above = y > 0 ? row - this.width : -1;
+            int below = y < this.height - 1 ? row + this.width : -1;
+            for (int x = 0; x <= lastX; x++) {
+                boolean hasLeft = x > 0;
+                boolean hasRight = x < lastX;
+
+                long center = current[row + x];
+                long west = hasLeft ? current[row + x - 1] : 0;
+                long east = hasRight ? current[row + x + 1] : 0;
+
+                long north = 0;
+                long northWest = 0;
+                long northEast = 0;
+                if (above >= 0) {
+                    north = current[above + x];
+                    northWest = hasLeft ? current[above + x - 1] : 0;
+                    northEast = hasRight ? current[above + x + 1] : 0;
+                }
+
+                long south = 0;
+                long southWest = 0;
+                long southEast = 0;
+                if (below >= 0) {
+                    south = current[below + x];
+                    southWest = hasLeft ? current[below + x - 1] : 0;
+                    southEast = hasRight ? current[below + x + 1] : 0;
+                }
+
+                long result;
+                if (uniform) {
+                    result = rule.apply(center, northWest, north, northEast, west, east, southWest, south, southEast);
+                } else {
+                    result = LifeLikeRule.applyPerLane(center, northWest, north, northEast, west, east, southWest, south, southEast, this.birthLanes, this.survivalLanes);
+                }
+                next[row + x] = result;
+                changed |= result ^ center;
+            }
+        }
+        this.nextCells = current;
+        this.cells = next;
+        if (event != null) {
+            event.finish(-1, -1);
+        }
+        return changed;
+    }
+
+    /**
+     * Check that a lane number is valid.
+     *
+     * @param lane
+     *            The lane.
+     */
+    private static void checkLane(int lane) {
+        if (lane < 0 || lane >= LANES) {
+            throw new IllegalArgumentException(String.format("Lane must be between 0 and %d (%d)", LANES - 1, lane));
+        }
+    }
+
+    /**
+     * Check that a packed grid has the same size as this grid.
+     *
+     * @param grid
+     *            The packed grid.
+     */
+    private void checkSize(PackedGrid grid) {
+        if (grid.getWidth() != this.width || grid.getHeight() != this.height) {
+            throw new IllegalArgumentException(String.format("Grid sizes differ (%dx%d, %dx%d)", this.width, this.height, grid.getWidth(), grid.getHeight()));
+        }
+    }
+
+    /**
+     * Check that coordinates are inside the grid.
+     *
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     */
+    private void checkBounds(int x, int y) {
+        if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+            throw new ArrayIndexOutOfBoundsException(String.format("Cell (%d,%d) is outside of the grid (%dx%d)", x, y, this.width, this.height));
+        }
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "BitSlicedGrid [" + this.width + "x" + this.height + "]";
+    }
+}
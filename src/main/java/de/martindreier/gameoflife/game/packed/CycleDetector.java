@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.packed;
+
+/**
+ * Detects when a {@link PackedGrid} has entered a cycle, i.e. when a generation repeats one of the previous
+ * generations. Generations are compared by their 64 bit content hash, and only cycles up to a maximum period are
+ * detected. A detector can be reused for any number of runs and does not allocate memory after construction, except
+ * for the history of an exact detector when the grid size changes.
+ * <p>
+ * By default, a cycle is reported as soon as the hashes match, so a hash collision would report a wrong period. An
+ * exact detector additionally keeps copies of the last generations and confirms each candidate period by comparing
+ * the cells, at the cost of one copy of the grid for each generation up to the maximum period.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class CycleDetector {
+
+    /**
+     * Content hashes of the last generations, indexed by generation modulo the maximum period.
+     */
+    private final long[]  hashes;
+
+    /**
+     * Candidate periods are confirmed by comparing the cells.
+     */
+    private final boolean exact;
+
+    /**
+     * Cells of the last generations, indexed like the hashes. <code>null</code> if the detector is not exact.
+     */
+    private long[][]      history;
+
+    /**
+     * Current generation.
+     */
+    private int           generation;
+
+    /**
+     * Period of the detected cycle, 0 if no cycle has been detected.
+     */
+    private int           period;
+
+    /**
+     * Generation at which the detected cycle started.
+     */
+    private int           cycleStart;
+
+    /**
+     * Create a new detector.
+     *
+     * @param maxPeriod
+     *            Longest period which is detected.
+     */
+    public CycleDetector(int maxPeriod) {
+        this(maxPeriod, false);
+    }
+
+    /**
+     * Create a new detector, which optionally confirms cycles by comparing the cells.
+     *
+     * @param maxPeriod
+     *            Longest period which is detected.
+     * @param exact
+     *            <code>true</code> to confirm candidate periods by comparing the cells, <code>false</code> to rely on
+     *            the content hashes.
+     */
+    public CycleDetector(int maxPeriod, boolean exact) {
+        if (maxPeriod <= 0) {
+            throw new IllegalArgumentException(String.format("Maximum period must be greater than 0 (%d)", maxPeriod));
+        }
+        this.hashes = new long[maxPeriod];
+        this.exact = exact;
+    }
+
+    /**
+     * Start a new run.
+     *
+     * @param grid
+     *            The grid in its initial state (generation 0).
+     */
+    public void start(PackedGrid grid) {
+        this.generation = 0;
+        this.period = 0;
+        this.cycleStart = 0;
+        this.hashes[0] = grid.contentHash();
+        if (this.exact) {
+            int words = grid.getWordsPerRow() * grid.getHeight();
+            if (this.history == null || this.history[0].length != words) {
+                this.history = new long[this.hashes.length][words];
+            }
+            grid.copyCellsTo(this.history[0]);
+        }
+    }
+
+    /**
+     * Record the next generation of the grid.
+     *
+     * @param grid
+     *            The grid after a call to {@link PackedGrid#step(LifeLikeRule)}.
+     * @param changed
+     *            Return value of {@link PackedGrid#step(LifeLikeRule)}.
+     * @return <code>true</code> if the grid has entered a cycle.
+     */
+    public boolean next(PackedGrid grid, boolean changed) {
+        this.generation++;
+        if (!changed) {
+            this.finish(this.generation - 1, 1);
+            return true;
+        }
+        int ringSize = this.hashes.length;
+        long hash = grid.contentHash();
+        for (int candidate = 2; candidate <= Math.min(ringSize, this.generation); candidate++) {
+            int index = (this.generation - candidate) % ringSize;
+            if (this.hashes[index] == hash && (!this.exact || grid.equalsCells(this.history[index]))) {
+                this.finish(this.generation - candidate, candidate);
+                return true;
+            }
+        }
+        this.hashes[this.generation % ringSize] = hash;
+        if (this.exact) {
+            grid.copyCellsTo(this.history[this.generation % ringSize]);
+        }
+        return false;
+    }
+
+    /**
+     * Record a detected cycle.
+     *
+     * @param start
+     *            Generation at which the cycle started.
+     * @param cyclePeriod
+     *            Period of the cycle.
+     */
+    private void finish(int start, int cyclePeriod) {
+        this.cycleStart = start;
+        this.period = cyclePeriod;
+    }
+
+    /**
+     * Get the number of generations recorded in the current run.
+     *
+     * @return Current generation.
+     */
+    public int getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Get the period of the detected cycle.
+     *
+     * @return Period, or 0 if no cycle has been detected.
+     */
+    public int getPeriod() {
+        return this.period;
+    }
+
+    /**
+     * Get the generation at which the detected cycle started.
+     *
+     * @return First generation of the cycle. Only valid if a cycle has been detected.
+     */
+    public int getCycleStart() {
+        return this.cycleStart;
+    }
+}
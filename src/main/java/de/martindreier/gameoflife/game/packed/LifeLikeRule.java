@@ -0,0 +1,322 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.packed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.GameRule;
+
+/**
+ * A life-like game rule in a form suitable for bit-parallel evaluation. The rule is stored as two bit masks: bit
+ * <code>n</code> of the birth mask is set if a dead cell with <code>n</code> alive neighbors is born, bit
+ * <code>n</code> of the survival mask is set if an alive cell with <code>n</code> alive neighbors stays alive.
+ * <p>
+ * The rule is applied to 64 cells at once. Each cell is one bit in a <code>long</code> word, and the eight neighbors of
+ * the cells are passed as eight words aligned to the cell word.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public final class LifeLikeRule {
+
+    /**
+     * Birth mask of Conway's Game of Life (B3).
+     */
+    private static final int         CONWAY_BIRTH    = 1 << 3;
+
+    /**
+     * Survival mask of Conway's Game of Life (S23).
+     */
+    private static final int         CONWAY_SURVIVAL = 1 << 2 | 1 << 3;
+
+    /**
+     * Valid bits of the masks (0 to 8 neighbors).
+     */
+    private static final int         MASK_BITS       = 0x1ff;
+
+    /**
+     * Conway's Game of Life (B3/S23).
+     */
+    public static final LifeLikeRule CONWAY          = new LifeLikeRule(CONWAY_BIRTH, CONWAY_SURVIVAL);
+
+    /**
+     * Birth mask.
+     */
+    private final int                birthMask;
+
+    /**
+     * Survival mask.
+     */
+    private final int                survivalMask;
+
+    /**
+     * Rule is Conway's Game of Life, which has a shortcut evaluation.
+     */
+    private final boolean            conway;
+
+    /**
+     * Create a new rule from bit masks.
+     *
+     * @param birthMask
+     *            Bit <code>n</code> is set if a dead cell with <code>n</code> alive neighbors is born.
+     * @param survivalMask
+     *            Bit <code>n</code> is set if an alive cell with <code>n</code> alive neighbors stays alive.
+     */
+    public LifeLikeRule(int birthMask, int survivalMask) {
+        if ((birthMask & ~MASK_BITS) != 0 || (survivalMask & ~MASK_BITS) != 0) {
+            throw new IllegalArgumentException(String.format("Rule masks may only contain neighbor counts 0 to 8 (birth: %x, survival: %x)", birthMask, survivalMask));
+        }
+        this.birthMask = birthMask;
+        this.survivalMask = survivalMask;
+        this.conway = birthMask == CONWAY_BIRTH && survivalMask == CONWAY_SURVIVAL;
+    }
+
+    /**
+     * Convert a game rule into a life-like rule. The game rule is evaluated for all possible cell states and neighbor
+     * counts, so any {@link GameRule} which only depends on these two values can be converted.
+     *
+     * @param rule
+     *            The game rule.
+     * @return Equivalent life-like rule.
+     */
+    public static LifeLikeRule of(GameRule rule) {
+        if (rule == null) {
+            throw new IllegalArgumentException("Game rule must not be null");
+        }
+        int birthMask = 0;
+        int survivalMask = 0;
+        for (int neighbors = 0; neighbors <= 8; neighbors++) {
+            if (rule.getNewState(CellState.DEAD, neighbors) == CellState.ALIVE) {
+                birthMask |= 1 << neighbors;
+            }
+            if (rule.getNewState(CellState.ALIVE, neighbors) == CellState.ALIVE) {
+                survivalMask |= 1 << neighbors;
+            }
+        }
+        return new LifeLikeRule(birthMask, survivalMask);
+    }
+
+    /**
+     * Calculate the next state of 64 cells at once.
+     *
+     * @param alive
+     *            Current state of the cells.
+     * @param northWest
+     *            North west neighbors of the cells.
+     * @param north
+     *            North neighbors of the cells.
+     * @param northEast
+     *            North east neighbors of the cells.
+     * @param west
+     *            West neighbors of the cells.
+     * @param east
+     *            East neighbors of the cells.
+     * @param southWest
+     *            South west neighbors of the cells.
+     * @param south
+     *            South neighbors of the cells.
+     * @param southEast
+     *            South east neighbors of the cells.
+     * @return Next state of the cells.
+     */
+    public long apply(long alive, long northWest, long north, long northEast, long west, long east, long southWest, long south, long southEast) {
+        // Add up the neighbors of each row with full adders
+        long topSum = northWest ^ north ^ northEast;
+        long topCarry = (northWest & north) | (northEast & (northWest ^ north));
+        long middleSum = west ^ east;
+        long middleCarry = west & east;
+        long bottomSum = southWest ^ south ^ southEast;
+        long bottomCarry = (southWest & south) | (southEast & (southWest ^ south));
+
+        // Combine the row sums into a four bit neighbor count
+        long count0 = topSum ^ middleSum ^ bottomSum;
+        long onesCarry = (topSum & middleSum) | (bottomSum & (topSum ^ middleSum));
+        long twosSum = topCarry ^ middleCarry ^ bottomCarry;
+        long twosCarry = (topCarry & middleCarry) | (bottomCarry & (topCarry ^ middleCarry));
+        long count1 = twosSum ^ onesCarry;
+        long foursCarry = twosSum & onesCarry;
+        long count2 = twosCarry ^ foursCarry;
+        long count3 = twosCarry & foursCarry;
+
+        if (this.conway) {
+            // Exactly 3 neighbors, or exactly 2 neighbors and alive
+            return count1 & ~count2 & ~count3 & (count0 | alive);
+        }
+        long born = 0;
+        long survives = 0;
+        for (int neighbors = 0; neighbors <= 8; neighbors++) {
+            int bit = 1 << neighbors;
+            if (((this.birthMask | this.survivalMask) & bit) == 0) {
+                continue;
+            }
+            long matches = ((neighbors & 1) != 0 ? count0 : ~count0) & ((neighbors & 2) != 0 ? count1 : ~count1) & ((neighbors & 4) != 0 ? count2 : ~count2)
+                    & ((neighbors & 8) != 0 ? count3 : ~count3);
+            if ((this.birthMask & bit) != 0) {
+                born |= matches;
+            }
+            if ((this.survivalMask & bit) != 0) {
+                survives |= matches;
+            }
+        }
+        return (alive & survives) | (~alive & born);
+    }
+
+    /**
+     * Calculate the next state of 64 cells at once, where each cell follows its own rule. This is used when the bits of
+     * a word belong to different boards rather than to neighboring cells of one board.
+     *
+     * @param alive
+     *            Current state of the cells.
+     * @param northWest
+     *            North west neighbors of the cells.
+     * @param north
+     *            North neighbors of the cells.
+     * @param northEast
+     *            North east neighbors of the cells.
+     * @param west
+     *            West neighbors of the cells.
+     * @param east
+     *            East neighbors of the cells.
+     * @param southWest
+     *            South west neighbors of the cells.
+     * @param south
+     *            South neighbors of the cells.
+     * @param southEast
+     *            South east neighbors of the cells.
+     * @param birthLanes
+     *            Entry <code>n</code> has a bit set for each cell which is born with <code>n</code> alive neighbors.
+     * @param survivalLanes
+     *            Entry <code>n</code> has a bit set for each cell which survives with <code>n</code> alive neighbors.
+     * @return Next state of the cells.
+     */
+    public static long applyPerLane(long alive, long northWest, long north, long northEast, long west, long east, long southWest, long south, long southEast, long[] birthLanes,
+            long[] survivalLanes) {
+        long topSum = northWest ^ north ^ northEast;
+        long topCarry = (northWest & north) | (northEast & (northWest ^ north));
+        long middleSum = west ^ east;
+        long middleCarry = west & east;
+        long bottomSum = southWest ^ south ^ southEast;
+        long bottomCarry = (southWest & south) | (southEast & (southWest ^ south));
+
+        long count0 = topSum ^ middleSum ^ bottomSum;
+        long onesCarry = (topSum & middleSum) | (bottomSum & (topSum ^ middleSum));
+        long twosSum = topCarry ^ middleCarry ^ bottomCarry;
+        long twosCarry = (topCarry & middleCarry) | (bottomCarry & (topCarry ^ middleCarry));
+        long count1 = twosSum ^ onesCarry;
+        long foursCarry = twosSum & onesCarry;
+        long count2 = twosCarry ^ foursCarry;
+        long count3 = twosCarry & foursCarry;
+
+        long born = 0;
+        long survives = 0;
+        for (int neighbors = 0; neighbors <= 8; neighbors++) {
+            if ((birthLanes[neighbors] | survivalLanes[neighbors]) == 0) {
+                continue;
+            }
+            long matches = ((neighbors & 1) != 0 ? count0 : ~count0) & ((neighbors & 2) != 0 ? count1 : ~count1) & ((neighbors & 4) != 0 ? count2 : ~count2)
+                    & ((neighbors & 8) != 0 ? count3 : ~count3);
+            born |= matches & birthLanes[neighbors];
+            survives |= matches & survivalLanes[neighbors];
+        }
+        return (alive & survives) | (~alive & born);
+    }
+
+    /**
+     * Get the birth mask.
+     *
+     * @return Bit <code>n</code> is set if a dead cell with <code>n</code> alive neighbors is born.
+     */
+    public int getBirthMask() {
+        return this.birthMask;
+    }
+
+    /**
+     * Get the survival mask.
+     *
+     * @return Bit <code>n</code> is set if an alive cell with <code>n</code> alive neighbors stays alive.
+     */
+    public int getSurvivalMask() {
+        return this.survivalMask;
+    }
+
+    /**
+     * Convert this rule into a {@link GameRule}.
+     *
+     * @return Equivalent game rule.
+     */
+    public GameRule toGameRule() {
+        return GameRule.createRule(toArray(this.survivalMask), toArray(this.birthMask));
+    }
+
+    /**
+     * Convert a mask into an array of neighbor counts.
+     *
+     * @param mask
+     *            The mask.
+     * @return Neighbor counts which are set in the mask.
+     */
+    private static Integer[] toArray(int mask) {
+        List<Integer> counts = new ArrayList<>();
+        for (int neighbors = 0; neighbors <= 8; neighbors++) {
+            if ((mask & (1 << neighbors)) != 0) {
+                counts.add(neighbors);
+            }
+        }
+        return counts.toArray(new Integer[counts.size()]);
+    }
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return this.birthMask << 9 | this.survivalMask;
+    }
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof LifeLikeRule)) {
+            return false;
+        }
+        LifeLikeRule other = (LifeLikeRule) obj;
+        return this.birthMask == other.birthMask && this.survivalMask == other.survivalMask;
+    }
+
+    /**
+     * Returns the rule in B/S notation, e.g. <code>B3/S23</code>.
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("B");
+        for (int neighbors = 0; neighbors <= 8; neighbors++) {
+            if ((this.birthMask & (1 << neighbors)) != 0) {
+                builder.append(neighbors);
+            }
+        }
+        builder.append("/S");
+        for (int neighbors = 0; neighbors <= 8; neighbors++) {
+            if ((this.survivalMask & (1 << neighbors)) != 0) {
+                builder.append(neighbors);
+            }
+        }
+        return builder.toString();
+    }
+}
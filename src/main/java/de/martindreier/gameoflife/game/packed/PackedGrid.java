@@ -0,0 +1,1012 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.packed;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.PasteMode;
+import de.martindreier.gameoflife.game.io.CellSink;
+import de.martindreier.gameoflife.game.io.GridLoader;
+import de.martindreier.gameoflife.game.jfr.FlightRecorder;
+
+/**
+ * A game grid which stores each cell as a single bit. Each row is stored as a sequence of <code>long</code> words,
+ * where bit <code>i</code> of word <code>w</code> holds the cell in column <code>64 * w + i</code>. The coordinate
+ * system and the borders are the same as for the {@link Grid}: the top left cell is (0,0) and cells outside of the grid
+ * are always dead.
+ * <p>
+ * A generation is calculated for 64 cells at once with bitwise operations. The grid keeps a second buffer for the next
+ * generation, so stepping does not allocate any memory.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class PackedGrid implements CellSink {
+
+    /**
+     * Number of bits in a word.
+     */
+    public static final int     WORD_SIZE        = Long.SIZE;
+
+    /**
+     * Minimum number of words in a stripe of a parallel step. Smaller stripes cost more in task overhead than they gain.
+     */
+    private static final int    MIN_STRIPE_WORDS = 2048;
+
+    /**
+     * Engine name in flight recorder events.
+     */
+    private static final String ENGINE_NAME      = "PackedGrid";
+
+    /**
+     * Grid width (X dimension).
+     */
+    private final int           width;
+
+    /**
+     * Grid height (Y dimension).
+     */
+    private final int           height;
+
+    /**
+     * Number of words per row.
+     */
+    private final int           wordsPerRow;
+
+    /**
+     * Mask for the valid bits in the last word of each row.
+     */
+    private final long          lastWordMask;
+
+    /**
+     * Current cell states, row by row.
+     */
+    private long[]              cells;
+
+    /**
+     * Buffer for the next generation.
+     */
+    private long[]              nextCells;
+
+    /**
+     * Create an empty grid.
+     *
+     * @param width
+     *            Grid width (number of cells in X dimension).
+     * @param height
+     *            Grid height (number of cells in Y dimension).
+     */
+    public PackedGrid(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(String.format("Height and width must be greather than 0 (height: %s, width: %s)", height, width));
+        }
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + WORD_SIZE - 1) / WORD_SIZE;
+        int remainder = width % WORD_SIZE;
+        this.lastWordMask = remainder == 0 ? -1L : (1L << remainder) - 1;
+        this.cells = new long[Math.multiplyExact(this.wordsPerRow, height)];
+        this.nextCells = new long[this.cells.length];
+    }
+
+    /**
+     * Create a copy of another packed grid.
+     *
+     * @param other
+     *            The grid to copy.
+     */
+    public PackedGrid(PackedGrid other) {
+        this(other.width, other.height);
+        System.arraycopy(other.cells, 0, this.cells, 0, this.cells.length);
+    }
+
+    /**
+     * Create a packed grid with the content of a {@link Grid}.
+     *
+     * @param grid
+     *            The grid to copy.
+     * @return Packed copy of the grid.
+     */
+    public static PackedGrid of(Grid grid) {
+        PackedGrid packed = new PackedGrid(grid.getWidth(), grid.getHeight());
+        for (int y = 0; y < packed.height; y++) {
+            for (int x = 0; x < packed.width; x++) {
+                if (grid.get(x, y) == CellState.ALIVE) {
+                    packed.setAlive(x, y, true);
+                }
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Create a packed grid from a loader. The grid size is taken from the loader.
+     *
+     * @param loader
+     *            Grid loader to specify grid dimensions and initial content.
+     * @return The loaded grid.
+     */
+    public static PackedGrid of(GridLoader loader) {
+        PackedGrid packed = new PackedGrid(loader.getWidth(), loader.getHeight());
+        packed.load(loader, 0, 0);
+        return packed;
+    }
+
+    /**
+     * Set the cells of a pattern from a loader, without creating a {@link Grid} of the full size. The pattern is placed
+     * with its top left corner at the given position and must fit into this grid. The area of the pattern is cleared,
+     * then the loader pushes the alive cells with {@link GridLoader#load(CellSink)}.
+     *
+     * @param loader
+     *            The loader.
+     * @param left
+     *            X coordinate of the left edge of the pattern.
+     * @param top
+     *            Y coordinate of the top edge of the pattern.
+     */
+    public void load(GridLoader loader, int left, int top) {
+        if (left < 0 || top < 0 || left + loader.getWidth() > this.width || top + loader.getHeight() > this.height) {
+            throw new IllegalArgumentException(String.format("Pattern (%dx%d at %d,%d) does not fit into grid (%dx%d)", loader.getWidth(), loader.getHeight(), left, top, this.width,
+                    this.height));
+        }
+        this.clearRegion(left, top, loader.getWidth(), loader.getHeight());
+        loader.load(new LoaderTarget(left, top));
+    }
+
+    /**
+     * Copy the content of this grid into a {@link Grid}. The target grid must be at least as large as this grid.
+     *
+     * @param grid
+     *            Target grid.
+     */
+    public void copyTo(Grid grid) {
+        if (grid.getWidth() < this.width || grid.getHeight() < this.height) {
+            throw new IllegalArgumentException("Packed grid does not fit into target grid");
+        }
+        for (int y = 0; y < this.height; y++) {
+            for (int x = 0; x < this.width; x++) {
+                grid.set(x, y, this.get(x, y));
+            }
+        }
+    }
+
+    /**
+     * Copy the content of another grid of the same size into this grid.
+     *
+     * @param other
+     *            The source grid.
+     */
+    public void copyFrom(PackedGrid other) {
+        if (other.width != this.width || other.height != this.height) {
+            throw new IllegalArgumentException(String.format("Grid sizes differ (%dx%d, %dx%d)", this.width, this.height, other.width, other.height));
+        }
+        System.arraycopy(other.cells, 0, this.cells, 0, this.cells.length);
+    }
+
+    /**
+     * Get the grid width.
+     *
+     * @return Number of cells in X dimension.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Get the grid height.
+     *
+     * @return Number of cells in Y dimension.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Copy the current state into an array, e.g. to compare later generations with {@link #equalsCells(long[])}.
+     *
+     * @param snapshot
+     *            Target array. Must have {@link #getWordsPerRow()} entries per row.
+     */
+    public void copyCellsTo(long[] snapshot) {
+        System.arraycopy(this.cells, 0, snapshot, 0, this.cells.length);
+    }
+
+    /**
+     * Compare the current state with a snapshot created by {@link #copyCellsTo(long[])}.
+     *
+     * @param snapshot
+     *            The snapshot.
+     * @return <code>true</code> if the cells are the same as in the snapshot.
+     */
+    public boolean equalsCells(long[] snapshot) {
+        return Arrays.equals(this.cells, snapshot);
+    }
+
+    /**
+     * Get the number of words used for each row.
+     *
+     * @return Words per row.
+     */
+    public int getWordsPerRow() {
+        return this.wordsPerRow;
+    }
+
+    /**
+     * Get the state of a cell.
+     *
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     * @return Cell state.
+     */
+    public CellState get(int x, int y) {
+        return this.isAlive(x, y) ? CellState.ALIVE : CellState.DEAD;
+    }
+
+    /**
+     * Check if a cell is alive.
+     *
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     * @return <code>true</code> if the cell is alive.
+     */
+    public boolean isAlive(int x, int y) {
+        this.checkBounds(x, y);
+        return (this.cells[this.wordIndex(x, y)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Set the state of a cell.
+     *
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     * @param state
+     *            State of the cell. Must not be <code>null</code>.
+     */
+    public void set(int x, int y, CellState state) {
+        if (state == null) {
+            throw new IllegalArgumentException("The cell state must not be null");
+        }
+        this.setAlive(x, y, state == CellState.ALIVE);
+    }
+
+    /**
+     * Set the state of a cell.
+     *
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     * @param alive
+     *            <code>true</code> if the cell is alive.
+     */
+    public void setAlive(int x, int y, boolean alive) {
+        this.checkBounds(x, y);
+        int index = this.wordIndex(x, y);
+        if (alive) {
+            this.cells[index] |= 1L << x;
+        } else {
+            this.cells[index] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Get a word of cells.
+     *
+     * @param wordX
+     *            Index of the word within the row.
+     * @param y
+     *            Row.
+     * @return Cells <code>64 * wordX</code> to <code>64 * wordX + 63</code> of the row.
+     */
+    public long getWord(int wordX, int y) {
+        return this.cells[y * this.wordsPerRow + wordX];
+    }
+
+    /**
+     * Set a word of cells. Bits beyond the grid width are ignored.
+     *
+     * @param wordX
+     *            Index of the word within the row.
+     * @param y
+     *            Row.
+     * @param word
+     *            Cells <code>64 * wordX</code> to <code>64 * wordX + 63</code> of the row.
+     */
+    public void setWord(int wordX, int y, long word) {
+        if (wordX == this.wordsPerRow - 1) {
+            word &= this.lastWordMask;
+        }
+        this.cells[y * this.wordsPerRow + wordX] = word;
+    }
+
+    /**
+     * Set up to 64 consecutive cells of a row alive. Bit <code>i</code> of <code>bits</code> is combined with the cell
+     * at <code>x + i</code> using a bitwise OR. Cells beyond the grid width are ignored.
+     *
+     * @param x
+     *            X coordinate of the first cell.
+     * @param y
+     *            Row.
+     * @param bits
+     *            Cells to set alive.
+     * @param count
+     *            Number of bits to use from <code>bits</code> (1 to 64).
+     */
+    public void orBits(int x, int y, long bits, int count) {
+        this.checkBounds(x, y);
+        if (count < WORD_SIZE) {
+            bits &= (1L << count) - 1;
+        }
+        int index = this.wordIndex(x, y);
+        int offset = x & (WORD_SIZE - 1);
+        int wordX = x >>> 6;
+        long low = bits << offset;
+        this.cells[index] |= wordX == this.wordsPerRow - 1 ? low & this.lastWordMask : low;
+        if (offset != 0 && wordX + 1 < this.wordsPerRow) {
+            long high = bits >>> (WORD_SIZE - offset);
+            this.cells[index + 1] |= wordX + 1 == this.wordsPerRow - 1 ? high & this.lastWordMask : high;
+        }
+    }
+
+    /**
+     * Set a run of consecutive cells of a row to the same state. Whole words are written at once.
+     *
+     * @param x
+     *            X coordinate of the first cell.
+     * @param y
+     *            Row.
+     * @param length
+     *            Number of cells. Nothing happens if the length is 0.
+     * @param alive
+     *            <code>true</code> to set the cells alive, <code>false</code> to kill them.
+     */
+    public void setRun(int x, int y, int length, boolean alive) {
+        if (length == 0) {
+            return;
+        }
+        if (length < 0 || x > this.width - length) {
+            throw new ArrayIndexOutOfBoundsException(String.format("Run of %d cells at (%d,%d) is outside of the grid (%dx%d)", length, x, y, this.width, this.height));
+        }
+        this.checkBounds(x, y);
+        int end = x + length - 1;
+        int first = this.wordIndex(x, y);
+        int last = this.wordIndex(end, y);
+        long firstMask = -1L << (x & (WORD_SIZE - 1));
+        long lastMask = -1L >>> (WORD_SIZE - 1 - (end & (WORD_SIZE - 1)));
+        if (first == last) {
+            this.applyMask(first, firstMask & lastMask, alive);
+            return;
+        }
+        this.applyMask(first, firstMask, alive);
+        Arrays.fill(this.cells, first + 1, last, alive ? -1L : 0L);
+        this.applyMask(last, lastMask, alive);
+    }
+
+    /**
+     * Set all cells of a rectangle to the same state. Each row is written with whole words.
+     *
+     * @param x
+     *            X coordinate of the left edge.
+     * @param y
+     *            Y coordinate of the top edge.
+     * @param width
+     *            Width of the rectangle.
+     * @param height
+     *            Height of the rectangle.
+     * @param alive
+     *            <code>true</code> to set the cells alive, <code>false</code> to kill them.
+     */
+    public void fillRectangle(int x, int y, int width, int height, boolean alive) {
+        this.checkRegion(x, y, width, height);
+        if (width == 0) {
+            return;
+        }
+        for (int row = y; row < y + height; row++) {
+            this.setRun(x, row, width, alive);
+        }
+    }
+
+    /**
+     * Kill all cells of a rectangle.
+     *
+     * @param x
+     *            X coordinate of the left edge.
+     * @param y
+     *            Y coordinate of the top edge.
+     * @param width
+     *            Width of the rectangle.
+     * @param height
+     *            Height of the rectangle.
+     */
+    public void clearRegion(int x, int y, int width, int height) {
+        this.fillRectangle(x, y, width, height, false);
+    }
+
+    /**
+     * Paste another packed grid into this grid, with its top left corner at the given position.
+     *
+     * @param x
+     *            X coordinate of the left edge.
+     * @param y
+     *            Y coordinate of the top edge.
+     * @param pattern
+     *            The grid to paste.
+     * @param mode
+     *            How the pattern is combined with the cells.
+     */
+    public void paste(int x, int y, PackedGrid pattern, PasteMode mode) {
+        this.paste(x, y, pattern.width, pattern.height, pattern.cells, mode);
+    }
+
+    /**
+     * Paste a bitmap into a rectangle of the grid. The bitmap has the layout of the cells of a packed grid of the size
+     * of the rectangle: one row of <code>(width + 63) / 64</code> words per row of the rectangle. Each word of the
+     * bitmap is shifted into place and combined with at most two words of the grid.
+     *
+     * @param x
+     *            X coordinate of the left edge.
+     * @param y
+     *            Y coordinate of the top edge.
+     * @param width
+     *            Width of the rectangle.
+     * @param height
+     *            Height of the rectangle.
+     * @param bitmap
+     *            The bitmap.
+     * @param mode
+     *            How the bitmap is combined with the cells.
+     */
+    public void paste(int x, int y, int width, int height, long[] bitmap, PasteMode mode) {
+        if (bitmap == null || mode == null) {
+            throw new IllegalArgumentException("Bitmap and paste mode must not be null");
+        }
+        int stride = (width + WORD_SIZE - 1) / WORD_SIZE;
+        if (width >= 0 && height >= 0 && (long) stride * height > bitmap.length) {
+            throw new IllegalArgumentException(String.format("Bitmap of %d words is too short for %dx%d cells", bitmap.length, width, height));
+        }
+        this.checkRegion(x, y, width, height);
+        for (int row = 0; row < height; row++) {
+            int source = row * stride;
+            for (int word = 0; word < stride; word++) {
+                int count = Math.min(WORD_SIZE, width - word * WORD_SIZE);
+                long mask = count == WORD_SIZE ? -1L : (1L << count) - 1;
+                this.combineBits(x + word * WORD_SIZE, y + row, bitmap[source + word] & mask, mask, mode);
+            }
+        }
+    }
+
+    /**
+     * Combine up to 64 consecutive cells of a row with bits. The cells must be inside the grid.
+     *
+     * @param x
+     *            X coordinate of the cell of bit 0.
+     * @param y
+     *            Row.
+     * @param bits
+     *            The bits, only set within the mask.
+     * @param mask
+     *            Cells to combine, starting at bit 0.
+     * @param mode
+     *            How the bits are combined with the cells.
+     */
+    private void combineBits(int x, int y, long bits, long mask, PasteMode mode) {
+        int index = this.wordIndex(x, y);
+        int offset = x & (WORD_SIZE - 1);
+        this.combineWord(index, bits << offset, mask << offset, mode);
+        if (offset != 0 && mask >>> (WORD_SIZE - offset) != 0) {
+            this.combineWord(index + 1, bits >>> (WORD_SIZE - offset), mask >>> (WORD_SIZE - offset), mode);
+        }
+    }
+
+    /**
+     * Combine a word of cells with bits.
+     *
+     * @param index
+     *            Index of the word.
+     * @param bits
+     *            The bits, only set within the mask.
+     * @param mask
+     *            Cells to combine.
+     * @param mode
+     *            How the bits are combined with the cells.
+     */
+    private void combineWord(int index, long bits, long mask, PasteMode mode) {
+        switch (mode) {
+            case OR:
+                this.cells[index] |= bits;
+                break;
+            case XOR:
+                this.cells[index] ^= bits;
+                break;
+            default:
+                this.cells[index] = this.cells[index] & ~mask | bits;
+                break;
+        }
+    }
+
+    /**
+     * Check that a rectangle is inside the grid.
+     *
+     * @param x
+     *            X coordinate of the left edge.
+     * @param y
+     *            Y coordinate of the top edge.
+     * @param width
+     *            Width of the rectangle.
+     * @param height
+     *            Height of the rectangle.
+     */
+    private void checkRegion(int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width < 0 || height < 0 || x > this.width - width || y > this.height - height) {
+            throw new ArrayIndexOutOfBoundsException(String.format("Region of %dx%d cells at (%d,%d) is outside of the grid (%dx%d)", width, height, x, y, this.width,
+                    this.height));
+        }
+    }
+
+    /**
+     * Set a cell alive.
+     *
+     * @see de.martindreier.gameoflife.game.io.CellSink#point(int, int)
+     */
+    @Override
+    public void point(int x, int y) {
+        this.setAlive(x, y, true);
+    }
+
+    /**
+     * Set a run of cells alive. Whole words are written at once.
+     *
+     * @see de.martindreier.gameoflife.game.io.CellSink#setRun(int, int, int)
+     */
+    @Override
+    public void setRun(int x, int y, int length) {
+        this.setRun(x, y, length, true);
+    }
+
+    /**
+     * Set the cells of a row alive from a bitmap. The words of the bitmap are combined with the words of the row using a
+     * bitwise OR.
+     *
+     * @see de.martindreier.gameoflife.game.io.CellSink#setRow(int, long[])
+     */
+    @Override
+    public void setRow(int y, long[] bits) {
+        this.orRow(0, y, bits);
+    }
+
+    /**
+     * Set the cells of a row alive from a bitmap which starts at a column. Each word of the bitmap is shifted into
+     * place and combined with at most two words of the row using a bitwise OR.
+     *
+     * @see de.martindreier.gameoflife.game.io.CellSink#setRow(int, int, long[])
+     */
+    @Override
+    public void setRow(int y, int x, long[] bits) {
+        this.orRow(x, y, bits);
+    }
+
+    /**
+     * Combine a bitmap with a row using a bitwise OR, starting at a column. Bitmaps starting at a multiple of 64 are
+     * combined word by word, others are shifted into place.
+     *
+     * @param left
+     *            Column of bit 0 of the bitmap.
+     * @param y
+     *            Row.
+     * @param bits
+     *            Bitmap. Bit <code>x % 64</code> of <code>bits[x / 64]</code> is set for column <code>left + x</code>.
+     */
+    private void orRow(int left, int y, long[] bits) {
+        int lastWord = bits.length - 1;
+        while (lastWord >= 0 && bits[lastWord] == 0) {
+            lastWord--;
+        }
+        if (lastWord < 0) {
+            return;
+        }
+        long lastColumn = (long) left + (long) lastWord * WORD_SIZE + WORD_SIZE - 1 - Long.numberOfLeadingZeros(bits[lastWord]);
+        if (left < 0 || y < 0 || y >= this.height || lastColumn >= this.width) {
+            throw new ArrayIndexOutOfBoundsException(String.format("Row of %d cells at (%d,%d) is outside of the grid (%dx%d)", lastColumn - left + 1, left, y, this.width, this.height));
+        }
+        if ((left & (WORD_SIZE - 1)) == 0) {
+            int index = this.wordIndex(left, y);
+            for (int word = 0; word <= lastWord; word++) {
+                this.cells[index + word] |= bits[word];
+            }
+            return;
+        }
+        for (int word = 0; word <= lastWord; word++) {
+            if (bits[word] != 0) {
+                // The row has been checked, so only words with set bits are touched
+                this.combineBits(left + word * WORD_SIZE, y, bits[word], bits[word], PasteMode.OR);
+            }
+        }
+    }
+
+    /**
+     * Set or clear the masked bits of a word.
+     *
+     * @param index
+     *            Index of the word.
+     * @param mask
+     *            Bits to change.
+     * @param alive
+     *            <code>true</code> to set the bits, <code>false</code> to clear them.
+     */
+    private void applyMask(int index, long mask, boolean alive) {
+        if (alive) {
+            this.cells[index] |= mask;
+        } else {
+            this.cells[index] &= ~mask;
+        }
+    }
+
+    /**
+     * Kill all cells.
+     */
+    public void clear() {
+        Arrays.fill(this.cells, 0L);
+    }
+
+    /**
+     * Count the alive cells.
+     *
+     * @return Number of alive cells.
+     */
+    public long getPopulation() {
+        long population = 0;
+        for (long word : this.cells) {
+            population += Long.bitCount(word);
+        }
+        return population;
+    }
+
+    /**
+     * Check if all cells are dead.
+     *
+     * @return <code>true</code> if no cell is alive.
+     */
+    public boolean isEmpty() {
+        for (long word : this.cells) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculate a 64 bit hash of the cell states. Two grids with the same size and content have the same hash.
+     *
+     * @return Content hash.
+     */
+    public long contentHash() {
+        long hash = 0x9E3779B97F4A7C15L;
+        for (long word : this.cells) {
+            hash = (hash ^ word) * 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 32;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Calculate the next generation.
+     *
+     * @param rule
+     *            Game rule.
+     * @return <code>true</code> if any cell changed its state.
+     */
+    public boolean step(LifeLikeRule rule) {
+        FlightRecorder.Generation event = FlightRecorder.startGeneration(ENGINE_NAME, this.width, this.height, false);
+        boolean changed = this.stepRows(rule, 0, this.height);
+        this.swapBuffers();
+        if (event != null) {
+            event.finish(-1, -1);
+        }
+        return changed;
+    }
+
+    /**
+     * Calculate the next generation in parallel. The grid is split into stripes of whole rows, which are calculated as
+     * tasks of the given pool. The result is the same as for {@link #step(LifeLikeRule)}.
+     *
+     * @param rule
+     *            Game rule.
+     * @param pool
+     *            The pool to run the stripes in.
+     * @return <code>true</code> if any cell changed its state.
+     */
+    public boolean step(LifeLikeRule rule, ForkJoinPool pool) {
+        FlightRecorder.Generation event = FlightRecorder.startGeneration(ENGINE_NAME, this.width, this.height, true);
+        int stripeRows = Math.max(1, MIN_STRIPE_WORDS / this.wordsPerRow);
+        boolean changed = pool.invoke(new StripeTask(rule, 0, this.height, stripeRows));
+        this.swapBuffers();
+        if (event != null) {
+            event.finish(-1, -1);
+        }
+        return changed;
+    }
+
+    /**
+     * Make the buffer of the next generation the current generation.
+     */
+    private void swapBuffers() {
+        long[] current = this.cells;
+        this.cells = this.nextCells;
+        this.nextCells = current;
+    }
+
+    /**
+     * Calculate the next generation of a range of rows into the buffer for the next generation.
+     *
+     * @param rule
+     *            Game rule.
+     * @param firstRow
+     *            First row to calculate.
+     * @param endRow
+     *            End of the row range (exclusive).
+     * @return <code>true</code> if any cell in the range changed its state.
+     */
+    private boolean stepRows(LifeLikeRule rule, int firstRow, int endRow) {
+        boolean changed = false;
+        long[] current = this.cells;
+        long[] next = this.nextCells;
+        for (int y = firstRow; y < endRow; y++) {
+            int row = y * this.wordsPerRow;
+            int above = y > 0 ? row - this.wordsPerRow : -1;
+            int below = y < this.height - 1 ? row + this.wordsPerRow : -1;
+            for (int wordX = 0; wordX < this.wordsPerRow; wordX++) {
+                boolean hasLeft = wordX > 0;
+                boolean hasRight = wordX < this.wordsPerRow - 1;
+
+                long center = current[row + wordX];
+                long west = (center << 1) | (hasLeft ? current[row + wordX - 1] >>> 63 : 0);
+                long east = (center >>> 1) | (hasRight ? current[row + wordX + 1] << 63 : 0);
+
+                long north = 0;
+                long northWest = 0;
+                long northEast = 0;
+                if (above >= 0) {
+                    north = current[above + wordX];
+                    northWest = (north << 1) | (hasLeft ? current[above + wordX - 1] >>> 63 : 0);
+                    northEast = (north >>> 1) | (hasRight ? current[above + wordX + 1] << 63 : 0);
+                }
+
+                long south = 0;
+                long southWest = 0;
+                long southEast = 0;
+                if (below >= 0) {
+                    south = current[below + wordX];
+                    southWest = (south << 1) | (hasLeft ? current[below + wordX - 1] >>> 63 : 0);
+                    southEast = (south >>> 1) | (hasRight ? current[below + wordX + 1] << 63 : 0);
+                }
+
+                long result = rule.apply(center, northWest, north, northEast, west, east, southWest, south, southEast);
+                if (!hasRight) {
+                    result &= this.lastWordMask;
+                }
+                next[row + wordX] = result;
+                changed |= result != center;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Calculate the index of the word containing a cell.
+     *
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     * @return Word index.
+     */
+    private int wordIndex(int x, int y) {
+        return y * this.wordsPerRow + (x >>> 6);
+    }
+
+    /**
+     * Check that coordinates are inside the grid.
+     *
+     * @param x
+     *            X coordinate (horizontal).
+     * @param y
+     *            Y coordinate (vertical).
+     */
+    private void checkBounds(int x, int y) {
+        if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+            throw new ArrayIndexOutOfBoundsException(String.format("Cell (%d,%d) is outside of the grid (%dx%d)", x, y, this.width, this.height));
+        }
+    }
+
+    /**
+     * Two packed grids are equal if they have the same size and content.
+     *
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof PackedGrid)) {
+            return false;
+        }
+        PackedGrid other = (PackedGrid) obj;
+        return this.width == other.width && this.height == other.height && Arrays.equals(this.cells, other.cells);
+    }
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return (int) this.contentHash();
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "PackedGrid [" + this.width + "x" + this.height + "]";
+    }
+
+    /**
+     * Task calculating the next generation of a stripe of rows. Stripes larger than the minimum size are split in half.
+     *
+     * @author D043987
+     *
+     */
+    private class StripeTask extends RecursiveTask<Boolean> {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long  serialVersionUID = 1L;
+
+        /**
+         * Game rule.
+         */
+        private final LifeLikeRule rule;
+
+        /**
+         * First row of the stripe.
+         */
+        private final int          firstRow;
+
+        /**
+         * End of the stripe (exclusive).
+         */
+        private final int          endRow;
+
+        /**
+         * Stripes with up to this number of rows are not split.
+         */
+        private final int          stripeRows;
+
+        /**
+         * Create a new task.
+         *
+         * @param rule
+         *            Game rule.
+         * @param firstRow
+         *            First row of the stripe.
+         * @param endRow
+         *            End of the stripe (exclusive).
+         * @param stripeRows
+         *            Stripes with up to this number of rows are not split.
+         */
+        StripeTask(LifeLikeRule rule, int firstRow, int endRow, int stripeRows) {
+            this.rule = rule;
+            this.firstRow = firstRow;
+            this.endRow = endRow;
+            this.stripeRows = stripeRows;
+        }
+
+        /**
+         * @see java.util.concurrent.RecursiveTask#compute()
+         */
+        @Override
+        protected Boolean compute() {
+            if (this.endRow - this.firstRow <= this.stripeRows) {
+                FlightRecorder.Stripe event = FlightRecorder.startStripe(ENGINE_NAME, PackedGrid.this.width, this.firstRow, this.endRow - this.firstRow);
+                boolean changed = PackedGrid.this.stepRows(this.rule, this.firstRow, this.endRow);
+                if (event != null) {
+                    event.finish(changed);
+                }
+                return changed;
+            }
+            int middle = (this.firstRow + this.endRow) >>> 1;
+            StripeTask lower = new StripeTask(this.rule, middle, this.endRow, this.stripeRows);
+            lower.fork();
+            boolean changed = new StripeTask(this.rule, this.firstRow, middle, this.stripeRows).compute();
+            return lower.join() | changed;
+        }
+    }
+
+    /**
+     * Sink for {@link GridLoader#load(CellSink)} which writes the cells into this packed grid, shifted by the position
+     * of the pattern.
+     *
+     * @author D043987
+     *
+     */
+    private class LoaderTarget implements CellSink {
+
+        /**
+         * X coordinate of the left edge of the pattern.
+         */
+        private final int left;
+
+        /**
+         * Y coordinate of the top edge of the pattern.
+         */
+        private final int top;
+
+        /**
+         * Create a new target.
+         *
+         * @param left
+         *            X coordinate of the left edge of the pattern.
+         * @param top
+         *            Y coordinate of the top edge of the pattern.
+         */
+        LoaderTarget(int left, int top) {
+            this.left = left;
+            this.top = top;
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.CellSink#point(int, int)
+         */
+        @Override
+        public void point(int x, int y) {
+            PackedGrid.this.setAlive(this.left + x, this.top + y, true);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.CellSink#setRun(int, int, int)
+         */
+        @Override
+        public void setRun(int x, int y, int length) {
+            PackedGrid.this.setRun(this.left + x, this.top + y, length, true);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.CellSink#setRow(int, long[])
+         */
+        @Override
+        public void setRow(int y, long[] bits) {
+            PackedGrid.this.orRow(this.left, this.top + y, bits);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.CellSink#setRow(int, int, long[])
+         */
+        @Override
+        public void setRow(int y, int x, long[] bits) {
+            PackedGrid.this.orRow(this.left + x, this.top + y, bits);
+        }
+    }
+}
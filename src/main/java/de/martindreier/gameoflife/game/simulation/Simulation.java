@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.simulation;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.Grid;
+
+/**
+ * A single simulation run by a {@link SimulationService}. The simulation advances its grid by one generation per step
+ * and can be paused, resumed and cancelled at any time. All methods of this class are thread safe.
+ *
+ * @author D043987
+ *
+ */
+public class Simulation {
+
+    /**
+     * The service running this simulation.
+     */
+    private final SimulationService service;
+
+    /**
+     * Unique ID of the simulation within the service.
+     */
+    private final long              id;
+
+    /**
+     * The simulated grid.
+     */
+    private final Grid              grid;
+
+    /**
+     * Game rule for the simulation.
+     */
+    private final GameRule          rule;
+
+    /**
+     * Time between two steps in nanoseconds.
+     */
+    private volatile long           stepIntervalNanos;
+
+    /**
+     * Number of generations calculated so far.
+     */
+    private volatile long           generation = 0;
+
+    /**
+     * Simulation is paused. New simulations start paused until they are resumed by the service.
+     */
+    private volatile boolean        paused     = true;
+
+    /**
+     * Simulation has been cancelled.
+     */
+    private volatile boolean        cancelled  = false;
+
+    /**
+     * Exception which terminated the simulation, if any.
+     */
+    private volatile Throwable      failure;
+
+    /**
+     * Point in time (as in {@link System#nanoTime()}) at which the next step should be executed.
+     */
+    private long                    nextStepTime;
+
+    /**
+     * The next scheduled step.
+     */
+    private ScheduledFuture<?>      pendingStep;
+
+    /**
+     * Token of the next scheduled step. Steps carrying an older token were cancelled, but had already been handed over
+     * for execution.
+     */
+    private long                    stepToken  = 0;
+
+    /**
+     * Create a new simulation.
+     *
+     * @param service
+     *            The service running the simulation.
+     * @param id
+     *            Simulation ID.
+     * @param grid
+     *            Simulated grid.
+     * @param rule
+     *            Game rule.
+     * @param stepInterval
+     *            Time between two generations.
+     */
+    Simulation(SimulationService service, long id, Grid grid, GameRule rule, Duration stepInterval) {
+        this.service = service;
+        this.id = id;
+        this.grid = grid;
+        this.rule = rule;
+        this.stepIntervalNanos = toNanos(stepInterval);
+    }
+
+    /**
+     * Convert a step interval to nanoseconds.
+     *
+     * @param stepInterval
+     *            Step interval. Must not be <code>null</code> or negative.
+     * @return Interval in nanoseconds.
+     */
+    private static long toNanos(Duration stepInterval) {
+        if (stepInterval == null || stepInterval.isNegative()) {
+            throw new IllegalArgumentException(String.format("Step interval must not be null or negative (%s)", stepInterval));
+        }
+        return stepInterval.toNanos();
+    }
+
+    /**
+     * Execute a single step. Called by the service.
+     *
+     * @param token
+     *            Token the step was scheduled with.
+     */
+    synchronized void step(long token) {
+        if (token != this.stepToken || this.paused || this.cancelled || this.service.isClosed()) {
+            return;
+        }
+        this.pendingStep = null;
+        try {
+            this.grid.iterate(this.rule);
+        }
+        catch (RuntimeException | Error e) {
+            this.failure = e;
+            this.cancel();
+            return;
+        }
+        this.generation++;
+
+        // Keep a fixed rate, but do not try to catch up on steps which were missed due to overload
+        long now = System.nanoTime();
+        this.nextStepTime = Math.max(this.nextStepTime + this.stepIntervalNanos, now);
+        this.scheduleStep(this.nextStepTime - now);
+    }
+
+    /**
+     * Schedule the next step. Any previously scheduled step is invalidated.
+     *
+     * @param delayNanos
+     *            Delay until the step is executed.
+     */
+    private void scheduleStep(long delayNanos) {
+        this.pendingStep = this.service.schedule(this, ++this.stepToken, delayNanos);
+    }
+
+    /**
+     * Pause the simulation. A step which is currently being executed will still complete.
+     */
+    public synchronized void pause() {
+        if (this.paused || this.cancelled) {
+            return;
+        }
+        this.paused = true;
+        if (this.pendingStep != null) {
+            this.pendingStep.cancel(false);
+            this.pendingStep = null;
+        }
+    }
+
+    /**
+     * Resume a paused simulation. The next step is executed after the step interval has passed.
+     *
+     * @throws IllegalStateException
+     *             If the simulation has been cancelled.
+     */
+    public synchronized void resume() {
+        if (this.cancelled) {
+            throw new IllegalStateException(String.format("Simulation %d has been cancelled", this.id));
+        }
+        if (!this.paused) {
+            return;
+        }
+        this.paused = false;
+        this.nextStepTime = System.nanoTime() + this.stepIntervalNanos;
+        this.scheduleStep(this.stepIntervalNanos);
+    }
+
+    /**
+     * Cancel the simulation. A cancelled simulation cannot be resumed and is removed from the service.
+     */
+    public synchronized void cancel() {
+        if (this.cancelled) {
+            return;
+        }
+        this.cancelled = true;
+        if (this.pendingStep != null) {
+            this.pendingStep.cancel(false);
+            this.pendingStep = null;
+        }
+        this.service.remove(this);
+    }
+
+    /**
+     * Access the grid between two steps. The simulation does not advance while the consumer is running.
+     *
+     * @param inspector
+     *            Consumer which receives the grid.
+     */
+    public synchronized void inspect(Consumer<Grid> inspector) {
+        inspector.accept(this.grid);
+    }
+
+    /**
+     * Get the simulated grid. The grid must only be accessed through {@link #inspect(Consumer)}, except for thread
+     * safe methods such as {@link Grid#addGenerationListener(de.martindreier.gameoflife.game.GenerationListener)}.
+     *
+     * @return The grid.
+     */
+    Grid getGrid() {
+        return this.grid;
+    }
+
+    /**
+     * Change the time between two generations. The new interval applies from the next scheduled step on.
+     *
+     * @param stepInterval
+     *            Time between two generations. {@link Duration#ZERO} steps as fast as possible.
+     */
+    public synchronized void setStepInterval(Duration stepInterval) {
+        long newInterval = toNanos(stepInterval);
+        long oldInterval = this.stepIntervalNanos;
+        this.stepIntervalNanos = newInterval;
+        if (this.pendingStep != null && newInterval < oldInterval) {
+            // Do not wait for the end of a long interval if the simulation was sped up
+            long now = System.nanoTime();
+            this.nextStepTime = Math.max(this.nextStepTime - oldInterval + newInterval, now);
+            this.pendingStep.cancel(false);
+            this.scheduleStep(this.nextStepTime - now);
+        }
+    }
+
+    /**
+     * Get the time between two generations.
+     *
+     * @return Step interval.
+     */
+    public Duration getStepInterval() {
+        return Duration.ofNanos(this.stepIntervalNanos);
+    }
+
+    /**
+     * Get the simulation ID.
+     *
+     * @return the ID.
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * Get the game rule of this simulation.
+     *
+     * @return the game rule.
+     */
+    public GameRule getRule() {
+        return this.rule;
+    }
+
+    /**
+     * Get the number of generations calculated so far.
+     *
+     * @return Current generation.
+     */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Check if the simulation is paused.
+     *
+     * @return <code>true</code> if the simulation is paused.
+     */
+    public boolean isPaused() {
+        return this.paused && !this.cancelled;
+    }
+
+    /**
+     * Check if the simulation has been cancelled.
+     *
+     * @return <code>true</code> if the simulation has been cancelled or terminated by an exception.
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Get the exception which terminated the simulation.
+     *
+     * @return The exception, or <code>null</code> if the simulation did not fail.
+     */
+    public Throwable getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "Simulation [" + this.id + ", generation " + this.generation + "]";
+    }
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.simulation;
+
+/**
+ * Management interface of a running {@link Simulation}. Registered by
+ * {@link SimulationService#registerMBeans(javax.management.MBeanServer)} under the name
+ * <code>de.martindreier.gameoflife:type=Simulation,id=&lt;id&gt;</code>.
+ *
+ * @author D043987
+ *
+ */
+public interface SimulationMXBean {
+
+    /**
+     * Get the simulation ID.
+     *
+     * @return the ID.
+     */
+    public long getId();
+
+    /**
+     * Get the number of generations calculated so far.
+     *
+     * @return Current generation.
+     */
+    public long getGeneration();
+
+    /**
+     * Get the number of generations per second, measured over the most recent steps.
+     *
+     * @return Generations per second, 0 if fewer than two steps have been measured.
+     */
+    public double getGenerationsPerSecond();
+
+    /**
+     * Get the number of living cells.
+     *
+     * @return Population.
+     */
+    public long getPopulation();
+
+    /**
+     * Get the bounding box of the living cells.
+     *
+     * @return Left, top, width and height of the box, or an empty array if no cell is alive.
+     */
+    public int[] getBoundingBox();
+
+    /**
+     * Get the type of the simulated grid.
+     *
+     * @return Engine type, e.g. <code>Grid</code>.
+     */
+    public String getEngineType();
+
+    /**
+     * Get the grid width.
+     *
+     * @return Number of cells in X dimension.
+     */
+    public int getWidth();
+
+    /**
+     * Get the grid height.
+     *
+     * @return Number of cells in Y dimension.
+     */
+    public int getHeight();
+
+    /**
+     * Get the estimated memory used by the grid.
+     *
+     * @return Memory footprint in bytes.
+     */
+    public long getMemoryFootprint();
+
+    /**
+     * Get the duration of the last step.
+     *
+     * @return Latency in nanoseconds, 0 if no step has been measured.
+     */
+    public long getLastStepLatencyNanos();
+
+    /**
+     * Get the median duration of the most recent steps.
+     *
+     * @return Latency in nanoseconds, 0 if no step has been measured.
+     */
+    public long getStepLatencyMedianNanos();
+
+    /**
+     * Get the 90th percentile of the duration of the most recent steps.
+     *
+     * @return Latency in nanoseconds, 0 if no step has been measured.
+     */
+    public long getStepLatency90thPercentileNanos();
+
+    /**
+     * Get the 99th percentile of the duration of the most recent steps.
+     *
+     * @return Latency in nanoseconds, 0 if no step has been measured.
+     */
+    public long getStepLatency99thPercentileNanos();
+
+    /**
+     * Get the configured step rate.
+     *
+     * @return Generations per second, {@link Double#POSITIVE_INFINITY} if the simulation steps as fast as possible.
+     */
+    public double getStepRate();
+
+    /**
+     * Change the step rate.
+     *
+     * @param generationsPerSecond
+     *            New rate. Must be greater than 0, {@link Double#POSITIVE_INFINITY} steps as fast as possible.
+     */
+    public void setStepRate(double generationsPerSecond);
+
+    /**
+     * Check if the simulation is paused.
+     *
+     * @return <code>true</code> if the simulation is paused.
+     */
+    public boolean isPaused();
+
+    /**
+     * Pause the simulation.
+     */
+    public void pause();
+
+    /**
+     * Resume the simulation.
+     */
+    public void resume();
+}
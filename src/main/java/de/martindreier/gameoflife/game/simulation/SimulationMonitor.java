@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.simulation;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.GenerationListener;
+import de.martindreier.gameoflife.game.GenerationStatistics;
+import de.martindreier.gameoflife.game.Grid;
+
+/**
+ * Implementation of the {@link SimulationMXBean}. The monitor listens to the generations of the simulated grid and keeps
+ * the timing of the most recent steps. Population and bounding box are calculated on request, between two steps.
+ *
+ * @author D043987
+ *
+ */
+class SimulationMonitor implements SimulationMXBean, GenerationListener {
+
+    /**
+     * Number of recent steps used for rates and percentiles.
+     */
+    static final int            SAMPLES             = 1024;
+
+    /**
+     * Estimated size of a cell including its neighbor array (cell 24, array 48), in bytes. Assumes a 64 bit JVM with
+     * compressed references.
+     */
+    private static final long   BYTES_PER_CELL      = 72;
+
+    /**
+     * Estimated size of the grid object and its column array header, in bytes.
+     */
+    private static final long   BYTES_PER_GRID      = 64;
+
+    /**
+     * Estimated size of a column array header, in bytes.
+     */
+    private static final long   BYTES_PER_COLUMN    = 16;
+
+    /**
+     * Size of a reference in a column array, in bytes.
+     */
+    private static final long   BYTES_PER_REFERENCE = 4;
+
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND    = 1e9;
+
+    /**
+     * The monitored simulation.
+     */
+    private final Simulation    simulation;
+
+    /**
+     * Duration of the most recent steps, as ring buffer.
+     */
+    private final long[]        latencies           = new long[SAMPLES];
+
+    /**
+     * Completion time (as in {@link System#nanoTime()}) of the most recent steps, as ring buffer.
+     */
+    private final long[]        completionTimes     = new long[SAMPLES];
+
+    /**
+     * Number of steps measured so far.
+     */
+    private long                measuredSteps       = 0;
+
+    /**
+     * Create a new monitor.
+     *
+     * @param simulation
+     *            The monitored simulation.
+     */
+    SimulationMonitor(Simulation simulation) {
+        this.simulation = simulation;
+    }
+
+    /**
+     * Get the object name of the MBean of a simulation. Simulation IDs are only unique within their service, so the
+     * name also contains the ID of the service.
+     *
+     * @param serviceId
+     *            ID of the service running the simulation.
+     * @param id
+     *            Simulation ID.
+     * @return Object name.
+     */
+    static ObjectName objectName(long serviceId, long id) {
+        try {
+            return new ObjectName("de.martindreier.gameoflife:type=Simulation,service=" + serviceId + ",id=" + id);
+        }
+        catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(String.format("Invalid object name for simulation %d of service %d", id, serviceId), e);
+        }
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.GenerationListener#generationCompleted(de.martindreier.gameoflife.game.GenerationStatistics)
+     */
+    @Override
+    public synchronized void generationCompleted(GenerationStatistics statistics) {
+        int index = (int) (this.measuredSteps % SAMPLES);
+        this.latencies[index] = statistics.getTotalNanos();
+        this.completionTimes[index] = System.nanoTime();
+        this.measuredSteps++;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getId()
+     */
+    @Override
+    public long getId() {
+        return this.simulation.getId();
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getGeneration()
+     */
+    @Override
+    public long getGeneration() {
+        return this.simulation.getGeneration();
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getGenerationsPerSecond()
+     */
+    @Override
+    public synchronized double getGenerationsPerSecond() {
+        int samples = (int) Math.min(this.measuredSteps, SAMPLES);
+        if (samples < 2) {
+            return 0;
+        }
+        long last = this.completionTimes[(int) ((this.measuredSteps - 1) % SAMPLES)];
+        long first = this.completionTimes[(int) ((this.measuredSteps - samples) % SAMPLES)];
+        if (last == first) {
+            return 0;
+        }
+        return (samples - 1) * NANOS_PER_SECOND / (last - first);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getPopulation()
+     */
+    @Override
+    public long getPopulation() {
+        long[] population = new long[1];
+        this.simulation.inspect(grid -> population[0] = grid.getCells().filter(cell -> cell.getCurrentState() == CellState.ALIVE).count());
+        return population[0];
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getBoundingBox()
+     */
+    @Override
+    public int[] getBoundingBox() {
+        int[] box = { Integer.MAX_VALUE, Integer.MAX_VALUE, -1, -1 };
+        this.simulation.inspect(grid -> {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                for (int y = 0; y < grid.getHeight(); y++) {
+                    if (grid.get(x, y) == CellState.ALIVE) {
+                        box[0] = Math.min(box[0], x);
+                        box[1] = Math.min(box[1], y);
+                        box[2] = Math.max(box[2], x);
+                        box[3] = Math.max(box[3], y);
+                    }
+                }
+            }
+        });
+        if (box[2] < 0) {
+            return new int[0];
+        }
+        return new int[] { box[0], box[1], box[2] - box[0] + 1, box[3] - box[1] + 1 };
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getEngineType()
+     */
+    @Override
+    public String getEngineType() {
+        String[] type = new String[1];
+        this.simulation.inspect(grid -> type[0] = grid.getClass().getSimpleName());
+        return type[0];
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getWidth()
+     */
+    @Override
+    public int getWidth() {
+        int[] width = new int[1];
+        this.simulation.inspect(grid -> width[0] = grid.getWidth());
+        return width[0];
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getHeight()
+     */
+    @Override
+    public int getHeight() {
+        int[] height = new int[1];
+        this.simulation.inspect(grid -> height[0] = grid.getHeight());
+        return height[0];
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getMemoryFootprint()
+     */
+    @Override
+    public long getMemoryFootprint() {
+        long[] footprint = new long[1];
+        this.simulation.inspect(grid -> footprint[0] = estimateFootprint(grid));
+        return footprint[0];
+    }
+
+    /**
+     * Estimate the memory used by a grid.
+     *
+     * @param grid
+     *            The grid.
+     * @return Estimated size in bytes.
+     */
+    static long estimateFootprint(Grid grid) {
+        long width = grid.getWidth();
+        long height = grid.getHeight();
+        long columns = width * (BYTES_PER_COLUMN + height * BYTES_PER_REFERENCE);
+        return BYTES_PER_GRID + width * BYTES_PER_REFERENCE + columns + width * height * BYTES_PER_CELL;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getLastStepLatencyNanos()
+     */
+    @Override
+    public synchronized long getLastStepLatencyNanos() {
+        if (this.measuredSteps == 0) {
+            return 0;
+        }
+        return this.latencies[(int) ((this.measuredSteps - 1) % SAMPLES)];
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getStepLatencyMedianNanos()
+     */
+    @Override
+    public long getStepLatencyMedianNanos() {
+        return this.latencyPercentile(50);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getStepLatency90thPercentileNanos()
+     */
+    @Override
+    public long getStepLatency90thPercentileNanos() {
+        return this.latencyPercentile(90);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getStepLatency99thPercentileNanos()
+     */
+    @Override
+    public long getStepLatency99thPercentileNanos() {
+        return this.latencyPercentile(99);
+    }
+
+    /**
+     * Calculate a percentile of the recent step latencies (nearest rank).
+     *
+     * @param percentile
+     *            Percentile from 1 to 100.
+     * @return Latency in nanoseconds, 0 if no step has been measured.
+     */
+    synchronized long latencyPercentile(int percentile) {
+        int samples = (int) Math.min(this.measuredSteps, SAMPLES);
+        if (samples == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(this.latencies, samples);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * samples);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#getStepRate()
+     */
+    @Override
+    public double getStepRate() {
+        long intervalNanos = this.simulation.getStepInterval().toNanos();
+        if (intervalNanos == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return NANOS_PER_SECOND / intervalNanos;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#setStepRate(double)
+     */
+    @Override
+    public void setStepRate(double generationsPerSecond) {
+        if (!(generationsPerSecond > 0)) {
+            throw new IllegalArgumentException(String.format("Step rate must be greater than 0 (%s)", generationsPerSecond));
+        }
+        this.simulation.setStepInterval(Duration.ofNanos((long) (NANOS_PER_SECOND / generationsPerSecond)));
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#isPaused()
+     */
+    @Override
+    public boolean isPaused() {
+        return this.simulation.isPaused();
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#pause()
+     */
+    @Override
+    public void pause() {
+        this.simulation.pause();
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.game.simulation.SimulationMXBean#resume()
+     */
+    @Override
+    public void resume() {
+        this.simulation.resume();
+    }
+}
@@ -0,0 +1,395 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.simulation;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.Grid;
+
+/**
+ * A service which runs many independent {@link Simulation Simulations} at once. Each simulation owns a {@link Grid} and
+ * is advanced by one generation per step. Steps are paced individually per simulation.
+ * <p>
+ * Timing is handled by a small pool of carrier threads. If the runtime supports virtual threads (Java 21 and later),
+ * each step is executed on a new virtual thread. Otherwise the steps run directly on the carrier threads, which keeps
+ * the service usable on Java 8. In both cases no thread is bound to a simulation while it waits for its next step, so
+ * the number of simulations is limited by memory and CPU time rather than by the number of threads.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class SimulationService implements AutoCloseable {
+
+    /**
+     * Source of service IDs, which distinguish the MBeans of several services.
+     */
+    private static final AtomicLong            NEXT_SERVICE_ID = new AtomicLong();
+
+    /**
+     * ID of this service.
+     */
+    private final long                         serviceId       = NEXT_SERVICE_ID.incrementAndGet();
+
+    /**
+     * Timer and carrier threads. Schedules the steps of all simulations.
+     */
+    private final ScheduledThreadPoolExecutor  scheduler;
+
+    /**
+     * Executor running the steps. <code>null</code> if steps are executed directly on the carrier threads.
+     */
+    private final ExecutorService              stepExecutor;
+
+    /**
+     * All simulations which have not been cancelled, by ID.
+     */
+    private final Map<Long, Simulation>        simulations     = new ConcurrentHashMap<>();
+
+    /**
+     * Source of simulation IDs.
+     */
+    private final AtomicLong                   nextId          = new AtomicLong();
+
+    /**
+     * Monitors of the simulations registered as MBeans, by simulation ID.
+     */
+    private final Map<Long, SimulationMonitor> monitors        = new ConcurrentHashMap<>();
+
+    /**
+     * Server at which the simulations are registered as MBeans. <code>null</code> if the simulations are not
+     * registered.
+     */
+    private volatile MBeanServer               mbeanServer;
+
+    /**
+     * Service has been shut down.
+     */
+    private volatile boolean                   closed          = false;
+
+    /**
+     * Create a service with one carrier thread per available processor. Uses virtual threads for the steps if they are
+     * supported by the runtime.
+     */
+    public SimulationService() {
+        this(Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     * Create a new simulation service.
+     *
+     * @param carrierThreads
+     *            Number of carrier threads. Must be greater than 0.
+     * @param useVirtualThreads
+     *            <code>true</code> if steps should run on virtual threads when the runtime supports them,
+     *            <code>false</code> to always run steps on the carrier threads.
+     */
+    public SimulationService(int carrierThreads, boolean useVirtualThreads) {
+        if (carrierThreads <= 0) {
+            throw new IllegalArgumentException(String.format("Number of carrier threads must be greater than 0 (%d)", carrierThreads));
+        }
+        this.scheduler = new ScheduledThreadPoolExecutor(carrierThreads, new CarrierThreadFactory());
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.stepExecutor = useVirtualThreads ? createVirtualThreadExecutor() : null;
+    }
+
+    /**
+     * Create an executor which starts a new virtual thread per task. The executor is looked up reflectively so that
+     * the code still runs on runtimes without virtual threads.
+     *
+     * @return The executor, or <code>null</code> if virtual threads are not supported.
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException | SecurityException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Start a new simulation. The first step is executed after the step interval has passed.
+     *
+     * @param grid
+     *            The grid to simulate. The grid must not be modified by the caller while the simulation is running,
+     *            except through {@link Simulation#inspect(java.util.function.Consumer)}.
+     * @param rule
+     *            Game rule used for the simulation.
+     * @param stepInterval
+     *            Time between two generations. {@link Duration#ZERO} steps as fast as possible.
+     * @return Handle for the new simulation.
+     */
+    public Simulation start(Grid grid, GameRule rule, Duration stepInterval) {
+        if (this.closed) {
+            throw new IllegalStateException("Simulation service has been closed");
+        }
+        if (grid == null) {
+            throw new IllegalArgumentException("Grid must not be null");
+        }
+        if (rule == null) {
+            throw new IllegalArgumentException("Game rule must not be null");
+        }
+        Simulation simulation = new Simulation(this, this.nextId.incrementAndGet(), grid, rule, stepInterval);
+        this.simulations.put(simulation.getId(), simulation);
+        MBeanServer server = this.mbeanServer;
+        if (server != null) {
+            try {
+                this.register(server, simulation);
+            }
+            catch (IllegalStateException e) {
+                this.simulations.remove(simulation.getId());
+                throw e;
+            }
+        }
+        simulation.resume();
+        return simulation;
+    }
+
+    /**
+     * Register all current and future simulations as {@link SimulationMXBean MBeans}. Each simulation is unregistered
+     * when it is cancelled. Registered simulations measure each step, so registration costs some speed.
+     *
+     * @param server
+     *            The MBean server, e.g. {@link java.lang.management.ManagementFactory#getPlatformMBeanServer()}.
+     */
+    public synchronized void registerMBeans(MBeanServer server) {
+        if (server == null) {
+            throw new IllegalArgumentException("MBean server must not be null");
+        }
+        if (this.mbeanServer != null) {
+            throw new IllegalStateException("Simulations are already registered as MBeans");
+        }
+        this.mbeanServer = server;
+        for (Simulation simulation : this.simulations.values()) {
+            this.register(server, simulation);
+        }
+    }
+
+    /**
+     * Register a simulation as MBean. Does nothing if the simulation is already registered or has been removed in the
+     * meantime; removal holds the same lock, so a removed simulation cannot leave a registered MBean behind.
+     *
+     * @param server
+     *            The MBean server.
+     * @param simulation
+     *            The simulation.
+     */
+    private synchronized void register(MBeanServer server, Simulation simulation) {
+        if (this.monitors.containsKey(simulation.getId()) || this.simulations.get(simulation.getId()) != simulation) {
+            return;
+        }
+        SimulationMonitor monitor = new SimulationMonitor(simulation);
+        try {
+            server.registerMBean(monitor, this.objectName(simulation.getId()));
+        }
+        catch (JMException e) {
+            throw new IllegalStateException(String.format("Simulation %d could not be registered as MBean", simulation.getId()), e);
+        }
+        this.monitors.put(simulation.getId(), monitor);
+        simulation.getGrid().addGenerationListener(monitor);
+    }
+
+    /**
+     * Unregister the MBean of a simulation, if it is registered.
+     *
+     * @param simulation
+     *            The simulation.
+     */
+    private synchronized void unregister(Simulation simulation) {
+        SimulationMonitor monitor = this.monitors.remove(simulation.getId());
+        if (monitor == null) {
+            return;
+        }
+        simulation.getGrid().removeGenerationListener(monitor);
+        try {
+            this.mbeanServer.unregisterMBean(this.objectName(simulation.getId()));
+        }
+        catch (InstanceNotFoundException e) {
+            // Already unregistered by someone else
+        }
+        catch (JMException e) {
+            throw new IllegalStateException(String.format("MBean of simulation %d could not be unregistered", simulation.getId()), e);
+        }
+    }
+
+    /**
+     * Get the object name of the MBean of a simulation of this service.
+     *
+     * @param id
+     *            Simulation ID.
+     * @return Object name.
+     */
+    ObjectName objectName(long id) {
+        return SimulationMonitor.objectName(this.serviceId, id);
+    }
+
+    /**
+     * Get a simulation by its ID.
+     *
+     * @param id
+     *            Simulation ID.
+     * @return The simulation, or <code>null</code> if no running or paused simulation with this ID exists.
+     */
+    public Simulation getSimulation(long id) {
+        return this.simulations.get(id);
+    }
+
+    /**
+     * Get all simulations which have not been cancelled.
+     *
+     * @return Snapshot of the simulations.
+     */
+    public Collection<Simulation> getSimulations() {
+        return Collections.unmodifiableList(new ArrayList<>(this.simulations.values()));
+    }
+
+    /**
+     * Get the number of simulations which have not been cancelled.
+     *
+     * @return Simulation count.
+     */
+    public int getSimulationCount() {
+        return this.simulations.size();
+    }
+
+    /**
+     * Schedule the next step of a simulation.
+     *
+     * @param simulation
+     *            The simulation.
+     * @param token
+     *            Token identifying the step.
+     * @param delayNanos
+     *            Delay until the step is executed.
+     * @return Handle of the scheduled step.
+     */
+    ScheduledFuture<?> schedule(Simulation simulation, long token, long delayNanos) {
+        Runnable step = () -> simulation.step(token);
+        if (this.stepExecutor != null) {
+            Runnable carrierStep = step;
+            step = () -> this.stepExecutor.execute(carrierStep);
+        }
+        return this.scheduler.schedule(step, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Remove a cancelled simulation from the service. Holds the registration lock, so the simulation is either
+     * registered before and unregistered here, or not registered at all.
+     *
+     * @param simulation
+     *            The cancelled simulation.
+     */
+    synchronized void remove(Simulation simulation) {
+        this.simulations.remove(simulation.getId());
+        this.unregister(simulation);
+    }
+
+    /**
+     * Check if the service has been closed.
+     *
+     * @return <code>true</code> if the service does not accept any more steps.
+     */
+    boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Check if the steps are executed on virtual threads.
+     *
+     * @return <code>true</code> if virtual threads are used.
+     */
+    public boolean isUsingVirtualThreads() {
+        return this.stepExecutor != null;
+    }
+
+    /**
+     * Cancel all simulations and stop the carrier threads. Waits up to a minute for running steps to complete. If the
+     * calling thread is interrupted while waiting, the service stops waiting and the interrupt flag is restored.
+     *
+     * @see java.lang.AutoCloseable#close()
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        List<Simulation> remaining = new ArrayList<>(this.simulations.values());
+        for (Simulation simulation : remaining) {
+            simulation.cancel();
+        }
+        this.scheduler.shutdown();
+        try {
+            this.scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.stepExecutor != null) {
+            this.stepExecutor.shutdown();
+            if (!Thread.currentThread().isInterrupted()) {
+                try {
+                    this.stepExecutor.awaitTermination(1, TimeUnit.MINUTES);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Thread factory for the carrier threads. Creates named daemon threads.
+     *
+     * @author D043987
+     *
+     */
+    private static class CarrierThreadFactory implements ThreadFactory {
+
+        /**
+         * Counter for the thread names.
+         */
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        /**
+         * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+         */
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "simulation-carrier-" + this.threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.soup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.PasteMode;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Fills grids with random cells. Each cell is alive with a given density; the content depends on the density, the seed
+ * and the size of the filled region only, so the same fill is reproduced on a {@link Grid}, on a {@link PackedGrid},
+ * and with or without a pool.
+ * <p>
+ * Cells are generated as 64 bit words. The density is rounded to a multiple of 2<sup>-32</sup>; a word with this
+ * density is combined from random words by processing the binary digits of the density from the lowest set digit up,
+ * ORing a new random word for each 1 and ANDing one for each 0. A density of 50% needs a single random word per 64
+ * cells, 25% or 75% two words, and any density at most 32 words.
+ * </p>
+ * <p>
+ * The region is split into bands of {@value #BAND_HEIGHT} rows. The random generators of the bands are split from the
+ * seed in band order before the bands are filled, so the bands can be filled in parallel without changing the result.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class RandomFill {
+
+    /**
+     * Number of rows filled from the same random generator.
+     */
+    public static final int   BAND_HEIGHT = 64;
+
+    /**
+     * Number of binary digits of the density.
+     */
+    private static final int  PRECISION   = 32;
+
+    /**
+     * Density of 100%, scaled to the precision.
+     */
+    private static final long ALL_ALIVE   = 1L << PRECISION;
+
+    /**
+     * Density, scaled to the precision.
+     */
+    private final long        threshold;
+
+    /**
+     * Random seed.
+     */
+    private final long        seed;
+
+    /**
+     * Create a new random fill.
+     *
+     * @param density
+     *            Probability of a cell to be alive, from 0 to 1.
+     * @param seed
+     *            Random seed.
+     */
+    public RandomFill(double density, long seed) {
+        if (!(density >= 0 && density <= 1)) {
+            throw new IllegalArgumentException(String.format("Density must be between 0 and 1 (%s)", density));
+        }
+        this.threshold = Math.round(density * ALL_ALIVE);
+        this.seed = seed;
+    }
+
+    /**
+     * Get the density after rounding to the precision of the fill.
+     *
+     * @return Probability of a cell to be alive.
+     */
+    public double getDensity() {
+        return (double) this.threshold / ALL_ALIVE;
+    }
+
+    /**
+     * Get the random seed.
+     *
+     * @return the seed.
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Generate 64 random cells.
+     *
+     * @param random
+     *            The random generator.
+     * @return Word with each bit set with the density of the fill.
+     */
+    public long nextWord(SplittableRandom random) {
+        if (this.threshold == 0) {
+            return 0;
+        }
+        if (this.threshold == ALL_ALIVE) {
+            return -1L;
+        }
+        // The lowest set digit ORs into an empty word
+        int digit = Long.numberOfTrailingZeros(this.threshold);
+        long word = random.nextLong();
+        for (digit++; digit < PRECISION; digit++) {
+            if ((this.threshold & 1L << digit) != 0) {
+                word |= random.nextLong();
+            } else {
+                word &= random.nextLong();
+            }
+        }
+        return word;
+    }
+
+    /**
+     * Fill the whole grid.
+     *
+     * @param grid
+     *            The grid.
+     */
+    public void fill(Grid grid) {
+        this.fill(grid, 0, 0, grid.getWidth(), grid.getHeight());
+    }
+
+    /**
+     * Fill the whole grid in parallel. The result is the same as for {@link #fill(Grid)}.
+     *
+     * @param grid
+     *            The grid.
+     * @param pool
+     *            The pool to fill the bands in.
+     */
+    public void fill(Grid grid, ForkJoinPool pool) {
+        this.fill(grid, 0, 0, grid.getWidth(), grid.getHeight(), pool);
+    }
+
+    /**
+     * Fill a region of the grid. Cells of the region are replaced, cells outside of the region are not changed.
+     *
+     * @param grid
+     *            The grid.
+     * @param x
+     *            X coordinate of the left edge of the region.
+     * @param y
+     *            Y coordinate of the top edge of the region.
+     * @param width
+     *            Width of the region.
+     * @param height
+     *            Height of the region.
+     */
+    public void fill(Grid grid, int x, int y, int width, int height) {
+        this.fill(width, height, (top, rows, bitmap) -> grid.paste(x, y + top, width, rows, bitmap, PasteMode.REPLACE), null);
+    }
+
+    /**
+     * Fill a region of the grid in parallel. The result is the same as for {@link #fill(Grid, int, int, int, int)}.
+     *
+     * @param grid
+     *            The grid.
+     * @param x
+     *            X coordinate of the left edge of the region.
+     * @param y
+     *            Y coordinate of the top edge of the region.
+     * @param width
+     *            Width of the region.
+     * @param height
+     *            Height of the region.
+     * @param pool
+     *            The pool to fill the bands in.
+     */
+    public void fill(Grid grid, int x, int y, int width, int height, ForkJoinPool pool) {
+        this.fill(width, height, (top, rows, bitmap) -> grid.paste(x, y + top, width, rows, bitmap, PasteMode.REPLACE), checkPool(pool));
+    }
+
+    /**
+     * Fill the whole grid.
+     *
+     * @param grid
+     *            The grid.
+     */
+    public void fill(PackedGrid grid) {
+        this.fill(grid, 0, 0, grid.getWidth(), grid.getHeight());
+    }
+
+    /**
+     * Fill the whole grid in parallel. The result is the same as for {@link #fill(PackedGrid)}.
+     *
+     * @param grid
+     *            The grid.
+     * @param pool
+     *            The pool to fill the bands in.
+     */
+    public void fill(PackedGrid grid, ForkJoinPool pool) {
+        this.fill(grid, 0, 0, grid.getWidth(), grid.getHeight(), pool);
+    }
+
+    /**
+     * Fill a region of the grid. Cells of the region are replaced, cells outside of the region are not changed.
+     *
+     * @param grid
+     *            The grid.
+     * @param x
+     *            X coordinate of the left edge of the region.
+     * @param y
+     *            Y coordinate of the top edge of the region.
+     * @param width
+     *            Width of the region.
+     * @param height
+     *            Height of the region.
+     */
+    public void fill(PackedGrid grid, int x, int y, int width, int height) {
+        this.fill(width, height, (top, rows, bitmap) -> grid.paste(x, y + top, width, rows, bitmap, PasteMode.REPLACE), null);
+    }
+
+    /**
+     * Fill a region of the grid in parallel. The result is the same as for
+     * {@link #fill(PackedGrid, int, int, int, int)}.
+     *
+     * @param grid
+     *            The grid.
+     * @param x
+     *            X coordinate of the left edge of the region.
+     * @param y
+     *            Y coordinate of the top edge of the region.
+     * @param width
+     *            Width of the region.
+     * @param height
+     *            Height of the region.
+     * @param pool
+     *            The pool to fill the bands in.
+     */
+    public void fill(PackedGrid grid, int x, int y, int width, int height, ForkJoinPool pool) {
+        this.fill(width, height, (top, rows, bitmap) -> grid.paste(x, y + top, width, rows, bitmap, PasteMode.REPLACE), checkPool(pool));
+    }
+
+    /**
+     * Generate the bands of a region and pass them to the grid.
+     *
+     * @param width
+     *            Width of the region.
+     * @param height
+     *            Height of the region.
+     * @param target
+     *            Receives the bands.
+     * @param pool
+     *            The pool to fill the bands in, <code>null</code> to fill them on the current thread.
+     */
+    private void fill(int width, int height, BandTarget target, ForkJoinPool pool) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException(String.format("Region of %dx%d cells is invalid", width, height));
+        }
+        int bandCount = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        SplittableRandom root = new SplittableRandom(this.seed);
+        SplittableRandom[] randoms = new SplittableRandom[bandCount];
+        for (int band = 0; band < bandCount; band++) {
+            randoms[band] = root.split();
+        }
+        if (pool == null) {
+            for (int band = 0; band < bandCount; band++) {
+                this.fillBand(band, width, height, randoms[band], target);
+            }
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, bandCount).parallel().forEach(band -> this.fillBand(band, width, height, randoms[band], target))));
+        }
+    }
+
+    /**
+     * Generate a single band.
+     *
+     * @param band
+     *            Index of the band.
+     * @param width
+     *            Width of the region.
+     * @param height
+     *            Height of the region.
+     * @param random
+     *            Random generator of the band.
+     * @param target
+     *            Receives the band.
+     */
+    private void fillBand(int band, int width, int height, SplittableRandom random, BandTarget target) {
+        int top = band * BAND_HEIGHT;
+        int rows = Math.min(BAND_HEIGHT, height - top);
+        long[] bitmap = new long[(width + PackedGrid.WORD_SIZE - 1) / PackedGrid.WORD_SIZE * rows];
+        for (int index = 0; index < bitmap.length; index++) {
+            bitmap[index] = this.nextWord(random);
+        }
+        target.paste(top, rows, bitmap);
+    }
+
+    /**
+     * Check that a pool is given.
+     *
+     * @param pool
+     *            The pool.
+     * @return The pool.
+     */
+    private static ForkJoinPool checkPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+        return pool;
+    }
+
+    /**
+     * Receives the bands of a fill.
+     *
+     * @author D043987
+     *
+     */
+    @FunctionalInterface
+    private interface BandTarget {
+
+        /**
+         * Replace the cells of a band.
+         *
+         * @param top
+         *            First row of the band, relative to the region.
+         * @param rows
+         *            Number of rows of the band.
+         * @param bitmap
+         *            Cells of the band, one word per 64 columns and row. Bits beyond the width are ignored.
+         */
+        void paste(int top, int rows, long[] bitmap);
+    }
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.soup;
+
+/**
+ * Result of running a single soup.
+ *
+ * @author D043987
+ *
+ */
+public class SoupResult {
+
+    /**
+     * Seed of the soup.
+     */
+    private final long    seed;
+
+    /**
+     * Population after the soup stabilized or the generation limit was reached.
+     */
+    private final long    finalPopulation;
+
+    /**
+     * Generation at which the soup entered its final cycle.
+     */
+    private final int     lifetime;
+
+    /**
+     * Period of the final cycle.
+     */
+    private final int     period;
+
+    /**
+     * Soup has stabilized within the generation limit.
+     */
+    private final boolean stabilized;
+
+    /**
+     * Create a new result.
+     *
+     * @param seed
+     *            Seed of the soup.
+     * @param finalPopulation
+     *            Population at the end of the run.
+     * @param lifetime
+     *            Generation at which the soup entered its final cycle, or the generation limit if the soup did not
+     *            stabilize.
+     * @param period
+     *            Period of the final cycle, 0 if the soup did not stabilize.
+     * @param stabilized
+     *            <code>true</code> if the soup stabilized.
+     */
+    public SoupResult(long seed, long finalPopulation, int lifetime, int period, boolean stabilized) {
+        this.seed = seed;
+        this.finalPopulation = finalPopulation;
+        this.lifetime = lifetime;
+        this.period = period;
+        this.stabilized = stabilized;
+    }
+
+    /**
+     * Get the seed of the soup.
+     *
+     * @return the seed.
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Get the population at the end of the run.
+     *
+     * @return the final population.
+     */
+    public long getFinalPopulation() {
+        return this.finalPopulation;
+    }
+
+    /**
+     * Get the generation at which the soup entered its final cycle. If the soup did not stabilize, this is the
+     * generation limit.
+     *
+     * @return the lifetime.
+     */
+    public int getLifetime() {
+        return this.lifetime;
+    }
+
+    /**
+     * Get the period of the final cycle. Still lifes have period 1.
+     *
+     * @return the period, or 0 if the soup did not stabilize.
+     */
+    public int getPeriod() {
+        return this.period;
+    }
+
+    /**
+     * Check if the soup stabilized within the generation limit.
+     *
+     * @return <code>true</code> if the soup stabilized.
+     */
+    public boolean isStabilized() {
+        return this.stabilized;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "SoupResult [seed " + this.seed + ", population " + this.finalPopulation + ", lifetime " + this.lifetime + ", period " + this.period + "]";
+    }
+}
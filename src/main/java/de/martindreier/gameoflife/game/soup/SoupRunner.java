@@ -0,0 +1,512 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.soup;
+
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.packed.BitSlicedGrid;
+import de.martindreier.gameoflife.game.packed.CycleDetector;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Runs batches of random soups until they stabilize. Each soup is a square of random cells (each cell is alive with a
+ * probability of 50%), placed in the center of an otherwise empty board. The soup content is determined by its seed,
+ * so each soup can be reproduced from its seed alone.
+ * <p>
+ * Soups are simulated on a {@link PackedGrid} instead of a {@link de.martindreier.gameoflife.game.Grid}. Batches are
+ * split into chunks which are run in parallel; each chunk allocates its board and history buffers once and reuses
+ * them for all of its soups.
+ * </p>
+ * <p>
+ * A soup has stabilized when a generation repeats one of the previous generations within the maximum period. Repeated
+ * generations are found by comparing 64 bit content hashes and confirmed by comparing the cells with a copy of the
+ * earlier generation, so hash collisions cannot report a wrong period.
+ * </p>
+ * <p>
+ * By default, batches run 64 soups at once on a {@link BitSlicedGrid}. The lanes are compared with exact copies of
+ * the last generations, which detects periods up to 16. Soups which do not stabilize with such a period are run again
+ * on their own, so the results are the same as without bit slicing.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class SoupRunner {
+
+    /**
+     * Default soup size.
+     */
+    public static final int    DEFAULT_SOUP_SIZE       = 16;
+
+    /**
+     * Default generation limit.
+     */
+    public static final int    DEFAULT_MAX_GENERATIONS = 10000;
+
+    /**
+     * Default maximum period which is detected.
+     */
+    public static final int    DEFAULT_MAX_PERIOD      = 64;
+
+    /**
+     * Number of soups per parallel task. Multiple of the number of lanes of a {@link BitSlicedGrid}.
+     */
+    private static final int   CHUNK_SIZE              = 1024;
+
+    /**
+     * Longest period detected when running soups on a {@link BitSlicedGrid}.
+     */
+    private static final int   BIT_SLICED_MAX_PERIOD   = 16;
+
+    /**
+     * Game rule.
+     */
+    private final LifeLikeRule rule;
+
+    /**
+     * Soup width.
+     */
+    private int                soupWidth               = DEFAULT_SOUP_SIZE;
+
+    /**
+     * Soup height.
+     */
+    private int                soupHeight              = DEFAULT_SOUP_SIZE;
+
+    /**
+     * Board width.
+     */
+    private int                boardWidth              = DEFAULT_SOUP_SIZE;
+
+    /**
+     * Board height.
+     */
+    private int                boardHeight             = DEFAULT_SOUP_SIZE;
+
+    /**
+     * Generation limit.
+     */
+    private int                maxGenerations          = DEFAULT_MAX_GENERATIONS;
+
+    /**
+     * Maximum period which is detected.
+     */
+    private int                maxPeriod               = DEFAULT_MAX_PERIOD;
+
+    /**
+     * Run batches on bit-sliced grids.
+     */
+    private boolean            bitSliced               = true;
+
+    /**
+     * Create a new soup runner. Soups and board are 16x16 cells by default.
+     *
+     * @param rule
+     *            Game rule for the soups.
+     */
+    public SoupRunner(GameRule rule) {
+        this.rule = LifeLikeRule.of(rule);
+    }
+
+    /**
+     * Set the size of the random soup. If the soup is larger than the board, the board is enlarged.
+     *
+     * @param width
+     *            Soup width.
+     * @param height
+     *            Soup height.
+     */
+    public void setSoupSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(String.format("Height and width must be greather than 0 (height: %s, width: %s)", height, width));
+        }
+        this.soupWidth = width;
+        this.soupHeight = height;
+        this.boardWidth = Math.max(this.boardWidth, width);
+        this.boardHeight = Math.max(this.boardHeight, height);
+    }
+
+    /**
+     * Set the size of the board the soup is placed on. A board larger than the soup gives the soup room to expand
+     * before it hits the (dead) border.
+     *
+     * @param width
+     *            Board width. Must not be smaller than the soup width.
+     * @param height
+     *            Board height. Must not be smaller than the soup height.
+     */
+    public void setBoardSize(int width, int height) {
+        if (width < this.soupWidth || height < this.soupHeight) {
+            throw new IllegalArgumentException(String.format("Board (%dx%d) must not be smaller than the soup (%dx%d)", width, height, this.soupWidth, this.soupHeight));
+        }
+        this.boardWidth = width;
+        this.boardHeight = height;
+    }
+
+    /**
+     * Set the number of generations after which a soup which has not stabilized is given up.
+     *
+     * @param maxGenerations
+     *            Generation limit.
+     */
+    public void setMaxGenerations(int maxGenerations) {
+        if (maxGenerations <= 0) {
+            throw new IllegalArgumentException(String.format("Generation limit must be greater than 0 (%d)", maxGenerations));
+        }
+        this.maxGenerations = maxGenerations;
+    }
+
+    /**
+     * Set the longest period which is detected. Soups which end in cycles with a longer period are reported as not
+     * stabilized.
+     *
+     * @param maxPeriod
+     *            Maximum period.
+     */
+    public void setMaxPeriod(int maxPeriod) {
+        if (maxPeriod <= 0) {
+            throw new IllegalArgumentException(String.format("Maximum period must be greater than 0 (%d)", maxPeriod));
+        }
+        this.maxPeriod = maxPeriod;
+    }
+
+    /**
+     * Enable or disable running batches on bit-sliced grids. Enabled by default. Bit slicing does not change the
+     * results, only the speed.
+     *
+     * @param bitSliced
+     *            <code>true</code> to run 64 soups at once on a {@link BitSlicedGrid}.
+     */
+    public void setBitSliced(boolean bitSliced) {
+        this.bitSliced = bitSliced;
+    }
+
+    /**
+     * Run a batch of soups in parallel.
+     *
+     * @param firstSeed
+     *            Seed of the first soup (inclusive).
+     * @param endSeed
+     *            End of the seed range (exclusive).
+     * @return Aggregated results.
+     */
+    public SoupStatistics run(long firstSeed, long endSeed) {
+        if (endSeed < firstSeed) {
+            throw new IllegalArgumentException(String.format("Invalid seed range %d to %d", firstSeed, endSeed));
+        }
+        long chunkCount = (endSeed - firstSeed + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        return LongStream.range(0, chunkCount).parallel().mapToObj(chunk -> {
+            long chunkStart = firstSeed + chunk * CHUNK_SIZE;
+            return this.runChunk(chunkStart, Math.min(chunkStart + CHUNK_SIZE, endSeed));
+        }).collect(SoupStatistics::new, SoupStatistics::merge, SoupStatistics::merge);
+    }
+
+    /**
+     * Run a range of soups on the current thread.
+     *
+     * @param firstSeed
+     *            Seed of the first soup (inclusive).
+     * @param endSeed
+     *            End of the seed range (exclusive).
+     * @return Aggregated results.
+     */
+    private SoupStatistics runChunk(long firstSeed, long endSeed) {
+        SoupStatistics statistics = new SoupStatistics();
+        if (this.bitSliced) {
+            new BitSlicedWorkspace().run(firstSeed, endSeed, statistics);
+            return statistics;
+        }
+        Workspace workspace = new Workspace();
+        for (long seed = firstSeed; seed < endSeed; seed++) {
+            workspace.fill(seed);
+            workspace.evolve(workspace.board);
+            statistics.add(seed, workspace.population, workspace.lifetime, workspace.period);
+        }
+        return statistics;
+    }
+
+    /**
+     * Run a single soup.
+     *
+     * @param seed
+     *            Seed of the soup.
+     * @return Result of the soup.
+     */
+    public SoupResult runSoup(long seed) {
+        Workspace workspace = new Workspace();
+        workspace.fill(seed);
+        workspace.evolve(workspace.board);
+        return workspace.toResult(seed);
+    }
+
+    /**
+     * Create the initial board of a soup.
+     *
+     * @param seed
+     *            Seed of the soup.
+     * @return Board with the soup placed in the center.
+     */
+    public PackedGrid createSoup(long seed) {
+        Workspace workspace = new Workspace();
+        workspace.fill(seed);
+        return workspace.board;
+    }
+
+    /**
+     * Run an arbitrary board until it stabilizes. The board is modified and contains the final state afterwards.
+     *
+     * @param board
+     *            Board with the initial state.
+     * @return Result of the run. The seed of the result is 0.
+     */
+    public SoupResult evolve(PackedGrid board) {
+        Workspace workspace = new Workspace();
+        workspace.evolve(board);
+        return workspace.toResult(0);
+    }
+
+    /**
+     * Buffers for running soups on a single thread.
+     *
+     * @author D043987
+     *
+     */
+    private class Workspace {
+
+        /**
+         * Board for the soups.
+         */
+        private final PackedGrid    board    = new PackedGrid(SoupRunner.this.boardWidth, SoupRunner.this.boardHeight);
+
+        /**
+         * Detector for the final cycle.
+         */
+        private final CycleDetector detector = new CycleDetector(SoupRunner.this.maxPeriod, true);
+
+        /**
+         * Population of the last run.
+         */
+        private long                population;
+
+        /**
+         * Lifetime of the last run.
+         */
+        private int                 lifetime;
+
+        /**
+         * Period of the last run.
+         */
+        private int                 period;
+
+        /**
+         * Fill the board with a new soup.
+         *
+         * @param seed
+         *            Seed of the soup.
+         */
+        void fill(long seed) {
+            SplittableRandom random = new SplittableRandom(seed);
+            this.board.clear();
+            int left = (SoupRunner.this.boardWidth - SoupRunner.this.soupWidth) / 2;
+            int top = (SoupRunner.this.boardHeight - SoupRunner.this.soupHeight) / 2;
+            for (int y = top; y < top + SoupRunner.this.soupHeight; y++) {
+                for (int x = 0; x < SoupRunner.this.soupWidth; x += PackedGrid.WORD_SIZE) {
+                    this.board.orBits(left + x, y, random.nextLong(), Math.min(PackedGrid.WORD_SIZE, SoupRunner.this.soupWidth - x));
+                }
+            }
+        }
+
+        /**
+         * Run a board until it stabilizes or the generation limit is reached.
+         *
+         * @param grid
+         *            The board.
+         */
+        void evolve(PackedGrid grid) {
+            this.detector.start(grid);
+            for (int generation = 1; generation <= SoupRunner.this.maxGenerations; generation++) {
+                if (this.detector.next(grid, grid.step(SoupRunner.this.rule))) {
+                    this.finish(grid, this.detector.getCycleStart(), this.detector.getPeriod());
+                    return;
+                }
+            }
+            this.finish(grid, SoupRunner.this.maxGenerations, 0);
+        }
+
+        /**
+         * Record the result of a run.
+         *
+         * @param grid
+         *            The board in its final state.
+         * @param lifetime
+         *            Generation at which the final cycle started.
+         * @param period
+         *            Period of the final cycle, 0 if the board did not stabilize.
+         */
+        private void finish(PackedGrid grid, int lifetime, int period) {
+            this.population = grid.getPopulation();
+            this.lifetime = lifetime;
+            this.period = period;
+        }
+
+        /**
+         * Create a result object for the last run.
+         *
+         * @param seed
+         *            Seed of the soup.
+         * @return Result of the last run.
+         */
+        SoupResult toResult(long seed) {
+            return new SoupResult(seed, this.population, this.lifetime, this.period, this.period > 0);
+        }
+    }
+
+    /**
+     * Buffers for running 64 soups at once on a single thread. As soon as the soup in a lane has stabilized, the lane
+     * is refilled with the next soup, so short-lived soups do not wait for the longest-lived soup of the batch.
+     *
+     * @author D043987
+     *
+     */
+    private class BitSlicedWorkspace {
+
+        /**
+         * Boards for the soups.
+         */
+        private final BitSlicedGrid lanes     = new BitSlicedGrid(SoupRunner.this.boardWidth, SoupRunner.this.boardHeight);
+
+        /**
+         * Copies of the last generations, indexed by generation modulo the history length.
+         */
+        private final long[][]      history   = new long[Math.min(SoupRunner.this.maxPeriod, BIT_SLICED_MAX_PERIOD)][SoupRunner.this.boardWidth * SoupRunner.this.boardHeight];
+
+        /**
+         * Entry <code>p</code> has a bit set for each lane whose soup has run for at least <code>p</code> generations.
+         */
+        private final long[]        matured   = new long[this.history.length + 1];
+
+        /**
+         * Workspace to create soups and to run soups with longer periods.
+         */
+        private final Workspace     single    = new Workspace();
+
+        /**
+         * Seed of the soup in each lane.
+         */
+        private final long[]        seeds     = new long[BitSlicedGrid.LANES];
+
+        /**
+         * Generation at which the soup in each lane was started.
+         */
+        private final int[]         startedAt = new int[BitSlicedGrid.LANES];
+
+        /**
+         * Create the workspace.
+         */
+        BitSlicedWorkspace() {
+            this.lanes.setRule(SoupRunner.this.rule);
+        }
+
+        /**
+         * Run a range of soups.
+         *
+         * @param firstSeed
+         *            Seed of the first soup (inclusive).
+         * @param endSeed
+         *            End of the seed range (exclusive).
+         * @param statistics
+         *            Statistics to add the results to.
+         */
+        void run(long firstSeed, long endSeed, SoupStatistics statistics) {
+            int historyLength = this.history.length;
+            int maxGenerations = SoupRunner.this.maxGenerations;
+            long nextSeed = firstSeed;
+            long active = 0;
+            this.lanes.clear();
+            for (int lane = 0; lane < BitSlicedGrid.LANES && nextSeed < endSeed; lane++) {
+                this.load(lane, nextSeed++, 0);
+                active |= 1L << lane;
+            }
+            this.lanes.copyCellsTo(this.history[0]);
+
+            for (int generation = 1; active != 0; generation++) {
+                this.lanes.step(SoupRunner.this.rule);
+
+                // Every lane has aged by one generation
+                System.arraycopy(this.matured, 0, this.matured, 1, historyLength);
+                this.matured[0] = -1L;
+
+                long finished = 0;
+                for (int candidate = 1; candidate <= Math.min(historyLength, generation); candidate++) {
+                    long stable = ~this.lanes.getDifferingLanes(this.history[(generation - candidate) % historyLength]) & active & this.matured[candidate];
+                    active &= ~stable;
+                    finished |= stable;
+                    while (stable != 0) {
+                        int lane = Long.numberOfTrailingZeros(stable);
+                        stable &= stable - 1;
+                        statistics.add(this.seeds[lane], this.lanes.getPopulation(lane), generation - candidate - this.startedAt[lane], candidate);
+                    }
+                }
+
+                // Soups with longer periods, or which do not stabilize at all, are run on their own
+                for (long remaining = active; remaining != 0; remaining &= remaining - 1) {
+                    int lane = Long.numberOfTrailingZeros(remaining);
+                    if (generation - this.startedAt[lane] >= maxGenerations) {
+                        this.single.fill(this.seeds[lane]);
+                        this.single.evolve(this.single.board);
+                        statistics.add(this.seeds[lane], this.single.population, this.single.lifetime, this.single.period);
+                        active &= ~(1L << lane);
+                        finished |= 1L << lane;
+                    }
+                }
+
+                // Refill finished lanes with new soups, or clear them if there are no soups left
+                for (; finished != 0; finished &= finished - 1) {
+                    int lane = Long.numberOfTrailingZeros(finished);
+                    if (nextSeed < endSeed) {
+                        this.load(lane, nextSeed++, generation);
+                        active |= 1L << lane;
+                    } else {
+                        this.single.board.clear();
+                        this.lanes.setLane(lane, this.single.board);
+                    }
+                }
+                this.lanes.copyCellsTo(this.history[generation % historyLength]);
+            }
+        }
+
+        /**
+         * Load a new soup into a lane.
+         *
+         * @param lane
+         *            The lane.
+         * @param seed
+         *            Seed of the soup.
+         * @param generation
+         *            Current generation.
+         */
+        private void load(int lane, long seed, int generation) {
+            this.single.fill(seed);
+            this.lanes.setLane(lane, this.single.board);
+            this.seeds[lane] = seed;
+            this.startedAt[lane] = generation;
+            long laneMask = ~(1L << lane);
+            for (int age = 1; age < this.matured.length; age++) {
+                this.matured[age] &= laneMask;
+            }
+        }
+    }
+}
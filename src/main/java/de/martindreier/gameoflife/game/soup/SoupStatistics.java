@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.soup;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Aggregated results of a batch of soups. Instances are not thread safe; results from different threads are combined
+ * with {@link #merge(SoupStatistics)}.
+ *
+ * @author D043987
+ *
+ */
+public class SoupStatistics {
+
+    /**
+     * Number of soups.
+     */
+    private long                           soupCount;
+
+    /**
+     * Number of soups which did not stabilize within the generation limit.
+     */
+    private long                           unstabilizedCount;
+
+    /**
+     * Sum of the final populations.
+     */
+    private long                           totalPopulation;
+
+    /**
+     * Smallest final population.
+     */
+    private long                           minPopulation = Long.MAX_VALUE;
+
+    /**
+     * Largest final population.
+     */
+    private long                           maxPopulation = Long.MIN_VALUE;
+
+    /**
+     * Sum of the lifetimes of the stabilized soups.
+     */
+    private long                           totalLifetime;
+
+    /**
+     * Longest lifetime of a stabilized soup.
+     */
+    private int                            maxLifetime   = -1;
+
+    /**
+     * Seed of the soup with the longest lifetime.
+     */
+    private long                           maxLifetimeSeed;
+
+    /**
+     * Number of stabilized soups by period of the final cycle.
+     */
+    private final SortedMap<Integer, Long> periods       = new TreeMap<>();
+
+    /**
+     * Add the result of a single soup.
+     *
+     * @param seed
+     *            Seed of the soup.
+     * @param finalPopulation
+     *            Population at the end of the run.
+     * @param lifetime
+     *            Generation at which the soup entered its final cycle.
+     * @param period
+     *            Period of the final cycle, 0 if the soup did not stabilize.
+     */
+    void add(long seed, long finalPopulation, int lifetime, int period) {
+        this.soupCount++;
+        this.totalPopulation += finalPopulation;
+        this.minPopulation = Math.min(this.minPopulation, finalPopulation);
+        this.maxPopulation = Math.max(this.maxPopulation, finalPopulation);
+        if (period == 0) {
+            this.unstabilizedCount++;
+            return;
+        }
+        this.totalLifetime += lifetime;
+        if (lifetime > this.maxLifetime) {
+            this.maxLifetime = lifetime;
+            this.maxLifetimeSeed = seed;
+        }
+        this.periods.merge(period, 1L, Long::sum);
+    }
+
+    /**
+     * Add the result of a single soup.
+     *
+     * @param result
+     *            The soup result.
+     */
+    public void add(SoupResult result) {
+        this.add(result.getSeed(), result.getFinalPopulation(), result.getLifetime(), result.getPeriod());
+    }
+
+    /**
+     * Add the results of another batch to this batch.
+     *
+     * @param other
+     *            The other batch.
+     */
+    public void merge(SoupStatistics other) {
+        this.soupCount += other.soupCount;
+        this.unstabilizedCount += other.unstabilizedCount;
+        this.totalPopulation += other.totalPopulation;
+        this.minPopulation = Math.min(this.minPopulation, other.minPopulation);
+        this.maxPopulation = Math.max(this.maxPopulation, other.maxPopulation);
+        this.totalLifetime += other.totalLifetime;
+        if (other.maxLifetime > this.maxLifetime || (other.maxLifetime == this.maxLifetime && other.maxLifetimeSeed < this.maxLifetimeSeed)) {
+            this.maxLifetime = other.maxLifetime;
+            this.maxLifetimeSeed = other.maxLifetimeSeed;
+        }
+        other.periods.forEach((period, count) -> this.periods.merge(period, count, Long::sum));
+    }
+
+    /**
+     * Get the number of soups.
+     *
+     * @return Soup count.
+     */
+    public long getSoupCount() {
+        return this.soupCount;
+    }
+
+    /**
+     * Get the number of soups which stabilized within the generation limit.
+     *
+     * @return Number of stabilized soups.
+     */
+    public long getStabilizedCount() {
+        return this.soupCount - this.unstabilizedCount;
+    }
+
+    /**
+     * Get the number of soups which did not stabilize within the generation limit.
+     *
+     * @return Number of unstabilized soups.
+     */
+    public long getUnstabilizedCount() {
+        return this.unstabilizedCount;
+    }
+
+    /**
+     * Get the average final population over all soups.
+     *
+     * @return Average population, 0 if no soups were run.
+     */
+    public double getAveragePopulation() {
+        return this.soupCount == 0 ? 0 : (double) this.totalPopulation / this.soupCount;
+    }
+
+    /**
+     * Get the sum of all final populations.
+     *
+     * @return Total population.
+     */
+    public long getTotalPopulation() {
+        return this.totalPopulation;
+    }
+
+    /**
+     * Get the smallest final population.
+     *
+     * @return Minimum population, 0 if no soups were run.
+     */
+    public long getMinPopulation() {
+        return this.soupCount == 0 ? 0 : this.minPopulation;
+    }
+
+    /**
+     * Get the largest final population.
+     *
+     * @return Maximum population, 0 if no soups were run.
+     */
+    public long getMaxPopulation() {
+        return this.soupCount == 0 ? 0 : this.maxPopulation;
+    }
+
+    /**
+     * Get the average lifetime of the stabilized soups.
+     *
+     * @return Average lifetime, 0 if no soup stabilized.
+     */
+    public double getAverageLifetime() {
+        long stabilized = this.getStabilizedCount();
+        return stabilized == 0 ? 0 : (double) this.totalLifetime / stabilized;
+    }
+
+    /**
+     * Get the longest lifetime of a stabilized soup.
+     *
+     * @return Maximum lifetime, -1 if no soup stabilized.
+     */
+    public int getMaxLifetime() {
+        return this.maxLifetime;
+    }
+
+    /**
+     * Get the seed of the stabilized soup with the longest lifetime. If several soups have the same lifetime, the
+     * smallest seed is returned.
+     *
+     * @return Seed of the longest-lived soup.
+     */
+    public long getMaxLifetimeSeed() {
+        return this.maxLifetimeSeed;
+    }
+
+    /**
+     * Get the number of stabilized soups by period of their final cycle.
+     *
+     * @return Unmodifiable map from period to soup count, sorted by period.
+     */
+    public SortedMap<Integer, Long> getPeriods() {
+        return Collections.unmodifiableSortedMap(this.periods);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("SoupStatistics [soups %d, unstabilized %d, average population %.2f, average lifetime %.2f, max lifetime %d (seed %d), periods %s]", this.soupCount,
+                this.unstabilizedCount, this.getAveragePopulation(), this.getAverageLifetime(), this.maxLifetime, this.maxLifetimeSeed, this.periods);
+    }
+}
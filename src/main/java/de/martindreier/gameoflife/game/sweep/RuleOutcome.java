@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.sweep;
+
+import java.util.Arrays;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+
+/**
+ * Outcome of running the seed pattern of a {@link RuleSweep} under a single rule.
+ *
+ * @author D043987
+ *
+ */
+public class RuleOutcome {
+
+    /**
+     * The rule as passed to the sweep.
+     */
+    private final GameRule     rule;
+
+    /**
+     * The rule in life-like notation.
+     */
+    private final LifeLikeRule lifeLikeRule;
+
+    /**
+     * Population per generation, starting with generation 0.
+     */
+    private final long[]       populations;
+
+    /**
+     * Period of the final cycle, 0 if the pattern did not stabilize.
+     */
+    private final int          period;
+
+    /**
+     * Generation at which the final cycle started.
+     */
+    private final int          stabilizationTime;
+
+    /**
+     * Create a new outcome.
+     *
+     * @param rule
+     *            The rule.
+     * @param lifeLikeRule
+     *            The rule in life-like notation.
+     * @param populations
+     *            Population per generation. The array is not copied.
+     * @param period
+     *            Period of the final cycle, 0 if the pattern did not stabilize.
+     * @param stabilizationTime
+     *            Generation at which the final cycle started.
+     */
+    RuleOutcome(GameRule rule, LifeLikeRule lifeLikeRule, long[] populations, int period, int stabilizationTime) {
+        this.rule = rule;
+        this.lifeLikeRule = lifeLikeRule;
+        this.populations = populations;
+        this.period = period;
+        this.stabilizationTime = stabilizationTime;
+    }
+
+    /**
+     * Get the rule as it was passed to the sweep.
+     *
+     * @return the rule.
+     */
+    public GameRule getRule() {
+        return this.rule;
+    }
+
+    /**
+     * Get the rule in life-like notation, e.g. for display as <code>B3/S23</code>.
+     *
+     * @return the life-like rule.
+     */
+    public LifeLikeRule getLifeLikeRule() {
+        return this.lifeLikeRule;
+    }
+
+    /**
+     * Get the number of generations which were calculated.
+     *
+     * @return Generation count.
+     */
+    public int getGenerations() {
+        return this.populations.length - 1;
+    }
+
+    /**
+     * Get the population of a generation.
+     *
+     * @param generation
+     *            The generation, from 0 (initial state) to {@link #getGenerations()}.
+     * @return Population.
+     */
+    public long getPopulation(int generation) {
+        return this.populations[generation];
+    }
+
+    /**
+     * Get the population curve.
+     *
+     * @return Copy of the population per generation, starting with generation 0.
+     */
+    public long[] getPopulationCurve() {
+        return Arrays.copyOf(this.populations, this.populations.length);
+    }
+
+    /**
+     * Get the population after the last calculated generation.
+     *
+     * @return Final population.
+     */
+    public long getFinalPopulation() {
+        return this.populations[this.populations.length - 1];
+    }
+
+    /**
+     * Check if the pattern stabilized within the generation limit.
+     *
+     * @return <code>true</code> if the pattern entered a cycle.
+     */
+    public boolean isStabilized() {
+        return this.period > 0;
+    }
+
+    /**
+     * Get the period of the final cycle. Still lifes (including the empty grid) have period 1.
+     *
+     * @return Period, or 0 if the pattern did not stabilize.
+     */
+    public int getPeriod() {
+        return this.period;
+    }
+
+    /**
+     * Get the generation at which the final cycle started.
+     *
+     * @return Stabilization time, or the generation limit if the pattern did not stabilize.
+     */
+    public int getStabilizationTime() {
+        return this.stabilizationTime;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "RuleOutcome [" + this.lifeLikeRule + ", population " + this.getFinalPopulation() + ", stabilized at " + this.stabilizationTime + ", period " + this.period + "]";
+    }
+}
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.sweep;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.io.GridLoader;
+import de.martindreier.gameoflife.game.packed.CycleDetector;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Runs one seed pattern under many different rules. The seed is loaded once and kept as an immutable packed grid. Each
+ * rule is run in parallel on a copy of the seed, until the pattern stabilizes or the generation limit is reached. Like
+ * for soups, a cycle found by its content hash is confirmed by comparing the cells, so periods and stabilization
+ * generations are exact.
+ * <p>
+ * The boards and population buffers are taken from a pool and returned after each rule, so a sweep over hundreds of
+ * rules only allocates one set of buffers per worker thread, plus the population curves of the outcomes.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class RuleSweep {
+
+    /**
+     * Default generation limit.
+     */
+    public static final int        DEFAULT_MAX_GENERATIONS = 1000;
+
+    /**
+     * Default maximum period which is detected.
+     */
+    public static final int        DEFAULT_MAX_PERIOD      = 64;
+
+    /**
+     * The seed pattern. Never modified.
+     */
+    private final PackedGrid       seed;
+
+    /**
+     * Pool of buffers for running rules.
+     */
+    private final Queue<Workspace> pool                    = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Generation limit.
+     */
+    private int                    maxGenerations          = DEFAULT_MAX_GENERATIONS;
+
+    /**
+     * Maximum period which is detected.
+     */
+    private int                    maxPeriod               = DEFAULT_MAX_PERIOD;
+
+    /**
+     * Create a new sweep for a seed pattern from a loader. The grid size is taken from the loader.
+     *
+     * @param loader
+     *            Loader for the seed pattern.
+     */
+    public RuleSweep(GridLoader loader) {
+        this(PackedGrid.of(loader));
+    }
+
+    /**
+     * Create a new sweep for a seed pattern from a loader, using a grid of fixed size.
+     *
+     * @param width
+     *            Grid width (number of cells in X dimension).
+     * @param height
+     *            Grid height (number of cells in Y dimension).
+     * @param loader
+     *            Loader for the seed pattern.
+     */
+    public RuleSweep(int width, int height, GridLoader loader) {
+        this(load(width, height, loader));
+    }
+
+    /**
+     * Load a seed pattern into a grid of fixed size.
+     *
+     * @param width
+     *            Grid width (number of cells in X dimension).
+     * @param height
+     *            Grid height (number of cells in Y dimension).
+     * @param loader
+     *            Loader for the seed pattern.
+     * @return The seed.
+     */
+    private static PackedGrid load(int width, int height, GridLoader loader) {
+        if (loader == null) {
+            throw new IllegalArgumentException("Grid loader must not be null");
+        }
+        PackedGrid seed = new PackedGrid(width, height);
+        seed.load(loader, 0, 0);
+        return seed;
+    }
+
+    /**
+     * Create a new sweep for a seed pattern.
+     *
+     * @param seed
+     *            The seed pattern. The grid is copied, later changes do not affect the sweep.
+     */
+    public RuleSweep(PackedGrid seed) {
+        if (seed == null) {
+            throw new IllegalArgumentException("Seed must not be null");
+        }
+        this.seed = new PackedGrid(seed);
+    }
+
+    /**
+     * Set the number of generations after which a rule which has not stabilized is given up. Rules which are already
+     * running keep the previous limit.
+     *
+     * @param maxGenerations
+     *            Generation limit.
+     */
+    public void setMaxGenerations(int maxGenerations) {
+        if (maxGenerations <= 0) {
+            throw new IllegalArgumentException(String.format("Generation limit must be greater than 0 (%d)", maxGenerations));
+        }
+        this.maxGenerations = maxGenerations;
+        this.pool.clear();
+    }
+
+    /**
+     * Set the longest period which is detected. Rules which are already running keep the previous maximum period.
+     *
+     * @param maxPeriod
+     *            Maximum period.
+     */
+    public void setMaxPeriod(int maxPeriod) {
+        if (maxPeriod <= 0) {
+            throw new IllegalArgumentException(String.format("Maximum period must be greater than 0 (%d)", maxPeriod));
+        }
+        this.maxPeriod = maxPeriod;
+        this.pool.clear();
+    }
+
+    /**
+     * Get a copy of the seed pattern.
+     *
+     * @return The seed.
+     */
+    public PackedGrid getSeed() {
+        return new PackedGrid(this.seed);
+    }
+
+    /**
+     * Run the seed under each of the rules.
+     *
+     * @param rules
+     *            The rules.
+     * @return Outcomes, in the same order as the rules.
+     */
+    public List<RuleOutcome> run(GameRule... rules) {
+        return this.run(Arrays.asList(rules));
+    }
+
+    /**
+     * Run the seed under each of the rules. The rules are run in parallel.
+     *
+     * @param rules
+     *            The rules.
+     * @return Outcomes, in the same order as the rules.
+     */
+    public List<RuleOutcome> run(List<GameRule> rules) {
+        return rules.parallelStream().map(this::runRule).collect(Collectors.toList());
+    }
+
+    /**
+     * Run the seed under a single rule.
+     *
+     * @param rule
+     *            The rule.
+     * @return Outcome.
+     */
+    public RuleOutcome runRule(GameRule rule) {
+        LifeLikeRule lifeLikeRule = LifeLikeRule.of(rule);
+        int generations = this.maxGenerations;
+        int period = this.maxPeriod;
+        Workspace workspace = this.pool.poll();
+        if (workspace == null || workspace.populations.length != generations + 1 || workspace.maxPeriod != period) {
+            // Workspaces built before a setting changed are dropped
+            workspace = new Workspace(generations, period);
+        }
+        try {
+            return workspace.run(rule, lifeLikeRule);
+        }
+        finally {
+            this.pool.offer(workspace);
+        }
+    }
+
+    /**
+     * Buffers for running a single rule.
+     *
+     * @author D043987
+     *
+     */
+    private class Workspace {
+
+        /**
+         * The board.
+         */
+        private final PackedGrid    board = new PackedGrid(RuleSweep.this.seed.getWidth(), RuleSweep.this.seed.getHeight());
+
+        /**
+         * Maximum period which is detected.
+         */
+        private final int           maxPeriod;
+
+        /**
+         * Detector for the final cycle.
+         */
+        private final CycleDetector detector;
+
+        /**
+         * Population per generation.
+         */
+        private final long[]        populations;
+
+        /**
+         * Create the buffers for the given settings.
+         *
+         * @param maxGenerations
+         *            Generation limit.
+         * @param maxPeriod
+         *            Maximum period which is detected.
+         */
+        Workspace(int maxGenerations, int maxPeriod) {
+            this.maxPeriod = maxPeriod;
+            this.detector = new CycleDetector(maxPeriod, true);
+            this.populations = new long[maxGenerations + 1];
+        }
+
+        /**
+         * Run the seed under a rule.
+         *
+         * @param rule
+         *            The rule as passed by the caller.
+         * @param lifeLikeRule
+         *            The rule in life-like form.
+         * @return Outcome.
+         */
+        RuleOutcome run(GameRule rule, LifeLikeRule lifeLikeRule) {
+            this.board.copyFrom(RuleSweep.this.seed);
+            this.detector.start(this.board);
+            this.populations[0] = this.board.getPopulation();
+            int generations = this.populations.length - 1;
+            for (int generation = 1; generation <= generations; generation++) {
+                boolean cycle = this.detector.next(this.board, this.board.step(lifeLikeRule));
+                this.populations[generation] = this.board.getPopulation();
+                if (cycle) {
+                    return new RuleOutcome(rule, lifeLikeRule, Arrays.copyOf(this.populations, generation + 1), this.detector.getPeriod(), this.detector.getCycleStart());
+                }
+            }
+            return new RuleOutcome(rule, lifeLikeRule, Arrays.copyOf(this.populations, generations + 1), 0, generations);
+        }
+    }
+}
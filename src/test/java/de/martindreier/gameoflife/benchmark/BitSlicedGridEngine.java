@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import de.martindreier.gameoflife.game.packed.BitSlicedGrid;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Corpus engine for the {@link BitSlicedGrid}. The pattern is loaded into all lanes.
+ *
+ * @author D043987
+ *
+ */
+public class BitSlicedGridEngine implements CorpusEngine {
+
+    /**
+     * The boards.
+     */
+    private BitSlicedGrid grid;
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#getName()
+     */
+    @Override
+    public String getName() {
+        return "BitSlicedGrid";
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#getWorkLimit()
+     */
+    @Override
+    public long getWorkLimit() {
+        return 100_000_000L;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#getCopies()
+     */
+    @Override
+    public int getCopies() {
+        return BitSlicedGrid.LANES;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#load(de.martindreier.gameoflife.game.packed.PackedGrid)
+     */
+    @Override
+    public void load(PackedGrid initialState) {
+        this.grid = new BitSlicedGrid(initialState.getWidth(), initialState.getHeight());
+        for (int lane = 0; lane < BitSlicedGrid.LANES; lane++) {
+            this.grid.setLane(lane, initialState);
+        }
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#step()
+     */
+    @Override
+    public void step() {
+        this.grid.step(LifeLikeRule.CONWAY);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#getPopulation()
+     */
+    @Override
+    public long getPopulation() {
+        long population = this.grid.getPopulation(0);
+        for (int lane = 1; lane < BitSlicedGrid.LANES; lane++) {
+            if (this.grid.getPopulation(lane) != population) {
+                throw new IllegalStateException(String.format("Lanes 0 and %d differ", lane));
+            }
+        }
+        return population;
+    }
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.martindreier.gameoflife.game.Cell;
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.Grid;
+
+/**
+ * Benchmark for {@link Cell#countNeighborsAlive()}.
+ *
+ * @author D043987
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellBenchmark {
+
+    /**
+     * Number of living neighbors.
+     */
+    @Param({ "0", "3", "8" })
+    public int   aliveNeighbors;
+
+    /**
+     * The cell in the center of a 3x3 grid.
+     */
+    private Cell cell;
+
+    /**
+     * Create the grid and set the neighbors alive.
+     */
+    @Setup(Level.Trial)
+    public void createCell() {
+        Grid grid = new Grid(3, 3);
+        int alive = 0;
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                if ((x != 1 || y != 1) && alive < this.aliveNeighbors) {
+                    grid.set(x, y, CellState.ALIVE);
+                    alive++;
+                }
+            }
+        }
+        this.cell = grid.getGrid().get(1).get(1);
+    }
+
+    /**
+     * Count the living neighbors.
+     *
+     * @return Number of living neighbors.
+     */
+    @Benchmark
+    public int countNeighborsAlive() {
+        return this.cell.countNeighborsAlive();
+    }
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * A simulation engine which can run the patterns of the {@link CorpusPattern corpus}. All engines follow Conway's
+ * rule.
+ *
+ * @author D043987
+ *
+ */
+public interface CorpusEngine {
+
+    /**
+     * Create one instance of each engine.
+     *
+     * @return New engines.
+     */
+    public static List<CorpusEngine> all() {
+        return Arrays.asList(new GridEngine(), new PackedGridEngine(), new ParallelPackedGridEngine(), new BitSlicedGridEngine());
+    }
+
+    /**
+     * Get the name of the engine.
+     *
+     * @return Engine name.
+     */
+    public String getName();
+
+    /**
+     * Get the amount of work the engine can do in reasonable time. Patterns with a larger number of cell updates (board
+     * cells times generations) are skipped unless requested explicitly.
+     *
+     * @return Maximum number of cell updates.
+     */
+    public long getWorkLimit();
+
+    /**
+     * Get the number of copies of the pattern which are simulated at the same time.
+     *
+     * @return Number of copies.
+     */
+    public int getCopies();
+
+    /**
+     * Set up the board.
+     *
+     * @param initialState
+     *            Initial state of the board.
+     */
+    public void load(PackedGrid initialState);
+
+    /**
+     * Calculate the next generation.
+     */
+    public void step();
+
+    /**
+     * Get the population of the board. Engines which simulate several copies check that all copies have the same
+     * population.
+     *
+     * @return Population.
+     */
+    public long getPopulation();
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Runs the {@link CorpusPattern corpus} on every {@link CorpusEngine engine}, checks the final populations and reports
+ * generations and cells per second.
+ * <p>
+ * Usage: <code>CorpusHarness [-all] [pattern ...]</code>. Without pattern names, all patterns are run. Engines skip
+ * patterns which exceed their work limit, unless <code>-all</code> is given. The exit code is 1 if any population does
+ * not match.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class CorpusHarness {
+
+    /**
+     * Run a corpus pattern on an engine.
+     *
+     * @param pattern
+     *            The pattern.
+     * @param engine
+     *            The engine.
+     * @param initialState
+     *            Initial state of the pattern, as returned by {@link CorpusPattern#createInitialState()}.
+     * @return The result.
+     */
+    public static Result run(CorpusPattern pattern, CorpusEngine engine, PackedGrid initialState) {
+        engine.load(initialState);
+        long start = System.nanoTime();
+        for (int generation = 0; generation < pattern.getGenerations(); generation++) {
+            engine.step();
+        }
+        long nanos = System.nanoTime() - start;
+        return new Result(pattern, engine, nanos, engine.getPopulation());
+    }
+
+    /**
+     * Run the corpus and print a report.
+     *
+     * @param args
+     *            Command line arguments.
+     * @throws IOException
+     *             Error loading a pattern.
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> arguments = Arrays.asList(args);
+        boolean all = arguments.contains("-all");
+        boolean failed = false;
+        System.out.println(String.format("%-20s %-14s %8s %10s %12s %14s %10s %10s %s", "Pattern", "Engine", "Gens", "Seconds", "Gens/s", "Cells/s", "Population", "Expected",
+                "Status"));
+        for (CorpusPattern pattern : CorpusPattern.values()) {
+            if (arguments.stream().anyMatch(argument -> !argument.startsWith("-")) && !arguments.contains(pattern.getName())) {
+                continue;
+            }
+            PackedGrid initialState = pattern.createInitialState();
+            for (CorpusEngine engine : CorpusEngine.all()) {
+                if (!all && pattern.getWork() > engine.getWorkLimit()) {
+                    System.out.println(String.format("%-20s %-14s %8d %10s %12s %14s %10s %10d %s", pattern, engine.getName(), pattern.getGenerations(), "-", "-", "-", "-",
+                            pattern.getExpectedPopulation(), "SKIPPED"));
+                    continue;
+                }
+                Result result = run(pattern, engine, initialState);
+                failed |= !result.isCorrect();
+                System.out.println(String.format("%-20s %-14s %8d %10.3f %12.1f %14.4g %10d %10d %s", pattern, engine.getName(), pattern.getGenerations(), result.getSeconds(),
+                        result.getGenerationsPerSecond(), result.getCellsPerSecond(), result.getPopulation(), pattern.getExpectedPopulation(),
+                        result.isCorrect() ? "OK" : "FAILED"));
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Result of running a pattern on an engine.
+     *
+     * @author D043987
+     *
+     */
+    public static class Result {
+
+        /**
+         * The pattern.
+         */
+        private final CorpusPattern pattern;
+
+        /**
+         * Number of pattern copies simulated by the engine.
+         */
+        private final int           copies;
+
+        /**
+         * Run time in nanoseconds.
+         */
+        private final long          nanos;
+
+        /**
+         * Population after the last generation.
+         */
+        private final long          population;
+
+        /**
+         * Create a new result.
+         *
+         * @param pattern
+         *            The pattern.
+         * @param engine
+         *            The engine.
+         * @param nanos
+         *            Run time in nanoseconds.
+         * @param population
+         *            Population after the last generation.
+         */
+        Result(CorpusPattern pattern, CorpusEngine engine, long nanos, long population) {
+            this.pattern = pattern;
+            this.copies = engine.getCopies();
+            this.nanos = nanos;
+            this.population = population;
+        }
+
+        /**
+         * Check if the final population matches the expected population.
+         *
+         * @return <code>true</code> if the population is correct.
+         */
+        public boolean isCorrect() {
+            return this.population == this.pattern.getExpectedPopulation();
+        }
+
+        /**
+         * Get the population after the last generation.
+         *
+         * @return Population.
+         */
+        public long getPopulation() {
+            return this.population;
+        }
+
+        /**
+         * Get the run time.
+         *
+         * @return Run time in seconds.
+         */
+        public double getSeconds() {
+            return this.nanos / 1e9;
+        }
+
+        /**
+         * Get the number of generations per second.
+         *
+         * @return Generations per second.
+         */
+        public double getGenerationsPerSecond() {
+            return this.pattern.getGenerations() / this.getSeconds();
+        }
+
+        /**
+         * Get the number of cell updates per second, counting all copies of the pattern.
+         *
+         * @return Cells per second.
+         */
+        public double getCellsPerSecond() {
+            return (double) this.pattern.getWork() * this.copies / this.getSeconds();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.martindreier.gameoflife.game.io.input.RLEFileLoader;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Standard workloads for performance measurements. Each pattern is run on a board of fixed size for a fixed number of
+ * generations, after which the population must match a known value. The boards are large enough that escaping gliders
+ * do not reach the border before the generation target, so the methuselahs reach their known final populations.
+ * <p>
+ * The classic patterns are stored as RLE files in <code>src/test/resources/corpus</code>. Random soups are generated
+ * from a fixed seed and written to a temporary RLE file, so loading them measures the RLE loader on large inputs.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public final class CorpusPattern {
+
+    /**
+     * Gosper glider gun on a board small enough for the {@link GridEngine}.
+     */
+    public static final CorpusPattern GOSPER_GUN_SMALL = new CorpusPattern("gosper-gun-small", resource("gosper-gun"), 64, 64, 1, 1, 60, 46);
+
+    /**
+     * R-pentomino, stabilizes at generation 1103 with a population of 116.
+     */
+    public static final CorpusPattern R_PENTOMINO      = new CorpusPattern("r-pentomino", resource("r-pentomino"), 1024, 1024, 510, 510, 1103, 116);
+
+    /**
+     * Acorn, stabilizes at generation 5206 with a population of 633.
+     */
+    public static final CorpusPattern ACORN            = new CorpusPattern("acorn", resource("acorn"), 3072, 3072, 1532, 1534, 5206, 633);
+
+    /**
+     * Gosper glider gun, 40 gliders after 1200 generations.
+     */
+    public static final CorpusPattern GOSPER_GUN       = new CorpusPattern("gosper-gun", resource("gosper-gun"), 1024, 1024, 10, 10, 1200, 236);
+
+    /**
+     * 5x5 infinite growth pattern, which turns into a block-laying switch engine and grows without bounds.
+     */
+    public static final CorpusPattern INFINITE_GROWTH  = new CorpusPattern("infinite-growth-5x5", resource("infinite-growth-5x5"), 2048, 2048, 1021, 1021, 4000, 540);
+
+    /**
+     * Random soup filling a 512x512 board.
+     */
+    public static final CorpusPattern SOUP_512         = new CorpusPattern("soup-512", soup(512, 0.35, 1), 512, 512, 0, 0, 1000, 11186);
+
+    /**
+     * Random soup filling a 4096x4096 board, loaded from an RLE file of several megabytes.
+     */
+    public static final CorpusPattern SOUP_4096        = new CorpusPattern("soup-4096", soup(4096, 0.35, 2), 4096, 4096, 0, 0, 100, 1613372);
+
+    /**
+     * All patterns, from the smallest to the largest workload.
+     */
+    private static final List<CorpusPattern> PATTERNS           = Collections.unmodifiableList(Arrays.asList(GOSPER_GUN_SMALL, R_PENTOMINO, GOSPER_GUN, SOUP_512, SOUP_4096,
+            INFINITE_GROWTH, ACORN));
+
+    /**
+     * Pattern name.
+     */
+    private final String              name;
+
+    /**
+     * Source of the pattern.
+     */
+    private final Source              source;
+
+    /**
+     * Board width.
+     */
+    private final int                 width;
+
+    /**
+     * Board height.
+     */
+    private final int                 height;
+
+    /**
+     * X coordinate of the left edge of the pattern on the board.
+     */
+    private final int                 left;
+
+    /**
+     * Y coordinate of the top edge of the pattern on the board.
+     */
+    private final int                 top;
+
+    /**
+     * Number of generations to run.
+     */
+    private final int                 generations;
+
+    /**
+     * Population after the last generation.
+     */
+    private final long                expectedPopulation;
+
+    /**
+     * Create a new corpus pattern.
+     *
+     * @param name
+     *            Pattern name.
+     * @param source
+     *            Source of the pattern.
+     * @param width
+     *            Board width.
+     * @param height
+     *            Board height.
+     * @param left
+     *            X coordinate of the left edge of the pattern on the board.
+     * @param top
+     *            Y coordinate of the top edge of the pattern on the board.
+     * @param generations
+     *            Number of generations to run.
+     * @param expectedPopulation
+     *            Population after the last generation.
+     */
+    private CorpusPattern(String name, Source source, int width, int height, int left, int top, int generations, long expectedPopulation) {
+        this.name = name;
+        this.source = source;
+        this.width = width;
+        this.height = height;
+        this.left = left;
+        this.top = top;
+        this.generations = generations;
+        this.expectedPopulation = expectedPopulation;
+    }
+
+    /**
+     * Get all patterns of the corpus.
+     *
+     * @return Unmodifiable list of patterns, from the smallest to the largest workload.
+     */
+    public static List<CorpusPattern> values() {
+        return PATTERNS;
+    }
+
+    /**
+     * Create a source for an RLE file of the corpus directory.
+     *
+     * @param name
+     *            File name without extension.
+     * @return The source.
+     */
+    private static Source resource(String name) {
+        return (board, left, top) -> {
+            URL url = CorpusPattern.class.getResource("/corpus/" + name + ".rle");
+            if (url == null) {
+                throw new IOException(String.format("Corpus file %s.rle does not exist", name));
+            }
+            try {
+                board.load(new RLEFileLoader(Paths.get(url.toURI())), left, top);
+            }
+            catch (URISyntaxException e) {
+                throw new IOException(String.format("Invalid location of corpus file %s.rle", name), e);
+            }
+        };
+    }
+
+    /**
+     * Create a source for a random soup. The soup is written to a temporary RLE file and loaded from there.
+     *
+     * @param size
+     *            Width and height of the soup.
+     * @param density
+     *            Probability of a cell to be alive.
+     * @param seed
+     *            Random seed.
+     * @return The source.
+     */
+    private static Source soup(int size, double density, long seed) {
+        return (board, left, top) -> {
+            Path file = Files.createTempFile("corpus-soup", ".rle");
+            try {
+                SyntheticPatterns.writeRLE(SyntheticPatterns.random(size, size, density, seed), file);
+                board.load(new RLEFileLoader(file), left, top);
+            }
+            finally {
+                Files.delete(file);
+            }
+        };
+    }
+
+    /**
+     * Load the pattern and place it on a new board.
+     *
+     * @return The board in its initial state.
+     * @throws IOException
+     *             Error loading the pattern.
+     */
+    public PackedGrid createInitialState() throws IOException {
+        PackedGrid board = new PackedGrid(this.width, this.height);
+        this.source.load(board, this.left, this.top);
+        return board;
+    }
+
+    /**
+     * Get the pattern name.
+     *
+     * @return the name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Get the board width.
+     *
+     * @return the width.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Get the board height.
+     *
+     * @return the height.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Get the number of generations to run.
+     *
+     * @return the generation target.
+     */
+    public int getGenerations() {
+        return this.generations;
+    }
+
+    /**
+     * Get the population after the last generation.
+     *
+     * @return the expected population.
+     */
+    public long getExpectedPopulation() {
+        return this.expectedPopulation;
+    }
+
+    /**
+     * Get the number of cell updates needed to run the pattern.
+     *
+     * @return Board cells times generations.
+     */
+    public long getWork() {
+        return (long) this.width * this.height * this.generations;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+    /**
+     * Source of a pattern.
+     *
+     * @author D043987
+     *
+     */
+    @FunctionalInterface
+    private interface Source {
+
+        /**
+         * Load the pattern onto a board.
+         *
+         * @param board
+         *            The board.
+         * @param left
+         *            X coordinate of the left edge of the pattern.
+         * @param top
+         *            Y coordinate of the top edge of the pattern.
+         * @throws IOException
+         *             Error loading the pattern.
+         */
+        void load(PackedGrid board, int left, int top) throws IOException;
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.Grid;
+
+/**
+ * Benchmarks for {@link Grid#iterate(GameRule)} and grid initialization.
+ *
+ * @author D043987
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridBenchmark {
+
+    /**
+     * Grid width and height.
+     */
+    @Param({ "32", "128", "512" })
+    public int          size;
+
+    /**
+     * Fraction of living cells in the initial state.
+     */
+    @Param({ "0.1", "0.35", "0.5" })
+    public double       density;
+
+    /**
+     * The grid which is iterated.
+     */
+    private Grid        grid;
+
+    /**
+     * Initial state, indexed by x and y.
+     */
+    private boolean[][] initialState;
+
+    /**
+     * Create the grid and the initial state.
+     */
+    @Setup(Level.Trial)
+    public void createGrid() {
+        this.grid = new Grid(this.size, this.size);
+        this.initialState = SyntheticPatterns.random(this.size, this.size, this.density, 42);
+    }
+
+    /**
+     * Reset the grid to the initial state, so each iteration measures the same generations.
+     */
+    @Setup(Level.Iteration)
+    public void resetGrid() {
+        for (int x = 0; x < this.size; x++) {
+            for (int y = 0; y < this.size; y++) {
+                this.grid.set(x, y, this.initialState[x][y] ? CellState.ALIVE : CellState.DEAD);
+            }
+        }
+    }
+
+    /**
+     * Calculate one generation.
+     *
+     * @return The grid.
+     */
+    @Benchmark
+    public Grid iterate() {
+        this.grid.iterate(GameRule.CONWAY);
+        return this.grid;
+    }
+
+    /**
+     * Create and initialize an empty grid, including the neighbor sets of all cells.
+     *
+     * @return The new grid.
+     */
+    @Benchmark
+    public Grid initialize() {
+        return new Grid(this.size, this.size);
+    }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Corpus engine for the {@link Grid}.
+ *
+ * @author D043987
+ *
+ */
+public class GridEngine implements CorpusEngine {
+
+    /**
+     * The board.
+     */
+    private Grid grid;
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#getName()
+     */
+    @Override
+    public String getName() {
+        return "Grid";
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#getWorkLimit()
+     */
+    @Override
+    public long getWorkLimit() {
+        return 1_000_000L;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#getCopies()
+     */
+    @Override
+    public int getCopies() {
+        return 1;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#load(de.martindreier.gameoflife.game.packed.PackedGrid)
+     */
+    @Override
+    public void load(PackedGrid initialState) {
+        this.grid = new Grid(initialState.getWidth(), initialState.getHeight());
+        initialState.copyTo(this.grid);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#step()
+     */
+    @Override
+    public void step() {
+        this.grid.iterate(GameRule.CONWAY);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#getPopulation()
+     */
+    @Override
+    public long getPopulation() {
+        return this.grid.getCells().filter(cell -> cell.getCurrentState() == CellState.ALIVE).count();
+    }
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.io.GridLoader;
+import de.martindreier.gameoflife.game.io.input.Life105Loader;
+import de.martindreier.gameoflife.game.io.input.Life106Loader;
+import de.martindreier.gameoflife.game.io.input.RLEFileLoader;
+
+/**
+ * Benchmarks for the file loaders on large synthetic patterns. Each loader is measured for parsing the file alone and
+ * for parsing the file and setting the cells of a grid.
+ *
+ * @author D043987
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoaderBenchmark {
+
+    /**
+     * Pattern width and height.
+     */
+    @Param({ "256", "1024" })
+    public int    size;
+
+    /**
+     * Fraction of living cells.
+     */
+    @Param({ "0.35" })
+    public double density;
+
+    /**
+     * Directory for the pattern files.
+     */
+    private Path  directory;
+
+    /**
+     * RLE file.
+     */
+    private Path  rleFile;
+
+    /**
+     * Life 1.05 file.
+     */
+    private Path  life105File;
+
+    /**
+     * Life 1.06 file.
+     */
+    private Path  life106File;
+
+    /**
+     * Grid to load the patterns into.
+     */
+    private Grid  grid;
+
+    /**
+     * Write the pattern files.
+     *
+     * @throws IOException
+     *             Error writing the files.
+     */
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        boolean[][] cells = SyntheticPatterns.random(this.size, this.size, this.density, 42);
+        this.directory = Files.createTempDirectory("gameoflife-benchmark");
+        this.rleFile = this.directory.resolve("pattern.rle");
+        this.life105File = this.directory.resolve("pattern.lif");
+        this.life106File = this.directory.resolve("pattern.life");
+        SyntheticPatterns.writeRLE(cells, this.rleFile);
+        SyntheticPatterns.writeLife105(cells, this.life105File);
+        SyntheticPatterns.writeLife106(cells, this.life106File);
+        this.grid = new Grid(this.size, this.size);
+    }
+
+    /**
+     * Delete the pattern files.
+     *
+     * @throws IOException
+     *             Error deleting the files.
+     */
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.delete(this.rleFile);
+        Files.delete(this.life105File);
+        Files.delete(this.life106File);
+        Files.delete(this.directory);
+    }
+
+    /**
+     * Parse an RLE file.
+     *
+     * @return The loader.
+     * @throws IOException
+     *             Error reading the file.
+     */
+    @Benchmark
+    public GridLoader parseRLE() throws IOException {
+        return new RLEFileLoader(this.rleFile);
+    }
+
+    /**
+     * Parse an RLE file and set the cells of a grid.
+     *
+     * @return The grid.
+     * @throws IOException
+     *             Error reading the file.
+     */
+    @Benchmark
+    public Grid loadRLE() throws IOException {
+        new RLEFileLoader(this.rleFile).setInitialState(this.grid);
+        return this.grid;
+    }
+
+    /**
+     * Parse a Life 1.05 file.
+     *
+     * @return The loader.
+     * @throws IOException
+     *             Error reading the file.
+     */
+    @Benchmark
+    public GridLoader parseLife105() throws IOException {
+        return new Life105Loader(this.life105File);
+    }
+
+    /**
+     * Parse a Life 1.05 file and set the cells of a grid.
+     *
+     * @return The grid.
+     * @throws IOException
+     *             Error reading the file.
+     */
+    @Benchmark
+    public Grid loadLife105() throws IOException {
+        new Life105Loader(this.life105File).setInitialState(this.grid);
+        return this.grid;
+    }
+
+    /**
+     * Parse a Life 1.06 file.
+     *
+     * @return The loader.
+     * @throws IOException
+     *             Error reading the file.
+     */
+    @Benchmark
+    public GridLoader parseLife106() throws IOException {
+        return new Life106Loader(this.life106File);
+    }
+
+    /**
+     * Parse a Life 1.06 file and set the cells of a grid.
+     *
+     * @return The grid.
+     * @throws IOException
+     *             Error reading the file.
+     */
+    @Benchmark
+    public Grid loadLife106() throws IOException {
+        new Life106Loader(this.life106File).setInitialState(this.grid);
+        return this.grid;
+    }
+}
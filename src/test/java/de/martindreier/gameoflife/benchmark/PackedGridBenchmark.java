@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Benchmark for {@link PackedGrid#step(LifeLikeRule)}, with the same sizes and densities as {@link GridBenchmark}.
+ *
+ * @author D043987
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackedGridBenchmark {
+
+    /**
+     * Grid width and height.
+     */
+    @Param({ "32", "128", "512", "2048" })
+    public int         size;
+
+    /**
+     * Fraction of living cells in the initial state.
+     */
+    @Param({ "0.1", "0.35", "0.5" })
+    public double      density;
+
+    /**
+     * Initial state.
+     */
+    private PackedGrid initialState;
+
+    /**
+     * The grid which is iterated.
+     */
+    private PackedGrid grid;
+
+    /**
+     * Create the initial state.
+     */
+    @Setup(Level.Trial)
+    public void createGrid() {
+        boolean[][] cells = SyntheticPatterns.random(this.size, this.size, this.density, 42);
+        this.initialState = new PackedGrid(this.size, this.size);
+        for (int x = 0; x < this.size; x++) {
+            for (int y = 0; y < this.size; y++) {
+                this.initialState.setAlive(x, y, cells[x][y]);
+            }
+        }
+        this.grid = new PackedGrid(this.initialState);
+    }
+
+    /**
+     * Reset the grid to the initial state, so each iteration measures the same generations.
+     */
+    @Setup(Level.Iteration)
+    public void resetGrid() {
+        this.grid.copyFrom(this.initialState);
+    }
+
+    /**
+     * Calculate one generation.
+     *
+     * @return <code>true</code> if any cell changed.
+     */
+    @Benchmark
+    public boolean step() {
+        return this.grid.step(LifeLikeRule.CONWAY);
+    }
+}
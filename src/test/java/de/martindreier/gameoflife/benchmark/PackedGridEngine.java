@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Corpus engine for the {@link PackedGrid}.
+ *
+ * @author D043987
+ *
+ */
+public class PackedGridEngine implements CorpusEngine {
+
+    /**
+     * The board.
+     */
+    private PackedGrid grid;
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#getName()
+     */
+    @Override
+    public String getName() {
+        return "PackedGrid";
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#getWorkLimit()
+     */
+    @Override
+    public long getWorkLimit() {
+        return 100_000_000_000L;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#getCopies()
+     */
+    @Override
+    public int getCopies() {
+        return 1;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#load(de.martindreier.gameoflife.game.packed.PackedGrid)
+     */
+    @Override
+    public void load(PackedGrid initialState) {
+        this.grid = new PackedGrid(initialState);
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#step()
+     */
+    @Override
+    public void step() {
+        this.grid.step(LifeLikeRule.CONWAY);
+    }
+
+    /**
+     * Get the board.
+     *
+     * @return The board.
+     */
+    protected PackedGrid getGrid() {
+        return this.grid;
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.CorpusEngine#getPopulation()
+     */
+    @Override
+    public long getPopulation() {
+        return this.grid.getPopulation();
+    }
+}
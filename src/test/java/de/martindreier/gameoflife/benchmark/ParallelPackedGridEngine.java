@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Corpus engine for the parallel step of the {@link PackedGrid}, using the common pool.
+ *
+ * @author D043987
+ *
+ */
+public class ParallelPackedGridEngine extends PackedGridEngine {
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.PackedGridEngine#getName()
+     */
+    @Override
+    public String getName() {
+        return "PackedGrid (" + ForkJoinPool.commonPool().getParallelism() + " threads)";
+    }
+
+    /**
+     * @see de.martindreier.gameoflife.benchmark.PackedGridEngine#step()
+     */
+    @Override
+    public void step() {
+        this.getGrid().step(LifeLikeRule.CONWAY, ForkJoinPool.commonPool());
+    }
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.io.input.RLEFileLoader;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Checks the populations of the {@link CorpusPattern corpus} on all engines. Only patterns which can be run in a few
+ * seconds are checked; use the {@link CorpusHarness} for the full corpus.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class PatternCorpusTest {
+
+    /**
+     * Maximum number of cell updates per engine and pattern.
+     */
+    private static final long WORK_LIMIT = 1_500_000_000L;
+
+    /**
+     * All engines reach the known populations.
+     *
+     * @throws IOException
+     *             Error loading a pattern.
+     */
+    @Test
+    public void populations() throws IOException {
+        int checked = 0;
+        for (CorpusPattern pattern : CorpusPattern.values()) {
+            PackedGrid initialState = null;
+            for (CorpusEngine engine : CorpusEngine.all()) {
+                if (pattern.getWork() > Math.min(WORK_LIMIT, engine.getWorkLimit())) {
+                    continue;
+                }
+                if (initialState == null) {
+                    initialState = pattern.createInitialState();
+                }
+                CorpusHarness.Result result = CorpusHarness.run(pattern, engine, initialState);
+                assertEquals(String.format("Population of %s on %s", pattern, engine.getName()), pattern.getExpectedPopulation(), result.getPopulation());
+                checked++;
+            }
+        }
+        assertTrue("Every engine checks at least one pattern", checked >= CorpusEngine.all().size());
+    }
+
+    /**
+     * Synthetic RLE files contain exactly the generated soup.
+     *
+     * @throws IOException
+     *             Error writing or reading the file.
+     */
+    @Test
+    public void syntheticRLE() throws IOException {
+        boolean[][] cells = SyntheticPatterns.random(150, 70, 0.4, 3);
+        Path file = Files.createTempFile("synthetic", ".rle");
+        try {
+            SyntheticPatterns.writeRLE(cells, file);
+            PackedGrid grid = PackedGrid.of(new RLEFileLoader(file));
+            for (int x = 0; x < 150; x++) {
+                for (int y = 0; y < 70; y++) {
+                    assertEquals(String.format("Cell (%d,%d)", x, y), cells[x][y], grid.isAlive(x, y));
+                }
+            }
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Measures how the parallel iteration modes scale with the number of threads, and prints efficiency tables.
+ * <ul>
+ * <li>Strong scaling: a board of fixed size is run with 1, 2, 4 ... N threads. The efficiency is the speedup over one
+ * thread divided by the number of threads.</li>
+ * <li>Weak scaling: the board grows with the number of threads, so each thread has the same number of rows. The
+ * efficiency is the time for one thread divided by the time for N threads.</li>
+ * </ul>
+ * <p>
+ * Usage: <code>ScalingHarness [-threads N] [mode ...]</code>. N defaults to the number of available processors. Modes
+ * are <code>Grid</code> ({@link Grid#iterate(GameRule, ForkJoinPool)}) and <code>PackedGrid</code>
+ * ({@link PackedGrid#step(LifeLikeRule, ForkJoinPool)}); without modes, all are run.
+ * </p>
+ *
+ * @author D043987
+ *
+ */
+public class ScalingHarness {
+
+    /**
+     * Density of the random boards.
+     */
+    private static final double DENSITY = 0.35;
+
+    /**
+     * Number of generations run before each measurement.
+     */
+    private static final int    WARMUP  = 3;
+
+    /**
+     * Get the thread counts to measure: powers of two up to the maximum, and the maximum itself.
+     *
+     * @param maxThreads
+     *            Maximum number of threads.
+     * @return Thread counts.
+     */
+    static List<Integer> threadCounts(int maxThreads) {
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            counts.add(threads);
+        }
+        counts.add(maxThreads);
+        return counts;
+    }
+
+    /**
+     * Measure the time needed for the generations of a workload.
+     *
+     * @param mode
+     *            Parallel iteration mode.
+     * @param width
+     *            Board width.
+     * @param height
+     *            Board height.
+     * @param threads
+     *            Number of threads.
+     * @return Time in seconds.
+     */
+    static double measure(Mode mode, int width, int height, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Workload workload = mode.createWorkload(width, height);
+            for (int generation = 0; generation < WARMUP; generation++) {
+                workload.step(pool);
+            }
+            long start = System.nanoTime();
+            for (int generation = 0; generation < mode.getGenerations(); generation++) {
+                workload.step(pool);
+            }
+            return (System.nanoTime() - start) / 1e9;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Print the strong scaling table of a mode.
+     *
+     * @param mode
+     *            The mode.
+     * @param maxThreads
+     *            Maximum number of threads.
+     */
+    static void strongScaling(Mode mode, int maxThreads) {
+        int width = mode.getWidth();
+        int height = mode.getRowsPerThread() * maxThreads;
+        System.out.println(String.format("Strong scaling: %s, %dx%d, %d generations", mode.getName(), width, height, mode.getGenerations()));
+        System.out.println(String.format("%8s %10s %12s %14s %8s %10s", "Threads", "Seconds", "Gens/s", "Cells/s", "Speedup", "Efficiency"));
+        double single = 0;
+        for (int threads : threadCounts(maxThreads)) {
+            double seconds = measure(mode, width, height, threads);
+            if (threads == 1) {
+                single = seconds;
+            }
+            double speedup = single / seconds;
+            System.out.println(String.format("%8d %10.3f %12.1f %14.4g %8.2f %9.1f%%", threads, seconds, mode.getGenerations() / seconds,
+                    (double) width * height * mode.getGenerations() / seconds, speedup, 100 * speedup / threads));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Print the weak scaling table of a mode.
+     *
+     * @param mode
+     *            The mode.
+     * @param maxThreads
+     *            Maximum number of threads.
+     */
+    static void weakScaling(Mode mode, int maxThreads) {
+        int width = mode.getWidth();
+        System.out.println(String.format("Weak scaling: %s, %dx%d per thread, %d generations", mode.getName(), width, mode.getRowsPerThread(), mode.getGenerations()));
+        System.out.println(String.format("%8s %12s %10s %14s %10s", "Threads", "Board", "Seconds", "Cells/s", "Efficiency"));
+        double single = 0;
+        for (int threads : threadCounts(maxThreads)) {
+            int height = mode.getRowsPerThread() * threads;
+            double seconds = measure(mode, width, height, threads);
+            if (threads == 1) {
+                single = seconds;
+            }
+            System.out.println(String.format("%8d %12s %10.3f %14.4g %9.1f%%", threads, width + "x" + height, seconds, (double) width * height * mode.getGenerations() / seconds,
+                    100 * single / seconds));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Run the scaling measurements.
+     *
+     * @param args
+     *            Command line arguments.
+     */
+    public static void main(String[] args) {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        List<String> modeNames = new ArrayList<>();
+        for (int index = 0; index < args.length; index++) {
+            if (args[index].equals("-threads") && index + 1 < args.length) {
+                maxThreads = Integer.parseInt(args[++index]);
+            }
+            else {
+                modeNames.add(args[index]);
+            }
+        }
+        for (Mode mode : Mode.values()) {
+            if (modeNames.isEmpty() || modeNames.contains(mode.getName())) {
+                strongScaling(mode, maxThreads);
+                weakScaling(mode, maxThreads);
+            }
+        }
+    }
+
+    /**
+     * A board which can be advanced by one generation with a given pool.
+     *
+     * @author D043987
+     *
+     */
+    @FunctionalInterface
+    interface Workload {
+
+        /**
+         * Calculate the next generation.
+         *
+         * @param pool
+         *            The pool to use.
+         */
+        void step(ForkJoinPool pool);
+    }
+
+    /**
+     * Parallel iteration modes. The board sizes are chosen so that one generation with one thread takes a few
+     * milliseconds for the {@link PackedGrid} and a few hundred milliseconds for the {@link Grid}.
+     *
+     * @author D043987
+     *
+     */
+    enum Mode {
+        /**
+         * {@link Grid#iterate(GameRule, ForkJoinPool)}.
+         */
+        GRID("Grid", 256, 32, 5) {
+
+            /**
+             * @see de.martindreier.gameoflife.benchmark.ScalingHarness.Mode#createWorkload(int, int)
+             */
+            @Override
+            Workload createWorkload(int width, int height) {
+                boolean[][] cells = SyntheticPatterns.random(width, height, DENSITY, 1);
+                Grid grid = new Grid(width, height);
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < height; y++) {
+                        grid.set(x, y, cells[x][y] ? CellState.ALIVE : CellState.DEAD);
+                    }
+                }
+                return pool -> grid.iterate(GameRule.CONWAY, pool);
+            }
+        },
+
+        /**
+         * {@link PackedGrid#step(LifeLikeRule, ForkJoinPool)}.
+         */
+        PACKED_GRID("PackedGrid", 4096, 512, 50) {
+
+            /**
+             * @see de.martindreier.gameoflife.benchmark.ScalingHarness.Mode#createWorkload(int, int)
+             */
+            @Override
+            Workload createWorkload(int width, int height) {
+                boolean[][] cells = SyntheticPatterns.random(width, height, DENSITY, 1);
+                PackedGrid grid = new PackedGrid(width, height);
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < height; y++) {
+                        grid.setAlive(x, y, cells[x][y]);
+                    }
+                }
+                return pool -> grid.step(LifeLikeRule.CONWAY, pool);
+            }
+        };
+
+        /**
+         * Name of the mode.
+         */
+        private final String name;
+
+        /**
+         * Board width.
+         */
+        private final int    width;
+
+        /**
+         * Board rows per thread.
+         */
+        private final int    rowsPerThread;
+
+        /**
+         * Number of generations to measure.
+         */
+        private final int    generations;
+
+        /**
+         * Create a new mode.
+         *
+         * @param name
+         *            Name of the mode.
+         * @param width
+         *            Board width.
+         * @param rowsPerThread
+         *            Board rows per thread. Strong scaling uses the number of rows for the maximum number of threads.
+         * @param generations
+         *            Number of generations to measure.
+         */
+        Mode(String name, int width, int rowsPerThread, int generations) {
+            this.name = name;
+            this.width = width;
+            this.rowsPerThread = rowsPerThread;
+            this.generations = generations;
+        }
+
+        /**
+         * Create a random board.
+         *
+         * @param width
+         *            Board width.
+         * @param height
+         *            Board height.
+         * @return The workload.
+         */
+        abstract Workload createWorkload(int width, int height);
+
+        /**
+         * Get the name of the mode.
+         *
+         * @return the name.
+         */
+        String getName() {
+            return this.name;
+        }
+
+        /**
+         * Get the board width.
+         *
+         * @return the width.
+         */
+        int getWidth() {
+            return this.width;
+        }
+
+        /**
+         * Get the number of board rows per thread.
+         *
+         * @return the rows per thread.
+         */
+        int getRowsPerThread() {
+            return this.rowsPerThread;
+        }
+
+        /**
+         * Get the number of generations to measure.
+         *
+         * @return the generations.
+         */
+        int getGenerations() {
+            return this.generations;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Random patterns and pattern files for benchmarks. All patterns depend only on their size, density and seed, so
+ * benchmark runs are comparable.
+ *
+ * @author D043987
+ *
+ */
+public final class SyntheticPatterns {
+
+    /**
+     * Maximum length of a line of pattern data in RLE files.
+     */
+    private static final int RLE_LINE_LENGTH = 70;
+
+    /**
+     * Utility class, no instances.
+     */
+    private SyntheticPatterns() {
+        // No instances
+    }
+
+    /**
+     * Create a random pattern.
+     *
+     * @param width
+     *            Pattern width.
+     * @param height
+     *            Pattern height.
+     * @param density
+     *            Probability of a cell to be alive.
+     * @param seed
+     *            Random seed.
+     * @return Cell states, indexed by x and y.
+     */
+    public static boolean[][] random(int width, int height, double density, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        boolean[][] cells = new boolean[width][height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                cells[x][y] = random.nextDouble() < density;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Write a pattern as RLE file.
+     *
+     * @param cells
+     *            Cell states, indexed by x and y.
+     * @param file
+     *            Target file.
+     * @throws IOException
+     *             Error writing the file.
+     */
+    public static void writeRLE(boolean[][] cells, Path file) throws IOException {
+        int width = cells.length;
+        int height = cells[0].length;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("#N Synthetic " + width + "x" + height);
+            writer.newLine();
+            writer.write(String.format("x = %d, y = %d, rule = B3/S23", width, height));
+            writer.newLine();
+            StringBuilder line = new StringBuilder();
+            for (int y = 0; y < height; y++) {
+                int x = 0;
+                while (x < width) {
+                    boolean alive = cells[x][y];
+                    int run = 1;
+                    while (x + run < width && cells[x + run][y] == alive) {
+                        run++;
+                    }
+                    x += run;
+                    if (!alive && x == width) {
+                        // Trailing dead cells are omitted
+                        break;
+                    }
+                    appendRun(line, writer, run, alive ? 'o' : 'b');
+                }
+                appendRun(line, writer, 1, y == height - 1 ? '!' : '$');
+            }
+            writer.write(line.toString());
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Append a run to the current RLE line, starting a new line if the current one is full.
+     *
+     * @param line
+     *            Current line.
+     * @param writer
+     *            Target for full lines.
+     * @param run
+     *            Run length.
+     * @param tag
+     *            Cell tag.
+     * @throws IOException
+     *             Error writing the file.
+     */
+    private static void appendRun(StringBuilder line, BufferedWriter writer, int run, char tag) throws IOException {
+        String item = run == 1 ? String.valueOf(tag) : run + String.valueOf(tag);
+        if (line.length() + item.length() > RLE_LINE_LENGTH) {
+            writer.write(line.toString());
+            writer.newLine();
+            line.setLength(0);
+        }
+        line.append(item);
+    }
+
+    /**
+     * Write a pattern as Life 1.05 file with a single cell block.
+     *
+     * @param cells
+     *            Cell states, indexed by x and y.
+     * @param file
+     *            Target file.
+     * @throws IOException
+     *             Error writing the file.
+     */
+    public static void writeLife105(boolean[][] cells, Path file) throws IOException {
+        int width = cells.length;
+        int height = cells[0].length;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("#Life 1.05");
+            writer.newLine();
+            writer.write("#D Synthetic " + width + "x" + height);
+            writer.newLine();
+            writer.write("#N");
+            writer.newLine();
+            writer.write("#P 0 0");
+            writer.newLine();
+            char[] row = new char[width];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    row[x] = cells[x][y] ? '*' : '.';
+                }
+                writer.write(row);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Write a pattern as Life 1.06 file.
+     *
+     * @param cells
+     *            Cell states, indexed by x and y.
+     * @param file
+     *            Target file.
+     * @throws IOException
+     *             Error writing the file.
+     */
+    public static void writeLife106(boolean[][] cells, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("#Life 1.06");
+            writer.newLine();
+            for (int y = 0; y < cells[0].length; y++) {
+                for (int x = 0; x < cells.length; x++) {
+                    if (cells[x][y]) {
+                        writer.write(x + " " + y);
+                        writer.newLine();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -16,7 +16,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -404,6 +407,93 @@ public class GridTest {
         }
     }
 
+    /**
+     * Test that parallel iterations have the same result as sequential iterations.
+     */
+    @Test
+    public void parallelIterations() {
+        Grid sequential = new Grid(40, 30);
+        Grid parallel = new Grid(40, 30);
+        Random random = new Random(5);
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 30; y++) {
+                CellState state = random.nextBoolean() ? CellState.ALIVE : CellState.DEAD;
+                sequential.set(x, y, state);
+                parallel.set(x, y, state);
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (int generation = 1; generation <= 10; generation++) {
+                sequential.iterate(GameRule.CONWAY);
+                parallel.iterate(GameRule.CONWAY, pool);
+                for (int x = 0; x < 40; x++) {
+                    for (int y = 0; y < 30; y++) {
+                        assertEquals(String.format("Cell (%d,%d) in generation %d", x, y, generation), sequential.get(x, y), parallel.get(x, y));
+                    }
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Listeners receive the statistics of each generation until they are removed.
+     */
+    @Test
+    public void generationListener() {
+        List<GenerationStatistics> reported = new ArrayList<>();
+        GenerationListener listener = reported::add;
+        this.grid.addGenerationListener(listener);
+        this.grid.iterate(GameRule.CONWAY);
+        this.grid.iterate(GameRule.CONWAY);
+        this.grid.removeGenerationListener(listener);
+        this.grid.iterate(GameRule.CONWAY);
+
+        assertEquals("Reported generations", 2, reported.size());
+        assertEquals("Generation count", 3, this.grid.getGeneration());
+        for (int index = 0; index < reported.size(); index++) {
+            GenerationStatistics statistics = reported.get(index);
+            assertEquals("Generation", index + 1, statistics.getGeneration());
+            assertEquals("Cells evaluated", 25, statistics.getCellsEvaluated());
+            assertEquals("Blinker changes two cells to alive and two cells to dead", 4, statistics.getCellsChanged());
+            assertTrue("Compute phase duration", statistics.getComputeNanos() >= 0);
+            assertTrue("Update phase duration", statistics.getUpdateNanos() >= 0);
+            assertEquals("Total duration", statistics.getComputeNanos() + statistics.getUpdateNanos(), statistics.getTotalNanos());
+            assertTrue("Allocated bytes", statistics.getAllocatedBytes() >= -1);
+        }
+    }
+
+    /**
+     * Listeners are also notified by parallel iterations.
+     */
+    @Test
+    public void parallelGenerationListener() {
+        List<GenerationStatistics> reported = new ArrayList<>();
+        this.grid.addGenerationListener(reported::add);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            this.grid.iterate(GameRule.CONWAY, pool);
+        }
+        finally {
+            pool.shutdown();
+        }
+        GridTest.checkCellStates(this.grid, true);
+        assertEquals("Reported generations", 1, reported.size());
+        assertEquals("Cells changed", 4, reported.get(0).getCellsChanged());
+        assertEquals("Allocations are not measured in parallel", -1, reported.get(0).getAllocatedBytes());
+    }
+
+    /**
+     * Listeners must not be null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void generationListenerNull() {
+        this.grid.addGenerationListener(null);
+    }
+
     /**
      * Test that the grid size is validated when initial state is loaded.
      */
@@ -411,4 +501,80 @@ public class GridTest {
     public void checkGridSize() {
         new Grid(4, 4, new FixedGrid());
     }
+
+    /**
+     * Rectangles, cleared regions and pasted bitmaps change the same cells as setting each cell.
+     */
+    @Test
+    public void bulkMutations() {
+        Random random = new Random(5);
+        Grid bulk = new Grid(150, 20);
+        Grid cells = new Grid(150, 20);
+        for (int index = 0; index < 200; index++) {
+            int width = random.nextInt(100);
+            int height = random.nextInt(10);
+            int x = random.nextInt(150 - width + 1);
+            int y = random.nextInt(20 - height + 1);
+            int operation = random.nextInt(4);
+            String description;
+            if (operation < 2) {
+                CellState state = operation == 0 && random.nextBoolean() ? CellState.ALIVE : CellState.DEAD;
+                if (operation == 0) {
+                    bulk.fillRectangle(x, y, width, height, state);
+                } else {
+                    bulk.clearRegion(x, y, width, height);
+                }
+                for (int column = x; column < x + width; column++) {
+                    for (int row = y; row < y + height; row++) {
+                        cells.set(column, row, state);
+                    }
+                }
+                description = String.format("Fill %dx%d at (%d,%d) with %s", width, height, x, y, state);
+            } else {
+                PasteMode mode = PasteMode.values()[random.nextInt(PasteMode.values().length)];
+                int stride = (width + 63) / 64;
+                long[] bitmap = random.longs(stride * height).toArray();
+                bulk.paste(x, y, width, height, bitmap, mode);
+                for (int column = 0; column < width; column++) {
+                    for (int row = 0; row < height; row++) {
+                        boolean set = (bitmap[row * stride + column / 64] & 1L << column) != 0;
+                        boolean alive = cells.get(x + column, y + row) == CellState.ALIVE;
+                        if (mode == PasteMode.REPLACE) {
+                            alive = set;
+                        } else if (mode == PasteMode.XOR) {
+                            alive ^= set;
+                        } else {
+                            alive |= set;
+                        }
+                        cells.set(x + column, y + row, alive ? CellState.ALIVE : CellState.DEAD);
+                    }
+                }
+                description = String.format("Paste %dx%d at (%d,%d) with %s", width, height, x, y, mode);
+            }
+            for (int column = 0; column < 150; column++) {
+                for (int row = 0; row < 20; row++) {
+                    assertEquals(description, cells.get(column, row), bulk.get(column, row));
+                }
+            }
+        }
+    }
+
+    /**
+     * Rectangles must not extend beyond the grid.
+     */
+    @Test
+    public void bulkMutationsOutsideOfGrid() {
+        Grid grid = new Grid(5, 5);
+        Runnable[] mutations = { () -> grid.fillRectangle(3, 3, 3, 1, CellState.ALIVE), () -> grid.clearRegion(-1, 0, 2, 2), () -> grid.setRun(0, 5, 1, CellState.ALIVE),
+                () -> grid.paste(0, 0, 6, 1, new long[1], PasteMode.OR) };
+        for (Runnable mutation : mutations) {
+            try {
+                mutation.run();
+                fail("Mutation outside of the grid accepted");
+            }
+            catch (ArrayIndexOutOfBoundsException e) {
+                // Expected
+            }
+        }
+    }
 }
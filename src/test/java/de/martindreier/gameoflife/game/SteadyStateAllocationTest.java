@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.packed.BitSlicedGrid;
+import de.martindreier.gameoflife.game.packed.CycleDetector;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Checks that the engines do not allocate memory once they run in a steady state. Each engine is warmed up, then the
+ * bytes allocated by the test thread over a number of generations are compared to the bytes allocated by an empty
+ * loop.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class SteadyStateAllocationTest {
+
+    /**
+     * Generations run before measuring.
+     */
+    private static final int          WARM_UP_GENERATIONS  = 2000;
+
+    /**
+     * Generations measured.
+     */
+    private static final int          MEASURED_GENERATIONS = 500;
+
+    /**
+     * Conway's rule in life-like form.
+     */
+    private static final LifeLikeRule CONWAY               = LifeLikeRule.CONWAY;
+
+    /**
+     * HighLife (B36/S23) in life-like form.
+     */
+    private static final LifeLikeRule HIGH_LIFE            = LifeLikeRule.of(GameRule.createRule("23", "36"));
+
+    /**
+     * Skip the tests if the JVM does not count allocations.
+     */
+    @Before
+    public void checkAllocationCounter() {
+        assumeTrue("JVM counts allocated bytes per thread", GenerationStatistics.currentThreadAllocatedBytes() >= 0);
+    }
+
+    /**
+     * Measure the bytes allocated by steps of an engine, minus the bytes allocated by the measurement itself.
+     *
+     * @param step
+     *            A single generation step.
+     * @return Bytes allocated in the steady state.
+     */
+    private static long allocatedBytes(Runnable step) {
+        Runnable empty = () -> {
+            // Nothing to do
+        };
+        for (int generation = 0; generation < WARM_UP_GENERATIONS; generation++) {
+            step.run();
+            empty.run();
+        }
+        return measure(step) - measure(empty);
+    }
+
+    /**
+     * Measure the bytes allocated by running a step several times.
+     *
+     * @param step
+     *            A single step.
+     * @return Allocated bytes.
+     */
+    private static long measure(Runnable step) {
+        long before = GenerationStatistics.currentThreadAllocatedBytes();
+        for (int generation = 0; generation < MEASURED_GENERATIONS; generation++) {
+            step.run();
+        }
+        return GenerationStatistics.currentThreadAllocatedBytes() - before;
+    }
+
+    /**
+     * Create a packed grid with random content.
+     *
+     * @param width
+     *            Grid width.
+     * @param height
+     *            Grid height.
+     * @param seed
+     *            Random seed.
+     * @return The grid.
+     */
+    private static PackedGrid randomGrid(int width, int height, long seed) {
+        PackedGrid grid = new PackedGrid(width, height);
+        Random random = new Random(seed);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                grid.setAlive(x, y, random.nextInt(3) == 0);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Iterating a grid without listeners does not allocate.
+     */
+    @Test
+    public void gridIterate() {
+        Grid grid = new Grid(32, 32);
+        randomGrid(32, 32, 1).copyTo(grid);
+        assertEquals("Bytes allocated by Grid.iterate", 0, allocatedBytes(() -> grid.iterate(GameRule.CONWAY)));
+    }
+
+    /**
+     * Stepping a packed grid does not allocate.
+     */
+    @Test
+    public void packedGridStep() {
+        PackedGrid grid = randomGrid(200, 150, 2);
+        assertEquals("Bytes allocated by PackedGrid.step", 0, allocatedBytes(() -> grid.step(CONWAY)));
+    }
+
+    /**
+     * Stepping a bit-sliced grid does not allocate, with one rule or with per-lane rules.
+     */
+    @Test
+    public void bitSlicedGridStep() {
+        BitSlicedGrid grid = new BitSlicedGrid(40, 30);
+        for (int lane = 0; lane < BitSlicedGrid.LANES; lane++) {
+            grid.setLane(lane, randomGrid(40, 30, lane));
+            grid.setRule(lane, lane % 2 == 0 ? CONWAY : HIGH_LIFE);
+        }
+        assertEquals("Bytes allocated by BitSlicedGrid.step(LifeLikeRule)", 0, allocatedBytes(() -> grid.step(CONWAY)));
+        assertEquals("Bytes allocated by BitSlicedGrid.step()", 0, allocatedBytes(grid::step));
+    }
+
+    /**
+     * Stepping a packed grid with cycle detection, as done for soups and rule sweeps, does not allocate.
+     */
+    @Test
+    public void cycleDetection() {
+        PackedGrid grid = randomGrid(64, 64, 3);
+        CycleDetector detector = new CycleDetector(64);
+        detector.start(grid);
+        assertEquals("Bytes allocated by cycle detection", 0, allocatedBytes(() -> detector.next(grid, grid.step(CONWAY))));
+        CycleDetector exact = new CycleDetector(64, true);
+        exact.start(grid);
+        assertEquals("Bytes allocated by exact cycle detection", 0, allocatedBytes(() -> exact.next(grid, grid.step(CONWAY))));
+    }
+}
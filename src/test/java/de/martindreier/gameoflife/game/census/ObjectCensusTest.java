@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.census;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+import de.martindreier.gameoflife.game.packed.PackedGridTest;
+
+/**
+ * Tests for the {@link ObjectCensus} and {@link ObjectShape}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class ObjectCensusTest {
+
+    /**
+     * Rotated and reflected shapes are equal.
+     */
+    @Test
+    public void canonicalShapes() {
+        ObjectShape glider = ObjectShape.of(".O.", "..O", "OOO");
+        assertEquals("Rotated glider", glider, ObjectShape.of("O..", "O.O", "OO."));
+        assertEquals("Reflected glider", glider, ObjectShape.of(".O.", "O..", "OOO"));
+        assertEquals("Vertical blinker", ObjectShape.of("OOO"), ObjectShape.of("O", "O", "O"));
+        assertFalse("Boat is not a ship", ObjectShape.of("OO.", "O.O", ".O.").equals(ObjectShape.of("OO.", "O.O", ".OO")));
+        assertEquals("Name", "glider", glider.getName().get());
+        assertFalse("Unnamed shape", ObjectShape.of("OOOO").getName().isPresent());
+        assertEquals("Population", 5, glider.getPopulation());
+    }
+
+    /**
+     * Named objects are found and counted.
+     */
+    @Test
+    public void namedObjects() {
+        PackedGrid grid = new PackedGrid(100, 20);
+        place(grid, 1, 1, "OO", "OO");
+        place(grid, 60, 10, "OO", "OO");
+        place(grid, 10, 1, "O", "O", "O");
+        place(grid, 20, 1, ".O.", "O..", "OOO");
+        place(grid, 30, 1, "O.O", ".OO", ".O.");
+        place(grid, 40, 1, ".O.", "O.O", "O.O", ".O.");
+        place(grid, 90, 15, "OO..", "OO..", "..OO", "..OO");
+        place(grid, 70, 1, "OO..", "O...", "...O", "..OO");
+        place(grid, 80, 1, "..OO", "...O", "O...", "OO..");
+        place(grid, 20, 10, "OO..", "O...", "..OO", "...O");
+
+        Census census = new ObjectCensus().take(grid);
+        assertEquals("Objects, halves not facing each other are separate", 11, census.getObjectCount());
+        assertEquals("Population", grid.getPopulation(), census.getPopulation());
+        assertEquals("Blocks", 2, census.getCount("block"));
+        assertEquals("Blinkers", 1, census.getCount("blinker"));
+        assertEquals("Gliders in both phases", 2, census.getCount("glider"));
+        assertEquals("Beacons in both phases and orientations", 3, census.getCount("beacon"));
+        assertEquals("Beehive", 1, census.getCount(ObjectShape.of(".OO.", "O..O", ".OO.")));
+    }
+
+    /**
+     * Runs across word boundaries and objects connected only diagonally form single objects.
+     */
+    @Test
+    public void connectivity() {
+        PackedGrid grid = new PackedGrid(200, 10);
+        for (int x = 10; x < 150; x++) {
+            grid.setAlive(x, 2, true);
+        }
+        grid.setAlive(150, 3, true);
+        grid.setAlive(151, 4, true);
+        grid.setAlive(63, 6, true);
+        grid.setAlive(64, 7, true);
+        grid.setAlive(127, 9, true);
+
+        Census census = new ObjectCensus().take(grid);
+        assertEquals("Objects", 3, census.getObjectCount());
+        assertEquals("Long line with diagonal tail", 1, census.getCount(ObjectShape.of(row(0, 140, 142), row(140, 141, 142), row(141, 142, 142))));
+    }
+
+    /**
+     * The census agrees with a flood fill on random grids, and a reused census object has the same results as a new
+     * one.
+     */
+    @Test
+    public void randomGrids() {
+        ObjectCensus reused = new ObjectCensus();
+        for (long seed = 0; seed < 20; seed++) {
+            PackedGrid grid = PackedGrid.of(PackedGridTest.randomGrid(70 + (int) seed * 7, 40, seed));
+            for (int generation = 0; generation < seed * 5; generation++) {
+                grid.step(LifeLikeRule.of(GameRule.CONWAY));
+            }
+            List<Integer> sizes = floodFill(grid);
+            Census census = reused.take(grid);
+            assertEquals("Objects of seed " + seed, sizes.size(), census.getObjectCount());
+            assertEquals("Population of seed " + seed, grid.getPopulation(), census.getPopulation());
+            assertEquals("Largest object of seed " + seed, sizes.stream().mapToInt(Integer::intValue).max().orElse(0),
+                    census.getCounts().isEmpty() ? 0 : census.getCounts().lastKey().getPopulation());
+            assertEquals("Fresh census of seed " + seed, census.getCounts(), new ObjectCensus().take(grid).getCounts());
+        }
+    }
+
+    /**
+     * Censuses are merged.
+     */
+    @Test
+    public void merge() {
+        PackedGrid grid = new PackedGrid(10, 10);
+        place(grid, 1, 1, "OO", "OO");
+        ObjectCensus objectCensus = new ObjectCensus();
+        Census census = objectCensus.take(grid);
+        objectCensus.addTo(grid, census);
+        census.merge(objectCensus.take(new PackedGrid(10, 10)));
+        assertEquals("Blocks", 2, census.getCount("block"));
+        assertEquals("Population", 8, census.getPopulation());
+        assertTrue("Empty grid", objectCensus.take(new PackedGrid(10, 10)).getCounts().isEmpty());
+    }
+
+    /**
+     * Place a pattern on a grid.
+     *
+     * @param grid
+     *            The grid.
+     * @param x
+     *            Left edge.
+     * @param y
+     *            Top edge.
+     * @param rows
+     *            Pattern rows, living cells marked with <code>O</code>.
+     */
+    private static void place(PackedGrid grid, int x, int y, String... rows) {
+        for (int row = 0; row < rows.length; row++) {
+            for (int column = 0; column < rows[row].length(); column++) {
+                grid.setAlive(x + column, y + row, rows[row].charAt(column) == 'O');
+            }
+        }
+    }
+
+    /**
+     * Create a row of a pattern with a single run of living cells.
+     *
+     * @param from
+     *            First living cell.
+     * @param to
+     *            End of the run (exclusive).
+     * @param width
+     *            Width of the row.
+     * @return The row.
+     */
+    private static String row(int from, int to, int width) {
+        StringBuilder row = new StringBuilder();
+        for (int x = 0; x < width; x++) {
+            row.append(x >= from && x < to ? 'O' : '.');
+        }
+        return row.toString();
+    }
+
+    /**
+     * Find the objects of a grid with a flood fill.
+     *
+     * @param grid
+     *            The grid.
+     * @return Population of each object.
+     */
+    private static List<Integer> floodFill(PackedGrid grid) {
+        boolean[][] seen = new boolean[grid.getWidth()][grid.getHeight()];
+        List<Integer> sizes = new ArrayList<>();
+        for (int x = 0; x < grid.getWidth(); x++) {
+            for (int y = 0; y < grid.getHeight(); y++) {
+                if (grid.isAlive(x, y) && !seen[x][y]) {
+                    int size = 0;
+                    List<int[]> stack = new ArrayList<>();
+                    stack.add(new int[] { x, y });
+                    seen[x][y] = true;
+                    while (!stack.isEmpty()) {
+                        int[] cell = stack.remove(stack.size() - 1);
+                        size++;
+                        for (int nx = cell[0] - 1; nx <= cell[0] + 1; nx++) {
+                            for (int ny = cell[1] - 1; ny <= cell[1] + 1; ny++) {
+                                if (nx >= 0 && ny >= 0 && nx < grid.getWidth() && ny < grid.getHeight() && grid.isAlive(nx, ny) && !seen[nx][ny]) {
+                                    seen[nx][ny] = true;
+                                    stack.add(new int[] { nx, ny });
+                                }
+                            }
+                        }
+                    }
+                    sizes.add(size);
+                }
+            }
+        }
+        return sizes;
+    }
+}
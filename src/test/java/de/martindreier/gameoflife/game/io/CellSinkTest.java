@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.PasteMode;
+import de.martindreier.gameoflife.game.grids.StandardTestGrid;
+import de.martindreier.gameoflife.game.io.input.Life105Loader;
+import de.martindreier.gameoflife.game.io.input.Life106Loader;
+import de.martindreier.gameoflife.game.io.input.RLEFileLoader;
+
+/**
+ * Tests for {@link CellSink} and {@link GridLoader#load(CellSink)}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class CellSinkTest {
+
+    /**
+     * The default implementations split rows into runs and runs into points.
+     */
+    @Test
+    public void defaultMethods() {
+        Set<String> points = new HashSet<>();
+        CellSink sink = (x, y) -> points.add(x + "," + y);
+        sink.setRun(3, 1, 2);
+        sink.setRow(2, new long[] { 0b1011L, -1L << 63, 1L });
+        sink.setRow(3, 5, new long[] { 0b101L });
+        assertEquals("Points", new HashSet<>(Arrays.asList("3,1", "4,1", "0,2", "1,2", "3,2", "127,2", "128,2", "5,3", "7,3")), points);
+    }
+
+    /**
+     * All loaders push the same cells into a sink as they set in a grid. Loaders which only implement
+     * {@link GridLoader#setInitialState(Grid)} are adapted by the default implementation.
+     *
+     * @throws URISyntaxException
+     * @throws IOException
+     */
+    @Test
+    public void loadersPushAliveCells() throws URISyntaxException, IOException {
+        GridLoader[] loaders = { new StandardTestGrid(), new RLEFileLoader(Paths.get(this.getClass().getResource("/blinker.rle").toURI())),
+                new Life105Loader(Paths.get(this.getClass().getResource("/blinker_multi.lif").toURI())),
+                new Life106Loader(Paths.get(this.getClass().getResource("/blinker.life").toURI())) };
+        for (GridLoader loader : loaders) {
+            Set<String> expected = new HashSet<>();
+            Grid grid = new Grid(loader);
+            for (int x = 0; x < grid.getWidth(); x++) {
+                for (int y = 0; y < grid.getHeight(); y++) {
+                    if (grid.get(x, y) == CellState.ALIVE) {
+                        expected.add(x + "," + y);
+                    }
+                }
+            }
+            Set<String> points = new HashSet<>();
+            loader.load((x, y) -> points.add(x + "," + y));
+            assertEquals(loader.getClass().getSimpleName(), expected, points);
+            assertFalse(loader.getClass().getSimpleName() + " has cells", expected.isEmpty());
+        }
+    }
+
+    /**
+     * Loaders which fill, clear and paste regions of the grid push the same alive cells into a sink as they set in a
+     * grid.
+     */
+    @Test
+    public void bulkOperationsPushAliveCells() {
+        GridLoader loader = new GridLoader() {
+
+            /**
+             * @see de.martindreier.gameoflife.game.io.GridLoader#setInitialState(de.martindreier.gameoflife.game.Grid)
+             */
+            @Override
+            public void setInitialState(Grid grid) {
+                grid.fillRectangle(1, 1, 3, 2, CellState.ALIVE);
+                grid.clearRegion(0, 5, 10, 2);
+                grid.fillRectangle(0, 8, 10, 2, CellState.DEAD);
+                grid.paste(70, 4, 66, 2, new long[] { 0b101L, -1L, 0L, 1L << 1 }, PasteMode.REPLACE);
+                grid.paste(5, 10, 3, 1, new long[] { 0b1110L }, PasteMode.OR);
+            }
+
+            /**
+             * @see de.martindreier.gameoflife.game.io.GridLoader#getWidth()
+             */
+            @Override
+            public int getWidth() {
+                return 140;
+            }
+
+            /**
+             * @see de.martindreier.gameoflife.game.io.GridLoader#getHeight()
+             */
+            @Override
+            public int getHeight() {
+                return 12;
+            }
+
+            /**
+             * @see de.martindreier.gameoflife.game.io.GridLoader#getGameRule()
+             */
+            @Override
+            public Optional<GameRule> getGameRule() {
+                return Optional.empty();
+            }
+        };
+        Set<String> expected = new HashSet<>();
+        Grid grid = new Grid(loader);
+        for (int x = 0; x < grid.getWidth(); x++) {
+            for (int y = 0; y < grid.getHeight(); y++) {
+                if (grid.get(x, y) == CellState.ALIVE) {
+                    expected.add(x + "," + y);
+                }
+            }
+        }
+        Set<String> points = new HashSet<>();
+        loader.load((x, y) -> points.add(x + "," + y));
+        assertEquals("Points", expected, points);
+        assertEquals("Alive cells", 6 + 4 + 1 + 2, points.size());
+    }
+}
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.io.output.Life106Writer;
+import de.martindreier.gameoflife.game.io.output.PatternWriter;
+import de.martindreier.gameoflife.game.io.output.RLEWriter;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+import de.martindreier.gameoflife.game.soup.RandomFill;
+
+/**
+ * Tests for the {@link AsyncPatternLoader}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class AsyncPatternLoaderTest {
+
+    /**
+     * Executor which loads the files.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Create the executor.
+     */
+    @Before
+    public void createExecutor() {
+        this.executor = Executors.newFixedThreadPool(2);
+    }
+
+    /**
+     * Shut the executor down.
+     */
+    @After
+    public void shutdownExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * RLE files are decoded while they are read, and rows become available in order before loading completes.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void progressiveRows() throws Exception {
+        PackedGrid expected = randomPattern(150, 200);
+        Path file = writeTemporaryFile(expected, new RLEWriter());
+        List<Integer> reported = new ArrayList<>();
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong cells = new AtomicLong();
+        AsyncPatternLoader loader = new AsyncPatternLoader(new LoaderRegistry(), this.executor, 512);
+        Grid grid = get(loader.load(file, new LoadProgressListener() {
+
+            @Override
+            public void progress(long bytesRead, long fileSize, long cellCount) {
+                assertEquals("File size", file.toFile().length(), fileSize);
+                assertTrue("Bytes are increasing", bytesRead > bytes.get());
+                assertTrue("Cells are not decreasing", cellCount >= cells.get());
+                bytes.set(bytesRead);
+                cells.set(cellCount);
+            }
+
+            @Override
+            public void rowsAvailable(Grid loading, int rows) {
+                int previous = reported.isEmpty() ? 0 : reported.get(reported.size() - 1);
+                assertTrue("Rows are increasing", rows > previous);
+                for (int y = previous; y < rows; y++) {
+                    assertRow(expected, loading, y);
+                }
+                reported.add(rows);
+            }
+        }));
+
+        assertEquals("Grid", expected, PackedGrid.of(grid));
+        assertTrue("Rows available before completion", reported.size() > 10);
+        assertEquals("All rows available", expected.getHeight(), (int) reported.get(reported.size() - 1));
+        assertEquals("All bytes read", file.toFile().length(), bytes.get());
+        assertEquals("All cells counted", expected.getPopulation(), cells.get());
+        assertEquals("Default block size", expected, PackedGrid.of(get(new AsyncPatternLoader(new LoaderRegistry(), this.executor).load(file))));
+    }
+
+    /**
+     * Other formats and compressed files are loaded at the end, and all rows become available at once.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void bufferedFormats() throws Exception {
+        PackedGrid expected = randomPattern(90, 70);
+        Path life106 = writeTemporaryFile(expected, new Life106Writer());
+        Path rle = writeTemporaryFile(expected, new RLEWriter());
+        Path compressed = Files.createTempFile("pattern", ".rle.gz");
+        compressed.toFile().deleteOnExit();
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            output.write(Files.readAllBytes(rle));
+        }
+        AsyncPatternLoader loader = new AsyncPatternLoader(new LoaderRegistry(), this.executor, 100);
+        for (Path file : new Path[] { life106, compressed }) {
+            List<Integer> reported = new ArrayList<>();
+            Grid grid = get(loader.load(file, new LoadProgressListener() {
+
+                @Override
+                public void rowsAvailable(Grid loading, int rows) {
+                    reported.add(rows);
+                }
+            }));
+            assertEquals("Grid of " + file.getFileName(), expected, PackedGrid.of(grid));
+            assertEquals("Rows of " + file.getFileName(), 1, reported.size());
+            assertEquals("Row count of " + file.getFileName(), expected.getHeight(), (int) reported.get(0));
+        }
+    }
+
+    /**
+     * Files which cannot be read or are not valid complete the future exceptionally.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void failures() throws Exception {
+        AsyncPatternLoader loader = new AsyncPatternLoader(new LoaderRegistry(), this.executor, 16);
+        Path[] files = { Paths.get("does", "not", "exist.rle"), resource("/blinker_invalid.rle"), resource("/blinker_invalid.life"), TestFiles.write("unknown\n", ".txt"),
+                TestFiles.write("#C no header\n", ".txt") };
+        for (Path file : files) {
+            try {
+                get(loader.load(file));
+                fail("Loaded " + file.getFileName());
+            }
+            catch (ExecutionException e) {
+                assertTrue("Cause for " + file.getFileName(), e.getCause() instanceof IOException || e.getCause() instanceof IllegalArgumentException);
+            }
+        }
+
+        try {
+            get(loader.load(resource("/blinker.rle"), new LoadProgressListener() {
+
+                @Override
+                public void progress(long bytesRead, long fileSize, long cells) {
+                    throw new IllegalStateException("Listener failed");
+                }
+            }));
+            fail("Listener failure ignored");
+        }
+        catch (ExecutionException e) {
+            assertEquals("Listener failure", "Listener failed", e.getCause().getMessage());
+        }
+
+        try {
+            new AsyncPatternLoader(new LoaderRegistry(), this.executor, 0);
+            fail("Empty blocks accepted");
+        }
+        catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Check that a row of a grid matches the expected pattern.
+     *
+     * @param expected
+     *            The expected pattern.
+     * @param grid
+     *            The grid.
+     * @param y
+     *            The row.
+     */
+    private static void assertRow(PackedGrid expected, Grid grid, int y) {
+        for (int x = 0; x < expected.getWidth(); x++) {
+            assertEquals(String.format("Cell %d,%d", x, y), expected.isAlive(x, y) ? CellState.ALIVE : CellState.DEAD, grid.get(x, y));
+        }
+    }
+
+    /**
+     * Create a random pattern which touches all edges of the grid, so its size is kept by all formats.
+     *
+     * @param width
+     *            Pattern width.
+     * @param height
+     *            Pattern height.
+     * @return The pattern.
+     */
+    private static PackedGrid randomPattern(int width, int height) {
+        PackedGrid grid = new PackedGrid(width, height);
+        new RandomFill(0.3, width * height).fill(grid);
+        grid.setAlive(0, 0, true);
+        grid.setAlive(width - 1, height - 1, true);
+        return grid;
+    }
+
+    /**
+     * Wait for a load to complete.
+     *
+     * @param future
+     *            The load.
+     * @return The grid.
+     * @throws InterruptedException
+     * @throws ExecutionException
+     * @throws TimeoutException
+     */
+    private static Grid get(Future<Grid> future) throws InterruptedException, ExecutionException, TimeoutException {
+        return future.get(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Get a test resource.
+     *
+     * @param name
+     *            Resource name.
+     * @return Path of the resource.
+     * @throws URISyntaxException
+     */
+    private Path resource(String name) throws URISyntaxException {
+        return Paths.get(this.getClass().getResource(name).toURI());
+    }
+
+    /**
+     * Write a pattern to a temporary file.
+     *
+     * @param grid
+     *            The pattern.
+     * @param writer
+     *            Writer of the format.
+     * @return The file.
+     * @throws IOException
+     */
+    private static Path writeTemporaryFile(PackedGrid grid, PatternWriter writer) throws IOException {
+        Path file = Files.createTempFile("pattern", ".txt");
+        file.toFile().deleteOnExit();
+        writer.write(grid, file);
+        return file;
+    }
+}
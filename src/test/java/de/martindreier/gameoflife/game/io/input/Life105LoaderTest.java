@@ -13,22 +13,28 @@
 package de.martindreier.gameoflife.game.io.input;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import de.martindreier.gameoflife.game.CellState;
 import de.martindreier.gameoflife.game.GameRule;
 import de.martindreier.gameoflife.game.Grid;
 import de.martindreier.gameoflife.game.GridTest;
 import de.martindreier.gameoflife.game.io.input.Life105Loader.CellBlock;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
 import de.martindreier.gameoflife.test.util.MultiInputExceptionCatcher;
 
 /**
@@ -62,7 +68,7 @@ public class Life105LoaderTest {
     }
 
     /**
-     * Test loading of a life file.
+     * Test loading of a life file with two blocks. Both blocks are placed at their positions.
      *
      * @throws URISyntaxException
      * @throws IOException
@@ -73,15 +79,74 @@ public class Life105LoaderTest {
 
         Life105Loader loader = new Life105Loader(testFile);
         Grid grid = new Grid(loader);
-        GridTest.checkCellStates(grid, false);
         assertEquals("Comment loaded correctly", "A simple blinker", loader.getComment());
-        assertEquals("Grid size determination", 5, loader.getWidth());
-        assertEquals("Grid size determination", 5, loader.getHeight());
+        assertEquals("Grid size includes both blocks", 19, loader.getWidth());
+        assertEquals("Grid size includes both blocks", 13, loader.getHeight());
+        checkBlinkers(grid, new int[][] { { 2, 4 }, { 14, 8 } }, false);
 
         grid.iterate(loader.getGameRule().get());
-        GridTest.checkCellStates(grid, true);
+        checkBlinkers(grid, new int[][] { { 2, 4 }, { 14, 8 } }, true);
 
         assertEquals("All patterns loaded", 2, loader.getCellBlocks().size());
+        CellBlock block = loader.getCellBlocks().get(1);
+        assertEquals("Block width", 5, block.getWidth());
+        assertEquals("Block height", 5, block.getHeight());
+        assertTrue("Block cell", block.isAlive(3, 2));
+        assertFalse("Block cell", block.isAlive(4, 2));
+        assertFalse("Outside of block", block.isAlive(70, 2));
+    }
+
+    /**
+     * Blocks at negative positions shift the pattern until the smallest coordinates are 0. Rows longer than a word are
+     * loaded into grids and packed grids.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void negativeBlockPositions() throws IOException {
+        String longRow = String.join("", Collections.nCopies(10, ".******"));
+        Path file = Files.createTempFile("pattern", ".lif");
+        file.toFile().deleteOnExit();
+        Files.write(file, Arrays.asList("#Life 1.05", "#P -3 -2", "*.*", ".*", "#P 1 0", "." + longRow, "#P 0 -10"));
+        Life105Loader loader = new Life105Loader(file);
+        assertEquals("Horizontal offset", 3, loader.getOffsetX());
+        assertEquals("Vertical offset", 2, loader.getOffsetY());
+        assertEquals("Width", 3 + 1 + 71, loader.getWidth());
+        assertEquals("Height, empty block ignored", 3, loader.getHeight());
+
+        Grid grid = new Grid(loader);
+        PackedGrid packed = PackedGrid.of(loader);
+        for (int x = 0; x < loader.getWidth(); x++) {
+            for (int y = 0; y < loader.getHeight(); y++) {
+                boolean alive = y == 0 && (x == 0 || x == 2) || y == 1 && x == 1 || y == 2 && x >= 5 && (x - 5) % 7 != 0;
+                assertEquals(String.format("Cell (%d,%d)", x, y), alive ? CellState.ALIVE : CellState.DEAD, grid.get(x, y));
+                assertEquals(String.format("Packed cell (%d,%d)", x, y), alive, packed.isAlive(x, y));
+            }
+        }
+    }
+
+    /**
+     * Check the cells of blinkers loaded from <code>blinker.lif</code> blocks.
+     *
+     * @param grid
+     *            The grid.
+     * @param positions
+     *            Positions of the blocks.
+     * @param iterated
+     *            <code>true</code> if the grid was iterated once.
+     */
+    private static void checkBlinkers(Grid grid, int[][] positions, boolean iterated) {
+        for (int x = 0; x < grid.getWidth(); x++) {
+            for (int y = 0; y < grid.getHeight(); y++) {
+                boolean alive = false;
+                for (int[] position : positions) {
+                    int column = x - position[0];
+                    int row = y - position[1];
+                    alive |= iterated ? column == 2 && row >= 1 && row <= 3 : row == 2 && column >= 1 && column <= 3;
+                }
+                assertEquals(String.format("Cell (%d,%d)", x, y), alive ? CellState.ALIVE : CellState.DEAD, grid.get(x, y));
+            }
+        }
     }
 
     /**
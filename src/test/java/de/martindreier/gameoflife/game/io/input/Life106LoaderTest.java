@@ -14,16 +14,20 @@ package de.martindreier.gameoflife.game.io.input;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import de.martindreier.gameoflife.game.CellState;
 import de.martindreier.gameoflife.game.Grid;
 import de.martindreier.gameoflife.game.GridTest;
 import de.martindreier.gameoflife.game.io.input.Life106Loader.CellCoordinates;
@@ -123,4 +127,117 @@ public class Life106LoaderTest {
         };
         MultiInputExceptionCatcher.execute(invalidCoordinates, line -> CellCoordinates.parse(line), IllegalArgumentException.class);
     }
+
+    /**
+     * Patterns with negative coordinates are shifted until the smallest coordinates are 0. Comments, blank lines,
+     * tabs and Windows line breaks are accepted.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void negativeCoordinates() throws IOException {
+        Path file = TestFiles.write("#Life 1.06\r\n#D Glider\r\n-1 -2\r\n\r\n0\t-1\r\n -2 0 \r\n-1 0\r\n0 0", ".life");
+        Life106Loader loader = new Life106Loader(file);
+        assertEquals("Cell count", 5, loader.getCellCount());
+        assertEquals("Horizontal offset", 2, loader.getOffsetX());
+        assertEquals("Vertical offset", 2, loader.getOffsetY());
+        assertEquals("Width includes the origin", 3, loader.getWidth());
+        assertEquals("Height includes the origin", 3, loader.getHeight());
+        assertEquals("Coordinates of the file are kept", -1, loader.getAliveCells().get(0).getX());
+
+        Grid grid = new Grid(loader);
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                boolean alive = x == 1 && y == 0 || x == 2 && y == 1 || y == 2;
+                assertEquals(String.format("Cell (%d,%d)", x, y), alive ? CellState.ALIVE : CellState.DEAD, grid.get(x, y));
+            }
+        }
+    }
+
+    /**
+     * Loading a large file in small mapped windows, or in parallel chunks, gives the same cells as loading it in one
+     * window.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void mappedWindows() throws IOException {
+        Random random = new Random(7);
+        int[] xs = new int[100000];
+        int[] ys = new int[xs.length];
+        StringBuilder content = new StringBuilder("#Life 1.06\n");
+        for (int index = 0; index < xs.length; index++) {
+            xs[index] = random.nextInt(2000000) - 1000000;
+            ys[index] = random.nextInt(Integer.MAX_VALUE) - (Integer.MAX_VALUE / 2);
+            content.append(xs[index]).append(' ').append(ys[index]).append('\n');
+        }
+        Path file = TestFiles.write(content.toString(), ".life");
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Life106Loader[] loaders = new Life106Loader[] { new Life106Loader(file), new Life106Loader(file, null, 64, Life106Loader.MIN_CHUNK_SIZE),
+                    new Life106Loader(file, pool), new Life106Loader(file, pool, 100000, 1000), new Life106Loader(file, pool, 64, 1) };
+            for (Life106Loader loader : loaders) {
+                assertEquals("Cell count", xs.length, loader.getCellCount());
+                for (int index = 0; index < xs.length; index++) {
+                    assertEquals("X coordinate", xs[index], loader.getAliveCells().get(index).getX());
+                    assertEquals("Y coordinate", ys[index], loader.getAliveCells().get(index).getY());
+                }
+                assertEquals("Width", loaders[0].getWidth(), loader.getWidth());
+                assertEquals("Height", loaders[0].getHeight(), loader.getHeight());
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Lines longer than a mapped window and malformed numbers are rejected.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void invalidMappedContent() throws IOException {
+        try {
+            new Life106Loader(TestFiles.write("#Life 1.06\n#D A comment which is longer than the window\n1 1\n", ".life"), null, 16, Life106Loader.MIN_CHUNK_SIZE);
+            fail("Line longer than window accepted");
+        }
+        catch (IOException e) {
+            // Expected
+        }
+        String[] invalidLines = new String[] { // Comments to avoid auto-format
+                "4", //
+                "4 a", //
+                "45", //
+                "- 4", //
+                "4 -", //
+                "1-2 3", //
+                "2147483648 0", //
+                "0 -2147483649", //
+                "1 2 3", //
+        };
+        MultiInputExceptionCatcher.execute(invalidLines, line -> {
+            try {
+                new Life106Loader(TestFiles.write("#Life 1.06\n" + line + "\n", ".life"));
+            }
+            catch (IOException e) {
+                fail(e.getMessage());
+            }
+        }, IllegalArgumentException.class);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            new Life106Loader(TestFiles.write("#Life 1.06\n1 2\n3 4\n5 x\n6 7\n", ".life"), pool, 64, 1);
+            fail("Invalid line accepted by parallel parser");
+        }
+        catch (IllegalArgumentException e) {
+            // Expected
+        }
+        finally {
+            pool.shutdown();
+        }
+        Life106Loader loader = new Life106Loader(TestFiles.write("#Life 1.06\n2147483647 -2147483648\n", ".life"));
+        assertEquals("Largest X coordinate", Integer.MAX_VALUE, loader.getAliveCells().get(0).getX());
+        assertEquals("Smallest Y coordinate", Integer.MIN_VALUE, loader.getAliveCells().get(0).getY());
+    }
 }
@@ -0,0 +1,394 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+import de.martindreier.gameoflife.game.grids.StandardTestGrid;
+import de.martindreier.gameoflife.game.io.GridLoader;
+import de.martindreier.gameoflife.game.io.output.MacrocellWriter;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Tests for the {@link LoaderRegistry}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class LoaderRegistryTest {
+
+    /**
+     * Formats are recognized by their first lines.
+     */
+    @Test
+    public void detect() {
+        LoaderRegistry registry = new LoaderRegistry();
+        assertEquals("Macrocell", Optional.of(StandardPatternFormat.MACROCELL), registry.detect(ascii("[M2] (golly 3.0)\n$*$\n")));
+        assertEquals("Life 1.05", Optional.of(StandardPatternFormat.LIFE_105), registry.detect(ascii("#Life 1.05\r\n#D Blinker\r\n***\r\n")));
+        assertEquals("Life 1.06", Optional.of(StandardPatternFormat.LIFE_106), registry.detect(ascii("#Life 1.06\n0 0\n")));
+        assertEquals("Life without version", Optional.of(StandardPatternFormat.LIFE_106), registry.detect(ascii("#Life\n0 0\n")));
+        assertEquals("RLE", Optional.of(StandardPatternFormat.RLE), registry.detect(ascii("#N Blinker\n#C Comment\n\nx = 3, y = 1\n3o!\n")));
+        assertEquals("RLE with byte order mark", Optional.of(StandardPatternFormat.RLE), registry.detect(ascii("\u00EF\u00BB\u00BFx=3,y=1\n3o!")));
+        assertFalse("Pattern without header", registry.detect(ascii("3o!\n")).isPresent());
+        assertFalse("Unsupported Life version", registry.detect(ascii("#Life 2.0\n")).isPresent());
+        assertFalse("Empty file", registry.detect(ascii("")).isPresent());
+
+        ByteBuffer head = ascii("#Life 1.06\n0 0\n");
+        head.position(1);
+        assertFalse("Detection starts at the position", registry.detect(head).isPresent());
+        assertEquals("Position is not changed", 1, head.position());
+    }
+
+    /**
+     * Files are opened with the loader of their format and loaded like with the loader itself.
+     *
+     * @throws IOException
+     * @throws URISyntaxException
+     */
+    @Test
+    public void standardFormats() throws IOException, URISyntaxException {
+        LoaderRegistry registry = new LoaderRegistry();
+        Path life105 = resource("/blinker.lif");
+        Path life106 = resource("/blinker.life");
+        Path rle = resource("/blinker.rle");
+        Path macrocell = Files.createTempFile("pattern", ".mc");
+        macrocell.toFile().deleteOnExit();
+        new MacrocellWriter().write(PackedGrid.of(new StandardTestGrid()), macrocell);
+
+        assertEquals("Life 1.05", PackedGrid.of(new Life105Loader(life105)), open(registry, life105, Life105Loader.class));
+        assertEquals("Life 1.06", PackedGrid.of(new Life106Loader(life106)), open(registry, life106, Life106Loader.class));
+        assertEquals("RLE", PackedGrid.of(new RLEFileLoader(rle)), open(registry, rle, RLEFileLoader.class));
+        assertEquals("Macrocell", PackedGrid.of(new MacrocellLoader(macrocell)), open(registry, macrocell, MacrocellLoader.class));
+    }
+
+    /**
+     * Registered formats are checked before the standard formats, and unknown formats are rejected.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void customFormats() throws IOException {
+        LoaderRegistry registry = new LoaderRegistry();
+        Path file = TestFiles.write("blinker\n", ".txt");
+        try {
+            registry.open(file);
+            fail("Unknown format accepted");
+        }
+        catch (IOException e) {
+            // Expected
+        }
+
+        registry.register(new PatternFormat() {
+
+            @Override
+            public String getName() {
+                return "Blinker";
+            }
+
+            @Override
+            public boolean matches(ByteBuffer head) {
+                return head.remaining() >= 7 && head.get(0) == 'b';
+            }
+
+            @Override
+            public GridLoader open(Path patternFile, FileChannel channel) throws IOException {
+                return new StandardTestGrid();
+            }
+        });
+        assertEquals("Custom format is checked first", "Blinker", registry.getFormats().get(0).getName());
+        assertTrue("Custom loader", registry.open(file) instanceof StandardTestGrid);
+    }
+
+    /**
+     * All files are closed after they are opened, also if the file is not valid.
+     *
+     * @throws IOException
+     * @throws URISyntaxException
+     */
+    @Test
+    public void filesClosed() throws IOException, URISyntaxException {
+        File descriptors = new File("/proc/self/fd");
+        Assume.assumeTrue("Open files can be counted", descriptors.isDirectory());
+        LoaderRegistry registry = new LoaderRegistry();
+        Path[] files = { resource("/blinker.lif"), resource("/blinker.life"), resource("/blinker.rle"), resource("/blinker_invalid.lif"), resource("/blinker_invalid.life"),
+                resource("/blinker_invalid.rle"), TestFiles.write("unknown\n", ".txt") };
+        int before = descriptors.list().length;
+        for (int round = 0; round < 50; round++) {
+            for (Path file : files) {
+                try {
+                    registry.open(file).load((x, y) -> {
+                        // Only parse the pattern
+                    });
+                }
+                catch (IOException | RuntimeException e) {
+                    // Invalid files are expected to fail
+                }
+            }
+        }
+        assertTrue("No files left open", descriptors.list().length <= before);
+    }
+
+    /**
+     * Patterns are loaded from streams, channels and buffers like from files, and the streams of the caller are not
+     * closed.
+     *
+     * @throws IOException
+     * @throws URISyntaxException
+     */
+    @Test
+    public void streams() throws IOException, URISyntaxException {
+        LoaderRegistry registry = new LoaderRegistry();
+        for (String name : new String[] { "/blinker.lif", "/blinker.life", "/blinker.rle" }) {
+            Path file = resource(name);
+            PackedGrid expected = PackedGrid.of(registry.open(file));
+            byte[] bytes = Files.readAllBytes(file);
+            AtomicBoolean closed = new AtomicBoolean();
+            InputStream input = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+
+                @Override
+                public void close() throws IOException {
+                    closed.set(true);
+                    super.close();
+                }
+            };
+            assertEquals("Stream of " + name, expected, PackedGrid.of(registry.open(input, name)));
+            assertFalse("Stream of " + name + " is not closed", closed.get());
+            assertEquals("Channel of " + name, expected, PackedGrid.of(registry.open(Channels.newChannel(new ByteArrayInputStream(bytes)), name)));
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            assertEquals("Buffer of " + name, expected, PackedGrid.of(registry.open(buffer, name)));
+            assertEquals("Buffer of " + name + " is not changed", 0, buffer.position());
+        }
+
+        ByteArrayOutputStream macrocell = new ByteArrayOutputStream();
+        PackedGrid grid = PackedGrid.of(new StandardTestGrid());
+        new MacrocellWriter().write(grid, Channels.newChannel(macrocell));
+        GridLoader loader = registry.open(ByteBuffer.wrap(macrocell.toByteArray()), "macrocell");
+        assertEquals("Macrocell loader", MacrocellLoader.class, loader.getClass());
+        assertEquals("Macrocell", PackedGrid.of(new MacrocellLoader(TestFiles.write(macrocell.toString("US-ASCII"), ".txt"))), PackedGrid.of(loader));
+
+        try {
+            registry.open(ascii("unknown\n"), "unknown");
+            fail("Unknown format accepted");
+        }
+        catch (IOException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Streams are loaded into a sink once, also if they are compressed. RLE patterns are decoded directly from the
+     * stream, so their loader cannot load them again. The stream is not closed.
+     *
+     * @throws IOException
+     * @throws URISyntaxException
+     */
+    @Test
+    public void loadIntoSink() throws IOException, URISyntaxException {
+        LoaderRegistry registry = new LoaderRegistry();
+        for (String name : new String[] { "/blinker.lif", "/blinker.life", "/blinker.rle" }) {
+            Path file = resource(name);
+            PackedGrid expected = PackedGrid.of(registry.open(file));
+            byte[] bytes = Files.readAllBytes(file);
+            ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+            try (OutputStream output = new GZIPOutputStream(gzip)) {
+                output.write(bytes);
+            }
+            for (byte[] content : new byte[][] { bytes, gzip.toByteArray() }) {
+                AtomicBoolean closed = new AtomicBoolean();
+                InputStream input = new FilterInputStream(new ByteArrayInputStream(content)) {
+
+                    @Override
+                    public void close() throws IOException {
+                        closed.set(true);
+                        super.close();
+                    }
+                };
+                PackedGrid grid = new PackedGrid(expected.getWidth(), expected.getHeight());
+                GridLoader loader = registry.load(input, name, grid);
+                assertEquals("Cells of " + name, expected, grid);
+                assertEquals("Width of " + name, expected.getWidth(), loader.getWidth());
+                assertEquals("Height of " + name, expected.getHeight(), loader.getHeight());
+                assertFalse("Stream of " + name + " is not closed", closed.get());
+                assertEquals("Stream of " + name + " is read to its end", -1, input.read());
+                if (name.endsWith(".rle")) {
+                    try {
+                        loader.load(grid);
+                        fail("Stream of " + name + " is loaded again");
+                    }
+                    catch (IllegalStateException e) {
+                        // Expected, the pattern is not kept in memory
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A Life 1.06 stream with lines longer than the read buffer is loaded.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void longLines() throws IOException {
+        StringBuilder text = new StringBuilder("#Life 1.06\n0 0\n#D ");
+        while (text.length() < Life106Loader.STREAM_BUFFER_SIZE * 2) {
+            text.append('-');
+        }
+        text.append("\n2 1\n3 1\n");
+        PackedGrid grid = PackedGrid.of(new LoaderRegistry().open(ascii(text.toString()), "long lines"));
+        assertEquals("Width", 4, grid.getWidth());
+        assertEquals("Height", 2, grid.getHeight());
+        assertTrue("First cell", grid.isAlive(0, 0));
+        assertTrue("Last cell", grid.isAlive(3, 1));
+    }
+
+    /**
+     * Compressed files, streams and buffers are decompressed while they are loaded. Compressed RLE files are
+     * decompressed again to decode the pattern.
+     *
+     * @throws IOException
+     * @throws URISyntaxException
+     */
+    @Test
+    public void compressed() throws IOException, URISyntaxException {
+        LoaderRegistry registry = new LoaderRegistry();
+        for (String name : new String[] { "/blinker.lif", "/blinker.life", "/blinker.rle" }) {
+            Path file = resource(name);
+            PackedGrid expected = PackedGrid.of(registry.open(file));
+            byte[] bytes = Files.readAllBytes(file);
+
+            ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+            try (OutputStream output = new GZIPOutputStream(gzip)) {
+                output.write(bytes);
+            }
+            ByteArrayOutputStream zip = new ByteArrayOutputStream();
+            try (ZipOutputStream output = new ZipOutputStream(zip)) {
+                output.putNextEntry(new ZipEntry("patterns/"));
+                output.putNextEntry(new ZipEntry("patterns" + name));
+                output.write(bytes);
+            }
+            ByteArrayOutputStream xz = new ByteArrayOutputStream();
+            try (OutputStream output = new XZOutputStream(xz, new LZMA2Options())) {
+                output.write(bytes);
+            }
+
+            for (ByteArrayOutputStream compressed : new ByteArrayOutputStream[] { gzip, zip, xz }) {
+                Compression compression = Compression.detect(ByteBuffer.wrap(compressed.toByteArray())).get();
+                assertEquals(compression + " buffer of " + name, expected, PackedGrid.of(registry.open(ByteBuffer.wrap(compressed.toByteArray()), name)));
+                assertEquals(compression + " stream of " + name, expected, PackedGrid.of(registry.open(new ByteArrayInputStream(compressed.toByteArray()), name)));
+                Path compressedFile = Files.createTempFile("pattern", ".compressed");
+                compressedFile.toFile().deleteOnExit();
+                Files.write(compressedFile, compressed.toByteArray());
+                assertEquals(compression + " file of " + name, expected, PackedGrid.of(registry.open(compressedFile)));
+                if (name.endsWith(".rle")) {
+                    GridLoader loader = registry.open(compressedFile);
+                    Files.delete(compressedFile);
+                    try {
+                        PackedGrid.of(loader);
+                        fail(compression + " file of " + name + " is not decompressed again");
+                    }
+                    catch (UncheckedIOException e) {
+                        // Expected, the pattern is not kept in memory
+                    }
+                }
+            }
+        }
+        assertFalse("Plain text", Compression.detect(ascii("#Life 1.06\n")).isPresent());
+
+        ByteArrayOutputStream empty = new ByteArrayOutputStream();
+        try (ZipOutputStream output = new ZipOutputStream(empty)) {
+            output.putNextEntry(new ZipEntry("patterns/"));
+        }
+        try {
+            registry.open(ByteBuffer.wrap(empty.toByteArray()), "empty.zip");
+            fail("Empty archive accepted");
+        }
+        catch (IOException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Open a file with the registry and load it.
+     *
+     * @param registry
+     *            The registry.
+     * @param file
+     *            The file.
+     * @param loaderClass
+     *            Expected loader class.
+     * @return The loaded grid.
+     * @throws IOException
+     */
+    private static PackedGrid open(LoaderRegistry registry, Path file, Class<?> loaderClass) throws IOException {
+        GridLoader loader = registry.open(file);
+        assertEquals("Loader for " + file.getFileName(), loaderClass, loader.getClass());
+        return PackedGrid.of(loader);
+    }
+
+    /**
+     * Get a test resource.
+     *
+     * @param name
+     *            Resource name.
+     * @return Path of the resource.
+     * @throws URISyntaxException
+     */
+    private Path resource(String name) throws URISyntaxException {
+        return Paths.get(this.getClass().getResource(name).toURI());
+    }
+
+    /**
+     * Convert text to a buffer, one byte per character.
+     *
+     * @param text
+     *            The text.
+     * @return The buffer.
+     */
+    private static ByteBuffer ascii(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
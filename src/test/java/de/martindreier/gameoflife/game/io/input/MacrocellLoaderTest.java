@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+
+/**
+ * Tests for the {@link MacrocellLoader}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class MacrocellLoaderTest {
+
+    /**
+     * Load a glider in the south west quadrant of a level 5 root. The grid is cropped to the glider.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void glider() throws IOException {
+        MacrocellLoader loader = new MacrocellLoader(TestFiles.write("[M2] (golly 3.0)\n#R B36/S23\n#C Glider\n.*$..*$***$\n4 0 0 0 1\n5 0 0 2 0\n", ".mc"));
+        assertEquals("Node count", 3, loader.getNodeCount());
+        assertEquals("Root level", 5, loader.getLevel());
+        assertEquals("Width", 3, loader.getWidth());
+        assertEquals("Height", 3, loader.getHeight());
+        assertEquals("Rule", LifeLikeRule.of(GameRule.createRule("23", "36")), LifeLikeRule.of(loader.getGameRule().get()));
+
+        Grid grid = new Grid(loader);
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                boolean alive = x == 1 && y == 0 || x == 2 && y == 1 || y == 2;
+                assertEquals(String.format("Cell (%d,%d)", x, y), alive ? CellState.ALIVE : CellState.DEAD, grid.get(x, y));
+            }
+        }
+    }
+
+    /**
+     * A pattern with 2<sup>37</sup> cells on a diagonal of 2<sup>40</sup> cells is parsed from a few nodes, but cannot
+     * be loaded into a grid.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void astronomicalPattern() throws IOException {
+        StringBuilder content = new StringBuilder("[M2]\n*$.*$..*$...*$....*$.....*$......*$.......*$\n");
+        for (int level = 4; level <= 40; level++) {
+            content.append(level).append(' ').append(level - 3).append(" 0 0 ").append(level - 3).append('\n');
+        }
+        MacrocellLoader loader = new MacrocellLoader(TestFiles.write(content.toString(), ".mc"));
+        assertEquals("Node count", 38, loader.getNodeCount());
+        assertEquals("Pattern width", 1L << 40, loader.getPatternWidth());
+        assertEquals("Pattern height", 1L << 40, loader.getPatternHeight());
+        assertEquals("Default rule", GameRule.CONWAY, loader.getGameRule().get());
+        try {
+            loader.getWidth();
+            fail("Pattern wider than a grid accepted");
+        }
+        catch (ArithmeticException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Invalid files are rejected.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void invalidFiles() throws IOException {
+        String[] files = { "#Life 1.05\n*$\n", "[M2]\n", "[M2]\n*$\n4 1 0 0 2\n", "[M2]\n*$\n4 1 0 0\n", "[M2]\n*$\n5 1 0 0 0\n", "[M2]\n2 0 0 0 0\n", "[M2]\n*********$\n",
+                "[M2]\n$$$$$$$$*\n", "[M2]\n*o$\n", "[M2]\nx = 1\n", "[M2]\n#R 23\n*$\n" };
+        for (String file : files) {
+            try {
+                new MacrocellLoader(TestFiles.write(file, ".mc"));
+                fail("Invalid file accepted: " + file);
+            }
+            catch (IOException e) {
+                // Expected
+            }
+        }
+    }
+}
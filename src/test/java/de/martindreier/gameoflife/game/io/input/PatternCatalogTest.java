@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+
+/**
+ * Tests for the {@link PatternCatalog}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class PatternCatalogTest {
+
+    /**
+     * Directory of the pattern files.
+     */
+    private Path directory;
+
+    /**
+     * The index file.
+     */
+    private Path indexFile;
+
+    /**
+     * Create a directory with pattern files.
+     *
+     * @throws IOException
+     */
+    @Before
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory("patterns");
+        this.indexFile = this.directory.resolve("catalog.index");
+        write("glider.rle", "#N Glider\n#C The smallest spaceship.\nx = 3, y = 3, rule = B3/S23\nbo$2bo$3o!\n");
+        write("oscillators/blinker.rle", "#N Blinker\nx = 3, y = 1\n3o!\n");
+        write("oscillators/highlife.rle", "#N Replicator\nx = 5, y = 5, rule = B36/S23\n2b3o$bo2bo$o3bo$o2bo$3o!\n");
+        write("oscillators/toad.lif", "#Life 1.05\n#D Period 2\n#R 23/36\n#P -1 0\n.***\n***.\n#P 4 3\n*\n");
+        write("invalid.rle", "#N Invalid\n3o!\n");
+        write("oscillators/beacon.lif", "#Life 1.06\n0 0\n1 0\n0 1\n3 2\n2 3\n3 3\n");
+        write("other.life", "#Life 1.06\n0 0\n");
+    }
+
+    /**
+     * Delete the directory.
+     *
+     * @throws IOException
+     */
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * The metadata of RLE and Life files is indexed, and can be looked up by name and rule.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void lookup() throws IOException {
+        PatternCatalog catalog = new PatternCatalog(this.directory, this.indexFile);
+        assertTrue("Empty before update", catalog.getEntries().isEmpty());
+        assertEquals("Files read", 6, catalog.update(ForkJoinPool.commonPool()));
+        assertEquals("Valid files indexed", 5, catalog.getEntries().size());
+
+        PatternMetadata glider = catalog.get("glider.rle").get();
+        assertEquals("Name", "Glider", glider.getName());
+        assertEquals("Format", StandardPatternFormat.RLE, glider.getFormat());
+        assertEquals("Rule", LifeLikeRule.CONWAY, glider.getRule());
+        assertEquals("Width", 3, glider.getWidth());
+        assertEquals("Height", 3, glider.getHeight());
+        assertTrue("Comment", glider.getComment().contains("The smallest spaceship."));
+
+        PatternMetadata toad = catalog.get("oscillators/toad.lif").get();
+        assertEquals("Life 1.05 format", StandardPatternFormat.LIFE_105, toad.getFormat());
+        assertEquals("Life 1.05 without name", null, toad.getName());
+        assertEquals("Life 1.05 rule", "B36/S23", toad.getRule().toString());
+        assertEquals("Life 1.05 width", 6, toad.getWidth());
+        assertEquals("Life 1.05 height", 4, toad.getHeight());
+        assertEquals("Life 1.05 comment", "Period 2", toad.getComment());
+
+        PatternMetadata beacon = catalog.get("oscillators/beacon.lif").get();
+        assertEquals("Life 1.06 format", StandardPatternFormat.LIFE_106, beacon.getFormat());
+        assertEquals("Life 1.06 rule", LifeLikeRule.CONWAY, beacon.getRule());
+        assertEquals("Life 1.06 width", 4, beacon.getWidth());
+        assertEquals("Life 1.06 height", 4, beacon.getHeight());
+
+        assertEquals("By pattern name", "oscillators/blinker.rle", single(catalog.findByName("blinker")).getPath());
+        assertEquals("By file name", "oscillators/toad.lif", single(catalog.findByName("TOAD")).getPath());
+        assertEquals("By pattern and file name", "oscillators/highlife.rle", single(catalog.findByName("replicator")).getPath());
+        assertEquals("By pattern and file name", "oscillators/highlife.rle", single(catalog.findByName("highlife")).getPath());
+        assertTrue("Unknown name", catalog.findByName("gun").isEmpty());
+        assertEquals("Conway", 3, catalog.findByRule(LifeLikeRule.CONWAY).size());
+        assertEquals("HighLife", 2, catalog.findByRule(LifeLikeRule.of(GameRule.createRule("23", "36"))).size());
+        assertFalse("Invalid file", catalog.get("invalid.rle").isPresent());
+        assertFalse("Other extension", catalog.get("other.life").isPresent());
+    }
+
+    /**
+     * The index is saved, and only added or changed files are read again. Files which are not valid are kept in the
+     * index, so they are not read again while they do not change, and an unchanged directory leaves the index file
+     * untouched.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void incrementalUpdate() throws IOException {
+        new PatternCatalog(this.directory, this.indexFile).update();
+        assertTrue("Index saved", Files.exists(this.indexFile));
+        FileTime saved = FileTime.fromMillis(Files.getLastModifiedTime(this.indexFile).toMillis() - 60000);
+        Files.setLastModifiedTime(this.indexFile, saved);
+
+        PatternCatalog catalog = new PatternCatalog(this.directory, this.indexFile);
+        assertEquals("Entries read from index", 5, catalog.getEntries().size());
+        assertEquals("Name read from index", "Glider", catalog.get("glider.rle").get().getName());
+        assertEquals("Lookup from index", 1, catalog.findByName("glider").size());
+        assertEquals("Life 1.06 format read from index", StandardPatternFormat.LIFE_106, catalog.get("oscillators/beacon.lif").get().getFormat());
+        assertEquals("No file read again", 0, catalog.update());
+        assertEquals("Index not written", saved, Files.getLastModifiedTime(this.indexFile));
+
+        write("invalid.rle", "#N Valid\nx = 1, y = 1\no!\n");
+        Files.setLastModifiedTime(this.directory.resolve("invalid.rle"), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        assertEquals("Changed invalid file read again", 1, catalog.update());
+        assertEquals("Valid now", "Valid", catalog.get("invalid.rle").get().getName());
+
+        Path glider = write("glider.rle", "#N Spaceship\nx = 3, y = 3\nbo$2bo$3o!\n");
+        Files.setLastModifiedTime(glider, FileTime.fromMillis(Files.getLastModifiedTime(glider).toMillis() + 5000));
+        Files.delete(this.directory.resolve("oscillators/blinker.rle"));
+        write("new.lif", "#Life 1.05\n#N\n*\n");
+        assertEquals("Changed and added files read", 2, catalog.update());
+        assertEquals("Entries", 6, catalog.getEntries().size());
+        assertEquals("Changed name", "Spaceship", catalog.get("glider.rle").get().getName());
+        assertTrue("Old name removed", catalog.findByName("spaceship").size() == 1 && catalog.findByName("blinker").isEmpty());
+        assertFalse("Deleted file removed", catalog.get("oscillators/blinker.rle").isPresent());
+
+        PatternCatalog reopened = new PatternCatalog(this.directory, this.indexFile);
+        assertEquals("Saved after update", catalog.getEntries().toString(), reopened.getEntries().toString());
+    }
+
+    /**
+     * Index files which are not valid are rejected.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void invalidIndex() throws IOException {
+        Files.write(this.indexFile, "not an index".getBytes(StandardCharsets.UTF_8));
+        try {
+            new PatternCatalog(this.directory, this.indexFile);
+            fail("Invalid index accepted");
+        }
+        catch (IOException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Get the only element of a list.
+     *
+     * @param entries
+     *            The list.
+     * @return The element.
+     */
+    private static PatternMetadata single(List<PatternMetadata> entries) {
+        assertEquals("Entries " + entries, 1, entries.size());
+        return entries.get(0);
+    }
+
+    /**
+     * Write a file into the directory.
+     *
+     * @param path
+     *            Path relative to the directory.
+     * @param content
+     *            File content.
+     * @return The file.
+     * @throws IOException
+     */
+    private Path write(String path, String content) throws IOException {
+        Path file = this.directory.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -13,21 +13,31 @@
 package de.martindreier.gameoflife.game.io.input;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import de.martindreier.gameoflife.game.CellState;
 import de.martindreier.gameoflife.game.GameRule;
 import de.martindreier.gameoflife.game.Grid;
 import de.martindreier.gameoflife.game.GridTest;
 import de.martindreier.gameoflife.game.grids.StandardTestGrid;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
 import de.martindreier.gameoflife.test.util.MultiInputExceptionCatcher;
 
 /**
@@ -243,64 +253,184 @@ public class RLEFileLoaderTest {
     }
 
     /**
-     * Test pattern expansion.
+     * The streaming decoder handles run counts split by line breaks, multi-digit counts, skipped rows, runs beyond the
+     * pattern width and comments after the pattern.
+     *
+     * @throws IOException
      */
     @Test
-    public void expandPattern() {
-        RLEFileLoader loader = new RLEFileLoader();
-
-        String expanded = loader.expandPattern("b");
-        assertEquals("Correct expansion of pattern", "b", expanded);
-
-        expanded = loader.expandPattern("o");
-        assertEquals("Correct expansion of pattern", "o", expanded);
-
-        expanded = loader.expandPattern("bo");
-        assertEquals("Correct expansion of pattern", "bo", expanded);
-
-        expanded = loader.expandPattern("ob");
-        assertEquals("Correct expansion of pattern", "ob", expanded);
-
-        expanded = loader.expandPattern("2o");
-        assertEquals("Correct expansion of pattern", "oo", expanded);
+    public void streamingDecoder() throws IOException {
+        Path file = TestFiles.write("#N Test\r\nx = 12, y = 5\r\n12o$b1\r\n0o$2$\n20o!\nAfter the pattern\n", ".rle");
+        RLEFileLoader loader = new RLEFileLoader(file);
+        assertEquals("Width", 12, loader.getWidth());
+        assertEquals("Height", 5, loader.getHeight());
 
-        expanded = loader.expandPattern("3o");
-        assertEquals("Correct expansion of pattern", "ooo", expanded);
-
-        expanded = loader.expandPattern("2b");
-        assertEquals("Correct expansion of pattern", "bb", expanded);
-
-        expanded = loader.expandPattern("2bo");
-        assertEquals("Correct expansion of pattern", "bbo", expanded);
-
-        expanded = loader.expandPattern("b2o");
-        assertEquals("Correct expansion of pattern", "boo", expanded);
-
-        expanded = loader.expandPattern("2b2o");
-        assertEquals("Correct expansion of pattern", "bboo", expanded);
-
-        expanded = loader.expandPattern("2b 2o");
-        assertEquals("Correct expansion of pattern", "bboo", expanded);
+        Grid grid = new Grid(loader);
+        PackedGrid packed = PackedGrid.of(loader);
+        for (int x = 0; x < 12; x++) {
+            for (int y = 0; y < 5; y++) {
+                boolean alive = y == 0 || y == 1 && x >= 1 && x <= 10 || y == 4;
+                assertEquals(String.format("Cell (%d,%d)", x, y), alive ? CellState.ALIVE : CellState.DEAD, grid.get(x, y));
+                assertEquals(String.format("Packed cell (%d,%d)", x, y), alive, packed.isAlive(x, y));
+            }
+        }
+        assertEquals("Comments before and after the pattern, read once", "Pattern Name: Test\n\nAfter the pattern", loader.getComment());
+    }
 
-        expanded = loader.expandPattern("oo$bb");
-        assertEquals("Correct expansion of pattern", "oo\nbb", expanded);
+    /**
+     * Patterns read from a file are decoded the same way as patterns passed line by line.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void streamingDecoderMatchesLines() throws IOException {
+        String[] lines = { "x = 70, y = 3, rule = B3/S23", "3o64bo2$", "obo5b", "10o!" };
+        RLEFileLoader fromLines = new RLEFileLoader();
+        for (String line : lines) {
+            fromLines.parseLine(line);
+        }
+        RLEFileLoader fromFile = new RLEFileLoader(TestFiles.write(String.join("\n", lines), ".rle"));
+        assertEquals("Same cells", PackedGrid.of(fromLines), PackedGrid.of(fromFile));
+        assertFalse("Pattern is not empty", PackedGrid.of(fromFile).isEmpty());
+    }
 
-        expanded = loader.expandPattern("2o$o2b");
-        assertEquals("Correct expansion of pattern", "oo\nobb", expanded);
+    /**
+     * Invalid characters and dangling run counts are rejected by the streaming decoder.
+     */
+    @Test
+    public void streamingDecoderInvalidPatterns() {
+        String[] invalidPatterns = new String[] { // Comments to prevent auto-format
+                "x = 5, y = 1\nbob2", //
+                "x = 5, y = 1\nbob12!", //
+                "x = 5, y = 1\nbxo!", //
+                "x = 5, y = 1\n99999999999o!", //
+        };
+        MultiInputExceptionCatcher.execute(invalidPatterns, content -> {
+            try {
+                new Grid(new RLEFileLoader(TestFiles.write(content, ".rle")));
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }, IllegalArgumentException.class);
+    }
 
-        expanded = loader.expandPattern("oo!bb");
-        assertEquals("Correct expansion of pattern", "oo", expanded);
+    /**
+     * Decoding in parallel chunks gives the same cells and comments as decoding in a single pass, also for comment
+     * lines and text after the pattern containing ends of rows, skipped rows and windows without a line break.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void parallelDecoder() throws IOException {
+        Random random = new Random(3);
+        String header = "#N Parallel\nx = 300, y = 400\n";
+        StringBuilder pattern = new StringBuilder();
+        for (int row = 0; row < 400; row++) {
+            for (int x = 0; x < 300; x += 1 + random.nextInt(20)) {
+                pattern.append(random.nextInt(20)).append(random.nextBoolean() ? 'o' : 'b');
+                if (random.nextInt(10) == 0) {
+                    pattern.append('\n');
+                }
+            }
+            pattern.append(random.nextInt(10) == 0 ? "3$" : "$");
+            if (random.nextInt(50) == 0) {
+                pattern.append("\n#C Row ").append(row).append(" costs $5\n");
+            }
+        }
+        pattern.append("o!\nText $ after $ the pattern\n#C $\n");
+        String[] contents = { header + pattern, header + pattern.toString().replaceAll("\n#C[^\n]*\n", "").replace('\n', ' ') };
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String content : contents) {
+                Path file = TestFiles.write(content, ".rle");
+                RLEFileLoader sequential = new RLEFileLoader(file);
+                PackedGrid expected = PackedGrid.of(sequential);
+                assertFalse("Pattern is not empty", expected.isEmpty());
+                for (int[] sizes : new int[][] { { 1 << 20, 1 << 20 }, { 1 << 20, 100 }, { 500, 16 }, { 64, 1 } }) {
+                    RLEFileLoader parallel = new RLEFileLoader(file, pool, sizes[0], sizes[1]);
+                    String description = String.format("Window %d, chunk %d", sizes[0], sizes[1]);
+                    assertEquals(description, expected, PackedGrid.of(parallel));
+                    assertEquals(description + ", comments", sequential.getComment(), parallel.getComment());
+                }
+                assertEquals("Grid", expected, PackedGrid.of(new Grid(new RLEFileLoader(file, pool, 500, 16))));
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
     }
 
     /**
-     * Test expansion of invalid patterns.
+     * Invalid characters are rejected by the parallel decoder.
      */
     @Test
-    public void expandInvalidPatterns() {
-        RLEFileLoader loader = new RLEFileLoader();
+    public void parallelDecoderInvalidPatterns() {
         String[] invalidPatterns = new String[] { // Comments to prevent auto-format
-                "bob2", //
+                "x = 5, y = 3\nbob$2o$bxo!", //
+                "x = 5, y = 3\nbob$2o$bo2", //
         };
-        MultiInputExceptionCatcher.execute(invalidPatterns, pattern -> loader.expandPattern(pattern), IllegalArgumentException.class);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            MultiInputExceptionCatcher.execute(invalidPatterns, content -> {
+                try {
+                    new Grid(new RLEFileLoader(TestFiles.write(content, ".rle"), pool, 64, 1));
+                }
+                catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, IllegalArgumentException.class);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A pattern read from a channel into a sink is decoded directly from the channel, with the comments before and
+     * after the pattern, and cannot be loaded again.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void decodeFromChannel() throws IOException {
+        String content = "#N Test\r\nx = 12, y = 5\r\n12o$b1\r\n0o$2$\n20o!\nAfter the pattern\n";
+        PackedGrid expected = PackedGrid.of(new RLEFileLoader(TestFiles.write(content, ".rle")));
+        PackedGrid grid = new PackedGrid(12, 5);
+        RLEFileLoader loader = new RLEFileLoader("test", Channels.newChannel(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))), grid);
+        assertEquals("Cells", expected, grid);
+        assertEquals("Comments before and after the pattern", "Pattern Name: Test\n\nAfter the pattern", loader.getComment());
+        try {
+            loader.load(grid);
+            fail("Pattern loaded again");
+        }
+        catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Buffers for patterns kept in memory at least double in size, but do not grow beyond their limit.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void growBuffer() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4).put(new byte[] { 1, 2, 3 });
+        assertTrue("Buffer with enough room is kept", buffer == RLEFileLoader.grow(buffer, 1, 16, "test"));
+        ByteBuffer grown = RLEFileLoader.grow(buffer, 2, 16, "test");
+        assertEquals("Doubled capacity", 8, grown.capacity());
+        assertEquals("Position", 3, grown.position());
+        assertEquals("Content", 3, grown.get(2));
+        assertEquals("Capacity for a large append", 23, RLEFileLoader.grow(grown, 20, 32, "test").capacity());
+        assertEquals("Capacity at the limit", 10, RLEFileLoader.grow(grown, 6, 10, "test").capacity());
+        try {
+            RLEFileLoader.grow(grown, 8, 10, "test");
+            fail("Buffer grown beyond its limit");
+        }
+        catch (IOException e) {
+            // Expected
+        }
     }
 }
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.test.util.MultiInputExceptionCatcher;
+
+/**
+ * Tests for the {@link RLEPatternDecoder}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class RLEPatternDecoderTest {
+
+    /**
+     * Runs, run counts and row ends are decoded.
+     */
+    @Test
+    public void decodePattern() {
+        assertEquals("Correct decoding of pattern", "b", decode("b", 1, 1));
+        assertEquals("Correct decoding of pattern", "o", decode("o", 1, 1));
+        assertEquals("Correct decoding of pattern", "bo", decode("bo", 2, 1));
+        assertEquals("Correct decoding of pattern", "ob", decode("ob", 2, 1));
+        assertEquals("Correct decoding of pattern", "oo", decode("2o", 2, 1));
+        assertEquals("Correct decoding of pattern", "ooo", decode("3o", 3, 1));
+        assertEquals("Correct decoding of pattern", "bb", decode("2b", 2, 1));
+        assertEquals("Correct decoding of pattern", "bbo", decode("2bo", 3, 1));
+        assertEquals("Correct decoding of pattern", "boo", decode("b2o", 3, 1));
+        assertEquals("Correct decoding of pattern", "bboo", decode("2b2o", 4, 1));
+        assertEquals("Correct decoding of pattern", "bboo", decode("2b 2o", 4, 1));
+        assertEquals("Correct decoding of pattern", "oo\nbb", decode("oo$bb", 2, 2));
+        assertEquals("Correct decoding of pattern", "oob\nobb", decode("2o$o2b", 3, 2));
+        assertEquals("Correct decoding of pattern", "oooooooooooo", decode("12o", 12, 1));
+        assertEquals("Correct decoding of pattern", "obbbbbbbbbb\nbbbbbbbbbbb\nbbbbbbbbbbb\nboooooooooo", decode("o3$b10o", 11, 4));
+        assertEquals("Correct decoding of pattern", "oobb", decode("oo!oo", 4, 1));
+    }
+
+    /**
+     * Cells outside of the declared pattern size are dropped.
+     */
+    @Test
+    public void clipPattern() {
+        assertEquals("Run cut off at the pattern width", "oo\nbo", decode("3o$b3o$o!", 2, 2));
+    }
+
+    /**
+     * Patterns ending with a run count are rejected.
+     */
+    @Test
+    public void decodeInvalidPatterns() {
+        String[] invalidPatterns = new String[] { // Comments to prevent auto-format
+                "bob2", //
+                "bob12", //
+                "bob2!", //
+        };
+        MultiInputExceptionCatcher.execute(invalidPatterns, pattern -> decode(pattern, 3, 1), IllegalArgumentException.class);
+    }
+
+    /**
+     * Decode a pattern.
+     *
+     * @param pattern
+     *            The encoded pattern.
+     * @param width
+     *            Pattern width.
+     * @param height
+     *            Pattern height.
+     * @return The rows of the pattern separated by line breaks, with <code>o</code> for alive and <code>b</code> for
+     *         dead cells.
+     */
+    private static String decode(String pattern, int width, int height) {
+        char[][] cells = new char[height][width];
+        for (char[] row : cells) {
+            Arrays.fill(row, 'b');
+        }
+        RLEPatternDecoder decoder = new RLEPatternDecoder((x, y) -> cells[y][x] = 'o', width, height, line -> {
+            // No hash lines
+        });
+        decoder.decode(ByteBuffer.wrap(pattern.getBytes(StandardCharsets.UTF_8)));
+        decoder.finish();
+        StringBuilder decoded = new StringBuilder();
+        for (char[] row : cells) {
+            if (decoded.length() > 0) {
+                decoded.append('\n');
+            }
+            decoded.append(row);
+        }
+        return decoded.toString();
+    }
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.input;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A test utility which writes pattern files to a temporary location.
+ *
+ * @author D043987
+ *
+ */
+class TestFiles {
+
+    /**
+     * Write a temporary file, which is deleted when the VM exits.
+     *
+     * @param content
+     *            File content.
+     * @param suffix
+     *            Suffix of the file name, e.g. <code>.rle</code>.
+     * @return The file.
+     * @throws IOException
+     */
+    static Path write(String content, String suffix) throws IOException {
+        Path file = Files.createTempFile("pattern", suffix);
+        file.toFile().deleteOnExit();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.io.output;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.grids.StandardTestGrid;
+import de.martindreier.gameoflife.game.io.GridLoader;
+import de.martindreier.gameoflife.game.io.input.Life105Loader;
+import de.martindreier.gameoflife.game.io.input.Life106Loader;
+import de.martindreier.gameoflife.game.io.input.MacrocellLoader;
+import de.martindreier.gameoflife.game.io.input.RLEFileLoader;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+import de.martindreier.gameoflife.game.packed.PackedGridTest;
+
+/**
+ * Tests for the {@link PatternWriter}s.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class PatternWriterTest {
+
+    /**
+     * The writers produce the expected text for a glider.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void glider() throws IOException {
+        PackedGrid grid = new PackedGrid(70, 4);
+        grid.setAlive(66, 1, true);
+        grid.setAlive(67, 2, true);
+        grid.setAlive(65, 3, true);
+        grid.setAlive(66, 3, true);
+        grid.setAlive(67, 3, true);
+        assertEquals("RLE", "x = 70, y = 4, rule = B3/S23\n$66bo$67bo$65b3o!\n", write(new RLEWriter(LifeLikeRule.CONWAY), grid));
+        assertEquals("Life 1.06", "#Life 1.06\n66 1\n67 2\n65 3\n66 3\n67 3\n", write(new Life106Writer(), grid));
+        assertEquals("Life 1.05", "#Life 1.05\n#R 23/36\n#P 64 1\n..*\n...*\n.***\n", write(new Life105Writer(LifeLikeRule.of(GameRule.createRule("23", "36"))), grid));
+    }
+
+    /**
+     * Long RLE lines are wrapped.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void lineLength() throws IOException {
+        PackedGrid grid = new PackedGrid(200, 1);
+        for (int x = 0; x < 200; x += 2) {
+            grid.setAlive(x, 0, true);
+        }
+        String[] lines = write(new RLEWriter(), grid).split("\n");
+        assertEquals("Header without rule", "x = 200, y = 1", lines[0]);
+        for (int line = 1; line < lines.length; line++) {
+            assertEquals("Line length " + line, line < lines.length - 1 ? RLEWriter.LINE_LENGTH : 60, lines[line].length());
+        }
+    }
+
+    /**
+     * Written files are loaded as the same grid, also with a buffer smaller than a line.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void roundTrip() throws IOException {
+        for (int seed = 0; seed < 4; seed++) {
+            PackedGrid grid = PackedGrid.of(PackedGridTest.randomGrid(64 * seed + 37, 23, seed));
+            // Empty rows at the end and a full row crossing the words
+            grid.fillRectangle(0, 20, grid.getWidth(), 3, false);
+            grid.fillRectangle(0, 2, grid.getWidth(), 1, true);
+            // Cells in the first row and column for the formats which do not keep the position
+            grid.setAlive(0, 0, true);
+            for (int bufferSize : new int[] { 7, PatternWriter.DEFAULT_BUFFER_SIZE }) {
+                Path rle = writeTemporaryFile(new RLEWriter(LifeLikeRule.CONWAY, bufferSize), grid);
+                assertEquals("RLE " + seed, grid, PackedGrid.of(new RLEFileLoader(rle)));
+                assertEquals("Life 1.06 " + seed, grid, load(new Life106Loader(writeTemporaryFile(new Life106Writer(bufferSize), grid)), grid));
+                assertEquals("Life 1.05 " + seed, grid, load(new Life105Loader(writeTemporaryFile(new Life105Writer(null, bufferSize), grid)), grid));
+                assertEquals("Macrocell " + seed, grid, load(new MacrocellLoader(writeTemporaryFile(new MacrocellWriter(LifeLikeRule.CONWAY, bufferSize), grid)), grid));
+            }
+        }
+    }
+
+    /**
+     * Repeated parts of a pattern are written only once in the macrocell format.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void repetitiveMacrocell() throws IOException {
+        PackedGrid grid = new PackedGrid(4096, 4096);
+        for (int y = 1; y < 4096; y += 8) {
+            for (int x = 0; x < 4096; x += 8) {
+                grid.setRun(x, y, 3, true);
+            }
+        }
+        String text = write(new MacrocellWriter(), grid);
+        assertEquals("Macrocell", "[M2] (game-of-life)\n$***$\n4 1 1 1 1\n5 2 2 2 2\n6 3 3 3 3\n7 4 4 4 4\n8 5 5 5 5\n9 6 6 6 6\n10 7 7 7 7\n11 8 8 8 8\n12 9 9 9 9\n", text);
+
+        Path file = writeTemporaryFile(new MacrocellWriter(), grid);
+        MacrocellLoader loader = new MacrocellLoader(file);
+        assertEquals("Cropped width", 4091, loader.getWidth());
+        assertEquals("Cropped height", 4089, loader.getHeight());
+        PackedGrid loaded = new PackedGrid(4096, 4096);
+        loaded.load(loader, 0, 1);
+        assertEquals("Loaded grid", grid, loaded);
+        assertEquals("Empty grid", "[M2] (game-of-life)\n$\n", write(new MacrocellWriter(), new PackedGrid(5, 5)));
+    }
+
+    /**
+     * The printer shows the generation and the cells.
+     */
+    @Test
+    public void printer() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new StandardOutGridPrinter(new PrintStream(output)).printGrid(new Grid(new StandardTestGrid()));
+        assertEquals("Printed grid", "Generation 0\n.....\n.....\n.***.\n.....\n.....\n", new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write a grid to a string.
+     *
+     * @param writer
+     *            The writer.
+     * @param grid
+     *            The grid.
+     * @return The text.
+     * @throws IOException
+     */
+    private static String write(PatternWriter writer, PackedGrid grid) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.write(grid, Channels.newChannel(output));
+        return new String(output.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Write a grid to a temporary file.
+     *
+     * @param writer
+     *            The writer.
+     * @param grid
+     *            The grid.
+     * @return The file.
+     * @throws IOException
+     */
+    private static Path writeTemporaryFile(PatternWriter writer, PackedGrid grid) throws IOException {
+        Path file = Files.createTempFile("pattern", ".life");
+        file.toFile().deleteOnExit();
+        writer.write(grid, file);
+        return file;
+    }
+
+    /**
+     * Load a pattern onto a grid of the same size as another grid.
+     *
+     * @param loader
+     *            The loader.
+     * @param size
+     *            Grid with the size.
+     * @return The loaded grid.
+     */
+    private static PackedGrid load(GridLoader loader, PackedGrid size) {
+        PackedGrid grid = new PackedGrid(size.getWidth(), size.getHeight());
+        grid.load(loader, 0, 0);
+        return grid;
+    }
+}
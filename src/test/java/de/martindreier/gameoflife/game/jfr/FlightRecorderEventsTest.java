@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.grids.StandardTestGrid;
+import de.martindreier.gameoflife.game.io.input.Life105Loader;
+import de.martindreier.gameoflife.game.io.input.RLEFileLoader;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Tests for the flight recorder events.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class FlightRecorderEventsTest {
+
+    /**
+     * The recording.
+     */
+    private Recording recording;
+
+    /**
+     * File for the recorded events.
+     */
+    private Path      recordingFile;
+
+    /**
+     * Start a recording of all game of life events.
+     *
+     * @throws IOException
+     */
+    @Before
+    public void startRecording() throws IOException {
+        this.recordingFile = Files.createTempFile("gameoflife", ".jfr");
+        this.recording = new Recording();
+        this.recording.enable(GenerationEvent.NAME).withoutThreshold();
+        this.recording.enable(StripeEvent.NAME).withoutThreshold();
+        this.recording.enable(ParseEvent.NAME).withoutThreshold();
+        this.recording.start();
+    }
+
+    /**
+     * Remove the recording.
+     *
+     * @throws IOException
+     */
+    @After
+    public void closeRecording() throws IOException {
+        this.recording.close();
+        Files.deleteIfExists(this.recordingFile);
+    }
+
+    /**
+     * Stop the recording and read the events with the given name.
+     *
+     * @param name
+     *            Event name.
+     * @return Recorded events.
+     * @throws IOException
+     */
+    private List<RecordedEvent> recordedEvents(String name) throws IOException {
+        this.recording.stop();
+        this.recording.dump(this.recordingFile);
+        return RecordingFile.readAllEvents(this.recordingFile).stream().filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The facade finds the flight recorder of the test runtime.
+     */
+    @Test
+    public void available() {
+        assertTrue("Flight recorder available", FlightRecorder.isAvailable());
+    }
+
+    /**
+     * Each iteration of a grid is recorded with the number of changed cells.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void gridGenerations() throws IOException {
+        Grid grid = new Grid(new StandardTestGrid());
+        grid.iterate(GameRule.CONWAY);
+        grid.iterate(GameRule.CONWAY);
+
+        List<RecordedEvent> events = this.recordedEvents(GenerationEvent.NAME);
+        assertEquals("One event per generation", 2, events.size());
+        for (int index = 0; index < events.size(); index++) {
+            RecordedEvent event = events.get(index);
+            assertEquals("Engine", "Grid", event.getString("engine"));
+            assertEquals("Width", 5, event.getInt("width"));
+            assertEquals("Height", 5, event.getInt("height"));
+            assertEquals("Generation", index + 1, event.getLong("generation"));
+            assertEquals("Cells changed", 4, event.getLong("cellsChanged"));
+            assertFalse("Sequential", event.getBoolean("parallel"));
+        }
+        assertEquals("Listeners are not required for events", 2, grid.getGeneration());
+    }
+
+    /**
+     * Parallel steps of a packed grid are recorded as a generation and one event per stripe.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void packedGridStripes() throws IOException {
+        PackedGrid grid = new PackedGrid(4096, 200);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            grid.step(LifeLikeRule.of(GameRule.CONWAY), pool);
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        List<RecordedEvent> stripes = this.recordedEvents(StripeEvent.NAME);
+        assertTrue("Grid is split into stripes", stripes.size() > 1);
+        assertEquals("Stripes cover all rows", 200, stripes.stream().mapToInt(event -> event.getInt("rows")).sum());
+        assertTrue("Stripes are not changed", stripes.stream().noneMatch(event -> event.getBoolean("changed")));
+
+        List<RecordedEvent> generations = RecordingFile.readAllEvents(this.recordingFile).stream()
+                .filter(event -> event.getEventType().getName().equals(GenerationEvent.NAME)).collect(Collectors.toList());
+        assertEquals("One generation", 1, generations.size());
+        assertEquals("Engine", "PackedGrid", generations.get(0).getString("engine"));
+        assertTrue("Parallel", generations.get(0).getBoolean("parallel"));
+    }
+
+    /**
+     * Loading an RLE file is recorded in two phases.
+     *
+     * @throws IOException
+     * @throws URISyntaxException
+     */
+    @Test
+    public void rleParsePhases() throws IOException, URISyntaxException {
+        new Grid(new RLEFileLoader(Paths.get(this.getClass().getResource("/blinker.rle").toURI())));
+
+        List<RecordedEvent> events = this.recordedEvents(ParseEvent.NAME);
+        assertEquals("Phases", "header,decode", events.stream().map(event -> event.getString("phase")).collect(Collectors.joining(",")));
+        for (RecordedEvent event : events) {
+            assertEquals("Format", "RLE", event.getString("format"));
+            assertEquals("Width", 5, event.getInt("width"));
+            assertEquals("Height", 5, event.getInt("height"));
+        }
+    }
+
+    /**
+     * Each block of a Life 1.05 file is recorded.
+     *
+     * @throws IOException
+     * @throws URISyntaxException
+     */
+    @Test
+    public void life105Blocks() throws IOException, URISyntaxException {
+        new Life105Loader(Paths.get(this.getClass().getResource("/blinker_multi.lif").toURI()));
+
+        List<RecordedEvent> events = this.recordedEvents(ParseEvent.NAME);
+        assertEquals("One event per block", 2, events.size());
+        for (RecordedEvent event : events) {
+            assertEquals("Format", "Life 1.05", event.getString("format"));
+            assertEquals("Phase", "block", event.getString("phase"));
+            assertEquals("Width", 5, event.getInt("width"));
+            assertEquals("Height", 5, event.getInt("height"));
+        }
+    }
+}
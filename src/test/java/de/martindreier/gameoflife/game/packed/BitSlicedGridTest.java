@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.packed;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.GameRule;
+
+/**
+ * Tests for the {@link BitSlicedGrid}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class BitSlicedGridTest {
+
+    /**
+     * Fill all lanes with different random content.
+     *
+     * @param lanes
+     *            The bit-sliced grid.
+     * @return Packed copies of the lanes.
+     */
+    private static PackedGrid[] fillRandom(BitSlicedGrid lanes) {
+        PackedGrid[] grids = new PackedGrid[BitSlicedGrid.LANES];
+        for (int lane = 0; lane < BitSlicedGrid.LANES; lane++) {
+            grids[lane] = PackedGrid.of(PackedGridTest.randomGrid(lanes.getWidth(), lanes.getHeight(), lane));
+            lanes.setLane(lane, grids[lane]);
+        }
+        return grids;
+    }
+
+    /**
+     * All lanes follow the same rule.
+     */
+    @Test
+    public void uniformRule() {
+        BitSlicedGrid lanes = new BitSlicedGrid(20, 13);
+        PackedGrid[] grids = fillRandom(lanes);
+        for (int generation = 1; generation <= 20; generation++) {
+            long changed = lanes.step(LifeLikeRule.CONWAY);
+            for (int lane = 0; lane < BitSlicedGrid.LANES; lane++) {
+                boolean laneChanged = grids[lane].step(LifeLikeRule.CONWAY);
+                assertEquals(String.format("Lane %d, generation %d", lane, generation), grids[lane], lanes.getLane(lane));
+                assertEquals(String.format("Change of lane %d, generation %d", lane, generation), laneChanged, (changed & (1L << lane)) != 0);
+            }
+        }
+    }
+
+    /**
+     * Each lane follows its own rule.
+     */
+    @Test
+    public void perLaneRules() {
+        BitSlicedGrid lanes = new BitSlicedGrid(9, 17);
+        PackedGrid[] grids = fillRandom(lanes);
+        LifeLikeRule[] rules = new LifeLikeRule[BitSlicedGrid.LANES];
+        for (int lane = 0; lane < BitSlicedGrid.LANES; lane++) {
+            rules[lane] = new LifeLikeRule(lane * 7 & 0x1fe, lane * 13 & 0x1ff);
+            lanes.setRule(lane, rules[lane]);
+        }
+        for (int generation = 1; generation <= 10; generation++) {
+            lanes.step();
+            for (int lane = 0; lane < BitSlicedGrid.LANES; lane++) {
+                grids[lane].step(rules[lane]);
+                assertEquals(String.format("Lane %d (%s), generation %d", lane, rules[lane], generation), grids[lane], lanes.getLane(lane));
+            }
+        }
+    }
+
+    /**
+     * Test access to single cells and lanes.
+     */
+    @Test
+    public void cellAccess() {
+        BitSlicedGrid lanes = new BitSlicedGrid(3, 3);
+        lanes.set(5, 1, 0, CellState.ALIVE);
+        lanes.set(5, 1, 1, CellState.ALIVE);
+        lanes.set(5, 1, 2, CellState.ALIVE);
+        lanes.set(63, 0, 0, CellState.ALIVE);
+        assertEquals("Cell word", 1L << 5, lanes.getCell(1, 1));
+        assertEquals("Population of lane 5", 3, lanes.getPopulation(5));
+        assertEquals("Population of lane 63", 1, lanes.getPopulation(63));
+
+        long[] snapshot = new long[9];
+        lanes.copyCellsTo(snapshot);
+        lanes.step(LifeLikeRule.of(GameRule.CONWAY));
+        assertEquals("Blinker rotated", CellState.ALIVE, lanes.get(5, 0, 1));
+        assertEquals("Single cell died", CellState.DEAD, lanes.get(63, 0, 0));
+        assertEquals("Changed lanes", 1L << 5 | 1L << 63, lanes.getDifferingLanes(snapshot));
+    }
+
+    /**
+     * Lane numbers are limited.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLane() {
+        new BitSlicedGrid(3, 3).getPopulation(64);
+    }
+
+    /**
+     * Packed grids must have the same size.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void laneSizeMismatch() {
+        new BitSlicedGrid(3, 3).setLane(0, new PackedGrid(3, 4));
+    }
+}
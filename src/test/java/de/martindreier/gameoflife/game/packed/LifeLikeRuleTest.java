@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.packed;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.GameRule;
+
+/**
+ * Tests for the {@link LifeLikeRule}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class LifeLikeRuleTest {
+
+    /**
+     * Test conversion from game rules.
+     */
+    @Test
+    public void fromGameRule() {
+        assertEquals("Conway's rule", LifeLikeRule.CONWAY, LifeLikeRule.of(GameRule.CONWAY));
+        LifeLikeRule highLife = LifeLikeRule.of(GameRule.createRule("23", "36"));
+        assertEquals("Birth mask", 1 << 3 | 1 << 6, highLife.getBirthMask());
+        assertEquals("Survival mask", 1 << 2 | 1 << 3, highLife.getSurvivalMask());
+        assertEquals("Rule notation", "B36/S23", highLife.toString());
+    }
+
+    /**
+     * Test conversion into game rules.
+     */
+    @Test
+    public void toGameRule() {
+        LifeLikeRule rule = new LifeLikeRule(1 << 0 | 1 << 8, 1 << 4);
+        GameRule gameRule = rule.toGameRule();
+        for (int neighbors = 0; neighbors <= 8; neighbors++) {
+            assertEquals("Birth with " + neighbors, neighbors == 0 || neighbors == 8 ? CellState.ALIVE : CellState.DEAD, gameRule.getNewState(CellState.DEAD, neighbors));
+            assertEquals("Survival with " + neighbors, neighbors == 4 ? CellState.ALIVE : CellState.DEAD, gameRule.getNewState(CellState.ALIVE, neighbors));
+        }
+        assertEquals("Round trip", rule, LifeLikeRule.of(gameRule));
+    }
+
+    /**
+     * Test neighbor counting for all combinations of neighbors.
+     */
+    @Test
+    public void allNeighborCombinations() {
+        LifeLikeRule[] rules = { LifeLikeRule.CONWAY, new LifeLikeRule(0x1ff, 0), new LifeLikeRule(0x155, 0xaa) };
+        for (LifeLikeRule rule : rules) {
+            GameRule gameRule = rule.toGameRule();
+            for (int neighbors = 0; neighbors < 256; neighbors++) {
+                for (int alive = 0; alive <= 1; alive++) {
+                    long[] words = new long[8];
+                    for (int bit = 0; bit < 8; bit++) {
+                        words[bit] = (neighbors & (1 << bit)) != 0 ? -1L : 0L;
+                    }
+                    long result = rule.apply(alive == 1 ? -1L : 0L, words[0], words[1], words[2], words[3], words[4], words[5], words[6], words[7]);
+                    CellState expected = gameRule.getNewState(alive == 1 ? CellState.ALIVE : CellState.DEAD, Integer.bitCount(neighbors));
+                    assertEquals(String.format("%s, neighbors %s, alive %d", rule, Integer.toBinaryString(neighbors), alive), expected == CellState.ALIVE ? -1L : 0L, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Neighbor counts above 8 are not allowed.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMask() {
+        new LifeLikeRule(1 << 9, 0);
+    }
+}
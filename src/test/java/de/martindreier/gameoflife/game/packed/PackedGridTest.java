@@ -0,0 +1,440 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.packed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.GridTest;
+import de.martindreier.gameoflife.game.PasteMode;
+import de.martindreier.gameoflife.game.grids.StandardTestGrid;
+import de.martindreier.gameoflife.game.io.CellSink;
+import de.martindreier.gameoflife.game.io.GridLoader;
+
+/**
+ * Tests for the {@link PackedGrid}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class PackedGridTest {
+
+    /**
+     * Create a grid with random content.
+     *
+     * @param width
+     *            Grid width.
+     * @param height
+     *            Grid height.
+     * @param seed
+     *            Random seed.
+     * @return Random grid.
+     */
+    public static Grid randomGrid(int width, int height, long seed) {
+        Random random = new Random(seed);
+        Grid grid = new Grid(width, height);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (random.nextInt(3) == 0) {
+                    grid.set(x, y, CellState.ALIVE);
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Check that a packed grid has the same content as a grid.
+     *
+     * @param message
+     *            Assertion message.
+     * @param expected
+     *            Expected content.
+     * @param actual
+     *            Packed grid under test.
+     */
+    public static void assertSameContent(String message, Grid expected, PackedGrid actual) {
+        assertEquals(message + ": width", expected.getWidth(), actual.getWidth());
+        assertEquals(message + ": height", expected.getHeight(), actual.getHeight());
+        for (int x = 0; x < expected.getWidth(); x++) {
+            for (int y = 0; y < expected.getHeight(); y++) {
+                assertEquals(String.format("%s: cell (%d,%d)", message, x, y), expected.get(x, y), actual.get(x, y));
+            }
+        }
+    }
+
+    /**
+     * Compare iterations of packed grids with regular grids.
+     */
+    @Test
+    public void sameResultAsGrid() {
+        int[][] sizes = { { 5, 5 }, { 1, 1 }, { 63, 7 }, { 64, 3 }, { 65, 9 }, { 130, 20 }, { 3, 70 } };
+        GameRule[] rules = { GameRule.CONWAY, GameRule.createRule("23", "36"), GameRule.createRule("", "2"), GameRule.createRule("012345678", "0") };
+        for (int[] size : sizes) {
+            for (GameRule rule : rules) {
+                Grid grid = randomGrid(size[0], size[1], size[0] * 31 + size[1]);
+                PackedGrid packed = PackedGrid.of(grid);
+                LifeLikeRule packedRule = LifeLikeRule.of(rule);
+                for (int generation = 1; generation <= 10; generation++) {
+                    grid.iterate(rule);
+                    packed.step(packedRule);
+                    assertSameContent(String.format("%dx%d, %s, generation %d", size[0], size[1], packedRule, generation), grid, packed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that parallel steps have the same result as sequential steps, for grids with one and with many stripes.
+     */
+    @Test
+    public void parallelStep() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int[] size : new int[][] { { 10, 10 }, { 200, 300 }, { 4100, 200 } }) {
+                PackedGrid sequential = PackedGrid.of(randomGrid(size[0], size[1], size[1]));
+                PackedGrid parallel = new PackedGrid(sequential);
+                for (int generation = 1; generation <= 20; generation++) {
+                    assertEquals("Change flag", sequential.step(LifeLikeRule.CONWAY), parallel.step(LifeLikeRule.CONWAY, pool));
+                    assertEquals(String.format("%dx%d, generation %d", size[0], size[1], generation), sequential, parallel);
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test a blinker.
+     */
+    @Test
+    public void blinker() {
+        PackedGrid packed = PackedGrid.of(new Grid(new StandardTestGrid()));
+        assertTrue("Blinker changes", packed.step(LifeLikeRule.CONWAY));
+        Grid grid = new Grid(5, 5);
+        packed.copyTo(grid);
+        GridTest.checkCellStates(grid, true);
+        assertEquals("Population", 3, packed.getPopulation());
+    }
+
+    /**
+     * Test that still lifes are reported as unchanged.
+     */
+    @Test
+    public void stillLife() {
+        PackedGrid packed = new PackedGrid(4, 4);
+        packed.setAlive(1, 1, true);
+        packed.setAlive(1, 2, true);
+        packed.setAlive(2, 1, true);
+        packed.setAlive(2, 2, true);
+        assertFalse("Block does not change", packed.step(LifeLikeRule.CONWAY));
+        assertEquals("Population", 4, packed.getPopulation());
+    }
+
+    /**
+     * The cycle of a blinker is detected with and without comparing the cells, also when the detector is reused for a
+     * larger grid.
+     */
+    @Test
+    public void cycleDetection() {
+        for (boolean exact : new boolean[] { false, true }) {
+            CycleDetector detector = new CycleDetector(8, exact);
+            for (int size : new int[] { 5, 130 }) {
+                PackedGrid packed = new PackedGrid(size, size);
+                packed.setRun(1, 2, 3);
+                detector.start(packed);
+                while (!detector.next(packed, packed.step(LifeLikeRule.CONWAY))) {
+                    // Run until the cycle is found
+                }
+                assertEquals("Period (exact: " + exact + ", size " + size + ")", 2, detector.getPeriod());
+                assertEquals("Cycle start (exact: " + exact + ", size " + size + ")", 0, detector.getCycleStart());
+                assertEquals("Generation (exact: " + exact + ", size " + size + ")", 2, detector.getGeneration());
+            }
+        }
+    }
+
+    /**
+     * Test setting bits across word boundaries.
+     */
+    @Test
+    public void orBits() {
+        PackedGrid packed = new PackedGrid(100, 2);
+        packed.orBits(60, 0, 0b11111111L, 8);
+        for (int x = 0; x < 100; x++) {
+            assertEquals(String.format("Cell %d", x), x >= 60 && x < 68, packed.isAlive(x, 0));
+        }
+
+        // Bits beyond the count and beyond the grid width are ignored
+        packed.orBits(90, 1, -1L, 64);
+        assertEquals("Population", 18, packed.getPopulation());
+    }
+
+    /**
+     * Runs set the same cells as setting each cell, within a word and across words.
+     */
+    @Test
+    public void setRun() {
+        PackedGrid runs = new PackedGrid(200, 3);
+        PackedGrid cells = new PackedGrid(200, 3);
+        Random random = new Random(11);
+        for (int index = 0; index < 500; index++) {
+            int y = random.nextInt(3);
+            int x = random.nextInt(200);
+            int length = random.nextInt(200 - x + 1);
+            boolean alive = random.nextInt(3) > 0;
+            runs.setRun(x, y, length, alive);
+            for (int column = x; column < x + length; column++) {
+                cells.setAlive(column, y, alive);
+            }
+            assertEquals("Run " + length + " at (" + x + "," + y + ")", cells, runs);
+        }
+    }
+
+    /**
+     * Runs must not extend beyond the grid.
+     */
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void setRunOutsideOfGrid() {
+        new PackedGrid(70, 2).setRun(60, 1, 11, true);
+    }
+
+    /**
+     * Row bitmaps set the same cells as setting each cell, in the grid and in patterns loaded at aligned and unaligned
+     * positions, and when the row starts at an aligned or unaligned column.
+     */
+    @Test
+    public void setRow() {
+        Random random = new Random(12);
+        long[] bits = new long[] { random.nextLong(), random.nextLong(), random.nextLong() & 0xFFFFFFL };
+        for (int left : new int[] { 0, 64, 5, 63 }) {
+            PackedGrid rows = new PackedGrid(300, 4);
+            PackedGrid cells = new PackedGrid(300, 4);
+            rows.load(new BitmapLoader(bits), left, 2);
+            for (int column = 0; column < 3 * Long.SIZE; column++) {
+                if ((bits[column / Long.SIZE] & 1L << column) != 0) {
+                    cells.setAlive(left + column, 2, true);
+                }
+            }
+            assertEquals("Row at " + left, cells, rows);
+            PackedGrid direct = new PackedGrid(300, 4);
+            direct.setRow(2, left, bits);
+            assertEquals("Row set directly at " + left, cells, direct);
+        }
+        PackedGrid grid = new PackedGrid(200, 1);
+        grid.setRow(0, new long[] { 1L, 0L, 0L, 1L << 7, 0L, 0L });
+        assertEquals("Population", 2, grid.getPopulation());
+        assertTrue("First cell", grid.isAlive(0, 0));
+        assertTrue("Last cell", grid.isAlive(199, 0));
+    }
+
+    /**
+     * Rows must not extend beyond the grid.
+     */
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void setRowOutsideOfGrid() {
+        new PackedGrid(200, 1).setRow(0, new long[] { 0L, 0L, 0L, 1L << 8 });
+    }
+
+    /**
+     * Loader which pushes a single row bitmap.
+     *
+     * @author D043987
+     *
+     */
+    private static class BitmapLoader implements GridLoader {
+
+        /**
+         * The row.
+         */
+        private final long[] bits;
+
+        /**
+         * Create a new loader.
+         *
+         * @param bits
+         *            The row.
+         */
+        BitmapLoader(long[] bits) {
+            this.bits = bits;
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.GridLoader#setInitialState(de.martindreier.gameoflife.game.Grid)
+         */
+        @Override
+        public void setInitialState(Grid grid) {
+            this.load(grid);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.GridLoader#load(de.martindreier.gameoflife.game.io.CellSink)
+         */
+        @Override
+        public void load(CellSink sink) {
+            sink.setRow(0, this.bits);
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.GridLoader#getWidth()
+         */
+        @Override
+        public int getWidth() {
+            return this.bits.length * Long.SIZE;
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.GridLoader#getHeight()
+         */
+        @Override
+        public int getHeight() {
+            return 1;
+        }
+
+        /**
+         * @see de.martindreier.gameoflife.game.io.GridLoader#getGameRule()
+         */
+        @Override
+        public Optional<GameRule> getGameRule() {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Rectangles, cleared regions and pasted bitmaps change the same cells as in a {@link Grid}, for all alignments of
+     * the rectangle to the words of the grid.
+     */
+    @Test
+    public void bulkMutations() {
+        Random random = new Random(6);
+        PackedGrid packed = new PackedGrid(300, 12);
+        Grid grid = new Grid(300, 12);
+        for (int index = 0; index < 500; index++) {
+            int width = random.nextInt(200);
+            int height = random.nextInt(6);
+            int x = random.nextInt(300 - width + 1);
+            int y = random.nextInt(12 - height + 1);
+            int operation = random.nextInt(5);
+            if (operation == 0) {
+                boolean alive = random.nextBoolean();
+                packed.fillRectangle(x, y, width, height, alive);
+                grid.fillRectangle(x, y, width, height, alive ? CellState.ALIVE : CellState.DEAD);
+            } else if (operation == 1) {
+                packed.clearRegion(x, y, width, height);
+                grid.clearRegion(x, y, width, height);
+            } else {
+                PasteMode mode = PasteMode.values()[operation - 2];
+                PackedGrid pattern = PackedGrid.of(randomGrid(Math.max(1, width), Math.max(1, height), index));
+                if (x + pattern.getWidth() > 300 || y + pattern.getHeight() > 12) {
+                    continue;
+                }
+                int stride = (pattern.getWidth() + 63) / 64;
+                long[] bitmap = new long[stride * pattern.getHeight()];
+                for (int row = 0; row < pattern.getHeight(); row++) {
+                    for (int word = 0; word < stride; word++) {
+                        bitmap[row * stride + word] = pattern.getWord(word, row);
+                    }
+                    // Bits beyond the width are ignored
+                    if (pattern.getWidth() % 64 != 0) {
+                        bitmap[row * stride + stride - 1] |= -1L << pattern.getWidth();
+                    }
+                }
+                if (random.nextBoolean()) {
+                    packed.paste(x, y, pattern, mode);
+                } else {
+                    packed.paste(x, y, pattern.getWidth(), pattern.getHeight(), bitmap, mode);
+                }
+                grid.paste(x, y, pattern.getWidth(), pattern.getHeight(), bitmap, mode);
+            }
+            assertEquals("Operation " + index, PackedGrid.of(grid), packed);
+        }
+    }
+
+    /**
+     * Rectangles must not extend beyond the grid.
+     */
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void pasteOutsideOfGrid() {
+        new PackedGrid(70, 2).paste(60, 1, 11, 1, new long[1], PasteMode.XOR);
+    }
+
+    /**
+     * Test copies and content hashes.
+     */
+    @Test
+    public void copy() {
+        PackedGrid packed = PackedGrid.of(randomGrid(70, 10, 1));
+        PackedGrid copy = new PackedGrid(packed);
+        assertEquals("Copies are equal", packed, copy);
+        assertEquals("Same content hash", packed.contentHash(), copy.contentHash());
+
+        copy.setAlive(69, 9, !copy.isAlive(69, 9));
+        assertFalse("Changed copy differs", packed.equals(copy));
+        assertFalse("Changed copy has a different hash", packed.contentHash() == copy.contentHash());
+
+        copy.copyFrom(packed);
+        assertEquals("Copy restored", packed, copy);
+        copy.clear();
+        assertTrue("Cleared grid is empty", copy.isEmpty());
+    }
+
+    /**
+     * Test loading a pattern at an offset, without an intermediate {@link Grid}.
+     */
+    @Test
+    public void loadAtOffset() {
+        PackedGrid packed = new PackedGrid(100, 8);
+        packed.load(new StandardTestGrid(), 70, 3);
+        assertEquals("Population", 3, packed.getPopulation());
+        assertTrue("Left cell", packed.isAlive(71, 5));
+        assertTrue("Right cell", packed.isAlive(73, 5));
+        assertEquals("Loaded without offset", PackedGrid.of(new Grid(new StandardTestGrid())), PackedGrid.of(new StandardTestGrid()));
+    }
+
+    /**
+     * Test loading a pattern which does not fit into the grid.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void loadOutsideOfGrid() {
+        new PackedGrid(100, 8).load(new StandardTestGrid(), 96, 0);
+    }
+
+    /**
+     * Test access outside of the grid.
+     */
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void outsideOfGrid() {
+        new PackedGrid(64, 2).get(64, 0);
+    }
+
+    /**
+     * Test for invalid grid size.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSize() {
+        new PackedGrid(0, 5);
+    }
+}
@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.GenerationStatistics;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.GridTest;
+import de.martindreier.gameoflife.game.grids.StandardTestGrid;
+
+/**
+ * Tests for the {@link SimulationService}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class SimulationServiceTest {
+
+    /**
+     * Maximum time to wait for a simulation to reach a state.
+     */
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Service under test.
+     */
+    private SimulationService service;
+
+    /**
+     * Create the service under test.
+     */
+    @Before
+    public void createService() {
+        this.service = new SimulationService(2, true);
+    }
+
+    /**
+     * Shut down the service under test.
+     */
+    @After
+    public void closeService() {
+        this.service.close();
+    }
+
+    /**
+     * Wait until a condition is met.
+     *
+     * @param message
+     *            Failure message.
+     * @param condition
+     *            The condition.
+     * @throws InterruptedException
+     */
+    private static void waitFor(String message, BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > end) {
+                fail(message);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Test that a simulation advances its grid.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void runSimulation() throws InterruptedException {
+        Simulation simulation = this.service.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ZERO);
+        waitFor("Simulation advances", () -> simulation.getGeneration() >= 10);
+
+        simulation.pause();
+        simulation.inspect(grid -> GridTest.checkCellStates(grid, simulation.getGeneration() % 2 == 1));
+        assertNull("No failure", simulation.getFailure());
+    }
+
+    /**
+     * Test pausing and resuming a simulation.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void pauseAndResume() throws InterruptedException {
+        Simulation simulation = this.service.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ofMillis(1));
+        waitFor("Simulation advances", () -> simulation.getGeneration() >= 3);
+
+        simulation.pause();
+        assertTrue("Simulation paused", simulation.isPaused());
+        long generation = simulation.getGeneration();
+        Thread.sleep(50);
+        assertEquals("Paused simulation does not advance", generation, simulation.getGeneration());
+
+        simulation.resume();
+        assertFalse("Simulation resumed", simulation.isPaused());
+        waitFor("Resumed simulation advances", () -> simulation.getGeneration() > generation + 3);
+    }
+
+    /**
+     * Test pacing of a simulation.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void pacing() throws InterruptedException {
+        Simulation simulation = this.service.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ofMillis(100));
+        Thread.sleep(250);
+        assertTrue("Simulation is paced", simulation.getGeneration() <= 3);
+
+        simulation.setStepInterval(Duration.ZERO);
+        waitFor("Simulation runs faster", () -> simulation.getGeneration() >= 50);
+        assertEquals("Step interval updated", Duration.ZERO, simulation.getStepInterval());
+    }
+
+    /**
+     * Test cancelling a simulation.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void cancel() throws InterruptedException {
+        Simulation simulation = this.service.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ZERO);
+        assertEquals("Simulation registered", simulation, this.service.getSimulation(simulation.getId()));
+
+        simulation.cancel();
+        assertTrue("Simulation cancelled", simulation.isCancelled());
+        assertEquals("Simulation removed", 0, this.service.getSimulationCount());
+        long generation = simulation.getGeneration();
+        Thread.sleep(50);
+        assertEquals("Cancelled simulation does not advance", generation, simulation.getGeneration());
+    }
+
+    /**
+     * Cancelled simulations cannot be resumed.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void resumeCancelled() {
+        Simulation simulation = this.service.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ZERO);
+        simulation.cancel();
+        simulation.resume();
+    }
+
+    /**
+     * A failing step terminates the simulation.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void failingRule() throws InterruptedException {
+        GameRule failingRule = (state, neighbors) -> {
+            throw new IllegalStateException("Test failure");
+        };
+        Simulation simulation = this.service.start(new Grid(new StandardTestGrid()), failingRule, Duration.ZERO);
+        waitFor("Simulation terminated", simulation::isCancelled);
+        assertTrue("Failure recorded", simulation.getFailure() instanceof IllegalStateException);
+    }
+
+    /**
+     * Run many simulations at once.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void manySimulations() throws InterruptedException {
+        List<Simulation> simulations = new ArrayList<>();
+        for (int index = 0; index < 2000; index++) {
+            simulations.add(this.service.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ofMillis(1)));
+        }
+        assertEquals("All simulations registered", 2000, this.service.getSimulationCount());
+        waitFor("All simulations advance", () -> simulations.stream().allMatch(simulation -> simulation.getGeneration() >= 5));
+    }
+
+    /**
+     * The service does not accept simulations after it was closed.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void startAfterClose() {
+        this.service.close();
+        this.service.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ZERO);
+    }
+
+    /**
+     * Closing from an interrupted thread does not wait and keeps the interrupt flag.
+     */
+    @Test
+    public void closeInterrupted() {
+        this.service.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ZERO);
+        Thread.currentThread().interrupt();
+        try {
+            this.service.close();
+            assertTrue("Interrupt flag restored", Thread.currentThread().isInterrupted());
+        }
+        finally {
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Simulations are exposed as MBeans while they are running.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void mbeans() throws InterruptedException {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        Simulation first = this.service.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ZERO);
+        this.service.registerMBeans(server);
+        Simulation second = this.service.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ofMillis(1));
+        assertTrue("Existing simulation registered", server.isRegistered(this.service.objectName(first.getId())));
+        assertTrue("New simulation registered", server.isRegistered(this.service.objectName(second.getId())));
+
+        SimulationMXBean bean = JMX.newMXBeanProxy(server, this.service.objectName(first.getId()), SimulationMXBean.class);
+        waitFor("Steps are measured", () -> bean.getGenerationsPerSecond() > 0);
+        bean.pause();
+        assertTrue("Paused through MBean", first.isPaused());
+        assertEquals("Generation", first.getGeneration(), bean.getGeneration());
+        assertEquals("Engine", "Grid", bean.getEngineType());
+        assertEquals("Width", 5, bean.getWidth());
+        assertEquals("Height", 5, bean.getHeight());
+        assertEquals("Population", 3, bean.getPopulation());
+        int[] expectedBox = first.getGeneration() % 2 == 0 ? new int[] { 1, 2, 3, 1 } : new int[] { 2, 1, 1, 3 };
+        assertArrayEquals("Bounding box of the blinker", expectedBox, bean.getBoundingBox());
+        assertTrue("Memory footprint", bean.getMemoryFootprint() > 25);
+        assertTrue("Last step latency", bean.getLastStepLatencyNanos() > 0);
+        assertTrue("Percentiles are ordered", bean.getStepLatencyMedianNanos() <= bean.getStepLatency90thPercentileNanos());
+        assertTrue("Percentiles are ordered", bean.getStepLatency90thPercentileNanos() <= bean.getStepLatency99thPercentileNanos());
+        assertEquals("Unlimited step rate", Double.POSITIVE_INFINITY, bean.getStepRate(), 0);
+
+        bean.setStepRate(20);
+        assertEquals("Step interval changed through MBean", Duration.ofMillis(50), first.getStepInterval());
+        long generation = first.getGeneration();
+        bean.resume();
+        waitFor("Resumed through MBean", () -> first.getGeneration() > generation);
+
+        first.cancel();
+        assertFalse("Cancelled simulation unregistered", server.isRegistered(this.service.objectName(first.getId())));
+    }
+
+    /**
+     * Simulations of several services with the same IDs are registered at the same MBean server.
+     */
+    @Test
+    public void mbeansOfSeveralServices() {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        this.service.registerMBeans(server);
+        Simulation first = this.service.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ofMillis(1));
+        try (SimulationService other = new SimulationService(1, false)) {
+            other.registerMBeans(server);
+            Simulation second = other.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ofMillis(1));
+            assertEquals("Same simulation ID", first.getId(), second.getId());
+            assertTrue("Simulation of the first service registered", server.isRegistered(this.service.objectName(first.getId())));
+            assertTrue("Simulation of the second service registered", server.isRegistered(other.objectName(second.getId())));
+            assertEquals("Simulation of the second service started", 1, other.getSimulationCount());
+        }
+    }
+
+    /**
+     * A simulation which cannot be registered is not kept by the service.
+     *
+     * @throws JMException
+     */
+    @Test
+    public void mbeanRegistrationFails() throws JMException {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        this.service.registerMBeans(server);
+        server.registerMBean(new SimulationMonitor(null), this.service.objectName(1));
+        try {
+            this.service.start(new Grid(new StandardTestGrid()), GameRule.CONWAY, Duration.ofMillis(1));
+            fail("Name of the simulation is already taken");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("Simulation removed", 0, this.service.getSimulationCount());
+            assertNull("No simulation with the ID", this.service.getSimulation(1));
+        }
+    }
+
+    /**
+     * Percentiles of the step latencies use the nearest rank.
+     */
+    @Test
+    public void latencyPercentiles() {
+        SimulationMonitor monitor = new SimulationMonitor(null);
+        assertEquals("No steps measured", 0, monitor.latencyPercentile(50));
+        for (long latency = 100; latency >= 1; latency--) {
+            monitor.generationCompleted(new GenerationStatistics(101 - latency, 1, 0, latency, 0, -1));
+        }
+        assertEquals("Median", 50, monitor.getStepLatencyMedianNanos());
+        assertEquals("90th percentile", 90, monitor.getStepLatency90thPercentileNanos());
+        assertEquals("99th percentile", 99, monitor.getStepLatency99thPercentileNanos());
+        assertEquals("Last step", 1, monitor.getLastStepLatencyNanos());
+    }
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.soup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.CellState;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+import de.martindreier.gameoflife.test.util.MultiInputExceptionCatcher;
+
+/**
+ * Tests for the {@link RandomFill}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class RandomFillTest {
+
+    /**
+     * The fraction of alive cells matches the density.
+     */
+    @Test
+    public void density() {
+        for (double density : new double[] { 0.01, 0.25, 0.35, 0.5, 0.9 }) {
+            RandomFill fill = new RandomFill(density, 3);
+            SplittableRandom random = new SplittableRandom(4);
+            long alive = 0;
+            for (int index = 0; index < 20000; index++) {
+                alive += Long.bitCount(fill.nextWord(random));
+            }
+            assertEquals("Density " + density, density, alive / (20000.0 * 64), 0.005);
+        }
+        assertEquals("No cells alive", 0, filled(new RandomFill(0, 1), 100, 70).getPopulation());
+        assertEquals("All cells alive", 100 * 70, filled(new RandomFill(1, 1), 100, 70).getPopulation());
+        assertEquals("Density is rounded", 0.5, new RandomFill(0.5 + 1e-12, 0).getDensity(), 0);
+    }
+
+    /**
+     * The content depends on the seed and the region size only, not on the grid type or the pool.
+     */
+    @Test
+    public void reproducible() {
+        RandomFill fill = new RandomFill(0.35, 11);
+        PackedGrid sequential = new PackedGrid(300, 200);
+        fill.fill(sequential);
+        assertEquals("Same seed, same content", sequential, filled(fill, 300, 200));
+        assertFalse("Different seed, different content", sequential.equals(filled(new RandomFill(0.35, 12), 300, 200)));
+
+        Grid grid = new Grid(300, 200);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            PackedGrid parallel = new PackedGrid(300, 200);
+            fill.fill(parallel, pool);
+            assertEquals("Parallel fill", sequential, parallel);
+            fill.fill(grid, pool);
+        }
+        finally {
+            pool.shutdown();
+        }
+        assertEquals("Grid fill", sequential, PackedGrid.of(grid));
+    }
+
+    /**
+     * Only the cells of the region are replaced.
+     */
+    @Test
+    public void region() {
+        RandomFill fill = new RandomFill(0.5, 5);
+        PackedGrid pattern = new PackedGrid(90, 70);
+        fill.fill(pattern);
+
+        PackedGrid packed = new PackedGrid(200, 100);
+        packed.fillRectangle(0, 0, 200, 100, true);
+        fill.fill(packed, 37, 13, 90, 70);
+        Grid grid = new Grid(200, 100);
+        grid.fillRectangle(0, 0, 200, 100, CellState.ALIVE);
+        fill.fill(grid, 37, 13, 90, 70);
+
+        for (int x = 0; x < 200; x++) {
+            for (int y = 0; y < 100; y++) {
+                boolean inside = x >= 37 && x < 127 && y >= 13 && y < 83;
+                boolean expected = !inside || pattern.isAlive(x - 37, y - 13);
+                assertEquals(String.format("Packed cell (%d,%d)", x, y), expected, packed.isAlive(x, y));
+                assertEquals(String.format("Cell (%d,%d)", x, y), expected, grid.get(x, y) == CellState.ALIVE);
+            }
+        }
+    }
+
+    /**
+     * Invalid densities and regions are rejected.
+     */
+    @Test
+    public void invalidArguments() {
+        MultiInputExceptionCatcher.execute(new String[] { "-0.1", "1.5", "NaN" }, density -> new RandomFill(Double.parseDouble(density), 0), IllegalArgumentException.class);
+        try {
+            new RandomFill(0.5, 0).fill(new PackedGrid(10, 10), 5, 5, 6, 1);
+            fail("Region outside of the grid accepted");
+        }
+        catch (ArrayIndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Fill a new packed grid.
+     *
+     * @param fill
+     *            The fill.
+     * @param width
+     *            Grid width.
+     * @param height
+     *            Grid height.
+     * @return The filled grid.
+     */
+    private static PackedGrid filled(RandomFill fill, int width, int height) {
+        PackedGrid grid = new PackedGrid(width, height);
+        fill.fill(grid);
+        return grid;
+    }
+}
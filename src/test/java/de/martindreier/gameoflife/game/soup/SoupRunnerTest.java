@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.soup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.Grid;
+import de.martindreier.gameoflife.game.grids.StandardTestGrid;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+
+/**
+ * Tests for the {@link SoupRunner}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class SoupRunnerTest {
+
+    /**
+     * A blinker has period 2 and is stable from the start.
+     */
+    @Test
+    public void blinker() {
+        SoupRunner runner = new SoupRunner(GameRule.CONWAY);
+        SoupResult result = runner.evolve(PackedGrid.of(new Grid(new StandardTestGrid())));
+        assertTrue("Blinker is stable", result.isStabilized());
+        assertEquals("Lifetime", 0, result.getLifetime());
+        assertEquals("Period", 2, result.getPeriod());
+        assertEquals("Population", 3, result.getFinalPopulation());
+    }
+
+    /**
+     * A single cell dies in the first generation.
+     */
+    @Test
+    public void dyingCell() {
+        SoupRunner runner = new SoupRunner(GameRule.CONWAY);
+        PackedGrid board = new PackedGrid(5, 5);
+        board.setAlive(2, 2, true);
+        SoupResult result = runner.evolve(board);
+        assertEquals("Lifetime", 1, result.getLifetime());
+        assertEquals("Period", 1, result.getPeriod());
+        assertEquals("Population", 0, result.getFinalPopulation());
+    }
+
+    /**
+     * Soups which exceed the generation limit are not stabilized.
+     */
+    @Test
+    public void generationLimit() {
+        SoupRunner runner = new SoupRunner(GameRule.CONWAY);
+        runner.setMaxGenerations(3);
+        runner.setMaxPeriod(1);
+        SoupResult result = runner.evolve(PackedGrid.of(new Grid(new StandardTestGrid())));
+        assertFalse("Blinker period is not detected", result.isStabilized());
+        assertEquals("Lifetime is the generation limit", 3, result.getLifetime());
+    }
+
+    /**
+     * The soup content depends on the seed only.
+     */
+    @Test
+    public void reproducibleSoups() {
+        SoupRunner runner = new SoupRunner(GameRule.CONWAY);
+        runner.setBoardSize(40, 40);
+        assertEquals("Same seed, same soup", runner.createSoup(42), runner.createSoup(42));
+        assertFalse("Different seed, different soup", runner.createSoup(42).equals(runner.createSoup(43)));
+
+        PackedGrid soup = runner.createSoup(7);
+        assertTrue("Soup is centered", soup.getPopulation() > 0);
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 40; y++) {
+                if (x < 12 || x >= 28 || y < 12 || y >= 28) {
+                    assertFalse(String.format("Cell (%d,%d) outside of soup", x, y), soup.isAlive(x, y));
+                }
+            }
+        }
+    }
+
+    /**
+     * Aggregated results do not depend on how the batch was split.
+     */
+    @Test
+    public void batchAggregation() {
+        SoupRunner runner = new SoupRunner(GameRule.CONWAY);
+        SoupStatistics batch = runner.run(100, 3100);
+
+        SoupStatistics sequential = new SoupStatistics();
+        for (long seed = 100; seed < 3100; seed++) {
+            sequential.add(runner.runSoup(seed));
+        }
+
+        assertEquals("Soup count", 3000, batch.getSoupCount());
+        assertEquals("Stabilized soups", sequential.getStabilizedCount(), batch.getStabilizedCount());
+        assertEquals("Total population", sequential.getTotalPopulation(), batch.getTotalPopulation());
+        assertEquals("Average lifetime", sequential.getAverageLifetime(), batch.getAverageLifetime(), 1e-9);
+        assertEquals("Maximum lifetime", sequential.getMaxLifetime(), batch.getMaxLifetime());
+        assertEquals("Maximum lifetime seed", sequential.getMaxLifetimeSeed(), batch.getMaxLifetimeSeed());
+        assertEquals("Periods", sequential.getPeriods(), batch.getPeriods());
+        assertEquals("Period histogram covers all stabilized soups", batch.getStabilizedCount(), batch.getPeriods().values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    /**
+     * Bit-sliced batches have the same results as soups run one by one, including soups which are not detected by the
+     * bit-sliced run.
+     */
+    @Test
+    public void bitSlicedBatches() {
+        SoupRunner runner = new SoupRunner(GameRule.CONWAY);
+        runner.setSoupSize(10, 10);
+        runner.setBoardSize(24, 20);
+        runner.setMaxGenerations(60);
+        runner.setMaxPeriod(30);
+
+        SoupStatistics bitSliced = runner.run(0, 1000);
+        runner.setBitSliced(false);
+        SoupStatistics single = runner.run(0, 1000);
+
+        assertTrue("Some soups are not stabilized", single.getUnstabilizedCount() > 0);
+        assertEquals("Stabilized soups", single.getStabilizedCount(), bitSliced.getStabilizedCount());
+        assertEquals("Total population", single.getTotalPopulation(), bitSliced.getTotalPopulation());
+        assertEquals("Average lifetime", single.getAverageLifetime(), bitSliced.getAverageLifetime(), 1e-9);
+        assertEquals("Periods", single.getPeriods(), bitSliced.getPeriods());
+    }
+
+    /**
+     * Empty batches have neutral results.
+     */
+    @Test
+    public void emptyBatch() {
+        SoupStatistics statistics = new SoupRunner(GameRule.CONWAY).run(5, 5);
+        assertEquals("No soups", 0, statistics.getSoupCount());
+        assertEquals("No population", 0, statistics.getMaxPopulation());
+    }
+
+    /**
+     * Test invalid board sizes.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void boardSmallerThanSoup() {
+        new SoupRunner(GameRule.CONWAY).setBoardSize(8, 8);
+    }
+}
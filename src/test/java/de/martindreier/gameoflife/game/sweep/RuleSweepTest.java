@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (C) 2016 Martin Dreier <martin@martindreier.de>
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package de.martindreier.gameoflife.game.sweep;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.martindreier.gameoflife.game.GameRule;
+import de.martindreier.gameoflife.game.grids.StandardTestGrid;
+import de.martindreier.gameoflife.game.packed.LifeLikeRule;
+import de.martindreier.gameoflife.game.packed.PackedGrid;
+import de.martindreier.gameoflife.game.packed.PackedGridTest;
+
+/**
+ * Tests for the {@link RuleSweep}.
+ *
+ * @author D043987
+ *
+ */
+@RunWith(JUnit4.class)
+public class RuleSweepTest {
+
+    /**
+     * The blinker oscillates under Conway's rules and dies under B3/S (no survival).
+     */
+    @Test
+    public void blinker() {
+        RuleSweep sweep = new RuleSweep(new StandardTestGrid());
+        GameRule noSurvival = GameRule.createRule(new Integer[0], new Integer[] { 3 });
+        List<RuleOutcome> outcomes = sweep.run(GameRule.CONWAY, noSurvival);
+
+        RuleOutcome conway = outcomes.get(0);
+        assertSame("Rule order is kept", GameRule.CONWAY, conway.getRule());
+        assertEquals("Life-like rule", LifeLikeRule.CONWAY, conway.getLifeLikeRule());
+        assertTrue("Blinker is stable", conway.isStabilized());
+        assertEquals("Period", 2, conway.getPeriod());
+        assertEquals("Stabilization time", 0, conway.getStabilizationTime());
+        assertArrayEquals("Population curve", new long[] { 3, 3, 3 }, conway.getPopulationCurve());
+
+        RuleOutcome dying = outcomes.get(1);
+        assertTrue("Dead grid is stable", dying.isStabilized());
+        assertEquals("Period", 1, dying.getPeriod());
+        assertEquals("Population", 0, dying.getFinalPopulation());
+        assertEquals("Population in generation 1", 2, dying.getPopulation(1));
+    }
+
+    /**
+     * Parallel sweeps have the same outcomes as rules run one by one on a fresh grid, and do not modify the seed.
+     */
+    @Test
+    public void parallelSweep() {
+        PackedGrid seed = PackedGrid.of(PackedGridTest.randomGrid(70, 50, 11));
+        RuleSweep sweep = new RuleSweep(seed);
+        sweep.setMaxGenerations(200);
+
+        List<GameRule> rules = new ArrayList<>();
+        for (int birth = 1; birth < 9; birth++) {
+            for (int survival = 0; survival < 9; survival++) {
+                rules.add(GameRule.createRule(new Integer[] { survival, survival == 8 ? 2 : survival + 1 }, new Integer[] { birth }));
+            }
+        }
+        List<RuleOutcome> outcomes = sweep.run(rules);
+
+        assertEquals("Outcome count", rules.size(), outcomes.size());
+        assertEquals("Seed is unchanged", seed, sweep.getSeed());
+        for (int index = 0; index < rules.size(); index++) {
+            RuleOutcome outcome = outcomes.get(index);
+            LifeLikeRule rule = LifeLikeRule.of(rules.get(index));
+            assertEquals("Rule order is kept", rule, outcome.getLifeLikeRule());
+
+            PackedGrid grid = new PackedGrid(seed);
+            assertEquals("Initial population", grid.getPopulation(), outcome.getPopulation(0));
+            for (int generation = 1; generation <= outcome.getGenerations(); generation++) {
+                grid.step(rule);
+                assertEquals(String.format("Population of %s in generation %d", rule, generation), grid.getPopulation(), outcome.getPopulation(generation));
+            }
+            if (!outcome.isStabilized()) {
+                assertEquals("Unstable rules run to the limit", 200, outcome.getGenerations());
+            }
+        }
+    }
+
+    /**
+     * Rules which do not stabilize run until the generation limit.
+     */
+    @Test
+    public void generationLimit() {
+        RuleSweep sweep = new RuleSweep(new StandardTestGrid());
+        sweep.setMaxGenerations(5);
+        sweep.setMaxPeriod(1);
+        RuleOutcome outcome = sweep.run(GameRule.CONWAY).get(0);
+        assertFalse("Period 2 is not detected", outcome.isStabilized());
+        assertEquals("Generations", 5, outcome.getGenerations());
+        assertEquals("Stabilization time is the limit", 5, outcome.getStabilizationTime());
+    }
+
+    /**
+     * Changing the maximum period between runs is not affected by pooled buffers of earlier runs.
+     */
+    @Test
+    public void changedSettings() {
+        RuleSweep sweep = new RuleSweep(new StandardTestGrid());
+        assertTrue("Period 2 is detected", sweep.runRule(GameRule.CONWAY).isStabilized());
+        sweep.setMaxPeriod(1);
+        assertFalse("Period 2 is not detected with the new maximum period", sweep.runRule(GameRule.CONWAY).isStabilized());
+        sweep.setMaxPeriod(2);
+        assertTrue("Period 2 is detected again", sweep.runRule(GameRule.CONWAY).isStabilized());
+    }
+
+    /**
+     * Seeds are loaded into a grid of fixed size, which must hold the pattern.
+     */
+    @Test
+    public void fixedSize() {
+        RuleSweep sweep = new RuleSweep(9, 7, new StandardTestGrid());
+        assertEquals("Width", 9, sweep.getSeed().getWidth());
+        assertEquals("Height", 7, sweep.getSeed().getHeight());
+        assertEquals("Population", 3, sweep.getSeed().getPopulation());
+        try {
+            new RuleSweep(3, 3, new StandardTestGrid());
+            fail("Pattern larger than the grid accepted");
+        }
+        catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Test invalid generation limits.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidGenerationLimit() {
+        new RuleSweep(new StandardTestGrid()).setMaxGenerations(0);
+    }
+}